@@ -17,19 +17,23 @@
 package com.google.cloud.tools.intellij.debugger;
 
 import com.google.api.client.repackaged.com.google.common.base.Strings;
-import com.google.api.services.clouddebugger.v2.model.Breakpoint;
-import com.google.api.services.clouddebugger.v2.model.SourceLocation;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
+import java.util.List;
 
 /**
  * BreakpointComparer is a comparer used to sort breakpoints in the historical snapshot list.
+ * <p/>
+ * Pending breakpoints come first, ordered by path and line, followed by final breakpoints, newest
+ * first. It compares {@link BreakpointRecord}s, whose final times are parsed once when the record
+ * is built, so a comparison only looks at primitives and already interned strings.
  */
-public class BreakpointComparer implements Comparator<Breakpoint> {
+public class BreakpointComparer implements Comparator<BreakpointRecord> {
 
   private static final BreakpointComparer DEFAULT_INSTANCE = new BreakpointComparer();
-  private static final Date MINIMUM_DATE = new Date(Long.MIN_VALUE);
 
   private BreakpointComparer() {
   }
@@ -38,72 +42,44 @@ public class BreakpointComparer implements Comparator<Breakpoint> {
     return DEFAULT_INSTANCE;
   }
 
-  @SuppressWarnings("ConstantConditions")
+  /**
+   * Sorts {@code breakpoints} in place in the same order as {@link #compare}.
+   */
+  public static void sort(@NotNull List<BreakpointRecord> breakpoints) {
+    Collections.sort(breakpoints, DEFAULT_INSTANCE);
+  }
+
   @Override
-  public int compare(Breakpoint o1, Breakpoint o2) {
-    if (o2.getFinalTime() == null && o1.getFinalTime() != null) {
-      return 1;
+  public int compare(BreakpointRecord o1, BreakpointRecord o2) {
+    if (o1.isFinal() != o2.isFinal()) {
+      return o1.isFinal() ? 1 : -1;
     }
-    if (o2.getFinalTime() != null && o1.getFinalTime() == null) {
-      return -1;
+    if (o1.isFinal()) {
+      // Newest first.
+      return o2.getFinalTimeMillis() < o1.getFinalTimeMillis() ? -1
+          : (o2.getFinalTimeMillis() == o1.getFinalTimeMillis() ? 0 : 1);
     }
-    if (o2.getFinalTime() == null && o1.getFinalTime() == null) {
-      //compare file and line
-      SourceLocation s1 = o1.getLocation();
-      SourceLocation s2 = o2.getLocation();
-      boolean s1Valid = isSourceLocationValid(s1);
-      boolean s2Valid = isSourceLocationValid(s2);
-      if (!s1Valid && !s2Valid) {
-        return 0;
-      }
-      if (s1Valid && !s2Valid) {
-        return -1;
-      }
-      if (!s1Valid && s2Valid) {
-        return 1;
-      }
-      if (s1.getPath().equals(s2.getPath())) {
-        long s1Line = toLongValue(s1.getLine().longValue());
-        long s2Line = toLongValue(s2.getLine().longValue());
-        if (s1Line > s2Line) {
-          return 1;
-        }
-        if (s1Line < s2Line) {
-          return -1;
-        }
+    String path1 = getValidPath(o1);
+    String path2 = getValidPath(o2);
+    if (path1 == null || path2 == null) {
+      if (path1 == null && path2 == null) {
         return 0;
       }
-      return s1.getPath().compareTo(s2.getPath());
+      return path1 != null ? -1 : 1;
     }
-    Date d1 = BreakpointUtil.parseDateTime(o1.getFinalTime());
-    Date d2 = BreakpointUtil.parseDateTime(o2.getFinalTime());
-    if (d1 == null) {
-      d1 = MINIMUM_DATE;
+    if (path1.equals(path2)) {
+      return o1.getLine() < o2.getLine() ? -1 : (o1.getLine() == o2.getLine() ? 0 : 1);
     }
-    if (d2 == null) {
-      d2 = MINIMUM_DATE;
-    }
-    return d2.compareTo(d1);
+    return path1.compareTo(path2);
   }
 
-  private static boolean isSourceLocationValid(SourceLocation sourceLocation) {
-    if (sourceLocation == null) {
-      return false;
-    }
-    if (Strings.isNullOrEmpty(sourceLocation.getPath())) {
-      return false;
+  /**
+   * Returns the path of the breakpoint, or null if its location is not valid.
+   */
+  private static String getValidPath(BreakpointRecord breakpoint) {
+    if (Strings.isNullOrEmpty(breakpoint.getPath()) || breakpoint.getLine() <= 0) {
+      return null;
     }
-    if (sourceLocation.getLine() == null) {
-      return false;
-    }
-    return true;
-  }
-
-  private static int toIntValue(Integer integer) {
-    return integer != null ? integer.intValue() : 0;
-  }
-
-  private static long toLongValue(Long longValue) {
-    return longValue != null ? longValue.longValue() : 0;
+    return breakpoint.getPath();
   }
 }
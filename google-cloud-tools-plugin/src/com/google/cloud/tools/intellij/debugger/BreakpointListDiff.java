@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The difference between two consecutive server breakpoint lists, keyed by breakpoint id. It
+ * compares the {@link BreakpointRecord}s of both lists.
+ * <p/>
+ * A breakpoint is reported as:
+ * <ul>
+ * <li>added, if its id was not in the previous list;
+ * <li>removed, if its id is no longer in the current list;
+ * <li>became final, if it is in final state now and was not (or was absent) before;
+ * <li>status changed, if it was in both lists and it entered or left error state, or its error
+ * message differs.
+ * </ul>
+ * A breakpoint that was added in final state is reported as both added and became final. All lists
+ * returned by this class are unmodifiable and keep the order of the list they were taken from.
+ */
+public final class BreakpointListDiff {
+
+  private static final BreakpointListDiff EMPTY = new BreakpointListDiff(
+      Collections.<BreakpointRecord>emptyList(), Collections.<BreakpointRecord>emptyList(),
+      Collections.<BreakpointRecord>emptyList(), Collections.<BreakpointRecord>emptyList(),
+      Collections.<BreakpointRecord>emptyList());
+
+  private final List<BreakpointRecord> added;
+  private final List<BreakpointRecord> removed;
+  private final List<BreakpointRecord> becameFinal;
+  private final List<BreakpointRecord> statusChanged;
+  private final List<BreakpointRecord> addedOrChanged;
+
+  private BreakpointListDiff(List<BreakpointRecord> added, List<BreakpointRecord> removed,
+      List<BreakpointRecord> becameFinal, List<BreakpointRecord> statusChanged,
+      List<BreakpointRecord> addedOrChanged) {
+    this.added = Collections.unmodifiableList(added);
+    this.removed = Collections.unmodifiableList(removed);
+    this.becameFinal = Collections.unmodifiableList(becameFinal);
+    this.statusChanged = Collections.unmodifiableList(statusChanged);
+    this.addedOrChanged = Collections.unmodifiableList(addedOrChanged);
+  }
+
+  /**
+   * Returns a diff with no changes.
+   */
+  @NotNull
+  public static BreakpointListDiff empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Computes the changes that turn {@code previous} into {@code current}. Breakpoints without an id
+   * are ignored. Runs in time linear in the size of both lists.
+   */
+  @NotNull
+  public static BreakpointListDiff compute(@Nullable List<BreakpointRecord> previous,
+      @Nullable List<BreakpointRecord> current) {
+    Map<String, BreakpointRecord> previousById = new LinkedHashMap<String, BreakpointRecord>();
+    if (previous != null) {
+      for (BreakpointRecord breakpoint : previous) {
+        if (breakpoint.getId() != null) {
+          previousById.put(breakpoint.getId(), breakpoint);
+        }
+      }
+    }
+
+    List<BreakpointRecord> added = new ArrayList<BreakpointRecord>();
+    List<BreakpointRecord> becameFinal = new ArrayList<BreakpointRecord>();
+    List<BreakpointRecord> statusChanged = new ArrayList<BreakpointRecord>();
+    List<BreakpointRecord> addedOrChanged = new ArrayList<BreakpointRecord>();
+    if (current != null) {
+      for (BreakpointRecord breakpoint : current) {
+        if (breakpoint.getId() == null) {
+          continue;
+        }
+        BreakpointRecord old = previousById.remove(breakpoint.getId());
+        boolean changed = false;
+        if (old == null) {
+          added.add(breakpoint);
+          changed = true;
+        }
+        if (breakpoint.isFinal() && (old == null || !old.isFinal())) {
+          becameFinal.add(breakpoint);
+          changed = true;
+        }
+        if (old != null && (isError(old) != isError(breakpoint)
+            || !Objects.equals(old.getErrorMessage(), breakpoint.getErrorMessage()))) {
+          statusChanged.add(breakpoint);
+          changed = true;
+        }
+        if (changed) {
+          addedOrChanged.add(breakpoint);
+        }
+      }
+    }
+
+    List<BreakpointRecord> removed = new ArrayList<BreakpointRecord>(previousById.values());
+    if (added.isEmpty() && removed.isEmpty() && addedOrChanged.isEmpty()) {
+      return EMPTY;
+    }
+    return new BreakpointListDiff(added, removed, becameFinal, statusChanged, addedOrChanged);
+  }
+
+  private static boolean isError(@NotNull BreakpointRecord breakpoint) {
+    return breakpoint.getState() == BreakpointRecord.State.ERROR;
+  }
+
+  /**
+   * Returns the breakpoints whose ids were not in the previous list.
+   */
+  @NotNull
+  public List<BreakpointRecord> getAdded() {
+    return added;
+  }
+
+  /**
+   * Returns the breakpoints of the previous list whose ids are not in the current list.
+   */
+  @NotNull
+  public List<BreakpointRecord> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Returns the breakpoints that are in final state now but were not in the previous list.
+   */
+  @NotNull
+  public List<BreakpointRecord> getBecameFinal() {
+    return becameFinal;
+  }
+
+  /**
+   * Returns the breakpoints present in both lists whose status message changed.
+   */
+  @NotNull
+  public List<BreakpointRecord> getStatusChanged() {
+    return statusChanged;
+  }
+
+  /**
+   * Returns every breakpoint of the current list that was added, became final or changed status,
+   * each one once.
+   */
+  @NotNull
+  public List<BreakpointRecord> getAddedOrChanged() {
+    return addedOrChanged;
+  }
+
+  /**
+   * Returns true if the two lists held the same breakpoints in the same states.
+   */
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty() && addedOrChanged.isEmpty();
+  }
+}
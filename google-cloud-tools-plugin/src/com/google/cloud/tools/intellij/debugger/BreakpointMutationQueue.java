@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends breakpoint deletes and sets for one debuggee to the server.
+ * <p/>
+ * Requests of all queues run on one shared pool of {@link #MAX_PARALLEL_REQUESTS} threads, so a
+ * large batch keeps that many requests in flight and takes about as long as its slowest requests
+ * instead of the sum of all of them, without flooding the backend. Deletes of a breakpoint that is
+ * already being deleted are coalesced with the pending request, and every batch reports once when
+ * all of its requests have finished.
+ */
+class BreakpointMutationQueue {
+
+  @VisibleForTesting
+  static final int MAX_PARALLEL_REQUESTS = 8;
+
+  private static final int IDLE_THREAD_TIMEOUT_MS = 30 * 1000;
+  private static final Logger LOG = Logger.getInstance(BreakpointMutationQueue.class);
+  private static final Executor SHARED_EXECUTOR = createExecutor();
+
+  private final Executor executor;
+  // Breakpoint ids with a delete in flight, and the batches waiting for each of them.
+  private final Map<String, List<Batch>> pendingDeletes = new HashMap<String, List<Batch>>();
+
+  BreakpointMutationQueue() {
+    this(SHARED_EXECUTOR);
+  }
+
+  @VisibleForTesting
+  BreakpointMutationQueue(@NotNull Executor executor) {
+    this.executor = executor;
+  }
+
+  private static Executor createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_REQUESTS,
+        MAX_PARALLEL_REQUESTS, IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger breakpoint mutation", true,
+            Thread.NORM_PRIORITY));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Deletes the given breakpoints from the server.
+   *
+   * @param client the client used to send the requests
+   * @param debuggeeId the debuggee the breakpoints belong to
+   * @param breakpointIds the breakpoints to delete; duplicates are sent once
+   * @param handler told once when every delete has finished, may be null
+   */
+  void delete(@NotNull Debugger client, @NotNull String debuggeeId,
+      @NotNull Collection<String> breakpointIds, @Nullable CompletionHandler handler) {
+    Set<String> uniqueIds = new LinkedHashSet<String>(breakpointIds);
+    Batch batch = new Batch(uniqueIds.size(), handler);
+    if (uniqueIds.isEmpty()) {
+      batch.complete();
+      return;
+    }
+    for (String breakpointId : uniqueIds) {
+      boolean alreadyPending;
+      synchronized (pendingDeletes) {
+        List<Batch> waiting = pendingDeletes.get(breakpointId);
+        alreadyPending = waiting != null;
+        if (!alreadyPending) {
+          waiting = new ArrayList<Batch>();
+          pendingDeletes.put(breakpointId, waiting);
+        }
+        waiting.add(batch);
+      }
+      if (!alreadyPending) {
+        submitDelete(client, debuggeeId, breakpointId);
+      }
+    }
+  }
+
+  /**
+   * Runs a request on the shared pool, after the requests already queued.
+   */
+  void submit(@NotNull Runnable request) {
+    executor.execute(request);
+  }
+
+  @VisibleForTesting
+  boolean isDeletePending(@NotNull String breakpointId) {
+    synchronized (pendingDeletes) {
+      return pendingDeletes.containsKey(breakpointId);
+    }
+  }
+
+  private void submitDelete(@NotNull final Debugger client, @NotNull final String debuggeeId,
+      @NotNull final String breakpointId) {
+    Runnable request = new Runnable() {
+      @Override
+      public void run() {
+        boolean succeeded = false;
+        try {
+          CloudDebuggerMetrics.execute("breakpoints.delete",
+              client.debuggees().breakpoints().delete(debuggeeId, breakpointId)
+                  .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+                      .getClientVersionForCloudDebugger()));
+          succeeded = true;
+        } catch (IOException ex) {
+          LOG.warn("exception deleting breakpoint " + breakpointId, ex);
+        } finally {
+          finishDelete(breakpointId, succeeded);
+        }
+      }
+    };
+    try {
+      executor.execute(request);
+    } catch (RejectedExecutionException ex) {
+      LOG.warn("could not schedule deleting breakpoint " + breakpointId, ex);
+      finishDelete(breakpointId, false);
+    }
+  }
+
+  private void finishDelete(@NotNull String breakpointId, boolean succeeded) {
+    List<Batch> waiting;
+    synchronized (pendingDeletes) {
+      waiting = pendingDeletes.remove(breakpointId);
+    }
+    if (waiting != null) {
+      for (Batch batch : waiting) {
+        batch.onRequestFinished(breakpointId, succeeded);
+      }
+    }
+  }
+
+  /**
+   * Receives the aggregate result of a batch of mutations.
+   */
+  interface CompletionHandler {
+
+    void onComplete(int succeeded, @NotNull List<String> failedIds);
+  }
+
+  private static final class Batch {
+
+    private final AtomicInteger remaining;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final List<String> failedIds = Collections.synchronizedList(new ArrayList<String>());
+    @Nullable
+    private final CompletionHandler handler;
+
+    Batch(int size, @Nullable CompletionHandler handler) {
+      remaining = new AtomicInteger(size);
+      this.handler = handler;
+    }
+
+    void onRequestFinished(@NotNull String breakpointId, boolean success) {
+      if (success) {
+        succeeded.incrementAndGet();
+      } else {
+        failedIds.add(breakpointId);
+      }
+      if (remaining.decrementAndGet() == 0) {
+        complete();
+      }
+    }
+
+    void complete() {
+      if (handler != null) {
+        List<String> failed;
+        synchronized (failedIds) {
+          failed = new ArrayList<String>(failedIds);
+        }
+        handler.onComplete(succeeded.get(), failed);
+      }
+    }
+  }
+}
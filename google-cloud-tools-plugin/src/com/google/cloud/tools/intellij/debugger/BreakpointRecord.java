@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.api.services.clouddebugger.v2.model.StatusMessage;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.ImmutableList;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable summary of a server {@link Breakpoint} with the fields the plugin reads already
+ * extracted: the state as an enum, times as epoch milliseconds, the location as an interned path
+ * and a primitive line, the condition and watch expressions as interned strings, and the error
+ * message already formatted.
+ * <p/>
+ * Records are built once per poll, when the new breakpoint list is received, and the
+ * {@link CloudDebugProcessState} keeps only the records: the API breakpoint, with its maps of
+ * generic fields and its nested status and location objects, is dropped right away. Code that
+ * needs the API model asks for it on demand, either with {@link #toBreakpoint()} for the fields a
+ * record keeps, or by hydrating the snapshot through the {@link CloudDebugProcessStateController}.
+ */
+public final class BreakpointRecord {
+
+  /**
+   * The state of a breakpoint as shown in the snapshot list.
+   */
+  public enum State {
+    /** Waiting to be hit. */
+    PENDING,
+    /** Hit; the snapshot is available. */
+    FINAL,
+    /** Could not be set or evaluated; see {@link #getErrorMessage()}. */
+    ERROR
+  }
+
+  private static final Interner<String> strings = Interners.newWeakInterner();
+
+  private static final String[] NO_EXPRESSIONS = new String[0];
+
+  private final String id;
+  private final State state;
+  private final boolean isFinal;
+  @Nullable
+  private final String path;
+  @Nullable
+  private final String fileName;
+  private final int line;
+  @Nullable
+  private final String condition;
+  private final String[] expressions;
+  private final long createTimeMillis;
+  private final long finalTimeMillis;
+  @Nullable
+  private final String errorMessage;
+
+  private BreakpointRecord(@NotNull Breakpoint breakpoint) {
+    id = breakpoint.getId();
+    isFinal = Boolean.TRUE.equals(breakpoint.getIsFinalState());
+    StatusMessage status = breakpoint.getStatus();
+    boolean isError = status != null && Boolean.TRUE.equals(status.getIsError());
+    state = isError ? State.ERROR : (isFinal ? State.FINAL : State.PENDING);
+    errorMessage = isError ? BreakpointUtil.getUserErrorMessage(status) : null;
+
+    SourceLocation location = breakpoint.getLocation();
+    if (location != null && location.getPath() != null) {
+      path = strings.intern(location.getPath());
+      fileName = strings.intern(path.substring(path.lastIndexOf('/') + 1));
+    } else {
+      path = null;
+      fileName = null;
+    }
+    line = location != null && location.getLine() != null ? location.getLine() : 0;
+    condition = breakpoint.getCondition() != null ? strings.intern(breakpoint.getCondition())
+        : null;
+    List<String> watches = breakpoint.getExpressions();
+    if (watches != null && !watches.isEmpty()) {
+      expressions = new String[watches.size()];
+      for (int i = 0; i < expressions.length; i++) {
+        expressions[i] = strings.intern(watches.get(i));
+      }
+    } else {
+      expressions = NO_EXPRESSIONS;
+    }
+    createTimeMillis = toMillis(breakpoint.getCreateTime());
+    finalTimeMillis = toMillis(breakpoint.getFinalTime());
+  }
+
+  /**
+   * Builds the record of the given breakpoint.
+   */
+  @NotNull
+  public static BreakpointRecord of(@NotNull Breakpoint breakpoint) {
+    return new BreakpointRecord(breakpoint);
+  }
+
+  /**
+   * Builds the records of the given breakpoints, in the same order.
+   */
+  @NotNull
+  public static ImmutableList<BreakpointRecord> fromList(@Nullable List<Breakpoint> breakpoints) {
+    List<BreakpointRecord> records = new ArrayList<BreakpointRecord>(
+        breakpoints != null ? breakpoints.size() : 0);
+    if (breakpoints != null) {
+      for (Breakpoint breakpoint : breakpoints) {
+        records.add(new BreakpointRecord(breakpoint));
+      }
+    }
+    return ContainerUtil.immutableList(records);
+  }
+
+  private static long toMillis(@Nullable String dateTime) {
+    Long millis = BreakpointUtil.parseDateTimeMillis(dateTime);
+    return millis != null ? millis : Long.MIN_VALUE;
+  }
+
+  /**
+   * Builds an API breakpoint with the fields this record keeps: the id, final state, location,
+   * condition and watch expressions. It has no status, times or captured data; hydrate the snapshot
+   * for those.
+   */
+  @NotNull
+  public Breakpoint toBreakpoint() {
+    Breakpoint breakpoint = new Breakpoint().setId(id).setIsFinalState(isFinal);
+    if (path != null) {
+      SourceLocation location = new SourceLocation().setPath(path);
+      if (line > 0) {
+        location.setLine(line);
+      }
+      breakpoint.setLocation(location);
+    }
+    if (condition != null) {
+      breakpoint.setCondition(condition);
+    }
+    if (expressions.length > 0) {
+      breakpoint.setExpressions(getExpressions());
+    }
+    return breakpoint;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @NotNull
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Returns whether the server marked the breakpoint final. An {@link State#ERROR} breakpoint is
+   * usually final too.
+   */
+  public boolean isFinal() {
+    return isFinal;
+  }
+
+  @Nullable
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the last segment of the path, e.g. "Class.java".
+   */
+  @Nullable
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Returns the one based line, or 0 if the breakpoint has no line.
+   */
+  public int getLine() {
+    return line;
+  }
+
+  @Nullable
+  public String getCondition() {
+    return condition;
+  }
+
+  /**
+   * Returns the watch expressions, or an empty list if there are none.
+   */
+  @NotNull
+  public List<String> getExpressions() {
+    return Collections.unmodifiableList(Arrays.asList(expressions));
+  }
+
+  /**
+   * Returns the creation time in milliseconds since the epoch, or {@link Long#MIN_VALUE} if it is
+   * not known.
+   */
+  public long getCreateTimeMillis() {
+    return createTimeMillis;
+  }
+
+  /**
+   * Returns the time the breakpoint became final in milliseconds since the epoch, or
+   * {@link Long#MIN_VALUE} if it is not final.
+   */
+  public long getFinalTimeMillis() {
+    return finalTimeMillis;
+  }
+
+  /**
+   * Returns the message to show for an {@link State#ERROR} breakpoint, null otherwise.
+   */
+  @Nullable
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * Two records are equal if every extracted field is, that is if the breakpoint looks the same
+   * wherever the plugin shows it.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof BreakpointRecord)) {
+      return false;
+    }
+    BreakpointRecord record = (BreakpointRecord) other;
+    return isFinal == record.isFinal
+        && line == record.line
+        && createTimeMillis == record.createTimeMillis
+        && finalTimeMillis == record.finalTimeMillis
+        && state == record.state
+        && Objects.equals(id, record.id)
+        && Objects.equals(path, record.path)
+        && Objects.equals(condition, record.condition)
+        && Arrays.equals(expressions, record.expressions)
+        && Objects.equals(errorMessage, record.errorMessage);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, state, path, line, finalTimeMillis);
+  }
+}
@@ -17,15 +17,16 @@
 package com.google.cloud.tools.intellij.debugger;
 
 import com.google.api.client.repackaged.com.google.common.base.Strings;
+import com.google.api.services.clouddebugger.v2.model.FormatMessage;
 import com.google.api.services.clouddebugger.v2.model.StatusMessage;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.openapi.diagnostic.Logger;
 
 import org.jetbrains.annotations.Nullable;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -38,6 +39,9 @@ public class BreakpointUtil {
   // 2015-07-23T16:37:33.000Z
   public static final String ISO_8601_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
 
+  // Joda formatters are immutable and thread safe, so one instance is shared by all callers.
+  private static final DateTimeFormatter ISO_8601_PARSER = ISODateTimeFormat.dateTimeParser();
+
   /**
    * This is a helper routine that converts a server {@link StatusMessage} to descriptive text.
    */
@@ -53,21 +57,17 @@ public class BreakpointUtil {
   }
 
   /**
-   * Formats and returns the user message.
+   * Formats and returns the user message. Each distinct format is parsed once, see
+   * {@link MessageTemplate}.
    */
   @Nullable
   public static String getUserMessage(@Nullable StatusMessage statusMessage) {
     if (statusMessage != null && statusMessage.getDescription() != null) {
-      String formatString = statusMessage.getDescription().getFormat();
-      Integer idx = 0;
-      // Parameters in the server version are encoded script style with '$'.
-      String argString = "$" + idx.toString();
-      while (formatString.contains(argString)) {
-        formatString = formatString.replace(argString, "%s");
-        idx++;
-        argString = "$" + idx.toString();
+      FormatMessage description = statusMessage.getDescription();
+      if (description.getFormat() == null) {
+        return null;
       }
-      return String.format(formatString, statusMessage.getDescription().getParameters());
+      return MessageTemplate.get(description.getFormat()).render(description.getParameters());
     }
     return null;
   }
@@ -77,17 +77,22 @@ public class BreakpointUtil {
    */
   @Nullable
   public static Date parseDateTime(@Nullable String dateString) {
+    Long millis = parseDateTimeMillis(dateString);
+    return millis != null ? new Date(millis) : null;
+  }
+
+  /**
+   * Parses a date time string to milliseconds since the epoch.
+   */
+  @Nullable
+  public static Long parseDateTimeMillis(@Nullable String dateString) {
     if (dateString == null) {
       return null;
     }
 
-    dateString = dateString.replaceAll("Z$", "-0000");
-
-    SimpleDateFormat iso8601Format = new SimpleDateFormat(ISO_8601_FORMAT);
-
     try {
-      return iso8601Format.parse(dateString);
-    } catch (ParseException ex) {
+      return ISO_8601_PARSER.parseMillis(dateString);
+    } catch (IllegalArgumentException ex) {
       LOG.error("error parsing datetime " + dateString, ex);
     }
 
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link CloudBreakpointListener} that is told what changed when a poll returns a new server
+ * breakpoint list, instead of having to rescan the whole list.
+ * <p/>
+ * Delta listeners receive {@link #onBreakpointListDelta} for polled changes, and only when the diff
+ * is not empty. {@link #onBreakpointListChanged} is still called for local refreshes that are not
+ * backed by a diff.
+ */
+public interface CloudBreakpointDeltaListener extends CloudBreakpointListener {
+
+  void onBreakpointListDelta(@NotNull CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff);
+}
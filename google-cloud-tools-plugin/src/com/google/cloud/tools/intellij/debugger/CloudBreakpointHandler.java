@@ -29,6 +29,7 @@ import com.intellij.debugger.ui.breakpoints.BreakpointManager;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -44,8 +45,12 @@ import com.intellij.xdebugger.breakpoints.XLineBreakpoint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.SwingUtilities;
@@ -103,56 +108,54 @@ public class CloudBreakpointHandler
    * breakpoint. <li>It does not set "created by server = true", so when control flow comes back
    * into register, it will register with the server. </ul>
    */
-  public void cloneToNewBreakpoints(@NotNull final List<Breakpoint> serverBreakpoints) {
-    for (Breakpoint serverBreakpoint : serverBreakpoints) {
-      if (!Boolean.TRUE.equals(serverBreakpoint.getIsFinalState())) {
+  public void cloneToNewBreakpoints(@NotNull final List<BreakpointRecord> serverBreakpoints) {
+    List<BreakpointRecord> finalBreakpoints = new ArrayList<BreakpointRecord>();
+    for (BreakpointRecord serverBreakpoint : serverBreakpoints) {
+      if (!serverBreakpoint.isFinal()) {
         continue;
       }
-
-      Project currentProject = process.getXDebugSession().getProject();
-      final XBreakpointManager manager =
-          XDebuggerManager.getInstance(process.getXDebugSession().getProject())
-              .getBreakpointManager();
-      if (serverBreakpoint.getLocation() == null) {
+      if (serverBreakpoint.getPath() == null) {
         LOG.warn("attempted to clone a breakpoint without a source location: "
             + StringUtil.notNullize(serverBreakpoint.getId()));
         continue;
       }
+      finalBreakpoints.add(serverBreakpoint);
+    }
 
-      String path = serverBreakpoint.getLocation().getPath();
-      if (Strings.isNullOrEmpty(path)) {
+    Map<String, VirtualFile> files = resolveFiles(finalBreakpoints);
+    final XBreakpointManager manager =
+        XDebuggerManager.getInstance(process.getXDebugSession().getProject())
+            .getBreakpointManager();
+    final List<XLineBreakpoint> toRemove = new ArrayList<XLineBreakpoint>();
+    final List<Runnable> toAdd = new ArrayList<Runnable>();
+    for (final BreakpointRecord serverBreakpoint : finalBreakpoints) {
+      String path = serverBreakpoint.getPath();
+      if (Strings.isNullOrEmpty(path) || serverBreakpoint.getLine() <= 0) {
         continue;
       }
 
-      final VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
-      final int line = serverBreakpoint.getLocation().getLine() - 1;
+      final VirtualFile file = files.get(path);
+      final int line = serverBreakpoint.getLine() - 1;
       if (file == null) {
         LOG.warn("attempted to clone a breakpoint whose file doesn't exist locally: "
-            + StringUtil.notNullize(serverBreakpoint.getLocation().getPath()));
+            + StringUtil.notNullize(serverBreakpoint.getPath()));
         continue;
       }
 
-      final XLineBreakpoint existing = manager.findBreakpointAtLine(
+      XLineBreakpoint existing = manager.findBreakpointAtLine(
           CloudLineBreakpointType.getInstance(), file, line);
       if (existing != null) {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
-          @Override
-          public void run() {
-            manager.removeBreakpoint(existing);
-          }
-        });
+        toRemove.add(existing);
       }
 
-      final CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
-      final Breakpoint finalserverBreakpoint = serverBreakpoint;
-      ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      toAdd.add(new Runnable() {
         @Override
         public void run() {
-          if (finalserverBreakpoint.getExpressions() != null
-              && finalserverBreakpoint.getExpressions().size() > 0) {
+          CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
+          if (!serverBreakpoint.getExpressions().isEmpty()) {
             properties.setWatchExpressions(
-                finalserverBreakpoint.getExpressions().toArray(
-                    new String[finalserverBreakpoint.getExpressions().size()]));
+                serverBreakpoint.getExpressions().toArray(
+                    new String[serverBreakpoint.getExpressions().size()]));
           }
 
           XLineBreakpoint<CloudLineBreakpointProperties> newxIdeBreakpoint =
@@ -160,8 +163,22 @@ public class CloudBreakpointHandler
                   CloudLineBreakpointType.getInstance(), file.getUrl(), line, properties);
 
           // Condition, watches.
-          if (!Strings.isNullOrEmpty(finalserverBreakpoint.getCondition())) {
-            newxIdeBreakpoint.setCondition(finalserverBreakpoint.getCondition());
+          if (!Strings.isNullOrEmpty(serverBreakpoint.getCondition())) {
+            newxIdeBreakpoint.setCondition(serverBreakpoint.getCondition());
+          }
+        }
+      });
+    }
+
+    if (!toAdd.isEmpty()) {
+      ApplicationManager.getApplication().runWriteAction(new Runnable() {
+        @Override
+        public void run() {
+          for (XLineBreakpoint existing : toRemove) {
+            manager.removeBreakpoint(existing);
+          }
+          for (Runnable add : toAdd) {
+            add.run();
           }
         }
       });
@@ -171,15 +188,59 @@ public class CloudBreakpointHandler
         .trackEvent(GctTracking.CLOUD_DEBUGGER_CLONE_BREAKPOINTS).ping();
   }
 
+  /**
+   * Like {@link #createIdeRepresentationsIfNecessary}, but resolves the source files of the
+   * breakpoints in a read action on a pooled thread, and only then creates the IDE representations
+   * on the event dispatch thread. Attaching to a debuggee with many breakpoints this way does not
+   * block the UI on file lookups.
+   */
+  public void createIdeRepresentationsIfNecessaryAsync(
+      @NotNull final List<BreakpointRecord> serverBreakpoints) {
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        final Map<String, VirtualFile> files = ApplicationManager.getApplication().runReadAction(
+            new Computable<Map<String, VirtualFile>>() {
+              @Override
+              public Map<String, VirtualFile> compute() {
+                return resolveFiles(getWithoutIdeRepresentation(serverBreakpoints));
+              }
+            });
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            createIdeRepresentationsIfNecessary(serverBreakpoints, files);
+          }
+        });
+      }
+    });
+  }
+
   /**
    * Called when new breakpoints are encountered in polling the server, this method possibly creates
    * local representations of those breakpoints if there isn't one already at that line.
    */
   public void createIdeRepresentationsIfNecessary(
-      @NotNull final List<Breakpoint> serverBreakpoints) {
-    boolean addedBreakpoint = false;
-    for (final Breakpoint serverBreakpoint : serverBreakpoints) {
-      if (Boolean.TRUE.equals(serverBreakpoint.getIsFinalState())) {
+      @NotNull final List<BreakpointRecord> serverBreakpoints) {
+    createIdeRepresentationsIfNecessary(serverBreakpoints,
+        resolveFiles(getWithoutIdeRepresentation(serverBreakpoints)));
+  }
+
+  /**
+   * Creates the IDE representations given the already resolved files of the breakpoints. All the
+   * breakpoints are removed and added in a single write action, which also refreshes the snapshot
+   * list once if anything was added.
+   */
+  private void createIdeRepresentationsIfNecessary(
+      @NotNull List<BreakpointRecord> serverBreakpoints, @NotNull Map<String, VirtualFile> files) {
+    final XBreakpointManager manager = XDebuggerManager.getInstance(
+        process.getXDebugSession().getProject()).getBreakpointManager();
+    final List<XLineBreakpoint> toRemove = new ArrayList<XLineBreakpoint>();
+    final List<Runnable> toAdd = new ArrayList<Runnable>();
+    // Lines taken by a breakpoint added in this batch, which the manager does not know yet.
+    Set<String> claimedLines = new HashSet<String>();
+    for (final BreakpointRecord serverBreakpoint : serverBreakpoints) {
+      if (serverBreakpoint.isFinal()) {
         continue;
       }
 
@@ -198,21 +259,14 @@ public class CloudBreakpointHandler
         continue;
       }
 
-      Project currentProject = process.getXDebugSession().getProject();
-      final XBreakpointManager manager = XDebuggerManager.getInstance(
-          process.getXDebugSession().getProject()).getBreakpointManager();
-      if (serverBreakpoint.getLocation() == null) {
+      String path = serverBreakpoint.getPath();
+      if (Strings.isNullOrEmpty(path) || serverBreakpoint.getLine() <= 0) {
         continue;
       }
 
-      String path = serverBreakpoint.getLocation().getPath();
-      if (Strings.isNullOrEmpty(path)) {
-        continue;
-      }
-
-      final VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
-      final int line = serverBreakpoint.getLocation().getLine() - 1;
-      if (file == null) {
+      final VirtualFile file = files.get(path);
+      final int line = serverBreakpoint.getLine() - 1;
+      if (file == null || !claimedLines.add(file.getUrl() + ":" + line)) {
         continue;
       }
       final XLineBreakpoint existingXIdeBreakpoint =
@@ -221,50 +275,102 @@ public class CloudBreakpointHandler
         continue;
       }
       if (existingXIdeBreakpoint != null) {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
-          @Override
-          public void run() {
-            manager.removeBreakpoint(existingXIdeBreakpoint);
-          }
-        });
+        toRemove.add(existingXIdeBreakpoint);
       }
 
       final CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
       properties.setCreatedByServer(true);
-      addedBreakpoint = true;
-      ApplicationManager.getApplication()
-          .runWriteAction(new DoUpdateIdeWithBreakpoint(manager,
-              file,
-              line,
-              properties,
-              serverBreakpoint,
-              ideBreakpoints,
-              process));
+      toAdd.add(new DoUpdateIdeWithBreakpoint(manager,
+          file,
+          line,
+          properties,
+          serverBreakpoint,
+          ideBreakpoints,
+          process));
     }
 
-    if (addedBreakpoint) {
-      // If we added a new breakpoint, the snapshot list needs to be refreshed.
-      // However, since adding is async depending on the ability to invoke a write action,
-      // we want to queue the refresh after all the write actions we just did.
-      ApplicationManager.getApplication().runWriteAction(new Runnable() {
-        @Override
-        public void run() {
-          process.fireBreakpointsChanged();
+    if (toAdd.isEmpty()) {
+      return;
+    }
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+        for (XLineBreakpoint existing : toRemove) {
+          manager.removeBreakpoint(existing);
         }
-      });
+        for (Runnable add : toAdd) {
+          add.run();
+        }
+        // The snapshot list needs to be refreshed once all the new breakpoints are in place.
+        process.fireBreakpointsChanged();
+      }
+    });
+  }
+
+  /**
+   * Returns the pending breakpoints that do not have an IDE representation yet, the only ones
+   * whose files {@link #createIdeRepresentationsIfNecessary} needs.
+   */
+  @NotNull
+  private List<BreakpointRecord> getWithoutIdeRepresentation(
+      @NotNull List<BreakpointRecord> serverBreakpoints) {
+    List<BreakpointRecord> result = new ArrayList<BreakpointRecord>();
+    for (BreakpointRecord serverBreakpoint : serverBreakpoints) {
+      if (!serverBreakpoint.isFinal()
+          && !ideBreakpoints.containsKey(StringUtil.notNullize(serverBreakpoint.getId()))) {
+        result.add(serverBreakpoint);
+      }
     }
+    return result;
+  }
+
+  /**
+   * Resolves the source file of each distinct path of the given breakpoints, once per path. Paths
+   * that cannot be resolved are left out of the returned map.
+   */
+  @NotNull
+  private Map<String, VirtualFile> resolveFiles(@NotNull List<BreakpointRecord> serverBreakpoints) {
+    Project currentProject = process.getXDebugSession().getProject();
+    Map<String, VirtualFile> files = new HashMap<String, VirtualFile>();
+    Set<String> resolved = new HashSet<String>();
+    for (BreakpointRecord serverBreakpoint : serverBreakpoints) {
+      String path = serverBreakpoint.getPath();
+      if (Strings.isNullOrEmpty(path) || !resolved.add(path)) {
+        continue;
+      }
+      VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
+      if (file != null) {
+        files.put(path, file);
+      }
+    }
+    return files;
   }
 
   /**
    * Called when the user deletes a snapshot from the snapshot list.
    */
-  public void deleteBreakpoint(@NotNull Breakpoint serverBreakpoint) {
-    if (!Boolean.TRUE.equals(serverBreakpoint.getIsFinalState())) {
+  public void deleteBreakpoint(@NotNull BreakpointRecord serverBreakpoint) {
+    if (!serverBreakpoint.isFinal()) {
       setStateToDisabled(serverBreakpoint);
     }
     process.getStateController().deleteBreakpointAsync(serverBreakpoint.getId());
   }
 
+  /**
+   * Called when the user deletes several snapshots from the snapshot list at once. The deletes are
+   * sent to the server together.
+   */
+  public void deleteBreakpoints(@NotNull List<BreakpointRecord> serverBreakpoints) {
+    List<String> ids = new ArrayList<String>(serverBreakpoints.size());
+    for (BreakpointRecord serverBreakpoint : serverBreakpoints) {
+      if (!serverBreakpoint.isFinal()) {
+        setStateToDisabled(serverBreakpoint);
+      }
+      ids.add(serverBreakpoint.getId());
+    }
+    process.getStateController().deleteBreakpointsAsync(ids);
+  }
+
   /**
    * Returns the XBreakpoint corresponding to the given server breakpoint.
    *
@@ -272,7 +378,7 @@ public class CloudBreakpointHandler
    * @return the local IDE representation in x-breakpoint form, if enabled
    */
   @Nullable
-  public XBreakpoint getEnabledXBreakpoint(@NotNull Breakpoint serverBreakpoint) {
+  public XBreakpoint getEnabledXBreakpoint(@NotNull BreakpointRecord serverBreakpoint) {
     XBreakpoint ideBreakpoint = getXBreakpoint(serverBreakpoint);
     return (ideBreakpoint == null || !ideBreakpoint.isEnabled()) ? null : ideBreakpoint;
   }
@@ -284,7 +390,7 @@ public class CloudBreakpointHandler
    * @return the local IDE representation in x-breakpoint form
    */
   @Nullable
-  public XBreakpoint getXBreakpoint(@Nullable Breakpoint serverBreakpoint) {
+  public XBreakpoint getXBreakpoint(@Nullable BreakpointRecord serverBreakpoint) {
     if (serverBreakpoint == null) {
       return null;
     }
@@ -422,7 +528,7 @@ public class CloudBreakpointHandler
   /**
    * Called when the server records a new snapshot, we find the IDE representation and disable it.
    */
-  public void setStateToDisabled(@NotNull Breakpoint serverBreakpoint) {
+  public void setStateToDisabled(@NotNull BreakpointRecord serverBreakpoint) {
     final XBreakpoint ideBreakpoint = ideBreakpoints.get(serverBreakpoint.getId());
     if (ideBreakpoint != null
         && ideBreakpoint.getProperties() instanceof CloudLineBreakpointProperties) {
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Decides whether background polling of one debuggee may talk to the server, so that a debuggee
+ * whose polls keep failing stays subscribed without sending a request on every sweep.
+ * <p/>
+ * The breaker starts {@link State#CLOSED}. After {@link #FAILURE_THRESHOLD} consecutive failures
+ * it opens and lets no poll through for a backoff delay, which starts at
+ * {@link #INITIAL_OPEN_MS}, doubles every time a trial poll fails, is capped at
+ * {@link #MAX_OPEN_MS} and has up to {@link #JITTER} of random spread. When the delay has passed,
+ * a single trial poll is let through ({@link State#HALF_OPEN}); if it succeeds the breaker closes
+ * again, so polling recovers by itself once connectivity returns.
+ */
+public class CloudDebugCircuitBreaker {
+
+  /**
+   * Whether polls are let through.
+   */
+  public enum State {
+    /** Polls go through. */
+    CLOSED,
+    /** Polls are held back until the backoff delay has passed. */
+    OPEN,
+    /** One trial poll is in flight after a backoff delay. */
+    HALF_OPEN
+  }
+
+  @VisibleForTesting
+  static final int FAILURE_THRESHOLD = 3;
+  @VisibleForTesting
+  static final long INITIAL_OPEN_MS = 10 * 1000;
+  @VisibleForTesting
+  static final long MAX_OPEN_MS = 5 * 60 * 1000;
+  @VisibleForTesting
+  static final double JITTER = 0.2;
+
+  private final Random random;
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openDelayMs = INITIAL_OPEN_MS;
+  private long retryAtMs;
+
+  CloudDebugCircuitBreaker() {
+    this(new Random());
+  }
+
+  @VisibleForTesting
+  CloudDebugCircuitBreaker(@NotNull Random random) {
+    this.random = random;
+  }
+
+  /**
+   * Returns whether a poll may be sent now. An open breaker whose delay has passed lets exactly
+   * one trial poll through and becomes half-open.
+   */
+  synchronized boolean allowRequest(long nowMs) {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (nowMs >= retryAtMs) {
+          state = State.HALF_OPEN;
+          return true;
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Records a poll that reached the server.
+   *
+   * @return true if the breaker was not closed, that is polling just recovered
+   */
+  synchronized boolean onSuccess() {
+    boolean recovered = state != State.CLOSED;
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    openDelayMs = INITIAL_OPEN_MS;
+    return recovered;
+  }
+
+  /**
+   * Records a poll that failed with a transient error.
+   *
+   * @return true if this failure opened a closed breaker
+   */
+  synchronized boolean onFailure(long nowMs) {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN) {
+      openDelayMs = Math.min(openDelayMs * 2, MAX_OPEN_MS);
+      open(nowMs);
+      return false;
+    }
+    if (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD) {
+      open(nowMs);
+      return true;
+    }
+    return false;
+  }
+
+  @NotNull
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Returns when the next trial poll is let through, in {@link System#currentTimeMillis()} time.
+   * Only meaningful while the breaker is open.
+   */
+  public synchronized long getRetryAtMs() {
+    return retryAtMs;
+  }
+
+  private void open(long nowMs) {
+    state = State.OPEN;
+    retryAtMs = nowMs + (long) (openDelayMs * (1 - JITTER + 2 * JITTER * random.nextDouble()));
+  }
+}
@@ -18,6 +18,7 @@ package com.google.cloud.tools.intellij.debugger;
 
 import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.base.Strings;
 
 import com.intellij.execution.BeforeRunTask;
 import com.intellij.execution.configurations.ConfigurationFactory;
@@ -27,6 +28,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.Icon;
 
@@ -37,6 +39,19 @@ public class CloudDebugConfigType implements ConfigurationType {
 
   public static final String GCT_DEBUGGER_ENABLE = "enable.gct.debugger";
   public static final String GCT_DEBUGGER_USETOKEN = "enable.gct.debugger.token";
+  public static final String GCT_DEBUGGER_POLL_PARALLELISM = "gct.debugger.poll.parallelism";
+  public static final String GCT_DEBUGGER_LONG_POLL_POOL_SIZE = "gct.debugger.longpoll.pool.size";
+  public static final String GCT_DEBUGGER_PREFETCH_COUNT = "gct.debugger.prefetch.count";
+  public static final String GCT_DEBUGGER_ROOT_URL = "gct.debugger.root.url";
+  public static final String GCT_DEBUGGER_HTTP_POOL_SIZE = "gct.debugger.http.pool.size";
+  public static final String GCT_DEBUGGER_HTTP_IDLE_TIMEOUT_MS =
+      "gct.debugger.http.idle.timeout.ms";
+
+  private static final int DEFAULT_POLL_PARALLELISM = 4;
+  private static final int DEFAULT_LONG_POLL_POOL_SIZE = 8;
+  // Room for the background polls, the breakpoint mutations and a few sessions' long polls.
+  private static final int DEFAULT_HTTP_POOL_SIZE = 20;
+  private static final int DEFAULT_HTTP_IDLE_TIMEOUT_MS = 60 * 1000;
 
   private final ConfigurationFactory factory;
 
@@ -48,6 +63,55 @@ public class CloudDebugConfigType implements ConfigurationType {
     return !Boolean.getBoolean(GCT_DEBUGGER_USETOKEN);
   }
 
+  /**
+   * Returns the maximum number of background-listening states the global poller queries at the
+   * same time. A value of 1 polls the states one after another.
+   */
+  public static int getBackgroundPollParallelism() {
+    return Math.max(1, Integer.getInteger(GCT_DEBUGGER_POLL_PARALLELISM, DEFAULT_POLL_PARALLELISM));
+  }
+
+  /**
+   * Returns the number of threads that run the wait-token long polls of attached sessions. Polls
+   * of further sessions queue until a thread is free.
+   */
+  public static int getLongPollPoolSize() {
+    return Math.max(1,
+        Integer.getInteger(GCT_DEBUGGER_LONG_POLL_POOL_SIZE, DEFAULT_LONG_POLL_POOL_SIZE));
+  }
+
+  /**
+   * Returns how many of the newest snapshots to hydrate in the background when a poll shows that
+   * they became final. Prefetching is disabled by default.
+   */
+  public static int getSnapshotPrefetchCount() {
+    return Math.max(0, Integer.getInteger(GCT_DEBUGGER_PREFETCH_COUNT, 0));
+  }
+
+  /**
+   * Returns how many idle keep-alive connections to the Cloud Debugger API are kept open.
+   */
+  public static int getHttpPoolSize() {
+    return Math.max(1, Integer.getInteger(GCT_DEBUGGER_HTTP_POOL_SIZE, DEFAULT_HTTP_POOL_SIZE));
+  }
+
+  /**
+   * Returns how long an idle keep-alive connection to the Cloud Debugger API is kept open.
+   */
+  public static int getHttpIdleTimeoutMs() {
+    return Math.max(1000,
+        Integer.getInteger(GCT_DEBUGGER_HTTP_IDLE_TIMEOUT_MS, DEFAULT_HTTP_IDLE_TIMEOUT_MS));
+  }
+
+  /**
+   * Returns the root URL of the Cloud Debugger API to send requests to, or null to use the
+   * production endpoint. Used to point the plugin at a local fake server.
+   */
+  @Nullable
+  public static String getRootUrl() {
+    return Strings.emptyToNull(System.getProperty(GCT_DEBUGGER_ROOT_URL));
+  }
+
   public CloudDebugConfigType() {
     factory = new MyConfigurationFactory(this);
   }
@@ -25,6 +25,7 @@ import com.google.api.services.clouddebugger.v2.model.Breakpoint;
 import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
 import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.annotations.VisibleForTesting;
 
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
@@ -33,25 +34,37 @@ import com.intellij.openapi.application.ApplicationAdapter;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.containers.ContainerUtil;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Timer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Queries multiple states on a fixed interval for updates. It notifies listeners when updates
- * occur.
+ * occur. The sweep runs on the housekeeping scheduler of {@link CloudDebugPollScheduler}.
  */
 public class CloudDebugGlobalPoller {
 
   private static final int DELAY_MS = 5000;
+  private static final int IDLE_THREAD_TIMEOUT_MS = 30 * 1000;
   private static final Logger LOG = Logger.getInstance(CloudDebugGlobalPoller.class);
 
   /**
@@ -61,8 +74,32 @@ public class CloudDebugGlobalPoller {
       "Cloud Debugger Error Notifications";
 
   private final List<CloudBreakpointListener> breakpointListChangedListeners =
-      new ArrayList<CloudBreakpointListener>();
-  private Timer watchTimer = null;
+      new CopyOnWriteArrayList<CloudBreakpointListener>();
+  // States with a poll queued or running. A state is never polled twice at once.
+  private final Set<CloudDebugProcessState> inFlightStates =
+      Collections.newSetFromMap(new ConcurrentHashMap<CloudDebugProcessState, Boolean>());
+  // One breaker per debuggee id, so sessions on a failing debuggee back off together.
+  private final ConcurrentHashMap<String, CloudDebugCircuitBreaker> breakers =
+      new ConcurrentHashMap<String, CloudDebugCircuitBreaker>();
+  private final int parallelism;
+  private final ThreadPoolExecutor pollExecutor;
+  private ScheduledFuture<?> watchFuture = null;
+
+  public CloudDebugGlobalPoller() {
+    this(CloudDebugConfigType.getBackgroundPollParallelism());
+  }
+
+  @VisibleForTesting
+  CloudDebugGlobalPoller(int parallelism) {
+    this.parallelism = parallelism;
+    pollExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+        IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger background poll", true,
+            Thread.NORM_PRIORITY));
+    // Don't keep threads around between sweeps when nothing is listening.
+    pollExecutor.allowCoreThreadTimeOut(true);
+  }
 
   public void addListener(@NotNull CloudBreakpointListener listener) {
     breakpointListChangedListeners.add(listener);
@@ -76,16 +113,15 @@ public class CloudDebugGlobalPoller {
    * Begins listening on changes in the background.
    */
   public synchronized void startBackgroundListening() {
-    if (watchTimer == null) {
-      watchTimer = new Timer("cloud debug watcher", true /* isDaemon */);
-      watchTimer.schedule(new CloudDebugGlobalPollerTimerTask(this), DELAY_MS, DELAY_MS);
+    if (watchFuture == null) {
+      CloudDebugProcessStateCollector.getInstance().startTracking();
+      watchFuture = CloudDebugPollScheduler.getInstance()
+          .scheduleWithFixedDelay(new CloudDebugGlobalPollerTimerTask(this), DELAY_MS, DELAY_MS);
 
       ApplicationManager.getApplication().addApplicationListener(new ApplicationAdapter() {
         @Override
         public void applicationExiting() {
-          if (watchTimer != null) {
-            watchTimer.cancel();
-          }
+          stopBackgroundListening();
         }
       });
     }
@@ -95,10 +131,110 @@ public class CloudDebugGlobalPoller {
    * Stops listening on changes in the background.
    */
   public synchronized void stopBackgroundListening() {
-    if (watchTimer != null) {
-      watchTimer.cancel();
-      watchTimer = null;
+    if (watchFuture != null) {
+      watchFuture.cancel(false);
+      watchFuture = null;
+    }
+  }
+
+  /**
+   * Polls the given state for changes, unless a poll for it is already queued or running, or its
+   * circuit breaker is open. With a parallelism greater than one the poll runs on the background
+   * poll pool and this method returns immediately, so one sweep takes about as long as its slowest
+   * request.
+   *
+   * @param state represents the target debuggee to query
+   * @return true if a poll was started, false if one was already in flight for the state or the
+   *     breaker held it back
+   */
+  boolean submitPoll(@NotNull final CloudDebugProcessState state) {
+    if (!inFlightStates.add(state)) {
+      return false;
+    }
+    CloudDebugCircuitBreaker breaker = getBreaker(state);
+    if (breaker != null && !breaker.allowRequest(System.currentTimeMillis())) {
+      inFlightStates.remove(state);
+      return false;
+    }
+    Runnable poll = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          pollForChanges(state);
+        } finally {
+          inFlightStates.remove(state);
+        }
+      }
+    };
+
+    if (parallelism <= 1) {
+      poll.run();
+      return true;
+    }
+    try {
+      pollExecutor.execute(poll);
+    } catch (RejectedExecutionException ex) {
+      inFlightStates.remove(state);
+      LOG.warn("could not schedule a background poll", ex);
+      return false;
     }
+    return true;
+  }
+
+  @VisibleForTesting
+  boolean isPollInFlight(@NotNull CloudDebugProcessState state) {
+    return inFlightStates.contains(state);
+  }
+
+  /**
+   * Drops the circuit breakers of debuggees that none of the given states polls, so a debuggee
+   * that is attached again later starts with a closed breaker.
+   *
+   * @param listeningStates the states that are currently listening in the background
+   */
+  void retainBreakers(@NotNull Collection<CloudDebugProcessState> listeningStates) {
+    Set<String> debuggeeIds = new HashSet<String>();
+    for (CloudDebugProcessState state : listeningStates) {
+      if (state.getDebuggeeId() != null) {
+        debuggeeIds.add(state.getDebuggeeId());
+      }
+    }
+    breakers.keySet().retainAll(debuggeeIds);
+  }
+
+  /**
+   * Drops the circuit breaker of the state's debuggee. The next sweep creates a new one if another
+   * state still polls the debuggee.
+   */
+  private void removeBreaker(@NotNull CloudDebugProcessState state) {
+    if (state.getDebuggeeId() != null) {
+      breakers.remove(state.getDebuggeeId());
+    }
+  }
+
+  @VisibleForTesting
+  int getBreakerCount() {
+    return breakers.size();
+  }
+
+  /**
+   * Returns the circuit breaker of the state's debuggee, or null if the state has no debuggee.
+   */
+  @Nullable
+  CloudDebugCircuitBreaker getBreaker(@NotNull CloudDebugProcessState state) {
+    String debuggeeId = state.getDebuggeeId();
+    if (debuggeeId == null) {
+      return null;
+    }
+    CloudDebugCircuitBreaker breaker = breakers.get(debuggeeId);
+    if (breaker == null) {
+      CloudDebugCircuitBreaker created = new CloudDebugCircuitBreaker();
+      breaker = breakers.putIfAbsent(debuggeeId, created);
+      if (breaker == null) {
+        breaker = created;
+      }
+    }
+    return breaker;
   }
 
   private void queryServerForBreakpoints(CloudDebugProcessState state, Debugger client)
@@ -114,26 +250,31 @@ public class CloudDebugGlobalPoller {
         .setStripResults(Boolean.TRUE)
         .setWaitToken(state.getWaitToken());
 
-    ListBreakpointsResponse response = listRequest
-        .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-            .getClientVersionForCloudDebugger())
-        .execute();
+    ListBreakpointsResponse response = CloudDebuggerMetrics.execute("breakpoints.list",
+        listRequest.setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+            .getClientVersionForCloudDebugger()));
     List<Breakpoint> currentList = response.getBreakpoints();
     String responseWaitToken = response.getNextWaitToken();
+    CloudDebuggerMetrics.getInstance().recordWaitToken(state.getWaitToken(), responseWaitToken);
     state.setWaitToken(responseWaitToken);
 
-    if (currentList != null) {
-      Collections.sort(currentList, BreakpointComparer.getDefaultInstance());
-    }
-
-    state.setCurrentServerBreakpointList(currentList != null
-        ? ContainerUtil.immutableList(currentList)
-        : ContainerUtil.immutableList(new ArrayList<Breakpoint>()));
+    // The API breakpoints are dropped here; the state only keeps their records.
+    List<BreakpointRecord> records = new ArrayList<BreakpointRecord>(
+        BreakpointRecord.fromList(currentList));
+    BreakpointComparer.sort(records);
+    state.setCurrentBreakpointRecords(ContainerUtil.immutableList(records));
   }
 
-  private void fireBreakpointsChanged(@NotNull CloudDebugProcessState state) {
+  private void fireBreakpointsChanged(@NotNull CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
     for (CloudBreakpointListener listener : breakpointListChangedListeners) {
-      listener.onBreakpointListChanged(state);
+      if (listener instanceof CloudBreakpointDeltaListener) {
+        if (!diff.isEmpty()) {
+          ((CloudBreakpointDeltaListener) listener).onBreakpointListDelta(state, diff);
+        }
+      } else {
+        listener.onBreakpointListChanged(state);
+      }
     }
   }
 
@@ -164,6 +305,7 @@ public class CloudDebugGlobalPoller {
     }
 
     boolean changed = false;
+    List<BreakpointRecord> previousList = state.getCurrentBreakpointRecords();
     try {
       String oldToken = state.getWaitToken();
 
@@ -180,12 +322,16 @@ public class CloudDebugGlobalPoller {
     } catch (GoogleJsonResponseException ex) {
       // HTTP 409 is expected when backend responds to "hanging query" either for timeout or because
       // a result is available (which will be retrieved via the subsequent query)
-      if (ex.getStatusCode() != HttpURLConnection.HTTP_CONFLICT) {
+      if (ex.getStatusCode() == HttpURLConnection.HTTP_FORBIDDEN
+          || ex.getStatusCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
         handleBreakpointQueryError(state, ex);
+        return;
+      } else if (ex.getStatusCode() != HttpURLConnection.HTTP_CONFLICT) {
+        handleTransientError(state, ex);
+        return;
       }
     } catch (IOException ex) {
-      LOG.warn("exception listing breakpoints", ex);
-      handleBreakpointQueryError(state, ex);
+      handleTransientError(state, ex);
       return;
     } catch (Exception ex) {
       LOG.error("exception listing breakpoints", ex);
@@ -193,8 +339,19 @@ public class CloudDebugGlobalPoller {
       return;
     }
 
+    CloudDebugCircuitBreaker breaker = getBreaker(state);
+    if (breaker != null && breaker.onSuccess()) {
+      notifyConnection(state, NotificationType.INFORMATION,
+          GctBundle.message("clouddebug.background.listener.recovered.title"),
+          GctBundle.message("clouddebug.background.listener.recovered.message",
+              state.getProject().getName()));
+    }
+
     if (changed) {
-      fireBreakpointsChanged(state);
+      BreakpointListDiff diff =
+          BreakpointListDiff.compute(previousList, state.getCurrentBreakpointRecords());
+      CloudDebugSnapshotPrefetcher.getInstance().prefetch(state, diff.getBecameFinal());
+      fireBreakpointsChanged(state, diff);
     }
   }
 
@@ -223,12 +380,37 @@ public class CloudDebugGlobalPoller {
 
   private void handleBreakpointQueryError(@NotNull CloudDebugProcessState state, String message) {
     state.setListenInBackground(false);
-    String title = GctBundle.message("clouddebug.background.listener.error.title");
+    removeBreaker(state);
+    notifyConnection(state, NotificationType.ERROR,
+        GctBundle.message("clouddebug.background.listener.error.title"), message);
+  }
+
+  /**
+   * Records a failure that may go away by itself, such as a network error or a server error. The
+   * state keeps listening; once its breaker opens, the user is told that polling is backing off.
+   */
+  private void handleTransientError(@NotNull CloudDebugProcessState state,
+      @NotNull Exception ex) {
+    LOG.warn("exception listing breakpoints", ex);
+    CloudDebugCircuitBreaker breaker = getBreaker(state);
+    long now = System.currentTimeMillis();
+    if (breaker != null && breaker.onFailure(now)) {
+      String details = ex instanceof GoogleJsonResponseException
+          && ((GoogleJsonResponseException) ex).getDetails() != null
+          ? ((GoogleJsonResponseException) ex).getDetails().getMessage()
+          : ex.getLocalizedMessage();
+      notifyConnection(state, NotificationType.WARNING,
+          GctBundle.message("clouddebug.background.listener.error.title"),
+          GctBundle.message("clouddebug.background.listener.retrying.message",
+              state.getProject().getName(), (breaker.getRetryAtMs() - now + 999) / 1000,
+              details));
+    }
+  }
+
+  private static void notifyConnection(@NotNull CloudDebugProcessState state,
+      @NotNull NotificationType type, @NotNull String title, @NotNull String message) {
     Notification notification =
-        new Notification(CLOUD_DEBUGGER_ERROR_NOTIFICATIONS_DISPLAY_GROUP,
-            title,
-            message,
-            NotificationType.ERROR);
+        new Notification(CLOUD_DEBUGGER_ERROR_NOTIFICATIONS_DISPLAY_GROUP, title, message, type);
     Notifications.Bus.notify(notification, state.getProject());
   }
 }
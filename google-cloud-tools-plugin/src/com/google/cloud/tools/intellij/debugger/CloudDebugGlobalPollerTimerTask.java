@@ -16,6 +16,7 @@
 
 package com.google.cloud.tools.intellij.debugger;
 
+import java.util.List;
 import java.util.TimerTask;
 
 /**
@@ -33,8 +34,10 @@ class CloudDebugGlobalPollerTimerTask extends TimerTask {
 
   @Override
   public void run() {
-    for (CloudDebugProcessState state : stateCollector.getBackgroundListeningStates()) {
-      cloudDebugGlobalPoller.pollForChanges(state);
+    List<CloudDebugProcessState> states = stateCollector.getBackgroundListeningStates();
+    cloudDebugGlobalPoller.retainBreakers(states);
+    for (CloudDebugProcessState state : states) {
+      cloudDebugGlobalPoller.submitPoll(state);
     }
   }
 }
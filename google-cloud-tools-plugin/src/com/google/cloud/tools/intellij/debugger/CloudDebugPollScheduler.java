@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules all Cloud Debugger polling for the plugin.
+ * <p/>
+ * Each attached {@link CloudDebugProcessState} registers its wait-token long poll through
+ * {@link #startPolling}. A single timer thread only decides when a poll is due; the poll itself,
+ * which may block on the server until the wait token times out, runs on a fixed pool of
+ * {@link CloudDebugConfigType#getLongPollPoolSize} threads. Once every thread is blocked, further
+ * due polls wait in a queue, so the thread count stays fixed however many sessions are attached,
+ * at the cost of a queued session seeing its update up to one server wait timeout late. A poll is
+ * rescheduled a fixed delay after its previous run completes, so a single state never has two
+ * requests in flight, and a rescheduled poll joins the back of the queue so no session starves.
+ * <p/>
+ * Short periodic jobs, such as the {@link CloudDebugGlobalPoller} sweep, go through
+ * {@link #scheduleWithFixedDelay} and run on their own small scheduler, apart from the long polls.
+ */
+public class CloudDebugPollScheduler {
+
+  @VisibleForTesting
+  static final int HOUSEKEEPING_POOL_SIZE = 1;
+
+  private static final Logger LOG = Logger.getInstance(CloudDebugPollScheduler.class);
+  private static final CloudDebugPollScheduler instance =
+      new CloudDebugPollScheduler(CloudDebugConfigType.getLongPollPoolSize());
+
+  // Only hands polls over to the poll executor; never runs anything that blocks.
+  private final ScheduledThreadPoolExecutor pollTimer;
+  private final ThreadPoolExecutor pollExecutor;
+  private final ScheduledThreadPoolExecutor housekeeping;
+  private final Map<CloudDebugProcessState, Poll> polls =
+      new HashMap<CloudDebugProcessState, Poll>();
+
+  @VisibleForTesting
+  CloudDebugPollScheduler(int pollPoolSize) {
+    pollTimer = new ScheduledThreadPoolExecutor(1,
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger poll timer", true,
+            Thread.NORM_PRIORITY));
+    pollTimer.setRemoveOnCancelPolicy(true);
+    pollExecutor = new ThreadPoolExecutor(pollPoolSize, pollPoolSize, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger poller", true,
+            Thread.NORM_PRIORITY));
+    housekeeping = new ScheduledThreadPoolExecutor(HOUSEKEEPING_POOL_SIZE,
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger housekeeping", true,
+            Thread.NORM_PRIORITY));
+    housekeeping.setRemoveOnCancelPolicy(true);
+  }
+
+  @NotNull
+  public static CloudDebugPollScheduler getInstance() {
+    return instance;
+  }
+
+  /**
+   * Starts polling on behalf of the given state. Does nothing if the state is already being
+   * polled.
+   *
+   * @param state the state the poll keeps up to date
+   * @param poll the blocking poll to run, typically a wait-token list request
+   * @param initialDelayMs the delay before the first poll
+   * @param delayMs the delay between the end of one poll and the start of the next
+   * @return true if polling was started, false if the state was already being polled
+   */
+  public synchronized boolean startPolling(@NotNull CloudDebugProcessState state,
+      @NotNull Runnable poll, long initialDelayMs, long delayMs) {
+    if (polls.containsKey(state)) {
+      return false;
+    }
+    Poll scheduled = new Poll(poll, delayMs);
+    polls.put(state, scheduled);
+    scheduled.scheduleNext(initialDelayMs);
+    return true;
+  }
+
+  /**
+   * Stops polling on behalf of the given state. A poll that is currently blocked on the server is
+   * not interrupted, but it will not be rescheduled.
+   */
+  public synchronized void stopPolling(@NotNull CloudDebugProcessState state) {
+    Poll poll = polls.remove(state);
+    if (poll != null) {
+      poll.cancel();
+    }
+  }
+
+  /**
+   * Returns whether the given state is currently registered for polling.
+   */
+  public synchronized boolean isPolling(@NotNull CloudDebugProcessState state) {
+    return polls.containsKey(state);
+  }
+
+  /**
+   * Returns the largest number of threads that have ever run long polls at the same time.
+   */
+  @VisibleForTesting
+  int getLargestPollThreadCount() {
+    return pollExecutor.getLargestPoolSize();
+  }
+
+  /**
+   * Schedules a short periodic task on the housekeeping scheduler, which is separate from the long
+   * polls. Exceptions thrown by the task are logged and do not suppress subsequent runs.
+   */
+  @NotNull
+  public ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Runnable task, long initialDelayMs,
+      long delayMs) {
+    return housekeeping.scheduleWithFixedDelay(new GuardedRunnable(task), initialDelayMs, delayMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * A long poll of one state. The timer hands each run to the poll executor, and the next run is
+   * scheduled when the current one completes.
+   */
+  private class Poll implements Runnable {
+
+    private final Runnable delegate;
+    private final long delayMs;
+    private volatile boolean cancelled;
+    private ScheduledFuture<?> next;
+
+    Poll(@NotNull Runnable delegate, long delayMs) {
+      this.delegate = new GuardedRunnable(delegate);
+      this.delayMs = delayMs;
+    }
+
+    @Override
+    public void run() {
+      if (cancelled) {
+        return;
+      }
+      try {
+        delegate.run();
+      } finally {
+        scheduleNext(delayMs);
+      }
+    }
+
+    synchronized void scheduleNext(long delay) {
+      if (cancelled) {
+        return;
+      }
+      next = pollTimer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          if (cancelled) {
+            return;
+          }
+          try {
+            pollExecutor.execute(Poll.this);
+          } catch (RejectedExecutionException ex) {
+            LOG.warn("could not start a Cloud Debugger poll", ex);
+          }
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+      if (next != null) {
+        next.cancel(false);
+      }
+    }
+  }
+
+  private static class GuardedRunnable implements Runnable {
+
+    private final Runnable delegate;
+
+    GuardedRunnable(@NotNull Runnable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      try {
+        delegate.run();
+      } catch (RuntimeException ex) {
+        // A scheduled executor silently drops periodic tasks that throw, which would end
+        // background polling for good.
+        LOG.warn("unexpected exception while polling the Cloud Debugger", ex);
+      }
+    }
+  }
+}
@@ -45,9 +45,11 @@ import com.intellij.openapi.actionSystem.Anchor;
 import com.intellij.openapi.actionSystem.Constraints;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.actionSystem.IdeActions;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComponentWithActions;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.ui.content.Content;
@@ -89,7 +91,7 @@ import javax.swing.SwingUtilities;
  * It also contains state {@link CloudDebugProcessState} that can live beyond the lifetime of the
  * debug session and be serialized into workspace.xml state.
  */
-public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointListener {
+public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointDeltaListener {
 
   private static final Logger LOG = Logger.getInstance(CloudDebugProcess.class);
   private volatile Breakpoint currentSnapshot;
@@ -178,7 +180,8 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
   public XBreakpointHandler<?>[] getBreakpointHandlers() {
     if (breakpointHandlers == null) {
       breakpointHandlers = new XBreakpointHandler<?>[]{
-          new CloudBreakpointHandler(this, new ServerToIdeFileResolver())
+          new CloudBreakpointHandler(this,
+              ServerToIdeFileResolver.getInstance(getXDebugSession().getProject()))
       };
     }
     return breakpointHandlers;
@@ -190,15 +193,16 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
   }
 
   /**
+   * Returns the current breakpoints as {@link BreakpointRecord}s.
+   * <p/>
    * The value returned from the method is immutable and is safe to access on multiple threads.
    * <p/>
    * However, multiple successive calls to this method may return a different list. Therefore,
    * callers must store the return value locally to operate on it and should not call this method
    * repeatedly expecting the same list.
    */
-  // todo: can we declare this as ImmutableList?
-  public List<Breakpoint> getCurrentBreakpointList() {
-    return getProcessState().getCurrentServerBreakpointList();
+  public List<BreakpointRecord> getCurrentBreakpointRecords() {
+    return getProcessState().getCurrentBreakpointRecords();
   }
 
   /**
@@ -263,7 +267,8 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
     SwingUtilities.invokeLater(new Runnable() {
       @Override
       public void run() {
-        getBreakpointHandler().createIdeRepresentationsIfNecessary(getCurrentBreakpointList());
+        getBreakpointHandler()
+            .createIdeRepresentationsIfNecessaryAsync(getCurrentBreakpointRecords());
       }
     });
   }
@@ -302,7 +307,7 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
         new ResolveBreakpointHandler() {
           @Override
           public void onSuccess(@NotNull final Breakpoint result) {
-            SwingUtilities.invokeLater(new Runnable() {
+            final Runnable show = new Runnable() {
               @Override
               public void run() {
                 // We will only do the selection if the id for this async task matches the latest
@@ -321,7 +326,20 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
                   navigateToBreakpoint(result);
                 }
               }
-            });
+            };
+            // The source files of the frames are resolved first, off the event dispatch thread.
+            Runnable resolveAndShow = new Runnable() {
+              @Override
+              public void run() {
+                resolveFrames(result);
+                SwingUtilities.invokeLater(show);
+              }
+            };
+            if (ApplicationManager.getApplication().isDispatchThread()) {
+              ApplicationManager.getApplication().executeOnPooledThread(resolveAndShow);
+            } else {
+              resolveAndShow.run();
+            }
           }
 
           @Override
@@ -331,61 +349,88 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
         });
   }
 
+  /**
+   * Resolves the source files of the snapshot's frames, so that showing the snapshot does not
+   * search the indices on the event dispatch thread. Must not be called on the event dispatch
+   * thread.
+   */
+  private void resolveFrames(@NotNull Breakpoint snapshot) {
+    Project project = getXDebugSession().getProject();
+    ServerToIdeFileResolver.getInstance(project).resolveFrames(project, snapshot.getStackFrames());
+  }
+
   private void navigateToBreakpoint(@NotNull Breakpoint target) {
-    Date snapshotTime = BreakpointUtil.parseDateTime(target.getFinalTime());
+    currentSnapshot = target;
+    if (!getXDebugSession().isStopped()) {
+      getXDebugSession().positionReached(
+          createSuspendContext(getXDebugSession().getProject(), target));
+    }
+  }
+
+  /**
+   * Creates the suspend context that shows the frames and variables of a final snapshot.
+   */
+  @NotNull
+  static XSuspendContext createSuspendContext(@NotNull Project project,
+      @NotNull Breakpoint snapshot) {
+    Date snapshotTime = BreakpointUtil.parseDateTime(snapshot.getFinalTime());
     if (snapshotTime == null) {
       snapshotTime = new Date();
     }
     DateFormat df = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
-    currentSnapshot = target;
-    if (!getXDebugSession().isStopped()) {
-      getXDebugSession().positionReached(new MySuspendContext(
-          new CloudExecutionStack(getXDebugSession().getProject(),
-              GctBundle.getString("clouddebug.stackat", df.format(snapshotTime)),
-              target.getStackFrames(), target.getVariableTable(),
-              target.getEvaluatedExpressions())));
-    }
+    return new MySuspendContext(new CloudExecutionStack(project,
+        GctBundle.getString("clouddebug.stackat", df.format(snapshotTime)),
+        snapshot.getStackFrames(), snapshot.getVariableTable(),
+        snapshot.getEvaluatedExpressions()));
   }
 
   /**
-   * Called when the poll job detects a change in the list of breakpoints. It will disable the ide
-   * breakpoint and move the debug session to that snapshot if nothing has yet been selected.
+   * Called when the breakpoint list is refreshed without a diff. It processes every breakpoint in
+   * the current list, see {@link #onServerBreakpointsChanged}.
    */
   @Override
   public void onBreakpointListChanged(CloudDebugProcessState state) {
     // We always snap the current breakpoint list before working on it.
-    final List<Breakpoint> currentList = getCurrentBreakpointList();
+    final List<BreakpointRecord> currentList = getCurrentBreakpointRecords();
     if (currentList != null) {
-      SwingUtilities.invokeLater(new Runnable() {
-        @Override
-        public void run() {
-          getBreakpointHandler().createIdeRepresentationsIfNecessary(currentList);
-        }
-      });
-      for (Breakpoint breakpoint : currentList) {
-        final XBreakpoint breakpointHit = getBreakpointHandler().getEnabledXBreakpoint(breakpoint);
-        if (breakpointHit == null) {
-          continue;
-        }
+      onServerBreakpointsChanged(currentList);
+    }
+  }
 
-        if (Boolean.TRUE.equals(breakpoint.getIsFinalState())
-            && (breakpoint.getStatus() == null || !Boolean.TRUE
-                .equals(breakpoint.getStatus().getIsError()))) {
-          if (!getXDebugSession().isStopped()) {
-            getBreakpointHandler().setStateToDisabled(breakpoint);
-          }
-        } else if (Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
-          // then this is an error state breakpoint.
-          com.intellij.debugger.ui.breakpoints.Breakpoint cloudBreakpoint =
-              BreakpointManager.getJavaBreakpoint(breakpointHit);
-          if (breakpoint.getStatus() != null
-              && Boolean.TRUE.equals(breakpoint.getStatus().getIsError())
-              && cloudBreakpoint instanceof CloudLineBreakpointType.CloudLineBreakpoint) {
-            CloudLineBreakpoint cloudLineBreakpoint = (CloudLineBreakpoint) cloudBreakpoint;
-            cloudLineBreakpoint
-                .setErrorMessage(BreakpointUtil.getUserErrorMessage(breakpoint.getStatus()));
-            updateBreakpointPresentation(cloudLineBreakpoint);
-          }
+  /**
+   * Called when the poll job detects a change in the list of breakpoints. Only the breakpoints that
+   * were added, became final or changed status are processed.
+   */
+  @Override
+  public void onBreakpointListDelta(@NotNull CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    onServerBreakpointsChanged(diff.getAddedOrChanged());
+  }
+
+  /**
+   * Creates IDE representations for the given pending breakpoints, and disables the ide breakpoint
+   * of every given breakpoint that has entered final state.
+   */
+  private void onServerBreakpointsChanged(@NotNull final List<BreakpointRecord> breakpoints) {
+    getBreakpointHandler().createIdeRepresentationsIfNecessaryAsync(breakpoints);
+    for (BreakpointRecord breakpoint : breakpoints) {
+      final XBreakpoint breakpointHit = getBreakpointHandler().getEnabledXBreakpoint(breakpoint);
+      if (breakpointHit == null) {
+        continue;
+      }
+
+      if (breakpoint.isFinal() && breakpoint.getState() != BreakpointRecord.State.ERROR) {
+        if (!getXDebugSession().isStopped()) {
+          getBreakpointHandler().setStateToDisabled(breakpoint);
+        }
+      } else if (breakpoint.isFinal()) {
+        // then this is an error state breakpoint.
+        com.intellij.debugger.ui.breakpoints.Breakpoint cloudBreakpoint =
+            BreakpointManager.getJavaBreakpoint(breakpointHit);
+        if (cloudBreakpoint instanceof CloudLineBreakpointType.CloudLineBreakpoint) {
+          CloudLineBreakpoint cloudLineBreakpoint = (CloudLineBreakpoint) cloudBreakpoint;
+          cloudLineBreakpoint.setErrorMessage(breakpoint.getErrorMessage());
+          updateBreakpointPresentation(cloudLineBreakpoint);
         }
       }
     }
@@ -16,7 +16,6 @@
 
 package com.google.cloud.tools.intellij.debugger;
 
-import com.google.api.services.clouddebugger.v2.model.Breakpoint;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
 
 import com.intellij.execution.ExecutionException;
@@ -42,10 +41,11 @@ import java.util.ArrayList;
  */
 public class CloudDebugProcessState extends UserDataHolderBase implements RunProfileState {
 
-  // The current state is simply an array of breakpoints.  It's volatile because it's updated and
-  // retrieved on different threads with otherwise no synchronization.
-  private volatile ImmutableList<Breakpoint> currentServerBreakpointList =
-      ContainerUtil.immutableList(new ArrayList<Breakpoint>());
+  // The current state is simply an array of breakpoint records; the API breakpoints are not kept.
+  // It's volatile because it's updated and retrieved on different threads with otherwise no
+  // synchronization.
+  private volatile ImmutableList<BreakpointRecord> currentBreakpoints =
+      ContainerUtil.immutableList(new ArrayList<BreakpointRecord>());
   // DebuggeeId is defined by the cloud debugger service to represent a single target service
   // that we can debug.
   private String debuggeeId;
@@ -107,22 +107,22 @@ public class CloudDebugProcessState extends UserDataHolderBase implements RunPro
   }
 
   /**
-   * Returns a cached set of {@link Breakpoint} objects.  The list is periodically updated from a
-   * background timer.
+   * Returns a cached set of {@link BreakpointRecord}s, one per server breakpoint. The list is
+   * periodically updated from a background timer.
    *
    * @return the current list of breakpoints and their state
    */
   @NotNull
   @Transient
-  public ImmutableList<Breakpoint> getCurrentServerBreakpointList() {
-    return currentServerBreakpointList;
+  public ImmutableList<BreakpointRecord> getCurrentBreakpointRecords() {
+    return currentBreakpoints;
   }
 
   /**
    * Updates the state (breakpoint list).
    */
-  public void setCurrentServerBreakpointList(ImmutableList<Breakpoint> newBreakpointList) {
-    currentServerBreakpointList = newBreakpointList;
+  public void setCurrentBreakpointRecords(@NotNull ImmutableList<BreakpointRecord> newRecords) {
+    currentBreakpoints = newRecords;
   }
 
   /**
@@ -252,6 +252,9 @@ public class CloudDebugProcessState extends UserDataHolderBase implements RunPro
    * Set whether a service should look for events in the background for this state.
    */
   public void setListenInBackground(boolean listenInBackground) {
-    this.listenInBackground = listenInBackground;
+    if (this.listenInBackground != listenInBackground) {
+      this.listenInBackground = listenInBackground;
+      CloudDebugProcessStateCollector.markChanged();
+    }
   }
 }
@@ -19,27 +19,49 @@ package com.google.cloud.tools.intellij.debugger;
 import com.google.common.annotations.VisibleForTesting;
 
 import com.intellij.execution.RunManager;
+import com.intellij.execution.RunManagerAdapter;
+import com.intellij.execution.RunManagerEx;
 import com.intellij.execution.RunnerAndConfigurationSettings;
 import com.intellij.execution.configurations.RunConfiguration;
 import com.intellij.execution.configurations.RunProfile;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.project.ProjectManagerAdapter;
+import com.intellij.xdebugger.XDebugProcess;
 import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XDebuggerManager;
+import com.intellij.xdebugger.XDebuggerManagerListener;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Retrieves {@link CloudDebugProcessState} objects from application run configurations.
+ * <p/>
+ * Finding the listening states means walking every run configuration of every open project, so
+ * once {@link #startTracking()} has been called the result is kept until something it depends on
+ * changes: a project is opened or closed, a run configuration is added, removed or changed, a
+ * debug session starts or stops, or a state's background listening flag or a configuration's state
+ * is set. Each of those calls {@link #markChanged()}, and the next call of
+ * {@link #getBackgroundListeningStates()} rescans.
  */
 public class CloudDebugProcessStateCollector {
 
+  private static final AtomicLong modificationCount = new AtomicLong();
+
+  private final AtomicBoolean tracking = new AtomicBoolean();
+  private volatile Snapshot snapshot;
+
   /**
    * Returns an instance of this from the container.
    */
@@ -47,10 +69,44 @@ public class CloudDebugProcessStateCollector {
     return ServiceManager.getService(CloudDebugProcessStateCollector.class);
   }
 
+  /**
+   * Tells all collectors that the set of background listening states may have changed.
+   */
+  public static void markChanged() {
+    modificationCount.incrementAndGet();
+  }
+
+  /**
+   * Subscribes to the project, run configuration and debug session events that can change the set
+   * of listening states, and from then on caches the result between those events.
+   */
+  public void startTracking() {
+    if (tracking.compareAndSet(false, true)) {
+      subscribeToChanges();
+      markChanged();
+    }
+  }
+
   /**
    *  Get all the background snapshot states.
    */
   public List<CloudDebugProcessState> getBackgroundListeningStates() {
+    if (!tracking.get()) {
+      return collectBackgroundListeningStates();
+    }
+    Snapshot current = snapshot;
+    long stamp = modificationCount.get();
+    if (current != null && current.stamp == stamp) {
+      return current.states;
+    }
+    // A change during the scan bumps the count past the stamp, so the next call rescans.
+    List<CloudDebugProcessState> states =
+        Collections.unmodifiableList(collectBackgroundListeningStates());
+    snapshot = new Snapshot(stamp, states);
+    return states;
+  }
+
+  private List<CloudDebugProcessState> collectBackgroundListeningStates() {
     List<CloudDebugProcessState> states = new ArrayList<CloudDebugProcessState>();
 
     for (Project project : ProjectManager.getInstance().getOpenProjects()) {
@@ -76,6 +132,62 @@ public class CloudDebugProcessStateCollector {
     return states;
   }
 
+  @VisibleForTesting
+  void subscribeToChanges() {
+    ApplicationManager.getApplication().getMessageBus().connect()
+        .subscribe(ProjectManager.TOPIC, new ProjectManagerAdapter() {
+          @Override
+          public void projectOpened(Project project) {
+            subscribeToProject(project);
+            markChanged();
+          }
+
+          @Override
+          public void projectClosed(Project project) {
+            markChanged();
+          }
+        });
+    for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+      subscribeToProject(project);
+    }
+  }
+
+  private static void subscribeToProject(@NotNull Project project) {
+    RunManagerEx.getInstanceEx(project).addRunManagerListener(new RunManagerAdapter() {
+      @Override
+      public void runConfigurationAdded(@NotNull RunnerAndConfigurationSettings settings) {
+        markChanged();
+      }
+
+      @Override
+      public void runConfigurationRemoved(@NotNull RunnerAndConfigurationSettings settings) {
+        markChanged();
+      }
+
+      @Override
+      public void runConfigurationChanged(@NotNull RunnerAndConfigurationSettings settings) {
+        markChanged();
+      }
+    });
+    project.getMessageBus().connect(project)
+        .subscribe(XDebuggerManager.TOPIC, new XDebuggerManagerListener() {
+          @Override
+          public void processStarted(@NotNull XDebugProcess debugProcess) {
+            markChanged();
+          }
+
+          @Override
+          public void processStopped(@NotNull XDebugProcess debugProcess) {
+            markChanged();
+          }
+
+          @Override
+          public void currentSessionChanged(@Nullable XDebugSession previousSession,
+              @Nullable XDebugSession currentSession) {
+          }
+        });
+  }
+
   @NotNull
   @VisibleForTesting
   Set<RunProfile> getProfilesWithActiveDebugSession(Project project) {
@@ -104,4 +216,15 @@ public class CloudDebugProcessStateCollector {
     return state != null && state.isListenInBackground();
   }
 
+  private static final class Snapshot {
+
+    final long stamp;
+    final List<CloudDebugProcessState> states;
+
+    Snapshot(long stamp, List<CloudDebugProcessState> states) {
+      this.stamp = stamp;
+      this.states = states;
+    }
+  }
+
 }
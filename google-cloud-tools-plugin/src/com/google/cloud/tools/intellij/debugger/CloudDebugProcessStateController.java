@@ -32,18 +32,18 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.HashSet;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A controller is responsible for keeping one {@link CloudDebugProcessState} object up to date and
@@ -57,9 +57,8 @@ public class CloudDebugProcessStateController {
   private static final int PERIOD_MS = 500;
   private final List<CloudBreakpointListener> breakpointListChangedListeners =
       new ArrayList<CloudBreakpointListener>();
-  private final ConcurrentHashMap<String, Breakpoint> fullFinalBreakpoints =
-      new ConcurrentHashMap<String, Breakpoint>();
-  private volatile Timer listBreakpointsJob;
+  private final BreakpointMutationQueue mutationQueue = new BreakpointMutationQueue();
+  private final FallbackPollCadence fallbackCadence = new FallbackPollCadence();
   private CloudDebugProcessState state;
 
   protected CloudDebugProcessStateController() {
@@ -76,25 +75,22 @@ public class CloudDebugProcessStateController {
   }
 
   void deleteBreakpointAsync(@NotNull final String breakpointId) {
-    deleteBreakpoint(breakpointId, true);
-  }
-
-  void deleteBreakpoint(@NotNull final String breakpointId) {
-    deleteBreakpoint(breakpointId, false);
+    deleteBreakpointsAsync(Collections.singletonList(breakpointId));
   }
 
   /**
-   * Called from the {@link CloudBreakpointHandler} to remove breakpoints from the server.
+   * Called from the {@link CloudBreakpointHandler} to remove breakpoints from the server. The
+   * deletes run concurrently on the {@link BreakpointMutationQueue}.
    *
-   * @param breakpointId the {@link Breakpoint} Id to delete
+   * @param breakpointIds the {@link Breakpoint} Ids to delete
    */
-  private void deleteBreakpoint(@NotNull final String breakpointId, boolean performAsync) {
+  void deleteBreakpointsAsync(@NotNull Collection<String> breakpointIds) {
     if (state == null) {
       throw new IllegalStateException();
     }
     final Debugger client = CloudDebuggerClient.getLongTimeoutClient(state);
     if (client == null) {
-      LOG.warn("no client available attempting to setBreakpoint");
+      LOG.warn("no client available attempting to deleteBreakpoint");
       Messages
           .showErrorDialog(state.getProject(), GctBundle.getString("clouddebug.bad.login.message"),
               GctBundle.getString("clouddebug.message.title"));
@@ -103,25 +99,16 @@ public class CloudDebugProcessStateController {
     final String debuggeeId = state.getDebuggeeId();
     assert debuggeeId != null;
 
-    Runnable performDelete = new Runnable() {
-      @Override
-      public void run() {
-        try {
-          client.debuggees().breakpoints().delete(debuggeeId, breakpointId)
-              .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                  .getClientVersionForCloudDebugger())
-              .execute();
-        } catch (IOException ex) {
-          LOG.warn("exception deleting breakpoint " + breakpointId, ex);
-        }
-      }
-    };
-
-    if (performAsync) {
-      ApplicationManager.getApplication().executeOnPooledThread(performDelete);
-    } else {
-      performDelete.run();
-    }
+    final int count = breakpointIds.size();
+    mutationQueue.delete(client, debuggeeId, breakpointIds,
+        new BreakpointMutationQueue.CompletionHandler() {
+          @Override
+          public void onComplete(int succeeded, @NotNull List<String> failedIds) {
+            if (!failedIds.isEmpty()) {
+              LOG.warn(failedIds.size() + " of " + count + " breakpoint deletes failed");
+            }
+          }
+        });
   }
 
   /**
@@ -133,6 +120,22 @@ public class CloudDebugProcessStateController {
     }
   }
 
+  /**
+   * Fires a change notification for a polled update. {@link CloudBreakpointDeltaListener}s receive
+   * the diff, and only if it is not empty; other subscribers receive the full list.
+   */
+  void fireBreakpointsChanged(@NotNull BreakpointListDiff diff) {
+    for (CloudBreakpointListener listener : breakpointListChangedListeners) {
+      if (listener instanceof CloudBreakpointDeltaListener) {
+        if (!diff.isEmpty()) {
+          ((CloudBreakpointDeltaListener) listener).onBreakpointListDelta(state, diff);
+        }
+      } else {
+        listener.onBreakpointListChanged(state);
+      }
+    }
+  }
+
   /**
    * Binds this controller to a {@link CloudDebugProcessState} and initializes that state from the
    * server.
@@ -160,25 +163,30 @@ public class CloudDebugProcessStateController {
   public void resolveBreakpointAsync(@NotNull final String id,
       @NotNull final ResolveBreakpointHandler handler) {
 
-    if (fullFinalBreakpoints.containsKey(id)) {
-      handler.onSuccess(fullFinalBreakpoints.get(id));
-      return;
-    }
     if (state == null) {
       handler.onError(GctBundle.getString("clouddebug.invalid.state"));
       return;
     }
+    final String debuggeeId = state.getDebuggeeId();
+    final CloudDebugSnapshotCache cache = CloudDebugSnapshotCache.getInstance();
+    if (debuggeeId != null) {
+      Breakpoint cached = cache.getFromMemory(debuggeeId, id);
+      if (cached != null) {
+        CloudDebugSnapshotPrefetcher.getInstance().recordLookup(true);
+        handler.onSuccess(cached);
+        return;
+      }
+    }
     final Debugger client = CloudDebuggerClient.getLongTimeoutClient(state);
     if (client == null) {
       LOG.warn("no client available attempting to resolveBreakpointAsync");
       handler.onError(GctBundle.getString("clouddebug.bad.login.message"));
       return;
     }
-    List<Breakpoint> currentList = state.getCurrentServerBreakpointList();
-    for (Breakpoint serverBreakpointCandidate : currentList) {
-      if (serverBreakpointCandidate.getId().equals(id)
-          && !Boolean.TRUE.equals(serverBreakpointCandidate.getIsFinalState())) {
-        handler.onSuccess(serverBreakpointCandidate);
+    // A pending breakpoint has no captured data, so what its record keeps is all there is to show.
+    for (BreakpointRecord serverBreakpointCandidate : state.getCurrentBreakpointRecords()) {
+      if (id.equals(serverBreakpointCandidate.getId()) && !serverBreakpointCandidate.isFinal()) {
+        handler.onSuccess(serverBreakpointCandidate.toBreakpoint());
         return;
       }
     }
@@ -189,15 +197,26 @@ public class CloudDebugProcessStateController {
         //At this point, the user has selected a final state breakpoint which is not yet hydrated.
         //So we query the server to get this final on a worker thread and then run the runnable
         // back on ui
-        GetBreakpointResponse response;
+        if (debuggeeId != null) {
+          Breakpoint cached = cache.get(debuggeeId, id);
+          CloudDebugSnapshotPrefetcher.getInstance().recordLookup(cached != null);
+          if (cached != null) {
+            handler.onSuccess(cached);
+            return;
+          }
+        }
         try {
-          response = client.debuggees().breakpoints().get(state.getDebuggeeId(), id)
-              .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                  .getClientVersionForCloudDebugger())
-              .execute();
-          Breakpoint result = response.getBreakpoint();
+          // Joins the prefetch of this snapshot if there is one in flight.
+          Breakpoint result = debuggeeId != null
+              ? CloudDebugSnapshotPrefetcher.getInstance().fetchOnce(debuggeeId, id,
+                  new Callable<Breakpoint>() {
+                    @Override
+                    public Breakpoint call() throws IOException {
+                      return fetchBreakpoint(client, debuggeeId, id);
+                    }
+                  })
+              : fetchBreakpoint(client, null, id);
           if (result != null) {
-            fullFinalBreakpoints.put(id, result);
             handler.onSuccess(result);
           } else {
             handler.onError(GctBundle.getString("clouddebug.no.response"));
@@ -210,6 +229,53 @@ public class CloudDebugProcessStateController {
     });
   }
 
+  /**
+   * Returns the fully hydrated snapshot of a final breakpoint, from the
+   * {@link CloudDebugSnapshotCache} or else from the server. Blocks, so it must not be called on
+   * the event dispatch thread.
+   *
+   * @return the snapshot, or null if there is no state or client, or the server returned none
+   */
+  @Nullable
+  public Breakpoint hydrateSnapshot(@NotNull final String id) throws IOException {
+    if (state == null || state.getDebuggeeId() == null) {
+      return null;
+    }
+    Breakpoint cached = CloudDebugSnapshotCache.getInstance().get(state.getDebuggeeId(), id);
+    if (cached != null) {
+      return cached;
+    }
+    final Debugger client = CloudDebuggerClient.getLongTimeoutClient(state);
+    if (client == null) {
+      return null;
+    }
+    final String debuggeeId = state.getDebuggeeId();
+    return CloudDebugSnapshotPrefetcher.getInstance().fetchOnce(debuggeeId, id,
+        new Callable<Breakpoint>() {
+          @Override
+          public Breakpoint call() throws IOException {
+            return fetchBreakpoint(client, debuggeeId, id);
+          }
+        });
+  }
+
+  /**
+   * Gets the breakpoint from the server and caches it if it is a final snapshot.
+   */
+  @Nullable
+  private static Breakpoint fetchBreakpoint(@NotNull Debugger client, @Nullable String debuggeeId,
+      @NotNull String id) throws IOException {
+    GetBreakpointResponse response = CloudDebuggerMetrics.execute("breakpoints.get",
+        client.debuggees().breakpoints().get(debuggeeId, id)
+            .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+                .getClientVersionForCloudDebugger()));
+    Breakpoint result = response.getBreakpoint();
+    if (result != null && debuggeeId != null) {
+      CloudDebugSnapshotCache.getInstance().put(debuggeeId, result);
+    }
+    return result;
+  }
+
   /**
    * Called from the {@link CloudDebugProcessHandler} to set a breakpoint.
    */
@@ -230,28 +296,29 @@ public class CloudDebugProcessStateController {
     final String debuggeeId = state.getDebuggeeId();
     assert debuggeeId != null;
 
-    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+    // Delete old breakpoints at this location, all at once, and set the new one after they are
+    // gone.
+    List<String> staleIds = new ArrayList<String>();
+    SourceLocation location = serverBreakpoint.getLocation();
+    for (BreakpointRecord serverBp : state.getCurrentBreakpointRecords()) {
+      if (!serverBp.isFinal()
+          && serverBp.getLine() > 0
+          && location.getLine() != null
+          && serverBp.getLine() == location.getLine()
+          && !Strings.isNullOrEmpty(serverBp.getPath())
+          && serverBp.getPath().equals(location.getPath())) {
+        staleIds.add(serverBp.getId());
+      }
+    }
+
+    final Runnable setRequest = new Runnable() {
       @Override
       public void run() {
         try {
-          // Delete old breakpoints at this location.
-          List<Breakpoint> currentList = state.getCurrentServerBreakpointList();
-          SourceLocation location = serverBreakpoint.getLocation();
-          for (Breakpoint serverBp : currentList) {
-            if (!Boolean.TRUE.equals(serverBp.getIsFinalState())
-                && serverBp.getLocation().getLine() != null
-                && serverBp.getLocation().getLine().equals(location.getLine())
-                && !Strings.isNullOrEmpty(serverBp.getLocation().getPath())
-                && serverBp.getLocation().getPath().equals(location.getPath())) {
-              deleteBreakpoint(serverBp.getId()); //should not be async here.
-            }
-          }
-
-          SetBreakpointResponse addResponse =
+          SetBreakpointResponse addResponse = CloudDebuggerMetrics.execute("breakpoints.set",
               client.debuggees().breakpoints().set(debuggeeId, serverBreakpoint)
                   .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                      .getClientVersionForCloudDebugger())
-                  .execute();
+                      .getClientVersionForCloudDebugger()));
 
           if (addResponse != null && addResponse.getBreakpoint() != null) {
             Breakpoint result = addResponse.getBreakpoint();
@@ -261,6 +328,7 @@ public class CloudDebugProcessStateController {
                 && result.getStatus().getDescription() != null) {
               handler.onError(BreakpointUtil.getUserErrorMessage(result.getStatus()));
             }
+            fallbackCadence.onBreakpointSet(System.currentTimeMillis());
             handler.onSuccess(addResponse.getBreakpoint().getId());
           } else {
             handler.onError(GctBundle.getString("clouddebug.no.response"));
@@ -270,47 +338,46 @@ public class CloudDebugProcessStateController {
           handler.onError(ex.toString());
         }
       }
-    });
+    };
+
+    mutationQueue.delete(client, debuggeeId, staleIds,
+        new BreakpointMutationQueue.CompletionHandler() {
+          @Override
+          public void onComplete(int succeeded, @NotNull List<String> failedIds) {
+            try {
+              mutationQueue.submit(setRequest);
+            } catch (RejectedExecutionException ex) {
+              handler.onError(ex.toString());
+            }
+          }
+        });
   }
 
   /**
    * Begins background listening from the server.  When changes occur, listeners are notified.
+   * Polling runs on the plugin-wide {@link CloudDebugPollScheduler}.
    */
   public void startBackgroundListening() {
     assert state != null;
-    if (listBreakpointsJob == null) {
-      listBreakpointsJob = new Timer("list breakpoints");
-      final Runnable runnable = new Runnable() {
-        @Override
-        public void run() {
-          waitForChanges();
-          Timer timer = listBreakpointsJob;
-          if (timer != null) {
-            try {
-              // We run after a short period to act as a throttle.
-              timer.schedule(new RunnableTimerTask(this), PERIOD_MS);
-            } catch (IllegalStateException ex) {
-              //This can happen in rare race conditions and isn't an error.  We just ignore it.
-            }
-          }
-        }
-      };
-      listBreakpointsJob.schedule(new RunnableTimerTask(runnable), INITIAL_DELAY_MS);
-    }
+    CloudDebugPollScheduler.getInstance().startPolling(state, new Runnable() {
+      @Override
+      public void run() {
+        waitForChanges();
+      }
+    }, INITIAL_DELAY_MS, PERIOD_MS); // We run after a short period to act as a throttle.
   }
 
   /**
    * Stops background listening.
    */
   public void stopBackgroundListening() {
-    if (listBreakpointsJob != null) {
-      listBreakpointsJob.cancel();
+    if (state != null) {
+      CloudDebugPollScheduler.getInstance().stopPolling(state);
     }
-    listBreakpointsJob = null;
   }
 
   boolean isBackgroundListening() {
-    return listBreakpointsJob != null;
+    return state != null && CloudDebugPollScheduler.getInstance().isPolling(state);
   }
 
   /**
@@ -327,10 +394,16 @@ public class CloudDebugProcessStateController {
       return;
     }
 
+    List<BreakpointRecord> previousList = state.getCurrentBreakpointRecords();
     String tokenToSend = state.getWaitToken();
-    List<Breakpoint> currentList;
+    if (tokenToSend != null && !CloudDebugConfigType.useWaitToken()
+        && !fallbackCadence.isPollDue(System.currentTimeMillis(), previousList,
+        ApplicationManager.getApplication().isActive())) {
+      return;
+    }
+    boolean updated;
     try {
-      currentList = queryServerForBreakpoints(state, client, tokenToSend);
+      updated = queryServerForBreakpoints(state, client, tokenToSend);
     } catch (SocketTimeoutException ex) {
       // Timeout is expected on a hanging get.
       return;
@@ -339,7 +412,7 @@ public class CloudDebugProcessStateController {
       // we need to requery.
       if (ex.getDetails().getCode() == 409) {
         try {
-          currentList = queryServerForBreakpoints(state, client, tokenToSend);
+          updated = queryServerForBreakpoints(state, client, tokenToSend);
         } catch (IOException ioException) {
           LOG.warn("exception listing breakpoints", ioException);
           return;
@@ -353,19 +426,28 @@ public class CloudDebugProcessStateController {
       return;
     }
 
-    if (!isBackgroundListening()) {
+    if (!updated || !isBackgroundListening()) {
       return;
     }
 
     //tokenToSend can be null on first initialization -- where we shouldn't fire events or need
     // to do pruning.
     if (!Strings.isNullOrEmpty(tokenToSend)) {
-      pruneBreakpointCache(currentList);
-      fireBreakpointsChanged();
+      BreakpointListDiff diff =
+          BreakpointListDiff.compute(previousList, state.getCurrentBreakpointRecords());
+      pruneBreakpointCache(diff);
+      CloudDebugSnapshotPrefetcher.getInstance().prefetch(state, diff.getBecameFinal());
+      fireBreakpointsChanged(diff);
     }
   }
 
-  private List<Breakpoint> queryServerForBreakpoints(CloudDebugProcessState state,
+  /**
+   * Lists the breakpoints of the state's debuggee and stores them in the state.
+   *
+   * @return false if the state was left unchanged, because listening was cancelled or a fallback
+   *     mode poll found no change
+   */
+  private boolean queryServerForBreakpoints(CloudDebugProcessState state,
       Debugger client,
       String tokenToSend) throws IOException {
     List<Breakpoint> currentList = null;
@@ -374,24 +456,23 @@ public class CloudDebugProcessStateController {
 
     while (tokenToSend == null || tokenToSend.equals(responseWaitToken)) {
       if (tokenToSend != null && !isBackgroundListening()) {
-        return null;
+        return false;
       }
 
-      ListBreakpointsResponse response =
+      ListBreakpointsResponse response = CloudDebuggerMetrics.execute("breakpoints.list",
           client.debuggees().breakpoints().list(state.getDebuggeeId())
               .setIncludeInactive(Boolean.TRUE).setActionValue("CAPTURE")
               .setStripResults(Boolean.TRUE)
               .setWaitToken(CloudDebugConfigType.useWaitToken() ? tokenToSend : null)
               .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                  .getClientVersionForCloudDebugger())
-              .execute();
+                  .getClientVersionForCloudDebugger()));
 
       //We are running on a background thread and the cancel can happen any time triggered
       //on the ui thread from the user.  We want to short circuit immediately and not change
       //any state.  If we processed this result, it could incorrectly update the state and mess
       //up the background watcher.
       if (tokenToSend != null && !isBackgroundListening()) {
-        return null;
+        return false;
       }
 
       currentList = response.getBreakpoints();
@@ -399,41 +480,37 @@ public class CloudDebugProcessStateController {
       if (tokenToSend == null) {
         break;
       }
-
-      if (!CloudDebugConfigType.useWaitToken() && tokenToSend.equals(responseWaitToken)) {
-        try {
-          //our fallback polling mode has a 1 second loop.
-          Thread.currentThread().sleep(1000);
-        } catch (InterruptedException ex) {
-          return null;
+      CloudDebuggerMetrics.getInstance().recordWaitToken(tokenToSend, responseWaitToken);
+
+      if (!CloudDebugConfigType.useWaitToken()) {
+        // In fallback mode, each poll sends one request; the cadence decides when to send the
+        // next one.
+        boolean changed = !tokenToSend.equals(responseWaitToken);
+        fallbackCadence.onPolled(System.currentTimeMillis(), changed);
+        if (!changed) {
+          return false;
         }
       }
     }
     state.setWaitToken(responseWaitToken);
 
-    if (currentList != null) {
-      Collections.sort(currentList, BreakpointComparer.getDefaultInstance());
-    }
-
-    state.setCurrentServerBreakpointList(currentList != null
-        ? ContainerUtil.immutableList(currentList)
-        : ContainerUtil.immutableList(new ArrayList<Breakpoint>()));
+    // The API breakpoints are dropped here; the state only keeps their records.
+    List<BreakpointRecord> records = new ArrayList<BreakpointRecord>(
+        BreakpointRecord.fromList(currentList));
+    BreakpointComparer.sort(records);
+    state.setCurrentBreakpointRecords(ContainerUtil.immutableList(records));
 
-    return currentList;
+    return true;
   }
 
-  private void pruneBreakpointCache(List<Breakpoint> currentList) {
+  private void pruneBreakpointCache(BreakpointListDiff diff) {
     //Clear out the obsolete breakpoint cache for old items.
-    HashSet<String> toRemoveSet = new HashSet<String>();
-    toRemoveSet.addAll(fullFinalBreakpoints.keySet());
-    if (!toRemoveSet.isEmpty() && currentList != null) {
-      for (Breakpoint bp : currentList) {
-        toRemoveSet.remove(bp.getId());
-      }
+    String debuggeeId = state.getDebuggeeId();
+    if (debuggeeId == null) {
+      return;
     }
-
-    for (String idToRemove : toRemoveSet) {
-      fullFinalBreakpoints.remove(idToRemove);
+    for (BreakpointRecord removed : diff.getRemoved()) {
+      CloudDebugSnapshotCache.getInstance().remove(debuggeeId, removed.getId());
     }
   }
 
@@ -450,18 +527,4 @@ public class CloudDebugProcessStateController {
 
     void onError(String errorMessage);
   }
-
-  static class RunnableTimerTask extends TimerTask {
-
-    private final Runnable runnable;
-
-    public RunnableTimerTask(@NotNull Runnable runnable) {
-      this.runnable = runnable;
-    }
-
-    @Override
-    public void run() {
-      runnable.run();
-    }
-  }
 }
@@ -31,6 +31,7 @@ import com.intellij.notification.NotificationListener;
 import com.intellij.notification.NotificationType;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.SwingUtilities;
 import javax.swing.event.HyperlinkEvent;
@@ -48,7 +49,7 @@ import javax.swing.event.HyperlinkEvent;
  * <p/>
  * The poll interval is currently set at 10 seconds.
  */
-public class CloudDebugProcessWatcher implements CloudBreakpointListener {
+public class CloudDebugProcessWatcher implements CloudBreakpointDeltaListener {
 
   private static final CloudDebugProcessWatcher instance = new CloudDebugProcessWatcher();
   private CloudDebugGlobalPoller poller = null;
@@ -82,6 +83,30 @@ public class CloudDebugProcessWatcher implements CloudBreakpointListener {
     }
   }
 
+  /**
+   * Returns whether background polling of the state's debuggee is currently let through or backing
+   * off after errors, or null if the state is not listening or nothing is being watched.
+   */
+  @Nullable
+  public synchronized CloudDebugCircuitBreaker.State getConnectionState(
+      @NotNull CloudDebugProcessState state) {
+    if (poller == null || !state.isListenInBackground()) {
+      return null;
+    }
+    CloudDebugCircuitBreaker breaker = poller.getBreaker(state);
+    return breaker != null ? breaker.getState() : null;
+  }
+
+  /**
+   * Only called by the poller when the server list actually changed, so identical lists behind a
+   * new wait token don't produce a notification.
+   */
+  @Override
+  public void onBreakpointListDelta(@NotNull CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    onBreakpointListChanged(state);
+  }
+
   @Override
   public void onBreakpointListChanged(final CloudDebugProcessState state) {
     SwingUtilities.invokeLater(new Runnable() {
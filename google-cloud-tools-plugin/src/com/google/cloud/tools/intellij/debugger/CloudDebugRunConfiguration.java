@@ -131,6 +131,7 @@ public class CloudDebugRunConfiguration extends LocatableConfigurationBase
    */
   public void setProcessState(@Nullable CloudDebugProcessState processState) {
     this.processState = processState;
+    CloudDebugProcessStateCollector.markChanged();
   }
 
   /**
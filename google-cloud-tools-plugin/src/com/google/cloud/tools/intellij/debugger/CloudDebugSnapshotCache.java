@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Striped;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches fully hydrated final snapshots across debug sessions and IDE restarts.
+ * <p/>
+ * The first tier is an in-memory LRU bounded by the estimated size of the cached snapshots. The
+ * second tier is a gzipped JSON file per snapshot under the IDE system directory, keyed by
+ * debuggee id and breakpoint id, and is itself bounded by total file size. A snapshot that is in
+ * final state never changes on the server, so entries are never revalidated; they are only dropped
+ * when evicted or when the breakpoint is deleted.
+ * <p/>
+ * A file is written to a temporary file and renamed into place, so a reader never sees a partly
+ * written snapshot, and reads and writes of the same snapshot are serialized. The total size of the
+ * disk tier is tracked as files are written, so the directory is only listed when it goes over
+ * budget.
+ * <p/>
+ * Every snapshot that is cached or read back from disk is also added to a {@link SnapshotIndex}, so
+ * the contents of the snapshots seen in this IDE session can be searched without hydrating them
+ * again. The index has its own budget and forgets the snapshots indexed longest ago first.
+ */
+public class CloudDebugSnapshotCache {
+
+  @VisibleForTesting
+  static final long MEMORY_BUDGET_BYTES = 16L * 1024 * 1024;
+  @VisibleForTesting
+  static final long DISK_BUDGET_BYTES = 128L * 1024 * 1024;
+
+  private static final Logger LOG = Logger.getInstance(CloudDebugSnapshotCache.class);
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String FILE_SUFFIX = ".json.gz";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int DISK_LOCK_STRIPES = 32;
+
+  private final LinkedHashMap<String, Entry> memory =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final SnapshotIndex index = new SnapshotIndex();
+  // Serializes the disk accesses to one snapshot file.
+  private final Striped<Lock> diskLocks = Striped.lock(DISK_LOCK_STRIPES);
+  private final long memoryBudgetBytes;
+  private final long diskBudgetBytes;
+  @Nullable
+  private final File diskRoot;
+  private long memoryBytes;
+  // Total size of the disk tier, or -1 until it has been measured. Guarded by this.
+  private long diskBytes = -1;
+
+  @VisibleForTesting
+  CloudDebugSnapshotCache(@Nullable File diskRoot, long memoryBudgetBytes, long diskBudgetBytes) {
+    this.diskRoot = diskRoot;
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.diskBudgetBytes = diskBudgetBytes;
+  }
+
+  @NotNull
+  public static CloudDebugSnapshotCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Returns the cached snapshot, looking in memory first and then on disk, or null if it is not
+   * cached. A snapshot read from disk is promoted to memory.
+   */
+  @Nullable
+  public Breakpoint get(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    Breakpoint cached = getFromMemory(debuggeeId, breakpointId);
+    if (cached != null) {
+      return cached;
+    }
+
+    String key = key(debuggeeId, breakpointId);
+    File file = getFile(debuggeeId, breakpointId);
+    if (file == null || !file.isFile()) {
+      return null;
+    }
+    byte[] json;
+    Lock lock = diskLocks.get(key);
+    lock.lock();
+    try {
+      json = read(file);
+    } catch (FileNotFoundException ex) {
+      // Trimmed from the disk tier in the meantime.
+      return null;
+    } catch (IOException ex) {
+      // Files are only ever replaced whole, so this one is damaged.
+      LOG.warn("could not read cached snapshot " + file, ex);
+      deleteFile(file);
+      return null;
+    } finally {
+      lock.unlock();
+    }
+    Breakpoint breakpoint;
+    try {
+      breakpoint = JSON_FACTORY.fromString(new String(json, UTF_8), Breakpoint.class);
+    } catch (IOException ex) {
+      LOG.warn("could not parse cached snapshot " + file, ex);
+      return null;
+    }
+    putInMemory(key, breakpoint, json.length);
+    if (!index.contains(debuggeeId, breakpointId)) {
+      index.add(debuggeeId, breakpoint);
+    }
+    return breakpoint;
+  }
+
+  /**
+   * Returns the snapshot if it is in the memory tier, without touching the disk. Safe to call on
+   * the event dispatch thread.
+   */
+  @Nullable
+  public Breakpoint getFromMemory(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    synchronized (memory) {
+      Entry entry = memory.get(key(debuggeeId, breakpointId));
+      return entry != null ? entry.breakpoint : null;
+    }
+  }
+
+  /**
+   * Caches a hydrated snapshot in both tiers. Breakpoints that are not in final state can still
+   * change and are ignored.
+   */
+  public void put(@NotNull String debuggeeId, @NotNull Breakpoint breakpoint) {
+    if (breakpoint.getId() == null || !Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
+      return;
+    }
+    byte[] json;
+    try {
+      json = JSON_FACTORY.toString(breakpoint).getBytes(UTF_8);
+    } catch (IOException ex) {
+      LOG.warn("could not serialize snapshot " + breakpoint.getId(), ex);
+      return;
+    }
+    putInMemory(key(debuggeeId, breakpoint.getId()), breakpoint, json.length);
+    index.add(debuggeeId, breakpoint);
+
+    File file = getFile(debuggeeId, breakpoint.getId());
+    if (file == null) {
+      return;
+    }
+    boolean written;
+    Lock lock = diskLocks.get(key(debuggeeId, breakpoint.getId()));
+    lock.lock();
+    try {
+      written = write(file, json);
+    } finally {
+      lock.unlock();
+    }
+    if (written) {
+      trimDisk();
+    }
+  }
+
+  /**
+   * Drops a snapshot from both tiers, typically because it was deleted on the server.
+   */
+  public void remove(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    synchronized (memory) {
+      Entry entry = memory.remove(key(debuggeeId, breakpointId));
+      if (entry != null) {
+        memoryBytes -= entry.sizeBytes;
+      }
+    }
+    index.remove(debuggeeId, breakpointId);
+    File file = getFile(debuggeeId, breakpointId);
+    if (file != null) {
+      Lock lock = diskLocks.get(key(debuggeeId, breakpointId));
+      lock.lock();
+      try {
+        deleteFile(file);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the ids of the cached snapshots of the debuggee whose contents match the query, see
+   * {@link SnapshotIndex}. Only snapshots cached or read from disk since the IDE started are
+   * searched. Safe to call on the event dispatch thread.
+   */
+  @NotNull
+  public Set<String> search(@NotNull String debuggeeId, @NotNull String query) {
+    return index.search(debuggeeId, query);
+  }
+
+  /**
+   * Adds the snapshots found in the disk tier to the search index, for those among the given ids
+   * that are not indexed yet. The snapshots are not promoted to memory. Reads the disk, so it must
+   * not be called on the event dispatch thread.
+   *
+   * @return whether any snapshot was added to the index
+   */
+  public boolean indexFromDisk(@NotNull String debuggeeId, @NotNull Collection<String> ids) {
+    boolean added = false;
+    for (String id : ids) {
+      if (index.contains(debuggeeId, id)) {
+        continue;
+      }
+      Breakpoint breakpoint = getFromMemory(debuggeeId, id);
+      if (breakpoint == null) {
+        File file = getFile(debuggeeId, id);
+        if (file == null || !file.isFile()) {
+          continue;
+        }
+        Lock lock = diskLocks.get(key(debuggeeId, id));
+        lock.lock();
+        try {
+          breakpoint = JSON_FACTORY.fromString(new String(read(file), UTF_8), Breakpoint.class);
+        } catch (IOException ex) {
+          LOG.warn("could not read cached snapshot " + file, ex);
+          continue;
+        } finally {
+          lock.unlock();
+        }
+      }
+      index.add(debuggeeId, breakpoint);
+      added = true;
+    }
+    return added;
+  }
+
+  @VisibleForTesting
+  long getMemoryBytes() {
+    synchronized (memory) {
+      return memoryBytes;
+    }
+  }
+
+  @VisibleForTesting
+  boolean isInMemory(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    synchronized (memory) {
+      return memory.containsKey(key(debuggeeId, breakpointId));
+    }
+  }
+
+  private void putInMemory(String key, Breakpoint breakpoint, long sizeBytes) {
+    synchronized (memory) {
+      Entry previous = memory.put(key, new Entry(breakpoint, sizeBytes));
+      if (previous != null) {
+        memoryBytes -= previous.sizeBytes;
+      }
+      memoryBytes += sizeBytes;
+      // Evict least recently used entries, but always keep the one just added.
+      Iterator<Map.Entry<String, Entry>> iterator = memory.entrySet().iterator();
+      while (memoryBytes > memoryBudgetBytes && memory.size() > 1) {
+        Map.Entry<String, Entry> eldest = iterator.next();
+        memoryBytes -= eldest.getValue().sizeBytes;
+        iterator.remove();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getDiskBytes() {
+    if (diskBytes < 0) {
+      diskBytes = sumLengths(listDiskFiles());
+    }
+    return diskBytes;
+  }
+
+  /**
+   * Adds the given change to the tracked size of the disk tier.
+   */
+  private synchronized void addDiskBytes(long delta) {
+    if (diskBytes >= 0) {
+      diskBytes += delta;
+    }
+  }
+
+  /**
+   * Deletes the least recently written files until the disk tier fits its budget. The directory is
+   * only listed when the tracked total is over budget, or once to measure it.
+   */
+  private synchronized void trimDisk() {
+    if (diskRoot == null || getDiskBytes() <= diskBudgetBytes) {
+      return;
+    }
+    List<File> files = listDiskFiles();
+    long total = sumLengths(files);
+    File[] byAge = files.toArray(new File[files.size()]);
+    Arrays.sort(byAge, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        long m1 = f1.lastModified();
+        long m2 = f2.lastModified();
+        return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+      }
+    });
+    for (int i = 0; i < byAge.length - 1 && total > diskBudgetBytes; i++) {
+      long length = byAge[i].length();
+      if (FileUtil.delete(byAge[i])) {
+        total -= length;
+      }
+    }
+    diskBytes = total;
+  }
+
+  @NotNull
+  private List<File> listDiskFiles() {
+    List<File> files = new ArrayList<File>();
+    File[] debuggeeDirs = diskRoot != null ? diskRoot.listFiles() : null;
+    if (debuggeeDirs == null) {
+      return files;
+    }
+    for (File debuggeeDir : debuggeeDirs) {
+      File[] snapshots = debuggeeDir.listFiles();
+      if (snapshots == null) {
+        continue;
+      }
+      for (File snapshot : snapshots) {
+        if (snapshot.getName().endsWith(FILE_SUFFIX)) {
+          files.add(snapshot);
+        }
+      }
+    }
+    return files;
+  }
+
+  private static long sumLengths(List<File> files) {
+    long total = 0;
+    for (File file : files) {
+      total += file.length();
+    }
+    return total;
+  }
+
+  /**
+   * Writes the snapshot file through a temporary file, so that the file is replaced whole. Must be
+   * called with the lock of the snapshot held.
+   *
+   * @return whether the file was written
+   */
+  private boolean write(File file, byte[] json) {
+    File temp = new File(file.getPath() + TEMP_SUFFIX);
+    try {
+      FileUtil.createParentDirs(temp);
+      OutputStream out =
+          new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.write(json);
+      } finally {
+        out.close();
+      }
+      long previousLength = file.length();
+      FileUtil.rename(temp, file);
+      addDiskBytes(file.length() - previousLength);
+      return true;
+    } catch (IOException ex) {
+      LOG.warn("could not write cached snapshot " + file, ex);
+      FileUtil.delete(temp);
+      return false;
+    }
+  }
+
+  /**
+   * Deletes the snapshot file. Must be called with the lock of the snapshot held.
+   */
+  private void deleteFile(File file) {
+    long length = file.length();
+    if (FileUtil.delete(file)) {
+      addDiskBytes(-length);
+    }
+  }
+
+  @Nullable
+  private File getFile(String debuggeeId, String breakpointId) {
+    if (diskRoot == null) {
+      return null;
+    }
+    return new File(new File(diskRoot, encode(debuggeeId)), encode(breakpointId) + FILE_SUFFIX);
+  }
+
+  private static String encode(String id) {
+    try {
+      return URLEncoder.encode(id, "UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static String key(String debuggeeId, String breakpointId) {
+    return debuggeeId + '/' + breakpointId;
+  }
+
+  private static byte[] read(File file) throws IOException {
+    InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      return FileUtil.loadBytes(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static final class Entry {
+
+    final Breakpoint breakpoint;
+    // Size of the JSON form, used as an estimate of the in-memory footprint.
+    final long sizeBytes;
+
+    Entry(Breakpoint breakpoint, long sizeBytes) {
+      this.breakpoint = breakpoint;
+      this.sizeBytes = sizeBytes;
+    }
+  }
+
+  private static final class InstanceHolder {
+
+    static final CloudDebugSnapshotCache INSTANCE = new CloudDebugSnapshotCache(
+        new File(PathManager.getSystemPath(), "cloud-debugger/snapshots"), MEMORY_BUDGET_BYTES,
+        DISK_BUDGET_BYTES);
+  }
+}
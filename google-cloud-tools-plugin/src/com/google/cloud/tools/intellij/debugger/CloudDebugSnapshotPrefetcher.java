@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.GetBreakpointResponse;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hydrates snapshots that just became final in the background and stores them in the
+ * {@link CloudDebugSnapshotCache}, so that selecting one in the snapshot list does not wait on the
+ * server.
+ * <p/>
+ * Prefetching is off unless {@link CloudDebugConfigType#getSnapshotPrefetchCount()} is positive.
+ * At most that many of the most recent snapshots are fetched per poll, on a small pool of
+ * {@link #PARALLELISM} threads. The hit and miss counters record whether user-initiated lookups
+ * were served by the cache, which is what the prefetch count should be tuned against.
+ * <p/>
+ * Prefetches and user-initiated lookups share one map of in-flight fetches, see
+ * {@link #fetchOnce}, so a snapshot is never requested twice at the same time.
+ */
+public class CloudDebugSnapshotPrefetcher {
+
+  @VisibleForTesting
+  static final int PARALLELISM = 2;
+
+  private static final int IDLE_THREAD_TIMEOUT_MS = 30 * 1000;
+  private static final Logger LOG = Logger.getInstance(CloudDebugSnapshotPrefetcher.class);
+  private static final CloudDebugSnapshotPrefetcher instance = new CloudDebugSnapshotPrefetcher(
+      createExecutor(), CloudDebugSnapshotCache.getInstance());
+
+  private final Executor executor;
+  private final CloudDebugSnapshotCache cache;
+  // Fetches queued or running, by debuggeeId/breakpointId.
+  private final ConcurrentHashMap<String, FutureTask<Breakpoint>> inFlight =
+      new ConcurrentHashMap<String, FutureTask<Breakpoint>>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong prefetched = new AtomicLong();
+
+  @VisibleForTesting
+  CloudDebugSnapshotPrefetcher(@NotNull Executor executor, @NotNull CloudDebugSnapshotCache cache) {
+    this.executor = executor;
+    this.cache = cache;
+  }
+
+  @NotNull
+  public static CloudDebugSnapshotPrefetcher getInstance() {
+    return instance;
+  }
+
+  private static Executor createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(PARALLELISM, PARALLELISM,
+        IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger snapshot prefetch", true,
+            Thread.MIN_PRIORITY));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Queues the most recent of the given final snapshots for hydration, up to the configured
+   * prefetch count. Snapshots that are already cached or queued are skipped.
+   *
+   * @param state the state the snapshots belong to
+   * @param becameFinal breakpoints that just became final, newest first
+   */
+  public void prefetch(@NotNull CloudDebugProcessState state,
+      @NotNull List<BreakpointRecord> becameFinal) {
+    int count = CloudDebugConfigType.getSnapshotPrefetchCount();
+    String debuggeeId = state.getDebuggeeId();
+    if (count <= 0 || debuggeeId == null || becameFinal.isEmpty()) {
+      return;
+    }
+    int limit = Math.min(count, becameFinal.size());
+    for (BreakpointRecord breakpoint : becameFinal.subList(0, limit)) {
+      if (breakpoint.getId() != null) {
+        submit(state, debuggeeId, breakpoint.getId());
+      }
+    }
+  }
+
+  /**
+   * Records whether a user-initiated lookup of a final snapshot was served from the cache.
+   */
+  public void recordLookup(boolean hit) {
+    (hit ? hits : misses).incrementAndGet();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of snapshots hydrated by prefetching.
+   */
+  public long getPrefetchedCount() {
+    return prefetched.get();
+  }
+
+  /**
+   * Returns the result of {@code fetch} for the snapshot, unless a fetch of the same snapshot is
+   * already queued or running, in which case that fetch is joined instead of sending a second
+   * request. A queued prefetch is run right away on the calling thread. Blocks, so it must not be
+   * called on the event dispatch thread.
+   */
+  @Nullable
+  public Breakpoint fetchOnce(@NotNull String debuggeeId, @NotNull String breakpointId,
+      @NotNull Callable<Breakpoint> fetch) throws IOException {
+    String key = key(debuggeeId, breakpointId);
+    FutureTask<Breakpoint> task = new FutureTask<Breakpoint>(fetch);
+    FutureTask<Breakpoint> existing = inFlight.putIfAbsent(key, task);
+    if (existing != null) {
+      task = existing;
+    }
+    try {
+      // Does nothing if the task is already running or done.
+      task.run();
+      return getResult(task);
+    } finally {
+      inFlight.remove(key, task);
+    }
+  }
+
+  @VisibleForTesting
+  boolean isInFlight(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    return inFlight.containsKey(key(debuggeeId, breakpointId));
+  }
+
+  private void submit(@NotNull final CloudDebugProcessState state,
+      @NotNull final String debuggeeId, @NotNull final String breakpointId) {
+    final String key = key(debuggeeId, breakpointId);
+    if (cache.getFromMemory(debuggeeId, breakpointId) != null) {
+      return;
+    }
+    final FutureTask<Breakpoint> task = new FutureTask<Breakpoint>(new Callable<Breakpoint>() {
+      @Override
+      public Breakpoint call() throws IOException {
+        Breakpoint cached = cache.get(debuggeeId, breakpointId);
+        return cached != null ? cached : fetch(state, debuggeeId, breakpointId);
+      }
+    });
+    if (inFlight.putIfAbsent(key, task) != null) {
+      return;
+    }
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            task.run();
+          } finally {
+            inFlight.remove(key, task);
+          }
+          try {
+            getResult(task);
+          } catch (IOException ex) {
+            // Not fatal: the snapshot is fetched again when the user selects it.
+            LOG.debug("could not prefetch snapshot " + breakpointId, ex);
+          }
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      inFlight.remove(key, task);
+      LOG.warn("could not schedule a snapshot prefetch", ex);
+    }
+  }
+
+  @VisibleForTesting
+  @Nullable
+  Breakpoint fetch(@NotNull CloudDebugProcessState state, @NotNull String debuggeeId,
+      @NotNull String breakpointId) throws IOException {
+    Debugger client = CloudDebuggerClient.getLongTimeoutClient(state);
+    if (client == null) {
+      return null;
+    }
+    GetBreakpointResponse response = CloudDebuggerMetrics.execute("breakpoints.get",
+        client.debuggees().breakpoints().get(debuggeeId, breakpointId)
+            .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+                .getClientVersionForCloudDebugger()));
+    if (response.getBreakpoint() != null) {
+      cache.put(debuggeeId, response.getBreakpoint());
+      prefetched.incrementAndGet();
+    }
+    return response.getBreakpoint();
+  }
+
+  @Nullable
+  private static Breakpoint getResult(@NotNull FutureTask<Breakpoint> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while fetching a snapshot");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private static String key(String debuggeeId, String breakpointId) {
+    return debuggeeId + '/' + breakpointId;
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Debuggee;
+import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.components.ServiceManager;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Caches the debuggees of a cloud project, so that the attach dialog, the repository validator and
+ * the start of a debug session share one {@code debuggees.list} response instead of each listing
+ * the debuggees again.
+ * <p/>
+ * Responses are kept per user and project number for {@link #TTL_MS}. Callers that ask for the
+ * same project while a request is in flight wait for that request rather than sending their own.
+ * A failed request is not cached.
+ */
+public class CloudDebuggeeCache {
+
+  @VisibleForTesting
+  static final long TTL_MS = 30 * 1000;
+
+  private static final CloudDebuggeeCache instance = new CloudDebuggeeCache();
+
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+  @VisibleForTesting
+  CloudDebuggeeCache() {
+  }
+
+  @NotNull
+  public static CloudDebuggeeCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the debuggees of the given project, from the cache if they were listed less than
+   * {@link #TTL_MS} ago.
+   */
+  @NotNull
+  public List<Debuggee> getDebuggees(@NotNull Debugger client, @Nullable String userEmail,
+      @NotNull String projectNumber) throws IOException {
+    return getDebuggees(client, userEmail, projectNumber, System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the debuggee with the given id in the given project, or null if there is none.
+   */
+  @Nullable
+  public Debuggee getDebuggee(@NotNull Debugger client, @Nullable String userEmail,
+      @NotNull String projectNumber, @NotNull String debuggeeId) throws IOException {
+    for (Debuggee debuggee : getDebuggees(client, userEmail, projectNumber)) {
+      if (debuggeeId.equals(debuggee.getId())) {
+        return debuggee;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Drops the cached debuggees of the given project, so the next call lists them again.
+   */
+  public void invalidate(@Nullable String userEmail, @NotNull String projectNumber) {
+    synchronized (entries) {
+      entries.remove(getKey(userEmail, projectNumber));
+    }
+  }
+
+  @VisibleForTesting
+  @NotNull
+  List<Debuggee> getDebuggees(@NotNull final Debugger client, @Nullable String userEmail,
+      @NotNull final String projectNumber, long nowMs) throws IOException {
+    String key = getKey(userEmail, projectNumber);
+    Entry entry;
+    boolean owner = false;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry == null || (entry.task.isDone() && nowMs - entry.createdAtMs >= TTL_MS)) {
+        entry = new Entry(nowMs, new FutureTask<List<Debuggee>>(new Callable<List<Debuggee>>() {
+          @Override
+          public List<Debuggee> call() throws IOException {
+            return fetchDebuggees(client, projectNumber);
+          }
+        }));
+        entries.put(key, entry);
+        owner = true;
+      }
+    }
+
+    if (owner) {
+      entry.task.run();
+    }
+    try {
+      return entry.task.get();
+    } catch (ExecutionException ex) {
+      synchronized (entries) {
+        if (entries.get(key) == entry) {
+          entries.remove(key);
+        }
+      }
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    }
+  }
+
+  @VisibleForTesting
+  @NotNull
+  List<Debuggee> fetchDebuggees(@NotNull Debugger client, @NotNull String projectNumber)
+      throws IOException {
+    ListDebuggeesResponse response = CloudDebuggerMetrics.execute("debuggees.list",
+        client.debuggees().list()
+            .setProject(projectNumber)
+            .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+                .getClientVersionForCloudDebugger()));
+    if (response == null || response.getDebuggees() == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(response.getDebuggees());
+  }
+
+  private static String getKey(@Nullable String userEmail, @NotNull String projectNumber) {
+    return userEmail + "/" + projectNumber;
+  }
+
+  private static final class Entry {
+
+    final long createdAtMs;
+    final FutureTask<List<Debuggee>> task;
+
+    Entry(long createdAtMs, FutureTask<List<Debuggee>> task) {
+      this.createdAtMs = createdAtMs;
+      this.task = task;
+    }
+  }
+}
@@ -48,6 +48,14 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Helper class to return clients on a per user email basis.
+ * <p/>
+ * All clients share one trusted {@code NetHttpTransport}, so the trust store and SSL context are
+ * set up once per IDE. The transport goes through {@code HttpURLConnection}, which reuses
+ * keep-alive connections from the JDK pool and picks up the IDE proxy settings, including proxy
+ * authentication through {@link java.net.Authenticator}. Connect and read timeouts are set on each
+ * request, so short and long timeout clients share the same connections.
+ * <p/>
+ * The JDK pool is sized by JVM-wide system properties; see {@link #configureKeepAlive()}.
  */
 public class CloudDebuggerClient {
 
@@ -59,8 +67,13 @@ public class CloudDebuggerClient {
   private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
   private static final Logger LOG = Logger.getInstance(CloudDebuggerClient.class);
   private static final String ROOT_URL = "https://clouddebugger.googleapis.com";
+  @VisibleForTesting
+  static final String HTTP_MAX_CONNECTIONS = "http.maxConnections";
+  @VisibleForTesting
+  static final String HTTP_KEEP_ALIVE_TIME = "http.keepAlive.time.server";
   private static final ConcurrentHashMap<String, Debugger> debuggerClientsFromUserEmail =
       new ConcurrentHashMap<String, Debugger>();
+  private static HttpTransport sharedTransport;
 
   private CloudDebuggerClient() {
   }
@@ -131,14 +144,7 @@ public class CloudDebuggerClient {
             }
           };
 
-          HttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-          String userAgent = ServiceManager
-              .getService(CloudToolsPluginInfoService.class).getUserAgent();
-          cloudDebuggerClient = new Builder(httpTransport, JSON_FACTORY, initializer)
-              .setRootUrl(ROOT_URL)
-              // this ends up prefixed to user agent
-              .setApplicationName(userAgent)
-              .build().debugger();
+          cloudDebuggerClient = createClient(getSharedTransport(), initializer);
         }
       } catch (IOException ex) {
         LOG.warn("Error connecting to Cloud Debugger API", ex);
@@ -154,6 +160,59 @@ public class CloudDebuggerClient {
     return cloudDebuggerClient;
   }
 
+  /**
+   * Builds a client that sends its requests to {@link CloudDebugConfigType#getRootUrl()}, or to the
+   * production endpoint if that is not set.
+   */
+  @VisibleForTesting
+  static Debugger createClient(@NotNull HttpTransport transport,
+      @Nullable HttpRequestInitializer initializer) {
+    String rootUrl = CloudDebugConfigType.getRootUrl();
+    String userAgent = ServiceManager
+        .getService(CloudToolsPluginInfoService.class).getUserAgent();
+    return new Builder(transport, JSON_FACTORY, initializer)
+        .setRootUrl(rootUrl != null ? rootUrl : ROOT_URL)
+        // this ends up prefixed to user agent
+        .setApplicationName(userAgent)
+        .build().debugger();
+  }
+
+  /**
+   * Returns the transport shared by all clients, creating it on first use.
+   */
+  private static synchronized HttpTransport getSharedTransport()
+      throws IOException, GeneralSecurityException {
+    if (sharedTransport == null) {
+      configureKeepAlive();
+      sharedTransport = GoogleNetHttpTransport.newTrustedTransport();
+    }
+    return sharedTransport;
+  }
+
+  /**
+   * Sizes the JDK keep-alive cache from {@link CloudDebugConfigType#getHttpPoolSize()} and
+   * {@link CloudDebugConfigType#getHttpIdleTimeoutMs()}, unless {@code http.maxConnections} or
+   * {@code http.keepAlive.time.server} were set explicitly. By default the JDK keeps only 5 idle
+   * connections per host, fewer than the background polls and breakpoint mutations use at once.
+   * <p/>
+   * The cache is JVM-wide and reads these properties when it is first used, so they only take
+   * effect if no other part of the IDE kept a connection alive before. JDKs that predate
+   * {@code http.keepAlive.time.server} close idle connections after 5 seconds, or after the
+   * timeout the server sends.
+   */
+  @VisibleForTesting
+  static void configureKeepAlive() {
+    setIfUnset(HTTP_MAX_CONNECTIONS, String.valueOf(CloudDebugConfigType.getHttpPoolSize()));
+    setIfUnset(HTTP_KEEP_ALIVE_TIME,
+        String.valueOf(CloudDebugConfigType.getHttpIdleTimeoutMs() / 1000));
+  }
+
+  private static void setIfUnset(@NotNull String key, @NotNull String value) {
+    if (System.getProperty(key) == null) {
+      System.setProperty(key, value);
+    }
+  }
+
   @TestOnly
   static void setClient(@NotNull String userEmail, @NotNull Debugger mockClient) {
     debuggerClientsFromUserEmail.put(userEmail, mockClient);
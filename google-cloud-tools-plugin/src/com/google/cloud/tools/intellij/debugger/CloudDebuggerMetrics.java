@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.CountingInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records latency, payload size and failures of every Cloud Debugger API call made by the plugin,
+ * plus how often wait-token polls return a new token.
+ * <p/>
+ * Callers send their requests through {@link #execute(String, AbstractGoogleClientRequest)} with a
+ * stable method name such as {@code "breakpoints.list"}. Response sizes are the number of body
+ * bytes read while parsing, after any gzip decoding, so they are known even when the server sends
+ * no Content-Length header. Latencies are kept in a fixed set of buckets, so the memory used does
+ * not grow with the number of calls.
+ */
+public class CloudDebuggerMetrics {
+
+  @VisibleForTesting
+  static final long[] LATENCY_BUCKET_BOUNDS_MS =
+      {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000};
+
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final CloudDebuggerMetrics instance = new CloudDebuggerMetrics();
+
+  private final Map<String, MethodStats> statsByMethod = new TreeMap<String, MethodStats>();
+  private long waitTokenChanged;
+  private long waitTokenUnchanged;
+
+  @VisibleForTesting
+  CloudDebuggerMetrics() {
+  }
+
+  @NotNull
+  public static CloudDebuggerMetrics getInstance() {
+    return instance;
+  }
+
+  /**
+   * Executes a request and records its latency, response size and outcome under the given method
+   * name. The response is parsed here with the request's object parser, through a stream that
+   * counts the bytes read.
+   */
+  public static <T> T execute(@NotNull String method,
+      @NotNull AbstractGoogleClientRequest<T> request) throws IOException {
+    return instance.record(method, request);
+  }
+
+  @VisibleForTesting
+  <T> T record(@NotNull String method, @NotNull AbstractGoogleClientRequest<T> request)
+      throws IOException {
+    long start = System.nanoTime();
+    Outcome outcome = Outcome.ERROR;
+    CountingInputStream content = null;
+    try {
+      HttpResponse response = request.executeUnparsed();
+      InputStream stream = response.getContent();
+      T result = null;
+      if (stream == null || Void.class.equals(request.getResponseClass())) {
+        response.ignore();
+      } else {
+        content = new CountingInputStream(stream);
+        result = response.getRequest().getParser()
+            .parseAndClose(content, response.getContentCharset(), request.getResponseClass());
+      }
+      outcome = Outcome.SUCCESS;
+      return result;
+    } catch (SocketTimeoutException ex) {
+      outcome = Outcome.TIMEOUT;
+      throw ex;
+    } catch (HttpResponseException ex) {
+      if (ex.getStatusCode() == HttpURLConnection.HTTP_CONFLICT) {
+        outcome = Outcome.CONFLICT;
+      }
+      throw ex;
+    } finally {
+      long latencyMs = (System.nanoTime() - start) / 1000000;
+      recordCall(method, latencyMs, content != null ? content.getCount() : null, outcome);
+    }
+  }
+
+  /**
+   * Records the result of a wait-token poll. A poll whose token did not change returned without
+   * any breakpoint change.
+   */
+  public synchronized void recordWaitToken(@Nullable String sentToken,
+      @Nullable String receivedToken) {
+    if (sentToken != null && sentToken.equals(receivedToken)) {
+      waitTokenUnchanged++;
+    } else {
+      waitTokenChanged++;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void recordCall(@NotNull String method, long latencyMs,
+      @Nullable Long responseBytes, @NotNull Outcome outcome) {
+    MethodStats stats = statsByMethod.get(method);
+    if (stats == null) {
+      stats = new MethodStats();
+      statsByMethod.put(method, stats);
+    }
+    stats.record(latencyMs, responseBytes, outcome);
+  }
+
+  /**
+   * Clears everything recorded so far.
+   */
+  public synchronized void reset() {
+    statsByMethod.clear();
+    waitTokenChanged = 0;
+    waitTokenUnchanged = 0;
+  }
+
+  /**
+   * Returns a snapshot of the recorded data, one entry per method, sorted by method name.
+   */
+  @NotNull
+  public synchronized List<MethodSummary> getSummaries() {
+    List<MethodSummary> summaries = new ArrayList<MethodSummary>();
+    for (Map.Entry<String, MethodStats> entry : statsByMethod.entrySet()) {
+      summaries.add(new MethodSummary(entry.getKey(), entry.getValue()));
+    }
+    return summaries;
+  }
+
+  public synchronized long getWaitTokenChangedCount() {
+    return waitTokenChanged;
+  }
+
+  public synchronized long getWaitTokenUnchangedCount() {
+    return waitTokenUnchanged;
+  }
+
+  /**
+   * Returns everything recorded so far as a JSON document.
+   */
+  @NotNull
+  public String toJson() throws IOException {
+    Map<String, Object> root = new LinkedHashMap<String, Object>();
+    Map<String, Object> methods = new LinkedHashMap<String, Object>();
+    for (MethodSummary summary : getSummaries()) {
+      Map<String, Object> method = new LinkedHashMap<String, Object>();
+      method.put("calls", summary.getCalls());
+      method.put("conflicts", summary.getConflicts());
+      method.put("timeouts", summary.getTimeouts());
+      method.put("errors", summary.getErrors());
+      method.put("meanLatencyMs", summary.getMeanLatencyMs());
+      method.put("maxLatencyMs", summary.getMaxLatencyMs());
+      method.put("p50LatencyMs", summary.getLatencyPercentileMs(50));
+      method.put("p90LatencyMs", summary.getLatencyPercentileMs(90));
+      method.put("p99LatencyMs", summary.getLatencyPercentileMs(99));
+      Map<String, Object> histogram = new LinkedHashMap<String, Object>();
+      long[] counts = summary.getLatencyHistogram();
+      for (int i = 0; i < counts.length; i++) {
+        histogram.put(getBucketLabel(i), counts[i]);
+      }
+      method.put("latencyHistogramMs", histogram);
+      method.put("sizedResponses", summary.getSizedResponses());
+      method.put("totalResponseBytes", summary.getTotalResponseBytes());
+      method.put("maxResponseBytes", summary.getMaxResponseBytes());
+      methods.put(summary.getMethod(), method);
+    }
+    root.put("methods", methods);
+    Map<String, Object> waitTokens = new LinkedHashMap<String, Object>();
+    waitTokens.put("changed", getWaitTokenChangedCount());
+    waitTokens.put("unchanged", getWaitTokenUnchangedCount());
+    root.put("waitTokens", waitTokens);
+    return JSON_FACTORY.toPrettyString(root);
+  }
+
+  /**
+   * Returns the label of a latency bucket, e.g. "<=100" or ">120000".
+   */
+  @NotNull
+  public static String getBucketLabel(int bucket) {
+    return bucket < LATENCY_BUCKET_BOUNDS_MS.length
+        ? "<=" + LATENCY_BUCKET_BOUNDS_MS[bucket]
+        : ">" + LATENCY_BUCKET_BOUNDS_MS[LATENCY_BUCKET_BOUNDS_MS.length - 1];
+  }
+
+  @VisibleForTesting
+  enum Outcome {
+    SUCCESS, CONFLICT, TIMEOUT, ERROR
+  }
+
+  private static final class MethodStats {
+
+    final long[] latencyHistogram = new long[LATENCY_BUCKET_BOUNDS_MS.length + 1];
+    long calls;
+    long conflicts;
+    long timeouts;
+    long errors;
+    long totalLatencyMs;
+    long maxLatencyMs;
+    long sizedResponses;
+    long totalResponseBytes;
+    long maxResponseBytes;
+
+    void record(long latencyMs, @Nullable Long responseBytes, @NotNull Outcome outcome) {
+      calls++;
+      totalLatencyMs += latencyMs;
+      maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+      int bucket = 0;
+      while (bucket < LATENCY_BUCKET_BOUNDS_MS.length
+          && latencyMs > LATENCY_BUCKET_BOUNDS_MS[bucket]) {
+        bucket++;
+      }
+      latencyHistogram[bucket]++;
+      if (responseBytes != null && responseBytes >= 0) {
+        sizedResponses++;
+        totalResponseBytes += responseBytes;
+        maxResponseBytes = Math.max(maxResponseBytes, responseBytes);
+      }
+      switch (outcome) {
+        case CONFLICT:
+          conflicts++;
+          break;
+        case TIMEOUT:
+          timeouts++;
+          break;
+        case ERROR:
+          errors++;
+          break;
+        default:
+      }
+    }
+  }
+
+  /**
+   * An immutable copy of the data recorded for one method.
+   */
+  public static final class MethodSummary {
+
+    private final String method;
+    private final long[] latencyHistogram;
+    private final long calls;
+    private final long conflicts;
+    private final long timeouts;
+    private final long errors;
+    private final long totalLatencyMs;
+    private final long maxLatencyMs;
+    private final long sizedResponses;
+    private final long totalResponseBytes;
+    private final long maxResponseBytes;
+
+    private MethodSummary(@NotNull String method, @NotNull MethodStats stats) {
+      this.method = method;
+      latencyHistogram = stats.latencyHistogram.clone();
+      calls = stats.calls;
+      conflicts = stats.conflicts;
+      timeouts = stats.timeouts;
+      errors = stats.errors;
+      totalLatencyMs = stats.totalLatencyMs;
+      maxLatencyMs = stats.maxLatencyMs;
+      sizedResponses = stats.sizedResponses;
+      totalResponseBytes = stats.totalResponseBytes;
+      maxResponseBytes = stats.maxResponseBytes;
+    }
+
+    @NotNull
+    public String getMethod() {
+      return method;
+    }
+
+    public long getCalls() {
+      return calls;
+    }
+
+    public long getConflicts() {
+      return conflicts;
+    }
+
+    public long getTimeouts() {
+      return timeouts;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public long getMeanLatencyMs() {
+      return calls > 0 ? totalLatencyMs / calls : 0;
+    }
+
+    public long getMaxLatencyMs() {
+      return maxLatencyMs;
+    }
+
+    /**
+     * Returns the upper bound of the bucket that holds the given percentile, or the maximum
+     * latency if it falls in the last, unbounded bucket.
+     */
+    public long getLatencyPercentileMs(int percentile) {
+      long rank = (calls * percentile + 99) / 100;
+      long seen = 0;
+      for (int i = 0; i < latencyHistogram.length; i++) {
+        seen += latencyHistogram[i];
+        if (seen >= rank && seen > 0) {
+          return i < LATENCY_BUCKET_BOUNDS_MS.length ? LATENCY_BUCKET_BOUNDS_MS[i] : maxLatencyMs;
+        }
+      }
+      return 0;
+    }
+
+    @NotNull
+    public long[] getLatencyHistogram() {
+      return latencyHistogram.clone();
+    }
+
+    public long getSizedResponses() {
+      return sizedResponses;
+    }
+
+    public long getTotalResponseBytes() {
+      return totalResponseBytes;
+    }
+
+    public long getMaxResponseBytes() {
+      return maxResponseBytes;
+    }
+  }
+}
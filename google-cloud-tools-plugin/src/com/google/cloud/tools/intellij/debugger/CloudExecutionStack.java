@@ -53,10 +53,11 @@ public class CloudExecutionStack extends XExecutionStack {
       if (variableTable == null) {
         variableTable = Collections.emptyList();
       }
+      ServerToIdeFileResolver fileResolver = ServerToIdeFileResolver.getInstance(project);
       for (StackFrame nativeFrame : frames) {
         this.frames
             .add(new CloudStackFrame(project, nativeFrame, variableTable, evaluatedExpressions,
-                new ServerToIdeFileResolver()));
+                fileResolver));
         // We only show custom watches on the top frame.
         evaluatedExpressions = null;
       }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.cloud.tools.intellij.debugger.CloudDebugProcess.XDebuggerActions;
+
+import com.intellij.debugger.actions.DebuggerActions;
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.project.Project;
+import com.intellij.xdebugger.XDebugProcess;
+import com.intellij.xdebugger.XDebugProcessStarter;
+import com.intellij.xdebugger.XDebugSession;
+import com.intellij.xdebugger.XDebuggerManager;
+import com.intellij.xdebugger.XSourcePosition;
+import com.intellij.xdebugger.evaluation.XDebuggerEditorsProvider;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.java.debugger.JavaDebuggerEditorsProvider;
+
+import java.io.OutputStream;
+
+/**
+ * CloudOfflineSnapshotProcess shows a single snapshot that was read from a
+ * {@link SnapshotArchive} in a debug tab of its own. It is read-only: it has no breakpoint
+ * handlers, never talks to the server and does not need an attached {@link CloudDebugProcess}, so
+ * opening an archive leaves any live session as it is.
+ */
+public class CloudOfflineSnapshotProcess extends XDebugProcess {
+
+  private final Breakpoint snapshot;
+
+  private CloudOfflineSnapshotProcess(@NotNull XDebugSession session,
+      @NotNull Breakpoint snapshot) {
+    super(session);
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Opens a new debug tab that shows the snapshot. The source files of its frames should already
+   * be resolved, see {@link ServerToIdeFileResolver#resolveFrames}. Must be called on the event
+   * dispatch thread.
+   *
+   * @throws ExecutionException if the debug session could not be started
+   */
+  public static void show(@NotNull Project project, @NotNull String title,
+      @NotNull final Breakpoint snapshot) throws ExecutionException {
+    XDebuggerManager.getInstance(project).startSessionAndShowTab(title, null,
+        new XDebugProcessStarter() {
+          @NotNull
+          @Override
+          public XDebugProcess start(@NotNull XDebugSession session) {
+            return new CloudOfflineSnapshotProcess(session, snapshot);
+          }
+        });
+  }
+
+  @Override
+  public void sessionInitialized() {
+    getSession().positionReached(
+        CloudDebugProcess.createSuspendContext(getSession().getProject(), snapshot));
+  }
+
+  @Override
+  public boolean checkCanPerformCommands() {
+    return false;
+  }
+
+  @NotNull
+  @Override
+  public XDebuggerEditorsProvider getEditorsProvider() {
+    return new JavaDebuggerEditorsProvider();
+  }
+
+  @Override
+  protected ProcessHandler doGetProcessHandler() {
+    return new OfflineProcessHandler();
+  }
+
+  @Override
+  public void registerAdditionalActions(@NotNull DefaultActionGroup leftToolbar,
+      @NotNull DefaultActionGroup topToolbar,
+      @NotNull DefaultActionGroup settings) {
+    ActionManager manager = ActionManager.getInstance();
+    leftToolbar.remove(manager.getAction(XDebuggerActions.RESUME));
+    leftToolbar.remove(manager.getAction(XDebuggerActions.PAUSE));
+    leftToolbar.remove(manager.getAction(XDebuggerActions.MUTE_BREAKPOINTS));
+
+    topToolbar.remove(manager.getAction(XDebuggerActions.STEP_OVER));
+    topToolbar.remove(manager.getAction(XDebuggerActions.STEP_INTO));
+    topToolbar.remove(manager.getAction(XDebuggerActions.FORCE_STEP_INTO));
+    topToolbar.remove(manager.getAction(XDebuggerActions.STEP_OUT));
+    topToolbar.remove(manager.getAction(XDebuggerActions.RUN_TO_CURSOR));
+    topToolbar.remove(manager.getAction(XDebuggerActions.EVALUATE_EXPRESSION));
+    topToolbar.remove(manager.getAction(DebuggerActions.POP_FRAME));
+  }
+
+  @Override
+  public void resume() {
+  }
+
+  @Override
+  public void runToPosition(@NotNull XSourcePosition position) {
+  }
+
+  @Override
+  public void startStepInto() {
+  }
+
+  @Override
+  public void startStepOut() {
+  }
+
+  @Override
+  public void startStepOver() {
+  }
+
+  @Override
+  public void stop() {
+  }
+
+  /**
+   * There is no process behind an archived snapshot, so stopping the session only detaches.
+   */
+  private static class OfflineProcessHandler extends ProcessHandler {
+
+    @Override
+    protected void destroyProcessImpl() {
+      notifyProcessDetached();
+    }
+
+    @Override
+    protected void detachProcessImpl() {
+      notifyProcessDetached();
+    }
+
+    @Override
+    public boolean detachIsDefault() {
+      return true;
+    }
+
+    @Override
+    public boolean isSilentlyDestroyOnClose() {
+      return true;
+    }
+
+    @Override
+    public OutputStream getProcessInput() {
+      return null;
+    }
+  }
+}
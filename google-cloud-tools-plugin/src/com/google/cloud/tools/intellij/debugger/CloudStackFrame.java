@@ -38,11 +38,20 @@ import com.intellij.xdebugger.frame.XValuePlace;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * CloudStackFrame represents a single frame in a {@link CloudExecutionStack}. It returns the set of
  * variables and if appropriate, the set of watch expressions at that location.
+ * <p/>
+ * The variable tree is built lazily. Children are added in pages of
+ * {@link XCompositeNode#MAX_CHILDREN_TO_SHOW}, and {@code varTableIndex} references are only
+ * followed when a value is shown. Every reference to the same table entry shares one resolved
+ * entry, which builds the values of the entry's members once. The value of each reference only
+ * holds the reference itself, for its name and its own value and status.
  */
 public class CloudStackFrame extends XStackFrame {
 
@@ -50,7 +59,15 @@ public class CloudStackFrame extends XStackFrame {
   private final List<Variable> evaluatedExpressions;
   private final StackFrame frame;
   private final List<Variable> variableTable;
-  private final XSourcePosition sourcePosition;
+  private final Project project;
+  private final ServerToIdeFileResolver fileResolver;
+  private XSourcePosition sourcePosition;
+  private boolean sourcePositionComputed;
+  private final ChildPager framePager = new ChildPager();
+  private List<MyValue> frameValues;
+  private List<MyValue> watchValues;
+  // Resolved entries of the variable table, created when a reference to them is first shown.
+  private ResolvedEntry[] tableEntries;
 
   /**
    * Initialize the frame.
@@ -63,40 +80,79 @@ public class CloudStackFrame extends XStackFrame {
     this.frame = frame;
     this.variableTable = variableTable;
     this.evaluatedExpressions = evaluatedExpressions;
-    String path = frame.getLocation().getPath();
-    if (!Strings.isNullOrEmpty(path)) {
-      sourcePosition = XDebuggerUtil.getInstance().createPosition(
-          fileResolver.getFileFromPath(project, path),
-          frame.getLocation().getLine() - 1);
-    } else {
-      sourcePosition = null;
-    }
+    this.project = project;
+    this.fileResolver = fileResolver;
   }
 
   @Override
   public void computeChildren(@NotNull XCompositeNode node) {
-    final XValueChildrenList list = new XValueChildrenList();
-    List<Variable> arguments = frame.getArguments();
-    if (arguments != null && arguments.size() > 0) {
-      for (Variable variable : arguments) {
-        if (!Strings.isNullOrEmpty(variable.getName())) {
-          list.add(variable.getName(), new MyValue(variable, variableTable));
-        }
+    framePager.addNextPage(node, getFrameValues(),
+        evaluatedExpressions != null && evaluatedExpressions.size() > 0
+            ? new CustomWatchGroup() : null);
+  }
+
+  private synchronized List<MyValue> getFrameValues() {
+    if (frameValues == null) {
+      List<Variable> frameVariables = new ArrayList<Variable>();
+      if (frame.getArguments() != null) {
+        frameVariables.addAll(frame.getArguments());
+      }
+      if (frame.getLocals() != null) {
+        frameVariables.addAll(frame.getLocals());
       }
+      frameValues = createValues(frameVariables);
+    }
+    return frameValues;
+  }
+
+  private synchronized List<MyValue> getWatchValues() {
+    if (watchValues == null) {
+      watchValues = createValues(evaluatedExpressions);
     }
-    List<Variable> locals = frame.getLocals();
-    if (locals != null && locals.size() > 0) {
-      for (Variable variable : locals) {
+    return watchValues;
+  }
+
+  /**
+   * Creates a value for each named variable.
+   */
+  @NotNull
+  private List<MyValue> createValues(@Nullable List<Variable> variables) {
+    List<MyValue> values = new ArrayList<MyValue>();
+    if (variables != null) {
+      for (Variable variable : variables) {
         if (!Strings.isNullOrEmpty(variable.getName())) {
-          list.add(variable.getName(), new MyValue(variable, variableTable));
+          values.add(new MyValue(variable));
         }
       }
     }
+    return values;
+  }
 
-    if (evaluatedExpressions != null && evaluatedExpressions.size() > 0) {
-      list.addTopGroup(new CustomWatchGroup());
+  /**
+   * Returns the resolved entry for a variable. References to the variable table share the entry of
+   * their index, unless they carry members of their own. Note that we have to examine the variable
+   * table for some cases depending on how the server compressed results.
+   */
+  @NotNull
+  private ResolvedEntry resolve(@NotNull Variable variable) {
+    Integer index = variable.getVarTableIndex();
+    List<Variable> ownMembers = variable.getMembers();
+    if (index == null || index < 0 || index >= variableTable.size()) {
+      return new ResolvedEntry(variable, ownMembers);
+    }
+    if (ownMembers != null && ownMembers.size() > 0) {
+      return new ResolvedEntry(variableTable.get(index), ownMembers);
+    }
+    synchronized (this) {
+      if (tableEntries == null) {
+        tableEntries = new ResolvedEntry[variableTable.size()];
+      }
+      if (tableEntries[index] == null) {
+        Variable entry = variableTable.get(index);
+        tableEntries[index] = new ResolvedEntry(entry, entry.getMembers());
+      }
+      return tableEntries[index];
     }
-    node.addChildren(list, true);
   }
 
   @Override
@@ -118,7 +174,7 @@ public class CloudStackFrame extends XStackFrame {
     }
     component
         .append(functionName + "():" + frame.getLocation().getLine().toString() + ", " + className,
-            sourcePosition != null
+            getSourcePosition() != null
                 ? SimpleTextAttributes.REGULAR_ATTRIBUTES
                 : SimpleTextAttributes.GRAYED_ATTRIBUTES);
     component.append(" (" + packageName + ")", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES);
@@ -130,25 +186,117 @@ public class CloudStackFrame extends XStackFrame {
     return CloudStackFrame.class;
   }
 
+  /**
+   * Returns the source position of this frame, resolving it the first time the frame is shown.
+   */
   @Override
-  public XSourcePosition getSourcePosition() {
+  public synchronized XSourcePosition getSourcePosition() {
+    if (!sourcePositionComputed) {
+      String path = frame.getLocation().getPath();
+      if (!Strings.isNullOrEmpty(path)) {
+        sourcePosition = XDebuggerUtil.getInstance().createPosition(
+            fileResolver.getFileFromPath(project, path),
+            frame.getLocation().getLine() - 1);
+      }
+      sourcePositionComputed = true;
+    }
     return sourcePosition;
   }
 
-  private static class MyValue extends XValue {
+  /**
+   * Adds the children of a node one page at a time. The tree asks for the next page by calling
+   * {@code computeChildren} again with the same node, so the offset is remembered per node.
+   */
+  private final class ChildPager {
+
+    private final Map<XCompositeNode, Integer> nextOffsets =
+        new WeakHashMap<XCompositeNode, Integer>();
+
+    void addNextPage(@NotNull XCompositeNode node, @NotNull List<MyValue> children,
+        @Nullable XValueGroup topGroup) {
+      int offset;
+      synchronized (nextOffsets) {
+        Integer nextOffset = nextOffsets.remove(node);
+        offset = nextOffset != null ? nextOffset : 0;
+      }
+      int end = Math.min(children.size(), offset + XCompositeNode.MAX_CHILDREN_TO_SHOW);
+
+      XValueChildrenList list = new XValueChildrenList();
+      for (int i = offset; i < end; i++) {
+        MyValue value = children.get(i);
+        list.add(value.getName(), value);
+      }
+      if (offset == 0 && topGroup != null) {
+        list.addTopGroup(topGroup);
+      }
+
+      if (end < children.size()) {
+        synchronized (nextOffsets) {
+          nextOffsets.put(node, end);
+        }
+        node.addChildren(list, false);
+        node.tooManyChildren(children.size() - end);
+      } else {
+        node.addChildren(list, true);
+      }
+    }
+  }
+
+  /**
+   * A variable table entry, or a variable that is not a reference, with the values of its members.
+   * The member values are built the first time any reference to the entry is expanded, and then
+   * reused by every other reference. Pages are remembered per tree node, so references expanded
+   * side by side don't interfere.
+   */
+  private final class ResolvedEntry {
 
-    private final List<Variable> members;
     private final Variable variable;
-    private final List<Variable> variableTable;
+    @Nullable
+    private final List<Variable> members;
+    private final ChildPager pager = new ChildPager();
+    private List<MyValue> memberValues;
+
+    ResolvedEntry(@NotNull Variable variable, @Nullable List<Variable> members) {
+      this.variable = variable;
+      this.members = members;
+    }
 
-    public MyValue(@NotNull Variable variable, @NotNull List<Variable> variableTable) {
-      //Note that we have to examine the variable table for some cases depending on how the
-      // server compressed results.
-      this.variableTable = variableTable;
-      this.variable = variable.getVarTableIndex() != null ? variableTable
-          .get(variable.getVarTableIndex().intValue())
-          : variable;
-      members = variable.getMembers();
+    boolean hasMembers() {
+      return members != null && members.size() > 0;
+    }
+
+    synchronized List<MyValue> getMemberValues() {
+      if (memberValues == null) {
+        memberValues = createValues(members);
+      }
+      return memberValues;
+    }
+  }
+
+  /**
+   * The value of a single reference. It only keeps the reference, for its name and its own value
+   * and status, and looks up the shared {@link ResolvedEntry} when it is shown.
+   */
+  private class MyValue extends XValue {
+
+    private final Variable reference;
+    private ResolvedEntry entry;
+
+    public MyValue(@NotNull Variable reference) {
+      this.reference = reference;
+    }
+
+    @NotNull
+    String getName() {
+      return reference.getName();
+    }
+
+    @NotNull
+    private synchronized ResolvedEntry getEntry() {
+      if (entry == null) {
+        entry = resolve(reference);
+      }
+      return entry;
     }
 
     @Override
@@ -158,51 +306,50 @@ public class CloudStackFrame extends XStackFrame {
 
     @Override
     public void computeChildren(@NotNull XCompositeNode node) {
-      final XValueChildrenList list = new XValueChildrenList();
-      if (members != null && members.size() > 0) {
-        for (Variable variable : members) {
-          if (!Strings.isNullOrEmpty(variable.getName())) {
-            list.add(variable.getName(), new MyValue(variable, variableTable));
-          }
-        }
+      ResolvedEntry resolved = getEntry();
+      if (!resolved.hasMembers()) {
+        node.addChildren(XValueChildrenList.EMPTY, true);
+        return;
       }
-      node.addChildren(list, true);
+      resolved.pager.addNextPage(node, resolved.getMemberValues(), null);
     }
 
     @Override
     public void computePresentation(@NotNull XValueNode node, @NotNull XValuePlace place) {
-      String status = BreakpointUtil.getUserMessage(variable.getStatus());
+      ResolvedEntry resolved = getEntry();
+      // The reference's own value and status, if it has them, win over the table entry's.
+      String status = BreakpointUtil.getUserMessage(reference.getStatus() != null
+          ? reference.getStatus() : resolved.variable.getStatus());
+      String shownValue =
+          reference.getValue() != null ? reference.getValue() : resolved.variable.getValue();
       String value = !Strings.isNullOrEmpty(status)
-          ? String.format("%s (%s)", variable.getValue(), status) : variable.getValue();
-      node.setPresentation(null, members != null && members.size() > 0 ? "..." : null,
+          ? String.format("%s (%s)", shownValue, status) : shownValue;
+      node.setPresentation(null, resolved.hasMembers() ? "..." : null,
           value != null ? value : "",
-          members != null && members.size() > 0);
+          resolved.hasMembers());
     }
 
     @Override
     public String getEvaluationExpression() {
-      return variable.getName();
+      return reference.getName();
     }
   }
 
   private class CustomWatchGroup extends XValueGroup {
 
+    private final ChildPager watchPager = new ChildPager();
+
     protected CustomWatchGroup() {
       super(GctBundle.getString("clouddebug.watchexpressiongrouptitle"));
     }
 
     @Override
     public void computeChildren(@NotNull XCompositeNode node) {
-      final XValueChildrenList list = new XValueChildrenList();
-
-      if (evaluatedExpressions != null && evaluatedExpressions.size() > 0) {
-        for (Variable variable : evaluatedExpressions) {
-          if (!Strings.isNullOrEmpty(variable.getName())) {
-            list.add(variable.getName(), new MyValue(variable, variableTable));
-          }
-        }
+      if (evaluatedExpressions == null || evaluatedExpressions.isEmpty()) {
+        node.addChildren(XValueChildrenList.EMPTY, true);
+        return;
       }
-      node.addChildren(list, true);
+      watchPager.addNextPage(node, getWatchValues(), null);
     }
 
     @Override
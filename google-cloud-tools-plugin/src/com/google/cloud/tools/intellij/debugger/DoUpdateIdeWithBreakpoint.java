@@ -17,7 +17,6 @@
 package com.google.cloud.tools.intellij.debugger;
 
 import com.google.api.client.repackaged.com.google.common.base.Strings;
-import com.google.api.services.clouddebugger.v2.model.Breakpoint;
 
 import com.intellij.debugger.ui.breakpoints.BreakpointManager;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -33,7 +32,7 @@ class DoUpdateIdeWithBreakpoint implements Runnable {
   private final VirtualFile file;
   private final int line;
   private final CloudLineBreakpointProperties properties;
-  private final Breakpoint serverBreakpoint;
+  private final BreakpointRecord serverBreakpoint;
   private Map<String, XBreakpoint> ideBreakpoints;
   private CloudDebugProcess debugProcess;
 
@@ -41,7 +40,7 @@ class DoUpdateIdeWithBreakpoint implements Runnable {
       VirtualFile file,
       int line,
       CloudLineBreakpointProperties properties,
-      Breakpoint serverBreakpoint,
+      BreakpointRecord serverBreakpoint,
       Map<String, XBreakpoint> ideBreakpoints,
       CloudDebugProcess debugProcess) {
     this.manager = manager;
@@ -67,8 +66,7 @@ class DoUpdateIdeWithBreakpoint implements Runnable {
       newXIdeBreakpoint.setCondition(serverBreakpoint.getCondition());
     }
 
-    if (serverBreakpoint.getExpressions() != null
-        && serverBreakpoint.getExpressions().size() > 0) {
+    if (!serverBreakpoint.getExpressions().isEmpty()) {
       newXIdeBreakpoint.getProperties().setWatchExpressions(
           serverBreakpoint.getExpressions().toArray(
               new String[serverBreakpoint.getExpressions().size()]));
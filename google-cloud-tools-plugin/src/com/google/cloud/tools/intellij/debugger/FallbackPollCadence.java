@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Decides when a session polls the server for breakpoint changes if wait tokens are disabled
+ * ({@link CloudDebugConfigType#useWaitToken()} is false), and the server cannot hold the request
+ * until something changes.
+ * <p/>
+ * Right after a breakpoint is set, or after a poll saw a change, the session polls every
+ * {@link #MIN_DELAY_MS}. Each poll without a change doubles the delay, up to {@link #MAX_DELAY_MS},
+ * with up to {@link #JITTER} of random spread so that sessions do not poll in lockstep.
+ * <p/>
+ * While no breakpoint is waiting for a hit, the session keeps polling every {@link #MAX_DELAY_MS},
+ * because breakpoints can also be added from other IDEs, the gcloud CLI or the Cloud Console.
+ * Polling is paused while the IDE is not the active application.
+ */
+class FallbackPollCadence {
+
+  @VisibleForTesting
+  static final long MIN_DELAY_MS = 1000;
+  @VisibleForTesting
+  static final long MAX_DELAY_MS = 60 * 1000;
+  @VisibleForTesting
+  static final double JITTER = 0.2;
+
+  private final Random random;
+  private long delayMs = MIN_DELAY_MS;
+  private long nextPollAtMs;
+  // When to poll while no breakpoint is pending, to pick up breakpoints set elsewhere.
+  private long nextSlowPollAtMs;
+  // Set when a breakpoint was set locally and the list does not show it yet.
+  private boolean pollRequested;
+
+  FallbackPollCadence() {
+    this(new Random());
+  }
+
+  @VisibleForTesting
+  FallbackPollCadence(@NotNull Random random) {
+    this.random = random;
+  }
+
+  /**
+   * Returns whether the session should poll now.
+   *
+   * @param nowMs the current time in milliseconds
+   * @param serverBreakpoints the last list received from the server
+   * @param ideActive whether an IDE frame is the active window
+   */
+  synchronized boolean isPollDue(long nowMs, @Nullable List<BreakpointRecord> serverBreakpoints,
+      boolean ideActive) {
+    if (!ideActive) {
+      return false;
+    }
+    if (pollRequested || hasPendingBreakpoint(serverBreakpoints)) {
+      return nowMs >= nextPollAtMs;
+    }
+    return nowMs >= nextSlowPollAtMs;
+  }
+
+  /**
+   * Schedules the next poll after one completed.
+   *
+   * @param changed whether the poll returned a different breakpoint list
+   */
+  synchronized void onPolled(long nowMs, boolean changed) {
+    pollRequested = false;
+    if (changed) {
+      delayMs = MIN_DELAY_MS;
+    } else {
+      delayMs = Math.min(delayMs * 2, MAX_DELAY_MS);
+    }
+    nextPollAtMs = nowMs + jitter(delayMs);
+    nextSlowPollAtMs = nowMs + jitter(MAX_DELAY_MS);
+  }
+
+  /**
+   * Goes back to polling fast, because a new breakpoint may be hit soon.
+   */
+  synchronized void onBreakpointSet(long nowMs) {
+    delayMs = MIN_DELAY_MS;
+    nextPollAtMs = nowMs;
+    pollRequested = true;
+  }
+
+  @VisibleForTesting
+  synchronized long getDelayMs() {
+    return delayMs;
+  }
+
+  private long jitter(long delay) {
+    return (long) (delay * (1 - JITTER + 2 * JITTER * random.nextDouble()));
+  }
+
+  private static boolean hasPendingBreakpoint(@Nullable List<BreakpointRecord> serverBreakpoints) {
+    if (serverBreakpoints == null) {
+      return false;
+    }
+    for (BreakpointRecord breakpoint : serverBreakpoints) {
+      if (!breakpoint.isFinal()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ConcurrencyUtil;
+
+import git4idea.changes.GitChangeUtils;
+import git4idea.repo.GitRepository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the Git repository of a project that contains a given revision.
+ * <p/>
+ * The revision is resolved in all the repository roots at once, on up to {@link #PARALLELISM}
+ * threads, and the search stops as soon as one root has it. The root found for a revision is
+ * remembered for as long as the project is open; since a revision id names the same commit
+ * forever, a later lookup only checks that the remembered root still has it. Revisions found in
+ * no root are not remembered, because a fetch can bring them in.
+ */
+public class GitRevisionLocator {
+
+  @VisibleForTesting
+  static final int PARALLELISM = 4;
+
+  private static final int IDLE_THREAD_TIMEOUT_MS = 30 * 1000;
+  private static final Logger LOG = Logger.getInstance(GitRevisionLocator.class);
+  private static final ExecutorService sharedExecutor = createExecutor();
+
+  private final Project project;
+  private final ExecutorService executor;
+  // Revision id to the url of the repository root that has it.
+  private final Map<String, String> rootByRevision = new ConcurrentHashMap<String, String>();
+
+  public GitRevisionLocator(@NotNull Project project) {
+    this(project, sharedExecutor);
+  }
+
+  @VisibleForTesting
+  GitRevisionLocator(@NotNull Project project, @NotNull ExecutorService executor) {
+    this.project = project;
+    this.executor = executor;
+  }
+
+  @NotNull
+  public static GitRevisionLocator getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, GitRevisionLocator.class);
+  }
+
+  private static ExecutorService createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(PARALLELISM, PARALLELISM,
+        IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        ConcurrencyUtil.newNamedThreadFactory("Cloud Debugger revision lookup", true,
+            Thread.NORM_PRIORITY));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Returns the repository among the given ones that contains the revision, or null if none does.
+   * If several do, any one of them may be returned.
+   */
+  @Nullable
+  public GitRepository findRepository(@NotNull List<GitRepository> repositories,
+      @NotNull final String revisionId) {
+    String cachedRootUrl = rootByRevision.get(revisionId);
+    if (cachedRootUrl != null) {
+      for (GitRepository repository : repositories) {
+        if (cachedRootUrl.equals(repository.getRoot().getUrl())
+            && hasRevision(repository.getRoot(), revisionId)) {
+          return repository;
+        }
+      }
+      rootByRevision.remove(revisionId);
+    }
+
+    GitRepository found = probe(repositories, revisionId);
+    if (found != null) {
+      rootByRevision.put(revisionId, found.getRoot().getUrl());
+    }
+    return found;
+  }
+
+  @Nullable
+  private GitRepository probe(@NotNull List<GitRepository> repositories,
+      @NotNull final String revisionId) {
+    if (repositories.size() == 1) {
+      GitRepository repository = repositories.get(0);
+      return hasRevision(repository.getRoot(), revisionId) ? repository : null;
+    }
+
+    CompletionService<GitRepository> completionService =
+        new ExecutorCompletionService<GitRepository>(executor);
+    List<Future<GitRepository>> futures = new ArrayList<Future<GitRepository>>();
+    for (final GitRepository repository : repositories) {
+      futures.add(completionService.submit(new Callable<GitRepository>() {
+        @Override
+        public GitRepository call() {
+          return hasRevision(repository.getRoot(), revisionId) ? repository : null;
+        }
+      }));
+    }
+
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          GitRepository repository = completionService.take().get();
+          if (repository != null) {
+            return repository;
+          }
+        } catch (ExecutionException ex) {
+          LOG.warn("error looking up revision " + revisionId, ex.getCause());
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      for (Future<GitRepository> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  boolean hasRevision(@NotNull VirtualFile root, @NotNull String revisionId) {
+    try {
+      GitChangeUtils.resolveReference(project, root, revisionId);
+      return true;
+    } catch (VcsException ex) {
+      LOG.debug("revision " + revisionId + " not found in " + root.getPath());
+      return false;
+    }
+  }
+}
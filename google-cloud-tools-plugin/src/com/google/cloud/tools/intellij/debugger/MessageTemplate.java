@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A server message format, such as {@code "Invalid value $0 for $1"}, split once into literal text
+ * and parameter references so that it can be rendered many times without parsing it again.
+ * <p/>
+ * {@code $n} refers to the n-th parameter, and {@code $$} stands for a single {@code $}. A
+ * reference to a parameter that was not sent is kept as written, and so is a {@code $} followed by
+ * more than nine digits. The templates of the first {@link #MAX_CACHED_TEMPLATES} distinct formats
+ * are kept; the server only uses a small set of formats, and any format past that bound is parsed
+ * on every use.
+ */
+final class MessageTemplate {
+
+  @VisibleForTesting
+  static final int MAX_CACHED_TEMPLATES = 512;
+
+  // Any index of up to this many digits fits in an int.
+  private static final int MAX_INDEX_DIGITS = 9;
+
+  private static final ConcurrentMap<String, MessageTemplate> cache =
+      new ConcurrentHashMap<String, MessageTemplate>();
+
+  // literals[i] comes before the parameter parameterIndexes[i]; the last literal ends the message.
+  private final String[] literals;
+  private final int[] parameterIndexes;
+  private final int literalLength;
+
+  private MessageTemplate(@NotNull String[] literals, @NotNull int[] parameterIndexes) {
+    this.literals = literals;
+    this.parameterIndexes = parameterIndexes;
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    literalLength = length;
+  }
+
+  /**
+   * Returns the template of the given format, parsing it if it is not cached.
+   */
+  @NotNull
+  static MessageTemplate get(@NotNull String format) {
+    MessageTemplate template = cache.get(format);
+    if (template == null) {
+      template = parse(format);
+      if (cache.size() < MAX_CACHED_TEMPLATES) {
+        cache.putIfAbsent(format, template);
+      }
+    }
+    return template;
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static MessageTemplate parse(@NotNull String format) {
+    List<String> literals = new ArrayList<String>();
+    List<Integer> indexes = new ArrayList<Integer>();
+    StringBuilder literal = new StringBuilder();
+    int length = format.length();
+    int pos = 0;
+    while (pos < length) {
+      char ch = format.charAt(pos);
+      if (ch == '$' && pos + 1 < length) {
+        char next = format.charAt(pos + 1);
+        if (next == '$') {
+          literal.append('$');
+          pos += 2;
+          continue;
+        }
+        if (Character.isDigit(next)) {
+          int end = pos + 1;
+          while (end < length && Character.isDigit(format.charAt(end))) {
+            end++;
+          }
+          if (end - pos - 1 > MAX_INDEX_DIGITS) {
+            // Too long to be an index; keep it as text rather than overflow.
+            literal.append(format, pos, end);
+            pos = end;
+            continue;
+          }
+          literals.add(literal.toString());
+          literal.setLength(0);
+          indexes.add(Integer.parseInt(format.substring(pos + 1, end)));
+          pos = end;
+          continue;
+        }
+      }
+      literal.append(ch);
+      pos++;
+    }
+    literals.add(literal.toString());
+
+    int[] parameterIndexes = new int[indexes.size()];
+    for (int i = 0; i < parameterIndexes.length; i++) {
+      parameterIndexes[i] = indexes.get(i);
+    }
+    return new MessageTemplate(literals.toArray(new String[literals.size()]), parameterIndexes);
+  }
+
+  /**
+   * Renders the message with the given parameters.
+   */
+  @NotNull
+  String render(@Nullable List<String> parameters) {
+    if (parameterIndexes.length == 0) {
+      return literals[0];
+    }
+    StringBuilder message = new StringBuilder(literalLength + 16 * parameterIndexes.length);
+    for (int i = 0; i < parameterIndexes.length; i++) {
+      message.append(literals[i]);
+      int index = parameterIndexes[i];
+      if (parameters != null && index < parameters.size()) {
+        message.append(parameters.get(index));
+      } else {
+        message.append('$').append(index);
+      }
+    }
+    return message.append(literals[parameterIndexes.length]).toString();
+  }
+
+  @VisibleForTesting
+  static void clearCache() {
+    cache.clear();
+  }
+
+  @VisibleForTesting
+  static int getCacheSize() {
+    return cache.size();
+  }
+}
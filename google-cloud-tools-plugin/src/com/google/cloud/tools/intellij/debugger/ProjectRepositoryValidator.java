@@ -24,9 +24,7 @@ import com.google.api.services.clouddebugger.v2.model.CloudRepoSourceContext;
 import com.google.api.services.clouddebugger.v2.model.Debuggee;
 import com.google.api.services.clouddebugger.v2.model.GerritSourceContext;
 import com.google.api.services.clouddebugger.v2.model.GitSourceContext;
-import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
 import com.google.api.services.clouddebugger.v2.model.SourceContext;
-import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.dvcs.DvcsUtil;
@@ -54,7 +52,6 @@ import git4idea.GitPlatformFacade;
 import git4idea.GitUtil;
 import git4idea.GitVcs;
 import git4idea.branch.GitBrancher;
-import git4idea.changes.GitChangeUtils;
 import git4idea.commands.Git;
 import git4idea.commands.GitCommand;
 import git4idea.commands.GitCommandResult;
@@ -126,30 +123,24 @@ public class ProjectRepositoryValidator {
     boolean foundDebuggee = false;
     if (getCloudDebuggerClient() != null
         && !com.google.common.base.Strings.isNullOrEmpty(processState.getProjectNumber())) {
-      ListDebuggeesResponse debuggees;
       try {
-        debuggees = getCloudDebuggerClient().debuggees().list()
-            .setProject(processState.getProjectNumber())
-            .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                .getClientVersionForCloudDebugger())
-            .execute();
-        for (Debuggee debuggee : debuggees.getDebuggees()) {
-          if (processState.getDebuggeeId() != null && processState.getDebuggeeId()
-              .equals(debuggee.getId())) {
-            // implicit assumption this doesn't happen more than once
-            foundDebuggee = true;
-            List<SourceContext> contexts = debuggee.getSourceContexts();
-            if (contexts != null) {
-              for (SourceContext sourceContext : contexts) {
-                cloudRepo = sourceContext.getCloudRepo();
-                gerritRepo = sourceContext.getGerrit();
-                otherGitRepo = sourceContext.getGit();
-                if (cloudRepo != null) {
-                  // shouldn't be more than one repo but if there is, we'll prefer cloud repos
-                  break;
-                } else if (sourceContext.getCloudWorkspace() != null) {
-                  repoType = GctBundle.getString("clouddebug.workspace");
-                }
+        Debuggee debuggee = processState.getDebuggeeId() == null ? null
+            : CloudDebuggeeCache.getInstance().getDebuggee(getCloudDebuggerClient(),
+                processState.getUserEmail(), processState.getProjectNumber(),
+                processState.getDebuggeeId());
+        if (debuggee != null) {
+          foundDebuggee = true;
+          List<SourceContext> contexts = debuggee.getSourceContexts();
+          if (contexts != null) {
+            for (SourceContext sourceContext : contexts) {
+              cloudRepo = sourceContext.getCloudRepo();
+              gerritRepo = sourceContext.getGerrit();
+              otherGitRepo = sourceContext.getGit();
+              if (cloudRepo != null) {
+                // shouldn't be more than one repo but if there is, we'll prefer cloud repos
+                break;
+              } else if (sourceContext.getCloudWorkspace() != null) {
+                repoType = GctBundle.getString("clouddebug.workspace");
               }
             }
           }
@@ -186,16 +177,8 @@ public class ProjectRepositoryValidator {
     }
 
     if (revisionId != null) {
-      for (GitRepository repository : repositories) {
-        try {
-          GitChangeUtils
-              .resolveReference(processState.getProject(), repository.getRoot(), revisionId);
-          targetLocalRepo = repository;
-          break;
-        } catch (VcsException ex) {
-          LOG.warn("cloud revision not found in local repo.  continuing search...");
-        }
-      }
+      targetLocalRepo = GitRevisionLocator.getInstance(processState.getProject())
+          .findRepository(repositories, revisionId);
     }
 
     boolean needsStash = false;
@@ -16,25 +16,41 @@
 
 package com.google.cloud.tools.intellij.debugger;
 
+import com.google.api.client.repackaged.com.google.common.base.Strings;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
 import com.google.common.annotations.VisibleForTesting;
 
+import com.intellij.ProjectTopics;
 import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.vfs.StandardFileSystems;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.VirtualFileSystem;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiPackage;
-import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.messages.MessageBusConnection;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Provides a translation between file names sent from the CDB API and IntelliJ project files in the
@@ -51,12 +67,49 @@ import java.util.Collection;
  * <p/>
  * These are methods which are Java specific for the cloud debugger. When we add other languages,
  * some of this may need to be extracted to an extensionpoint.
+ * <p/>
+ * Resolved paths, including paths that could not be resolved, are remembered until a file is
+ * created, deleted, moved, copied or renamed, or the project roots change. Edits to the contents of
+ * files keep the cache, so it survives typing. {@link #resolveFrames} fills the cache off the event
+ * dispatch thread before a snapshot is shown.
  */
 public class ServerToIdeFileResolver {
 
   private VirtualFileSystem fileSystem =
       VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.FILE_PROTOCOL);
 
+  private final Map<String, VirtualFile> resolvedPaths = new HashMap<String, VirtualFile>();
+  private final Set<String> unresolvedPaths = new HashSet<String>();
+  // Bumped by every invalidation, so a resolution that raced with one is not cached. Guarded by
+  // resolvedPaths.
+  private long generation;
+
+  public ServerToIdeFileResolver(@NotNull Project project) {
+    MessageBusConnection connection = project.getMessageBus().connect(project);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (affectsPaths(event)) {
+            invalidate();
+            return;
+          }
+        }
+      }
+    });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        invalidate();
+      }
+    });
+  }
+
+  @NotNull
+  public static ServerToIdeFileResolver getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, ServerToIdeFileResolver.class);
+  }
+
   /**
    * Utility method that returns the full class name for a file.
    */
@@ -71,7 +124,97 @@ public class ServerToIdeFileResolver {
    * system. Then, it tries the full class name form (com/google/gct/idea/debugger/
    * CloudDebugProcess.java). Finally, it searches for possible file matches within the project.
    */
+  @Nullable
   public VirtualFile getFileFromPath(@NotNull Project project, @NotNull String path) {
+    long resolvedGeneration;
+    synchronized (resolvedPaths) {
+      VirtualFile cached = resolvedPaths.get(path);
+      if (cached != null && cached.isValid()) {
+        return cached;
+      }
+      if (cached == null && unresolvedPaths.contains(path)) {
+        return null;
+      }
+      resolvedGeneration = generation;
+    }
+
+    VirtualFile file = resolve(project, path);
+
+    synchronized (resolvedPaths) {
+      if (resolvedGeneration == generation) {
+        if (file != null) {
+          resolvedPaths.put(path, file);
+        } else {
+          resolvedPaths.remove(path);
+          unresolvedPaths.add(path);
+        }
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Resolves the source paths of the given frames, so that showing the frames later is served from
+   * the cache. Takes a read action and may search the indices, so it should not be called on the
+   * event dispatch thread.
+   */
+  public void resolveFrames(@NotNull final Project project,
+      @Nullable final List<StackFrame> frames) {
+    if (frames == null || frames.isEmpty()) {
+      return;
+    }
+    ApplicationManager.getApplication().runReadAction(new Runnable() {
+      @Override
+      public void run() {
+        if (project.isDisposed()) {
+          return;
+        }
+        for (StackFrame frame : frames) {
+          String path = frame.getLocation() != null ? frame.getLocation().getPath() : null;
+          if (!Strings.isNullOrEmpty(path)) {
+            getFileFromPath(project, path);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Forgets all resolved and unresolved paths.
+   */
+  @VisibleForTesting
+  void invalidate() {
+    synchronized (resolvedPaths) {
+      resolvedPaths.clear();
+      unresolvedPaths.clear();
+      generation++;
+    }
+  }
+
+  @VisibleForTesting
+  boolean isCached(@NotNull String path) {
+    synchronized (resolvedPaths) {
+      return resolvedPaths.containsKey(path) || unresolvedPaths.contains(path);
+    }
+  }
+
+  /**
+   * Returns whether the event can change which file a path resolves to. Content changes cannot,
+   * except for renames, which are reported as property changes.
+   */
+  private static boolean affectsPaths(@NotNull VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) {
+      return false;
+    }
+    if (event instanceof VFilePropertyChangeEvent) {
+      return VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName());
+    }
+    // Create, delete, move and copy.
+    return true;
+  }
+
+  @Nullable
+  private VirtualFile resolve(@NotNull Project project, @NotNull String path) {
     // Try the relative full project path.
     VirtualFile file = fileSystem.findFileByPath(project.getBasePath() + "/" + path);
     // Try class name with package and class file name.
@@ -87,15 +230,17 @@ public class ServerToIdeFileResolver {
         }
       }
     }
-    // If we still couldn't find the file, search for possible file name matches and return the
-    // first.
+    // If we still couldn't find the file, look up project Java files with the same name and return
+    // the first one whose path ends with the given path.
     // We might want to improve string matching and return more than one possible match.
     if (file == null) {
-      Collection<VirtualFile> projectJavaFiles = FileBasedIndex.getInstance().getContainingFiles(
-          FileTypeIndex.NAME, JavaFileType.INSTANCE, GlobalSearchScope.projectScope(project));
-      for (VirtualFile projectFile : projectJavaFiles) {
-        if (projectFile.getName().equals(path)) {
-          file = projectFile;
+      String fileName = path.substring(path.lastIndexOf('/') + 1);
+      VirtualFile[] candidates = FilenameIndex.getVirtualFilesByName(project, fileName,
+          GlobalSearchScope.projectScope(project));
+      for (VirtualFile candidate : candidates) {
+        if (candidate.getFileType() == JavaFileType.INSTANCE
+            && (candidate.getPath().endsWith("/" + path) || candidate.getName().equals(path))) {
+          file = candidate;
           break;
         }
       }
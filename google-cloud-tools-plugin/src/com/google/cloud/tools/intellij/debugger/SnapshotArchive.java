@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.common.io.CountingInputStream;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A file of hydrated snapshots that can be handed to someone else and opened without access to
+ * the debuggee.
+ * <p/>
+ * The file starts with a magic number and a version, followed by one record per snapshot. A record
+ * has a small uncompressed header (id, path, line and final time) and the length-prefixed,
+ * gzipped JSON form of the snapshot, the same form the {@link CloudDebugSnapshotCache} keeps on
+ * disk. Each snapshot is compressed on its own, so a writer holds one snapshot at a time, and a
+ * reader can list the archive by reading only the headers, then load any single snapshot by its
+ * offset.
+ */
+public final class SnapshotArchive {
+
+  public static final String FILE_EXTENSION = "cdsnap";
+
+  private static final int MAGIC = 0x43445341; // "CDSA"
+  private static final int VERSION = 1;
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private SnapshotArchive() {
+  }
+
+  /**
+   * Writes snapshots to a new archive, one at a time.
+   */
+  public static final class Writer implements Closeable {
+
+    private final DataOutputStream out;
+    private int count;
+
+    public Writer(@NotNull File file) throws IOException {
+      FileUtil.createParentDirs(file);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+    }
+
+    /**
+     * Appends the snapshot to the archive.
+     */
+    public void add(@NotNull Breakpoint snapshot) throws IOException {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      OutputStream gzip = new GZIPOutputStream(compressed);
+      try {
+        gzip.write(JSON_FACTORY.toString(snapshot).getBytes(UTF_8));
+      } finally {
+        gzip.close();
+      }
+
+      SourceLocation location = snapshot.getLocation();
+      out.writeUTF(nullToEmpty(snapshot.getId()));
+      out.writeUTF(location != null ? nullToEmpty(location.getPath()) : "");
+      out.writeInt(location != null && location.getLine() != null ? location.getLine() : 0);
+      Long finalTime = BreakpointUtil.parseDateTimeMillis(snapshot.getFinalTime());
+      out.writeLong(finalTime != null ? finalTime : Long.MIN_VALUE);
+      out.writeInt(compressed.size());
+      compressed.writeTo(out);
+      count++;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads the record headers of the archive. Only the headers are kept, so the memory used does
+   * not depend on the size of the snapshots.
+   *
+   * @throws IOException if the file cannot be read or is not a snapshot archive
+   */
+  @NotNull
+  public static List<Entry> readEntries(@NotNull File file) throws IOException {
+    CountingInputStream counter =
+        new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+    DataInputStream in = new DataInputStream(counter);
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("not a snapshot archive: " + file);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("unsupported snapshot archive version " + version);
+      }
+      List<Entry> entries = new ArrayList<Entry>();
+      while (true) {
+        String id;
+        try {
+          id = in.readUTF();
+        } catch (EOFException ex) {
+          return entries;
+        }
+        String path = in.readUTF();
+        int line = in.readInt();
+        long finalTimeMillis = in.readLong();
+        int length = in.readInt();
+        if (length < 0) {
+          throw new IOException("corrupt snapshot archive: " + file);
+        }
+        entries.add(new Entry(id, path, line, finalTimeMillis, counter.getCount(), length));
+        skipFully(in, length);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the snapshot of one entry returned by {@link #readEntries}.
+   */
+  @NotNull
+  public static Breakpoint readSnapshot(@NotNull File file, @NotNull Entry entry)
+      throws IOException {
+    byte[] compressed = new byte[entry.length];
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      raf.seek(entry.offset);
+      raf.readFully(compressed);
+    } finally {
+      raf.close();
+    }
+    InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+    try {
+      return JSON_FACTORY.fromString(new String(FileUtil.loadBytes(in), UTF_8), Breakpoint.class);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void skipFully(DataInputStream in, int length) throws IOException {
+    int remaining = length;
+    while (remaining > 0) {
+      int skipped = in.skipBytes(remaining);
+      if (skipped <= 0) {
+        throw new EOFException();
+      }
+      remaining -= skipped;
+    }
+  }
+
+  private static String nullToEmpty(@Nullable String value) {
+    return value != null ? value : "";
+  }
+
+  /**
+   * The header of one snapshot in an archive.
+   */
+  public static final class Entry {
+
+    private final String id;
+    private final String path;
+    private final int line;
+    private final long finalTimeMillis;
+    private final long offset;
+    private final int length;
+
+    Entry(String id, String path, int line, long finalTimeMillis, long offset, int length) {
+      this.id = id;
+      this.path = path;
+      this.line = line;
+      this.finalTimeMillis = finalTimeMillis;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @NotNull
+    public String getId() {
+      return id;
+    }
+
+    @NotNull
+    public String getPath() {
+      return path;
+    }
+
+    public int getLine() {
+      return line;
+    }
+
+    /**
+     * Returns the time the snapshot was taken in milliseconds since the epoch, or
+     * {@link Long#MIN_VALUE} if it is not known.
+     */
+    public long getFinalTimeMillis() {
+      return finalTimeMillis;
+    }
+
+    /**
+     * Returns the location as shown in the snapshot list, e.g. "Foo.java:12".
+     */
+    @NotNull
+    public String getLocationText() {
+      return path.substring(path.lastIndexOf('/') + 1) + ":" + line;
+    }
+  }
+}
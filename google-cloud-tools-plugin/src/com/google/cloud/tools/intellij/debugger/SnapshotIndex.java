@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+import com.google.common.annotations.VisibleForTesting;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An inverted index over the contents of hydrated snapshots: variable names and values, evaluated
+ * expressions and their values, and stack frame function names. Each is split into lower case
+ * words, and every word maps to the ids of the snapshots that contain it.
+ * <p/>
+ * A query is split the same way and matches the snapshots that contain every one of its words,
+ * each as a prefix of an indexed word, so a filter can be typed incrementally. There is no
+ * phrase or name-to-value matching: {@code "userId == 42"} matches a snapshot that has a
+ * {@code userId} variable and the value 42 anywhere.
+ * <p/>
+ * The index is bounded by {@link #MAX_POSTINGS}, the total number of snapshot words it holds, and
+ * forgets the snapshots indexed longest ago first. Each word is stored once per debuggee, however
+ * many snapshots contain it.
+ */
+class SnapshotIndex {
+
+  @VisibleForTesting
+  static final int MAX_WORDS_PER_SNAPSHOT = 20000;
+  @VisibleForTesting
+  static final int MAX_WORD_LENGTH = 64;
+  @VisibleForTesting
+  static final int MAX_POSTINGS = 1000000;
+  // Nested members deeper than this are not indexed.
+  private static final int MAX_DEPTH = 8;
+
+  private final Map<String, DebuggeeIndex> debuggees = new HashMap<String, DebuggeeIndex>();
+  // The debuggee id of every indexed snapshot, keyed by debuggee and snapshot id, oldest first.
+  // Guarded by debuggees.
+  private final LinkedHashMap<String, String[]> indexed = new LinkedHashMap<String, String[]>();
+  private final int maxPostings;
+  // Guarded by debuggees.
+  private int postingCount;
+
+  SnapshotIndex() {
+    this(MAX_POSTINGS);
+  }
+
+  @VisibleForTesting
+  SnapshotIndex(int maxPostings) {
+    this.maxPostings = maxPostings;
+  }
+
+  /**
+   * Indexes the given snapshot, replacing what was indexed for it before.
+   */
+  void add(@NotNull String debuggeeId, @NotNull Breakpoint snapshot) {
+    if (snapshot.getId() == null) {
+      return;
+    }
+    // Words are extracted outside the lock, which is only held to update the postings.
+    Set<String> words = extractWords(snapshot);
+    synchronized (debuggees) {
+      DebuggeeIndex index = debuggees.get(debuggeeId);
+      if (index == null) {
+        index = new DebuggeeIndex();
+        debuggees.put(debuggeeId, index);
+      }
+      String key = key(debuggeeId, snapshot.getId());
+      indexed.remove(key);
+      postingCount -= index.remove(snapshot.getId());
+      postingCount += index.add(snapshot.getId(), words);
+      indexed.put(key, new String[]{debuggeeId, snapshot.getId()});
+      evict();
+    }
+  }
+
+  void remove(@NotNull String debuggeeId, @NotNull String snapshotId) {
+    synchronized (debuggees) {
+      indexed.remove(key(debuggeeId, snapshotId));
+      removeFromDebuggee(debuggeeId, snapshotId);
+    }
+  }
+
+  boolean contains(@NotNull String debuggeeId, @NotNull String snapshotId) {
+    synchronized (debuggees) {
+      return indexed.containsKey(key(debuggeeId, snapshotId));
+    }
+  }
+
+  @VisibleForTesting
+  int getPostingCount() {
+    synchronized (debuggees) {
+      return postingCount;
+    }
+  }
+
+  /**
+   * Drops the snapshots indexed longest ago until the index fits its budget, but always keeps the
+   * one just added. Must be called with the lock held.
+   */
+  private void evict() {
+    Iterator<String[]> iterator = indexed.values().iterator();
+    while (postingCount > maxPostings && indexed.size() > 1) {
+      String[] eldest = iterator.next();
+      iterator.remove();
+      removeFromDebuggee(eldest[0], eldest[1]);
+    }
+  }
+
+  /**
+   * Removes the snapshot from the index of its debuggee. Must be called with the lock held.
+   */
+  private void removeFromDebuggee(String debuggeeId, String snapshotId) {
+    DebuggeeIndex index = debuggees.get(debuggeeId);
+    if (index != null) {
+      postingCount -= index.remove(snapshotId);
+      if (index.postingsById.isEmpty()) {
+        debuggees.remove(debuggeeId);
+      }
+    }
+  }
+
+  private static String key(String debuggeeId, String snapshotId) {
+    return debuggeeId + "/" + snapshotId;
+  }
+
+  /**
+   * Returns the ids of the indexed snapshots of the debuggee that match the query. A query without
+   * any word matches every indexed snapshot.
+   */
+  @NotNull
+  Set<String> search(@NotNull String debuggeeId, @NotNull String query) {
+    List<String> queryWords = new ArrayList<String>(tokenize(query, new HashSet<String>()));
+    // The longest words are usually the most selective, so the intersection shrinks fastest.
+    Collections.sort(queryWords, new Comparator<String>() {
+      @Override
+      public int compare(String w1, String w2) {
+        return w2.length() - w1.length();
+      }
+    });
+
+    synchronized (debuggees) {
+      DebuggeeIndex index = debuggees.get(debuggeeId);
+      if (index == null) {
+        return Collections.emptySet();
+      }
+      Set<String> result = null;
+      for (String word : queryWords) {
+        result = index.findPrefix(word, result);
+        if (result.isEmpty()) {
+          break;
+        }
+      }
+      return result != null ? result : new HashSet<String>(index.postingsById.keySet());
+    }
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static Set<String> extractWords(@NotNull Breakpoint snapshot) {
+    Set<String> words = new HashSet<String>();
+    addVariables(snapshot.getEvaluatedExpressions(), words, 0);
+    addVariables(snapshot.getVariableTable(), words, 0);
+    if (snapshot.getStackFrames() != null) {
+      for (StackFrame frame : snapshot.getStackFrames()) {
+        tokenize(frame.getFunction(), words);
+        addVariables(frame.getArguments(), words, 0);
+        addVariables(frame.getLocals(), words, 0);
+      }
+    }
+    return words;
+  }
+
+  private static void addVariables(@Nullable List<Variable> variables, Set<String> words,
+      int depth) {
+    if (variables == null || depth > MAX_DEPTH) {
+      return;
+    }
+    for (Variable variable : variables) {
+      if (words.size() >= MAX_WORDS_PER_SNAPSHOT) {
+        return;
+      }
+      tokenize(variable.getName(), words);
+      tokenize(variable.getValue(), words);
+      addVariables(variable.getMembers(), words, depth + 1);
+    }
+  }
+
+  /**
+   * Adds the lower case words of the text to the set: runs of letters, digits and underscores,
+   * cut to {@link #MAX_WORD_LENGTH}.
+   */
+  @NotNull
+  private static Set<String> tokenize(@Nullable String text, @NotNull Set<String> words) {
+    if (text == null) {
+      return words;
+    }
+    int length = text.length();
+    int start = -1;
+    for (int i = 0; i <= length; i++) {
+      boolean wordChar = i < length && isWordChar(text.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        if (words.size() >= MAX_WORDS_PER_SNAPSHOT) {
+          return words;
+        }
+        words.add(text.substring(start, Math.min(i, start + MAX_WORD_LENGTH))
+            .toLowerCase(Locale.US));
+        start = -1;
+      }
+    }
+    return words;
+  }
+
+  private static boolean isWordChar(char ch) {
+    return Character.isLetterOrDigit(ch) || ch == '_';
+  }
+
+  /**
+   * The ids of the snapshots that contain a word.
+   */
+  private static final class Posting {
+
+    final String word;
+    final Set<String> ids = new HashSet<String>();
+
+    Posting(String word) {
+      this.word = word;
+    }
+  }
+
+  private static final class DebuggeeIndex {
+
+    final TreeMap<String, Posting> postingsByWord = new TreeMap<String, Posting>();
+    // The postings of each snapshot, so it can be removed without scanning every word. The
+    // postings are shared, so a word is held once however many snapshots contain it.
+    final Map<String, Posting[]> postingsById = new HashMap<String, Posting[]>();
+
+    /**
+     * @return the number of words added
+     */
+    int add(String id, Set<String> words) {
+      Posting[] postings = new Posting[words.size()];
+      int i = 0;
+      for (String word : words) {
+        Posting posting = postingsByWord.get(word);
+        if (posting == null) {
+          posting = new Posting(word);
+          postingsByWord.put(word, posting);
+        }
+        posting.ids.add(id);
+        postings[i++] = posting;
+      }
+      postingsById.put(id, postings);
+      return postings.length;
+    }
+
+    /**
+     * @return the number of words removed
+     */
+    int remove(String id) {
+      Posting[] postings = postingsById.remove(id);
+      if (postings == null) {
+        return 0;
+      }
+      for (Posting posting : postings) {
+        posting.ids.remove(id);
+        if (posting.ids.isEmpty()) {
+          postingsByWord.remove(posting.word);
+        }
+      }
+      return postings.length;
+    }
+
+    /**
+     * Returns the ids that have a word starting with the prefix, restricted to the candidates if
+     * there are any.
+     */
+    Set<String> findPrefix(String prefix, @Nullable Set<String> candidates) {
+      SortedMap<String, Posting> words =
+          postingsByWord.subMap(prefix, prefix + Character.MAX_VALUE);
+      Set<String> result = new HashSet<String>();
+      for (Posting posting : words.values()) {
+        if (candidates == null) {
+          result.addAll(posting.ids);
+        } else {
+          for (String id : posting.ids) {
+            if (candidates.contains(id)) {
+              result.add(id);
+            }
+          }
+        }
+      }
+      return result;
+    }
+  }
+}
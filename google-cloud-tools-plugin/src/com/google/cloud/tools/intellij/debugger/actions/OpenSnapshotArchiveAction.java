@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger.actions;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.cloud.tools.intellij.debugger.CloudOfflineSnapshotProcess;
+import com.google.cloud.tools.intellij.debugger.ServerToIdeFileResolver;
+import com.google.cloud.tools.intellij.debugger.SnapshotArchive;
+import com.google.cloud.tools.intellij.util.GctBundle;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.PopupStep;
+import com.intellij.openapi.ui.popup.util.BaseListPopupStep;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Lists the snapshots of a {@link SnapshotArchive} and opens the chosen one in a read-only debug
+ * tab, see {@link CloudOfflineSnapshotProcess}. It needs no Cloud Debugger session and sends
+ * nothing to the server. Only the record headers are read to build the list, and only the chosen
+ * snapshot is loaded.
+ */
+public class OpenSnapshotArchiveAction extends AnAction {
+
+  private static final Logger LOG = Logger.getInstance(OpenSnapshotArchiveAction.class);
+
+  public OpenSnapshotArchiveAction() {
+    super(GctBundle.getString("clouddebug.import.snapshots"),
+        GctBundle.getString("clouddebug.import.snapshots.description"),
+        AllIcons.ToolbarDecorator.Import);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent event) {
+    Project project = event.getProject();
+    if (project != null) {
+      openArchive(project);
+    }
+  }
+
+  @Override
+  public void update(AnActionEvent event) {
+    event.getPresentation().setEnabled(event.getProject() != null);
+  }
+
+  /**
+   * Asks for an archive file and lists its snapshots. Must be called on the event dispatch thread.
+   */
+  public static void openArchive(@NotNull final Project project) {
+    VirtualFile chosen = FileChooser.chooseFile(
+        FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor(), project, null);
+    if (chosen == null) {
+      return;
+    }
+    final File file = VfsUtilCore.virtualToIoFile(chosen);
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          final List<SnapshotArchive.Entry> entries = SnapshotArchive.readEntries(file);
+          SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+              showEntries(project, file, entries);
+            }
+          });
+        } catch (IOException ex) {
+          showError(project, ex);
+        }
+      }
+    });
+  }
+
+  private static void showEntries(@NotNull final Project project, @NotNull final File file,
+      @NotNull List<SnapshotArchive.Entry> entries) {
+    if (project.isDisposed()) {
+      return;
+    }
+    if (entries.isEmpty()) {
+      Messages.showInfoMessage(project, GctBundle.getString("clouddebug.import.snapshots.empty"),
+          GctBundle.getString("clouddebug.import.snapshots"));
+      return;
+    }
+    final DateFormat dateFormat =
+        DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    JBPopupFactory.getInstance().createListPopup(new BaseListPopupStep<SnapshotArchive.Entry>(
+        GctBundle.getString("clouddebug.import.snapshots.title", file.getName()), entries) {
+      @NotNull
+      @Override
+      public String getTextFor(SnapshotArchive.Entry entry) {
+        return entry.getFinalTimeMillis() != Long.MIN_VALUE
+            ? entry.getLocationText() + "  " + dateFormat.format(
+                new Date(entry.getFinalTimeMillis()))
+            : entry.getLocationText();
+      }
+
+      @Override
+      public boolean isSpeedSearchEnabled() {
+        return true;
+      }
+
+      @Override
+      public PopupStep onChosen(final SnapshotArchive.Entry entry, boolean finalChoice) {
+        openSnapshot(project, file, entry);
+        return FINAL_CHOICE;
+      }
+    }).showCenteredInCurrentWindow(project);
+  }
+
+  /**
+   * Loads the snapshot and resolves the source files of its frames off the event dispatch thread,
+   * then shows it in a new debug tab.
+   */
+  private static void openSnapshot(@NotNull final Project project, @NotNull final File file,
+      @NotNull final SnapshotArchive.Entry entry) {
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          final Breakpoint snapshot = SnapshotArchive.readSnapshot(file, entry);
+          ServerToIdeFileResolver.getInstance(project)
+              .resolveFrames(project, snapshot.getStackFrames());
+          SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+              if (project.isDisposed()) {
+                return;
+              }
+              try {
+                CloudOfflineSnapshotProcess.show(project, GctBundle.getString(
+                    "clouddebug.import.snapshots.session", entry.getLocationText()), snapshot);
+              } catch (ExecutionException ex) {
+                LOG.warn("could not open an archived snapshot", ex);
+                Messages.showErrorDialog(project, ex.getLocalizedMessage(),
+                    GctBundle.getString("clouddebug.import.snapshots"));
+              }
+            }
+          });
+        } catch (IOException ex) {
+          showError(project, ex);
+        }
+      }
+    });
+  }
+
+  private static void showError(@NotNull final Project project, @NotNull final IOException ex) {
+    LOG.warn("could not read snapshot archive", ex);
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (!project.isDisposed()) {
+          Messages.showErrorDialog(project, GctBundle.getString(
+              "clouddebug.import.snapshots.error", ex.getLocalizedMessage()),
+              GctBundle.getString("clouddebug.import.snapshots"));
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger.actions;
+
+import com.google.cloud.tools.intellij.debugger.ui.CloudDebuggerDiagnosticsDialog;
+import com.google.cloud.tools.intellij.util.GctBundle;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+
+/**
+ * Opens the Cloud Debugger diagnostics dialog. Registered as an internal action, so it is only
+ * available when the IDE runs in internal mode.
+ */
+public class ShowCloudDebuggerDiagnosticsAction extends AnAction {
+
+  public ShowCloudDebuggerDiagnosticsAction() {
+    super(GctBundle.getString("clouddebug.diagnostics.action"));
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent event) {
+    new CloudDebuggerDiagnosticsDialog(event.getProject()).show();
+  }
+}
@@ -139,7 +139,8 @@ public class CloudAttachDialog extends DialogWrapper {
     BasicAction.saveAll();
 
     this.wireup = wireup == null
-        ? new ProjectDebuggeeBinding(elysiumProjectSelector, targetSelector, getOKAction())
+        ? new ProjectDebuggeeBinding(elysiumProjectSelector, targetSelector, getOKAction(),
+            getDisposable())
         : wireup;
     targetSelector.setEnabled(false);
     targetSelector.addActionListener(new ActionListener() {
@@ -354,7 +355,7 @@ public class CloudAttachDialog extends DialogWrapper {
 
   private boolean isContinued() {
     CloudDebugProcessState state = wireup.getInputState();
-    return state != null && state.getCurrentServerBreakpointList().size() > 0;
+    return state != null && !state.getCurrentBreakpointRecords().isEmpty();
   }
 
   private boolean targetMatchesCurrentState() {
@@ -17,12 +17,15 @@
 package com.google.cloud.tools.intellij.debugger.ui;
 
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
-import com.google.api.services.clouddebugger.v2.model.StatusMessage;
-import com.google.cloud.tools.intellij.debugger.BreakpointUtil;
-import com.google.cloud.tools.intellij.debugger.CloudBreakpointListener;
+import com.google.cloud.tools.intellij.debugger.BreakpointListDiff;
+import com.google.cloud.tools.intellij.debugger.BreakpointRecord;
+import com.google.cloud.tools.intellij.debugger.CloudBreakpointDeltaListener;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcess;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessHandler;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessState;
+import com.google.cloud.tools.intellij.debugger.CloudDebugSnapshotCache;
+import com.google.cloud.tools.intellij.debugger.SnapshotArchive;
+import com.google.cloud.tools.intellij.debugger.actions.OpenSnapshotArchiveAction;
 import com.google.cloud.tools.intellij.stats.UsageTrackerProvider;
 import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 import com.google.cloud.tools.intellij.util.GctBundle;
@@ -30,18 +33,30 @@ import com.google.cloud.tools.intellij.util.GctTracking;
 import com.google.common.annotations.VisibleForTesting;
 
 import com.intellij.diagnostic.logging.AdditionalTabComponent;
+import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.ActionGroup;
 import com.intellij.openapi.actionSystem.ActionPlaces;
 import com.intellij.openapi.actionSystem.ActionToolbarPosition;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.MessageType;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.popup.Balloon;
 import com.intellij.openapi.ui.popup.Balloon.Position;
 import com.intellij.openapi.ui.popup.BalloonBuilder;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
 import com.intellij.ui.AnActionButton;
 import com.intellij.ui.AnActionButtonRunnable;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
 import com.intellij.ui.ToolbarDecorator;
 import com.intellij.ui.UI;
 import com.intellij.ui.awt.RelativePoint;
@@ -64,19 +79,28 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
 import java.awt.font.TextAttribute;
+import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.Icon;
 import javax.swing.JComponent;
 import javax.swing.JTable;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumnModel;
@@ -89,11 +113,15 @@ import javax.swing.table.TableColumnModel;
  * word "Pending" otherwise. 2. The file and line number of the snapshot; e.g.
  * "GeneratorServlet.java:40" 3. The breakpoint condition, if any 4. For pending snapshots only, the
  * word "More" which is a link to the Breakpoints dialog.
+ * <p/>
+ * A filter field above the table restricts the list to the snapshots whose captured data matches
+ * the filter text, using the search index of the {@link CloudDebugSnapshotCache}.
  */
 // todo: why *historical* snapshots? Isn't this just all snapshots?
 public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
-    implements XDebugSessionListener, CloudBreakpointListener {
+    implements XDebugSessionListener, CloudBreakpointDeltaListener {
 
+  private static final Logger LOG = Logger.getInstance(CloudDebugHistoricalSnapshots.class);
   private static final int COLUMN_MARGIN_PX = 3;
   private static final Cursor DEFAULT_CURSOR = Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR);
   private static final Cursor HAND_CURSOR = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
@@ -102,10 +130,18 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
   private static final int WINDOW_WIDTH_PX = 200;
 
   private CloudDebugProcess process;
+  // Preferred width of each column for every row, keyed by breakpoint id. Rows are measured again
+  // only after the model reports them as inserted or updated.
+  private final Map<String, int[]> measuredRowWidths = new HashMap<String, int[]>();
+
+  // The filter text, trimmed; empty when the list is not filtered.
+  private volatile String filterText = "";
 
   @VisibleForTesting
   final JBTable table;
   @VisibleForTesting
+  final SearchTextField filterField;
+  @VisibleForTesting
   Balloon balloon = null;
 
   /**
@@ -115,6 +151,16 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     super(new BorderLayout());
 
     table = new CloudDebuggerTable();
+    table.getModel().addTableModelListener(new RowWidthInvalidator());
+
+    filterField = new SearchTextField(false);
+    filterField.addDocumentListener(new DocumentAdapter() {
+      @Override
+      protected void textChanged(DocumentEvent event) {
+        onFilterChanged(filterField.getText().trim());
+      }
+    });
+    add(filterField, BorderLayout.NORTH);
 
     configureToolbar();
 
@@ -136,6 +182,8 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     decorator.setRemoveAction(new RemoveSelectedBreakpointsAction());
     decorator.addExtraAction(new RemoveAllBreakpointsAction());
     decorator.addExtraAction(new ReactivateBreakpointAction());
+    decorator.addExtraAction(new ExportSnapshotsAction());
+    decorator.addExtraAction(new ImportSnapshotsAction());
 
     this.add(decorator.createPanel());
   }
@@ -194,12 +242,18 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
   public void onBreakpointListChanged(CloudDebugProcessState state) {
     // todo: I don't think anyone else implements this or uses CloudDebugProcessState here.
     // verify and if so, remove that argument
-    onBreakpointsChanged();
+    onBreakpointsChanged(true);
+  }
+
+  @Override
+  public void onBreakpointListDelta(@NotNull CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    onBreakpointsChanged(false);
   }
 
   @Override
   public void sessionPaused() {
-    onBreakpointsChanged();
+    onBreakpointsChanged(true);
   }
 
   @Override
@@ -213,7 +267,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     SwingUtilities.invokeLater(new Runnable() {
       @Override
       public void run() {
-        table.setModel(new SnapshotsModel(CloudDebugHistoricalSnapshots.this, null, null));
+        getModel().setBreakpoints(null);
       }
     });
   }
@@ -222,9 +276,11 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
   public void stackFrameChanged() {
   }
 
+  /**
+   * Returns the row of the current snapshot in the given list of rows, or -1 if it is not shown.
+   */
   @VisibleForTesting
-  int getSelection() {
-    final List<Breakpoint> breakpointList = process.getCurrentBreakpointList();
+  int getSelection(@Nullable List<BreakpointRecord> breakpointList) {
     int selection = -1;
 
     if (breakpointList != null) {
@@ -244,16 +300,15 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
    * Deletes breakpoints asynchronously on a threadpool thread. The user will see these breakpoints
    * gradually disappear.
    */
-  private void fireDeleteBreakpoints(@NotNull final List<Breakpoint> breakpointsToDelete) {
-    for (Breakpoint breakpoint : breakpointsToDelete) {
+  private void fireDeleteBreakpoints(@NotNull final List<BreakpointRecord> breakpointsToDelete) {
+    for (BreakpointRecord breakpoint : breakpointsToDelete) {
       getModel().markForDelete(breakpoint.getId());
-      process.getBreakpointHandler().deleteBreakpoint(breakpoint);
     }
-    getModel().fireTableDataChanged();
+    process.getBreakpointHandler().deleteBreakpoints(breakpointsToDelete);
   }
 
   @Nullable
-  private Breakpoint getBreakPoint(@NotNull Point point) {
+  private BreakpointRecord getBreakPoint(@NotNull Point point) {
     int row = table.rowAtPoint(point);
     if (row >= 0 && row < getModel().getBreakpoints().size()) {
       return getModel().getBreakpoints().get(row);
@@ -271,8 +326,8 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
    * snapshot list.
    */
   @NotNull
-  private List<Breakpoint> getSelectedBreakpoints() {
-    List<Breakpoint> selectedBreakpoints = new ArrayList<Breakpoint>();
+  private List<BreakpointRecord> getSelectedBreakpoints() {
+    List<BreakpointRecord> selectedBreakpoints = new ArrayList<BreakpointRecord>();
     SnapshotsModel model = (SnapshotsModel) table.getModel();
     int[] selectedRows = table.getSelectedRows();
     for (int selectedRow : selectedRows) {
@@ -282,35 +337,111 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
   }
 
   /**
-   * This is fired when the set of breakpoints from the server changes. We create a new table model
-   * while keeping the selection as it was. Most routines on selection are therefore based on the
-   * breakpoint Id and not a reference to a breakpoint object -- because we never know when the
+   * This is fired when the set of breakpoints from the server changes. We update the table model in
+   * place while keeping the selection as it was. Most routines on selection are therefore based on
+   * the breakpoint Id and not a reference to a breakpoint object -- because we never know when the
    * server instance will get replaced.
+   *
+   * @param remeasureAll whether every row should be measured again, for refreshes that can change
+   *     cells without changing the breakpoint (e.g. the "More" link)
    */
-  private void onBreakpointsChanged() {
+  private void onBreakpointsChanged(boolean remeasureAll) {
     // Read the list of breakpoints and show them.
     // We always snap the current breakpoint list into a local to eliminate threading issues.
-    final List<Breakpoint> breakpointList = process.getCurrentBreakpointList();
+    final List<BreakpointRecord> breakpointList = filter(process.getCurrentBreakpointRecords());
 
     // Setting the model must happen on the UI thread, while most of this method executes on the
     // background.
-    SwingUtilities.invokeLater(new ModelSetter(breakpointList, getSelection()));
+    SwingUtilities.invokeLater(
+        new ModelSetter(breakpointList, getSelection(breakpointList), remeasureAll));
   }
 
   /**
-   * Resizes the table to respect the contents of each column.
+   * Returns the breakpoints whose snapshot matches the filter text, or all of them if there is no
+   * filter. Snapshots that were never hydrated, including every pending breakpoint, do not match a
+   * filter.
+   */
+  @NotNull
+  private List<BreakpointRecord> filter(@Nullable List<BreakpointRecord> breakpointList) {
+    String query = filterText;
+    if (breakpointList == null || query.isEmpty()) {
+      return breakpointList != null ? breakpointList : new ArrayList<BreakpointRecord>();
+    }
+    List<BreakpointRecord> filtered = new ArrayList<BreakpointRecord>();
+    String debuggeeId = process.getProcessState().getDebuggeeId();
+    if (debuggeeId == null) {
+      return filtered;
+    }
+    Set<String> matches = CloudDebugSnapshotCache.getInstance().search(debuggeeId, query);
+    for (BreakpointRecord breakpoint : breakpointList) {
+      if (matches.contains(breakpoint.getId())) {
+        filtered.add(breakpoint);
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * Shows the breakpoints that match the new filter text. When filtering starts, the final
+   * snapshots that are cached on disk but were not read in this IDE session are indexed in the
+   * background, and the list is filtered again once they are.
+   */
+  private void onFilterChanged(@NotNull String newFilterText) {
+    boolean filteringStarted = filterText.isEmpty() && !newFilterText.isEmpty();
+    filterText = newFilterText;
+    // Filtering only changes which rows are shown, not their contents, so the cached widths hold.
+    onBreakpointsChanged(false);
+    if (!filteringStarted) {
+      return;
+    }
+
+    final String debuggeeId = process.getProcessState().getDebuggeeId();
+    final Set<String> finalIds = new HashSet<String>();
+    for (BreakpointRecord breakpoint : process.getCurrentBreakpointRecords()) {
+      if (breakpoint.isFinal() && breakpoint.getId() != null) {
+        finalIds.add(breakpoint.getId());
+      }
+    }
+    if (debuggeeId == null || finalIds.isEmpty()) {
+      return;
+    }
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        if (CloudDebugSnapshotCache.getInstance().indexFromDisk(debuggeeId, finalIds)) {
+          onBreakpointsChanged(false);
+        }
+      }
+    });
+  }
+
+  /**
+   * Resizes the table to respect the contents of each column. Only rows without a cached
+   * measurement are rendered.
    */
   // todo: arguably belongs inside ColumnDebuggerTable class
   private void resizeColumnWidth() {
     final TableColumnModel columnModel = table.getColumnModel();
-    for (int column = 0; column < table.getColumnCount(); column++) {
-      int width = 2; // Min width
-      for (int row = 0; row < table.getRowCount(); row++) {
-        TableCellRenderer renderer = table.getCellRenderer(row, column);
-        Component comp = table.prepareRenderer(renderer, row, column);
-        width = Math.max(comp.getPreferredSize().width, width);
-      }
-      width += COLUMN_MARGIN_PX;
+    List<BreakpointRecord> rows = getModel().getBreakpoints();
+    int[] columnWidths = new int[table.getColumnCount()];
+    Arrays.fill(columnWidths, 2); // Min width
+    Map<String, int[]> stillMeasured = new HashMap<String, int[]>();
+    for (int row = 0; row < rows.size(); row++) {
+      String id = rows.get(row).getId();
+      int[] rowWidths = measuredRowWidths.get(id);
+      if (rowWidths == null || rowWidths.length != columnWidths.length) {
+        rowWidths = measureRow(row);
+      }
+      stillMeasured.put(id, rowWidths);
+      for (int column = 0; column < columnWidths.length; column++) {
+        columnWidths[column] = Math.max(columnWidths[column], rowWidths[column]);
+      }
+    }
+    measuredRowWidths.clear();
+    measuredRowWidths.putAll(stillMeasured);
+
+    for (int column = 0; column < columnWidths.length; column++) {
+      int width = columnWidths[column] + COLUMN_MARGIN_PX;
       columnModel.getColumn(column).setPreferredWidth(width);
       columnModel.getColumn(column).setMaxWidth(width);
       // The first three columns do not shrink when the window is resized smaller.
@@ -320,6 +451,16 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     }
   }
 
+  private int[] measureRow(int row) {
+    int[] widths = new int[table.getColumnCount()];
+    for (int column = 0; column < widths.length; column++) {
+      TableCellRenderer renderer = table.getCellRenderer(row, column);
+      Component comp = table.prepareRenderer(renderer, row, column);
+      widths[column] = comp.getPreferredSize().width;
+    }
+    return widths;
+  }
+
   /**
    * Returns true if we have a local representation of the snapshot. The snapshot may be pending or
    * in final state.  If in final state, then the local representation will be disabled (not
@@ -330,7 +471,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
    */
   // todo: is there any feasible way to push this into the breakpoint class itself?
   // i.e. breakpoint.supportsMoreConfig()?
-  boolean supportsMoreConfig(@Nullable Breakpoint breakpoint) {
+  boolean supportsMoreConfig(@Nullable BreakpointRecord breakpoint) {
     return process.getBreakpointHandler().getXBreakpoint(breakpoint) != null;
   }
 
@@ -465,7 +606,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     @Override
     public void run(AnActionButton button) {
       // todo(elharo): inject a pointer to the parent class, and we can make this class static
-      List<Breakpoint> selectedBreakpoints = getSelectedBreakpoints();
+      List<BreakpointRecord> selectedBreakpoints = getSelectedBreakpoints();
       fireDeleteBreakpoints(selectedBreakpoints);
     }
   }
@@ -487,7 +628,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
 
       if (result == Messages.OK) { // pressed remove all
         SnapshotsModel model = getModel();
-        fireDeleteBreakpoints(model.getBreakpoints());
+        fireDeleteBreakpoints(new ArrayList<BreakpointRecord>(model.getBreakpoints()));
       }
     }
   }
@@ -505,10 +646,111 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     }
   }
 
+  /**
+   * Streams the selected snapshots, or all received snapshots if none is selected, to a
+   * {@link SnapshotArchive}. Snapshots that are not cached are fetched one at a time.
+   */
+  private class ExportSnapshotsAction extends AnActionButton {
+
+    ExportSnapshotsAction() {
+      super(GctBundle.getString("clouddebug.export.snapshots"), AllIcons.ToolbarDecorator.Export);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+      List<BreakpointRecord> candidates = getSelectedBreakpoints();
+      if (candidates.isEmpty()) {
+        candidates = getModel().getBreakpoints();
+      }
+      final List<String> ids = new ArrayList<String>();
+      for (BreakpointRecord breakpoint : candidates) {
+        if (breakpoint.isFinal() && breakpoint.getId() != null) {
+          ids.add(breakpoint.getId());
+        }
+      }
+      if (ids.isEmpty()) {
+        Messages.showInfoMessage(table, GctBundle.getString("clouddebug.export.snapshots.none"),
+            GctBundle.getString("clouddebug.export.snapshots.title"));
+        return;
+      }
+
+      Project project = process.getXDebugSession().getProject();
+      FileSaverDescriptor descriptor = new FileSaverDescriptor(
+          GctBundle.getString("clouddebug.export.snapshots.title"),
+          GctBundle.getString("clouddebug.export.snapshots.description"),
+          SnapshotArchive.FILE_EXTENSION);
+      VirtualFileWrapper target = FileChooserFactory.getInstance()
+          .createSaveFileDialog(descriptor, project)
+          .save(null, "snapshots." + SnapshotArchive.FILE_EXTENSION);
+      if (target == null) {
+        return;
+      }
+      final File file = target.getFile();
+
+      new Task.Backgroundable(project,
+          GctBundle.getString("clouddebug.export.snapshots.progress"), true) {
+        private IOException error;
+
+        @Override
+        public void run(@NotNull ProgressIndicator indicator) {
+          try {
+            SnapshotArchive.Writer writer = new SnapshotArchive.Writer(file);
+            try {
+              for (int i = 0; i < ids.size(); i++) {
+                indicator.checkCanceled();
+                indicator.setFraction((double) i / ids.size());
+                Breakpoint snapshot = process.getStateController().hydrateSnapshot(ids.get(i));
+                if (snapshot != null) {
+                  writer.add(snapshot);
+                }
+              }
+            } finally {
+              writer.close();
+            }
+          } catch (IOException ex) {
+            LOG.warn("could not export snapshots to " + file, ex);
+            error = ex;
+          }
+        }
+
+        @Override
+        public void onSuccess() {
+          if (error != null) {
+            FileUtil.delete(file);
+            Messages.showErrorDialog(table, GctBundle.getString(
+                "clouddebug.export.snapshots.error", error.getLocalizedMessage()),
+                GctBundle.getString("clouddebug.export.snapshots.title"));
+          }
+        }
+
+        @Override
+        public void onCancel() {
+          FileUtil.delete(file);
+        }
+      }.queue();
+    }
+  }
+
+  /**
+   * Opens a {@link SnapshotArchive} in a read-only debug tab of its own, so this session keeps
+   * showing its own snapshots. See {@link OpenSnapshotArchiveAction}.
+   */
+  private class ImportSnapshotsAction extends AnActionButton {
+
+    ImportSnapshotsAction() {
+      super(GctBundle.getString("clouddebug.import.snapshots"), AllIcons.ToolbarDecorator.Import);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+      OpenSnapshotArchiveAction.openArchive(process.getXDebugSession().getProject());
+    }
+  }
+
   private class CloudDebuggerTable extends JBTable {
 
     CloudDebuggerTable() {
-      setModel(new SnapshotsModel(CloudDebugHistoricalSnapshots.this, null, null));
+      setModel(new SnapshotsModel(CloudDebugHistoricalSnapshots.this));
       setTableHeader(null);
       setShowGrid(false);
       setRowMargin(0);
@@ -545,8 +787,8 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
       if (component instanceof JComponent) {
         JComponent jc = (JComponent) component;
         SnapshotsModel model = (SnapshotsModel) getModel();
-        Breakpoint breakpoint = model.getBreakpoints().get(row);
-        jc.setToolTipText(BreakpointUtil.getUserErrorMessage(breakpoint.getStatus()));
+        BreakpointRecord breakpoint = model.getRecord(row);
+        jc.setToolTipText(breakpoint != null ? breakpoint.getErrorMessage() : null);
       }
       return component;
     }
@@ -566,7 +808,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     public void mousePressed(MouseEvent event) {
       JTable table = (JTable) event.getSource();
       Point point = event.getPoint();
-      Breakpoint breakpoint = getBreakPoint(point);
+      BreakpointRecord breakpoint = getBreakPoint(point);
       int column = table.columnAtPoint(point);
       // todo: 4 and 1 here are magic numbers; use named constants for columns; maybe define
       // in CloudDebuggerTable class
@@ -580,7 +822,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     }
   }
 
-  private void selectSnapshot(Breakpoint breakpoint, boolean isSelectedBeforeTrigger) {
+  private void selectSnapshot(BreakpointRecord breakpoint, boolean isSelectedBeforeTrigger) {
     getModel().unMarkAsNewlyReceived(breakpoint.getId());
 
     if (isSelectedBeforeTrigger || isNewlySelected(breakpoint)) {
@@ -588,7 +830,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     }
   }
 
-  private boolean isNewlySelected(Breakpoint breakpoint) {
+  private boolean isNewlySelected(BreakpointRecord breakpoint) {
     return process.getCurrentSnapshot() == null
         || !process.getCurrentSnapshot().getId().equals(breakpoint.getId());
   }
@@ -607,7 +849,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
       JTable table = (JTable) event.getSource();
       Point point = event.getPoint();
       int column = table.columnAtPoint(point);
-      Breakpoint breakpoint = getBreakPoint(point);
+      BreakpointRecord breakpoint = getBreakPoint(point);
       if (column == 4 && breakpoint != null && supportsMoreConfig(breakpoint)) {
         if (table.getCursor() != HAND_CURSOR) {
           table.setCursor(HAND_CURSOR);
@@ -620,46 +862,71 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     }
   }
 
+  /**
+   * Drops the cached widths of rows that were inserted or updated, so the next resize measures
+   * them again. Widths of deleted rows are dropped by the resize itself.
+   */
+  private class RowWidthInvalidator implements TableModelListener {
+
+    @Override
+    public void tableChanged(TableModelEvent event) {
+      if (event.getType() == TableModelEvent.DELETE) {
+        return;
+      }
+      if (event.getFirstRow() == TableModelEvent.HEADER_ROW
+          || event.getLastRow() == Integer.MAX_VALUE) {
+        measuredRowWidths.clear();
+        return;
+      }
+      List<BreakpointRecord> rows = getModel().getBreakpoints();
+      for (int row = event.getFirstRow(); row <= event.getLastRow() && row < rows.size(); row++) {
+        measuredRowWidths.remove(rows.get(row).getId());
+      }
+    }
+  }
+
   @VisibleForTesting
   class ModelSetter implements Runnable {
 
-    private final List<Breakpoint> breakpointList;
+    private final List<BreakpointRecord> breakpointList;
     private final int finalSelection;
+    private final boolean remeasureAll;
 
-    ModelSetter(List<Breakpoint> breakpointList, int finalSelection) {
+    ModelSetter(List<BreakpointRecord> breakpointList, int finalSelection) {
+      this(breakpointList, finalSelection, true);
+    }
+
+    ModelSetter(List<BreakpointRecord> breakpointList, int finalSelection, boolean remeasureAll) {
       this.breakpointList = breakpointList;
       this.finalSelection = finalSelection;
+      this.remeasureAll = remeasureAll;
     }
 
     @Override
     public void run() {
-      // todo: why are we switching out the model instead of simply updating the old model?
       // todo: a lot of this code might be pushed into CloudDebuggerTable.setBrekpoints or
       // equivalent
-      SnapshotsModel oldModel = getModel();
-      SnapshotsModel newModel = new SnapshotsModel(CloudDebugHistoricalSnapshots.this,
-          breakpointList, oldModel);
-      table.setModel(newModel);
-      if (finalSelection != -1) {
+      SnapshotsModel model = getModel();
+      boolean hadPendingDeletes = model.hasPendingDeletes();
+      int oldRowCount = model.getRowCount();
+      Set<String> justReceived = model.setRecords(breakpointList);
+      if (finalSelection != -1 && finalSelection < model.getRowCount()) {
         table.setRowSelectionInterval(finalSelection, finalSelection);
       }
+      if (remeasureAll) {
+        measuredRowWidths.clear();
+      }
       resizeColumnWidth();
       int rowForPopup = -1;
-      for (int row = 0; row < getModel().getRowCount(); row++) {
-        // todo: getModel should be newModel
-        Breakpoint bp = getModel().getBreakpoints().get(row);
-        if (bp.getIsFinalState() != Boolean.TRUE) {
+      for (int row = 0; row < model.getRowCount(); row++) {
+        BreakpointRecord bp = model.getRecord(row);
+        if (!bp.isFinal()) {
           continue;
         }
-        StatusMessage status = bp.getStatus();
-        if (status != null && Boolean.TRUE.equals(status.getIsError())) {
+        if (bp.getState() == BreakpointRecord.State.ERROR) {
           continue;
         }
-        String id = bp.getId();
-        // todo: getModel should be newModel
-        boolean newModelNewlyReceived = getModel().isNewlyReceived(id);
-        boolean oldModelNewlyReceived = oldModel.isNewlyReceived(id);
-        if (newModelNewlyReceived && !oldModelNewlyReceived) {
+        if (justReceived.contains(bp.getId())) {
           rowForPopup = row;
         }
         break; // NOPMD
@@ -683,8 +950,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
             Position.above);
 
         reloadSnapshot();
-      } else if (oldModel.hasPendingDeletes() && oldModel.getBreakpoints().size() > newModel
-          .getBreakpoints().size()) {
+      } else if (hadPendingDeletes && oldRowCount > model.getRowCount()) {
         process.clearExecutionStack();
       }
     }
@@ -700,7 +966,7 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
       if (selectedRow != -1
           && selectedRow < getModel().getBreakpoints().size()
           && getModel().isNewlyReceived(selectedRow)) {
-        Breakpoint breakpoint = getModel().getBreakpoints().get(selectedRow);
+        BreakpointRecord breakpoint = getModel().getBreakpoints().get(selectedRow);
 
         if (breakpoint != null && table.getSelectedRows().length == 1) {
           selectSnapshot(breakpoint, true);
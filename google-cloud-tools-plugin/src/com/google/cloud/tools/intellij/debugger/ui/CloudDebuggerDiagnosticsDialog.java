@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger.ui;
+
+import com.google.cloud.tools.intellij.debugger.CloudDebugCircuitBreaker;
+import com.google.cloud.tools.intellij.debugger.CloudDebugProcessState;
+import com.google.cloud.tools.intellij.debugger.CloudDebugProcessStateCollector;
+import com.google.cloud.tools.intellij.debugger.CloudDebugProcessWatcher;
+import com.google.cloud.tools.intellij.debugger.CloudDebuggerMetrics;
+import com.google.cloud.tools.intellij.debugger.CloudDebuggerMetrics.MethodSummary;
+import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.Action;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Shows the latency, payload size and error counts recorded by {@link CloudDebuggerMetrics}, and
+ * lets the user reset them or export them as JSON for a bug report.
+ * <p/>
+ * It also lists the debuggees that are listened to in the background together with the state of
+ * their {@link CloudDebugCircuitBreaker}, so a user can tell whether the watcher is backing off.
+ */
+public class CloudDebuggerDiagnosticsDialog extends DialogWrapper {
+
+  private static final Logger LOG = Logger.getInstance(CloudDebuggerDiagnosticsDialog.class);
+  private static final String[] COLUMNS = {"Method", "Calls", "Mean ms", "p50 ms", "p90 ms",
+      "p99 ms", "Max ms", "Conflicts", "Timeouts", "Errors", "Mean bytes", "Max bytes"};
+
+  private final Project project;
+  private final CloudDebuggerMetrics metrics = CloudDebuggerMetrics.getInstance();
+  private final SummaryTableModel tableModel = new SummaryTableModel();
+  private final JLabel waitTokenLabel = new JLabel();
+  private final JLabel connectionsLabel = new JLabel();
+
+  public CloudDebuggerDiagnosticsDialog(@Nullable Project project) {
+    super(project, false);
+    this.project = project;
+    setTitle(GctBundle.getString("clouddebug.diagnostics.title"));
+    setOKButtonText(GctBundle.getString("clouddebug.diagnostics.close"));
+    refresh();
+    init();
+  }
+
+  @Override
+  protected JComponent createCenterPanel() {
+    JPanel panel = new JPanel(new BorderLayout());
+    panel.add(new JBScrollPane(new JBTable(tableModel)), BorderLayout.CENTER);
+    JPanel statusPanel = new JPanel(new GridLayout(0, 1));
+    statusPanel.add(waitTokenLabel);
+    statusPanel.add(connectionsLabel);
+    panel.add(statusPanel, BorderLayout.SOUTH);
+    return panel;
+  }
+
+  @NotNull
+  @Override
+  protected Action[] createActions() {
+    return new Action[]{getOKAction()};
+  }
+
+  @NotNull
+  @Override
+  protected Action[] createLeftSideActions() {
+    return new Action[]{new RefreshAction(), new ResetAction(), new ExportAction()};
+  }
+
+  private void refresh() {
+    tableModel.setSummaries(metrics.getSummaries());
+    waitTokenLabel.setText(GctBundle.message("clouddebug.diagnostics.waittokens",
+        metrics.getWaitTokenChangedCount(), metrics.getWaitTokenUnchangedCount()));
+    connectionsLabel.setText(describeConnections(
+        CloudDebugProcessStateCollector.getInstance().getBackgroundListeningStates(),
+        CloudDebugProcessWatcher.getInstance()));
+  }
+
+  /**
+   * Returns one line per background listening state naming its project and whether its polls go
+   * through or are backing off after errors.
+   */
+  @VisibleForTesting
+  @NotNull
+  static String describeConnections(@NotNull List<CloudDebugProcessState> states,
+      @NotNull CloudDebugProcessWatcher watcher) {
+    if (states.isEmpty()) {
+      return GctBundle.getString("clouddebug.diagnostics.connections.none");
+    }
+    StringBuilder text = new StringBuilder("<html>");
+    for (CloudDebugProcessState state : states) {
+      if (text.length() > "<html>".length()) {
+        text.append("<br>");
+      }
+      text.append(GctBundle.message("clouddebug.diagnostics.connection", state.getProjectName(),
+          describeConnectionState(watcher.getConnectionState(state))));
+    }
+    return text.append("</html>").toString();
+  }
+
+  @NotNull
+  private static String describeConnectionState(@Nullable CloudDebugCircuitBreaker.State state) {
+    if (state == null) {
+      return GctBundle.getString("clouddebug.diagnostics.connection.idle");
+    }
+    switch (state) {
+      case OPEN:
+        return GctBundle.getString("clouddebug.diagnostics.connection.open");
+      case HALF_OPEN:
+        return GctBundle.getString("clouddebug.diagnostics.connection.halfopen");
+      default:
+        return GctBundle.getString("clouddebug.diagnostics.connection.closed");
+    }
+  }
+
+  private void export() {
+    FileSaverDescriptor descriptor = new FileSaverDescriptor(
+        GctBundle.getString("clouddebug.diagnostics.export.title"),
+        GctBundle.getString("clouddebug.diagnostics.export.description"), "json");
+    VirtualFileWrapper target = FileChooserFactory.getInstance()
+        .createSaveFileDialog(descriptor, project).save(null, "cloud-debugger-metrics.json");
+    if (target == null) {
+      return;
+    }
+    try {
+      FileUtil.writeToFile(target.getFile(), metrics.toJson());
+    } catch (IOException ex) {
+      LOG.warn("could not export Cloud Debugger metrics", ex);
+      Messages.showErrorDialog(getContentPane(),
+          GctBundle.message("clouddebug.diagnostics.export.error", ex.getLocalizedMessage()),
+          GctBundle.getString("clouddebug.diagnostics.export.title"));
+    }
+  }
+
+  private class RefreshAction extends DialogWrapperAction {
+
+    RefreshAction() {
+      super(GctBundle.getString("clouddebug.diagnostics.refresh"));
+    }
+
+    @Override
+    protected void doAction(ActionEvent event) {
+      refresh();
+    }
+  }
+
+  private class ResetAction extends DialogWrapperAction {
+
+    ResetAction() {
+      super(GctBundle.getString("clouddebug.diagnostics.reset"));
+    }
+
+    @Override
+    protected void doAction(ActionEvent event) {
+      metrics.reset();
+      refresh();
+    }
+  }
+
+  private class ExportAction extends DialogWrapperAction {
+
+    ExportAction() {
+      super(GctBundle.getString("clouddebug.diagnostics.export"));
+    }
+
+    @Override
+    protected void doAction(ActionEvent event) {
+      export();
+    }
+  }
+
+  private static class SummaryTableModel extends AbstractTableModel {
+
+    private List<MethodSummary> summaries = new ArrayList<MethodSummary>();
+
+    void setSummaries(@NotNull List<MethodSummary> summaries) {
+      this.summaries = summaries;
+      fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+      return summaries.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+      MethodSummary summary = summaries.get(rowIndex);
+      switch (columnIndex) {
+        case 0:
+          return summary.getMethod();
+        case 1:
+          return summary.getCalls();
+        case 2:
+          return summary.getMeanLatencyMs();
+        case 3:
+          return summary.getLatencyPercentileMs(50);
+        case 4:
+          return summary.getLatencyPercentileMs(90);
+        case 5:
+          return summary.getLatencyPercentileMs(99);
+        case 6:
+          return summary.getMaxLatencyMs();
+        case 7:
+          return summary.getConflicts();
+        case 8:
+          return summary.getTimeouts();
+        case 9:
+          return summary.getErrors();
+        case 10:
+          return summary.getSizedResponses() > 0
+              ? summary.getTotalResponseBytes() / summary.getSizedResponses() : 0;
+        case 11:
+          return summary.getMaxResponseBytes();
+        default:
+          return null;
+      }
+    }
+  }
+}
@@ -19,26 +19,26 @@ package com.google.cloud.tools.intellij.debugger.ui;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
 import com.google.api.services.clouddebugger.v2.model.Debuggee;
-import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
-import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessState;
+import com.google.cloud.tools.intellij.debugger.CloudDebuggeeCache;
 import com.google.cloud.tools.intellij.debugger.CloudDebuggerClient;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
 import com.google.cloud.tools.intellij.resources.ProjectSelector;
 import com.google.cloud.tools.intellij.util.GctBundle;
 import com.google.common.base.Strings;
 
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.ui.DocumentAdapter;
+import com.intellij.util.Alarm;
 import com.intellij.util.containers.HashMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.Action;
@@ -55,9 +55,11 @@ import javax.swing.event.TreeModelListener;
 class ProjectDebuggeeBinding {
 
   private static final Logger LOG = Logger.getInstance(ProjectDebuggeeBinding.class);
+  private static final int REFRESH_DELAY_MS = 300;
   private final JComboBox targetSelector;
   private final ProjectSelector projectSelector;
   private final Action okAction;
+  private final Alarm refreshAlarm;
   private Debugger cloudDebuggerClient = null;
   private CredentialedUser credentialedUser = null;
   private CloudDebugProcessState inputState;
@@ -67,12 +69,17 @@ class ProjectDebuggeeBinding {
   //   has projectSelector.getProjectNumber() set to null.
   private boolean isCdbQueried = false;
 
+  /**
+   * @param parentDisposable disposes the pending debuggee refreshes, typically the dialog's
+   */
   public ProjectDebuggeeBinding(@NotNull ProjectSelector projectSelector,
       @NotNull JComboBox targetSelector,
-      @NotNull Action okAction) {
+      @NotNull Action okAction,
+      @NotNull Disposable parentDisposable) {
     this.projectSelector = projectSelector;
     this.targetSelector = targetSelector;
     this.okAction = okAction;
+    refreshAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, parentDisposable);
 
     this.projectSelector.getDocument().addDocumentListener(new DocumentAdapter() {
       @Override
@@ -144,78 +151,89 @@ class ProjectDebuggeeBinding {
   }
 
   /**
-   * Refreshes the list of attachable debug targets based on the project selection.
+   * Refreshes the list of attachable debug targets based on the project selection. Typing in the
+   * project field restarts a short delay, so the debuggees are only listed once the selection
+   * settles. Called when the user selects a project or refreshes the project list, so the
+   * debuggees are listed again rather than taken from {@link CloudDebuggeeCache}.
    */
-  @SuppressWarnings("unchecked")
   private void refreshDebugTargetList() {
     targetSelector.removeAllItems();
-    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+    refreshAlarm.cancelAllRequests();
+    refreshAlarm.addRequest(new Runnable() {
       @Override
       public void run() {
-        try {
-          if (projectSelector.getProjectNumber() != null && getCloudDebuggerClient() != null) {
-            final ListDebuggeesResponse debuggees = getCloudDebuggerClient().debuggees().list()
-                .setProject(projectSelector.getProjectNumber().toString())
-                .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                    .getClientVersionForCloudDebugger())
-                .execute();
-            isCdbQueried = true;
-
-            SwingUtilities.invokeLater(new Runnable() {
-              @Override
-              public void run() {
-                DebugTarget targetSelection = null;
-
-                if (debuggees == null || debuggees.getDebuggees() == null || debuggees
-                    .getDebuggees().isEmpty()) {
-                  disableTargetSelector(GctBundle.getString("clouddebug.nomodulesfound"));
-                } else {
-                  targetSelector.setEnabled(true);
-                  Map<String, DebugTarget> perModuleCache = new HashMap<String, DebugTarget>();
-
-                  for (Debuggee debuggee : debuggees.getDebuggees()) {
-                    DebugTarget item = new DebugTarget(debuggee, projectSelector.getText());
-                    if (!Strings.isNullOrEmpty(item.getModule())
-                        && !Strings.isNullOrEmpty(item.getVersion())) {
-                      //If we already have an existing item for that module+version, compare the
-                      // minor versions and only use the latest minor version.
-                      String key = String.format("%s:%s", item.getModule(), item.getVersion());
-                      DebugTarget existing = perModuleCache.get(key);
-                      if (existing != null && existing.getMinorVersion() > item.getMinorVersion()) {
-                        continue;
-                      }
-                      if (existing != null) {
-                        targetSelector.removeItem(existing);
-                      }
-                      perModuleCache.put(key, item);
-                    }
-                    if (inputState != null && !Strings.isNullOrEmpty(inputState.getDebuggeeId())) {
-                      if (inputState.getDebuggeeId().equals(item.getId())) {
-                        targetSelection = item;
-                      }
-                    }
-                    targetSelector.addItem(item);
-                    okAction.setEnabled(true);
+        loadDebugTargets();
+      }
+    }, REFRESH_DELAY_MS);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void loadDebugTargets() {
+    try {
+      final Long projectNumber = projectSelector.getProjectNumber();
+      if (projectNumber != null && getCloudDebuggerClient() != null) {
+        String userEmail = credentialedUser != null ? credentialedUser.getEmail() : null;
+        CloudDebuggeeCache.getInstance().invalidate(userEmail, projectNumber.toString());
+        final List<Debuggee> debuggees = CloudDebuggeeCache.getInstance().getDebuggees(
+            getCloudDebuggerClient(), userEmail, projectNumber.toString());
+        isCdbQueried = true;
+
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            if (!projectNumber.equals(projectSelector.getProjectNumber())) {
+              // The selection changed while listing, a newer refresh fills in the list.
+              return;
+            }
+            DebugTarget targetSelection = null;
+
+            if (debuggees.isEmpty()) {
+              disableTargetSelector(GctBundle.getString("clouddebug.nomodulesfound"));
+            } else {
+              targetSelector.setEnabled(true);
+              Map<String, DebugTarget> perModuleCache = new HashMap<String, DebugTarget>();
+
+              for (Debuggee debuggee : debuggees) {
+                DebugTarget item = new DebugTarget(debuggee, projectSelector.getText());
+                if (!Strings.isNullOrEmpty(item.getModule())
+                    && !Strings.isNullOrEmpty(item.getVersion())) {
+                  //If we already have an existing item for that module+version, compare the
+                  // minor versions and only use the latest minor version.
+                  String key = String.format("%s:%s", item.getModule(), item.getVersion());
+                  DebugTarget existing = perModuleCache.get(key);
+                  if (existing != null && existing.getMinorVersion() > item.getMinorVersion()) {
+                    continue;
                   }
+                  if (existing != null) {
+                    targetSelector.removeItem(existing);
+                  }
+                  perModuleCache.put(key, item);
                 }
-                if (targetSelection != null) {
-                  targetSelector.setSelectedItem(targetSelection);
+                if (inputState != null && !Strings.isNullOrEmpty(inputState.getDebuggeeId())) {
+                  if (inputState.getDebuggeeId().equals(item.getId())) {
+                    targetSelection = item;
+                  }
                 }
+                targetSelector.addItem(item);
+                okAction.setEnabled(true);
               }
-            });
-          }
-        } catch (final IOException ex) {
-          SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-              disableTargetSelector(ex);
             }
-          });
-
-          LOG.warn("Error listing debuggees from Cloud Debugger API", ex);
-        }
+            if (targetSelection != null) {
+              targetSelector.setSelectedItem(targetSelection);
+            }
+          }
+        });
       }
-    });
+    } catch (final IOException ex) {
+      SwingUtilities.invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          disableTargetSelector(ex);
+        }
+      });
+
+      LOG.warn("Error listing debuggees from Cloud Debugger API", ex);
+    }
   }
 
   private void disableTargetSelector(Throwable reason) {
@@ -17,16 +17,20 @@
 package com.google.cloud.tools.intellij.debugger.ui;
 
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
-import com.google.cloud.tools.intellij.debugger.BreakpointUtil;
+import com.google.cloud.tools.intellij.debugger.BreakpointRecord;
 import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.swing.table.AbstractTableModel;
@@ -39,54 +43,224 @@ import javax.swing.table.AbstractTableModel;
  * received snapshots or the word "Pending" otherwise. 2. The file and line number of the snapshot;
  * e.g. "GeneratorServlet.java:40" 3. The breakpoint condition, if any 4. For pending snapshots
  * only, the word "More" which is a link to the Breakpoints dialog.
+ * <p/>
+ * Rows are kept as {@link BreakpointRecord}s, so painting a cell reads precomputed fields instead
+ * of parsing the breakpoint again.
  */
 class SnapshotsModel extends AbstractTableModel {
 
   private static final int COLUMN_COUNT = 5;
 
-  private final List<Breakpoint> breakpoints;
+  private final List<BreakpointRecord> breakpoints = new ArrayList<BreakpointRecord>();
+  private final List<BreakpointRecord> breakpointView =
+      Collections.unmodifiableList(breakpoints);
+  private final Map<String, Integer> rowsById = new HashMap<String, Integer>();
   private final Set<String> pendingDeletes = new HashSet<String>();
   private final Set<String> newlyReceived = new HashSet<String>();
-  private CloudDebugHistoricalSnapshots snapshots;
-
-  SnapshotsModel(CloudDebugHistoricalSnapshots snapshots,
-      List<Breakpoint> breakpoints, SnapshotsModel oldModel) {
-    HashMap<String, Breakpoint> tempHashMap = new HashMap<String, Breakpoint>();
-    if (oldModel != null && oldModel.getBreakpoints().size() > 0) {
-      for (Breakpoint previousBreakpoint : oldModel.getBreakpoints()) {
-        tempHashMap.put(previousBreakpoint.getId(), previousBreakpoint);
+  private final CloudDebugHistoricalSnapshots snapshots;
+
+  SnapshotsModel(CloudDebugHistoricalSnapshots snapshots) {
+    this.snapshots = snapshots;
+  }
+
+  /**
+   * Updates the model to show the given list, which must be sorted the way it should be displayed.
+   * Rows are matched by breakpoint id: rows that disappeared are deleted, new ones are inserted
+   * and rows whose breakpoint changed are updated, each with its own row-level table event, so the
+   * table keeps its selection and only repaints what changed.
+   * <p/>
+   * A final state breakpoint is marked as newly received unless the model already knew it as final
+   * and not newly received. Nothing is marked when the model was empty before the update.
+   *
+   * @return the ids of the breakpoints that became newly received with this update
+   */
+  @NotNull
+  Set<String> setBreakpoints(@Nullable List<Breakpoint> newBreakpoints) {
+    return setRecords(BreakpointRecord.fromList(newBreakpoints));
+  }
+
+  /**
+   * Same as {@link #setBreakpoints}, for breakpoints already converted to records.
+   */
+  @NotNull
+  Set<String> setRecords(@Nullable List<BreakpointRecord> newRecords) {
+    List<BreakpointRecord> target = newRecords != null
+        ? newRecords : Collections.<BreakpointRecord>emptyList();
+    Set<String> justReceived = updateNewlyReceived(target);
+
+    if (breakpoints.isEmpty() || target.isEmpty()) {
+      replaceAll(target);
+    } else {
+      removeRowsNotInOrder(target);
+      insertAndUpdateRows(target, justReceived);
+    }
+
+    rowsById.clear();
+    for (int row = 0; row < breakpoints.size(); row++) {
+      if (breakpoints.get(row).getId() != null) {
+        rowsById.put(breakpoints.get(row).getId(), row);
       }
+    }
+    pendingDeletes.retainAll(rowsById.keySet());
+    return justReceived;
+  }
 
-      if (breakpoints != null) {
-        for (Breakpoint newBreakpoint : breakpoints) {
-          // We loop through new breakpoints.
-          // If a new breakpoint is in final state *and*
-          // the old model didn't know about that breakpoint as being final (and not new)
-          // then we mark it.
-          if (!Boolean.TRUE.equals(newBreakpoint.getIsFinalState())) {
-            continue;
-          }
-          if (tempHashMap.containsKey(newBreakpoint.getId())) {
-            Breakpoint previousBreakpoint = tempHashMap.get(newBreakpoint.getId());
-            if (Boolean.TRUE.equals(previousBreakpoint.getIsFinalState())) {
-              if (!oldModel.isNewlyReceived(previousBreakpoint.getId())) {
-                continue;
-              }
-            }
-          }
-          newlyReceived.add(newBreakpoint.getId());
+  private Set<String> updateNewlyReceived(List<BreakpointRecord> target) {
+    Set<String> stillNewlyReceived = new HashSet<String>();
+    Set<String> justReceived = new HashSet<String>();
+    if (!breakpoints.isEmpty()) {
+      for (BreakpointRecord newBreakpoint : target) {
+        // If a new breakpoint is in final state *and* we didn't know about that breakpoint as
+        // being final (and not new) then we mark it.
+        if (!newBreakpoint.isFinal()) {
+          continue;
         }
+        String id = newBreakpoint.getId();
+        Integer previousRow = rowsById.get(id);
+        if (previousRow != null
+            && breakpoints.get(previousRow).isFinal()
+            && !newlyReceived.contains(id)) {
+          continue;
+        }
+        if (!newlyReceived.contains(id)) {
+          justReceived.add(id);
+        }
+        stillNewlyReceived.add(id);
       }
     }
+    newlyReceived.clear();
+    newlyReceived.addAll(stillNewlyReceived);
+    return justReceived;
+  }
 
-    this.breakpoints = breakpoints != null ? breakpoints : new ArrayList<Breakpoint>();
-    this.snapshots = snapshots;
+  private void replaceAll(List<BreakpointRecord> target) {
+    if (!breakpoints.isEmpty()) {
+      int lastRow = breakpoints.size() - 1;
+      breakpoints.clear();
+      fireTableRowsDeleted(0, lastRow);
+    }
+    if (!target.isEmpty()) {
+      breakpoints.addAll(target);
+      fireTableRowsInserted(0, breakpoints.size() - 1);
+    }
+  }
+
+  /**
+   * Deletes the rows that are gone from the target list, as well as the rows that moved relative to
+   * the others (e.g. a pending breakpoint that became final), so the remaining rows are a
+   * subsequence of the target list. The rows that stay are the longest run of rows whose relative
+   * order is unchanged.
+   */
+  private void removeRowsNotInOrder(List<BreakpointRecord> target) {
+    int[] previousRows = new int[target.size()];
+    int survivorCount = 0;
+    for (BreakpointRecord breakpoint : target) {
+      Integer previousRow = breakpoint.getId() != null ? rowsById.get(breakpoint.getId()) : null;
+      if (previousRow != null) {
+        previousRows[survivorCount++] = previousRow;
+      }
+    }
+    boolean[] keep = new boolean[breakpoints.size()];
+    boolean[] inOrder = longestIncreasingSubsequence(previousRows, survivorCount);
+    for (int i = 0; i < survivorCount; i++) {
+      if (inOrder[i]) {
+        keep[previousRows[i]] = true;
+      }
+    }
+
+    // Delete bottom-up so the indices of the rows above stay valid.
+    int row = breakpoints.size() - 1;
+    while (row >= 0) {
+      if (keep[row]) {
+        row--;
+        continue;
+      }
+      int lastRow = row;
+      while (row >= 0 && !keep[row]) {
+        breakpoints.remove(row);
+        row--;
+      }
+      fireTableRowsDeleted(row + 1, lastRow);
+    }
+  }
+
+  private void insertAndUpdateRows(List<BreakpointRecord> target, Set<String> justReceived) {
+    int row = 0;
+    while (row < target.size()) {
+      BreakpointRecord breakpoint = target.get(row);
+      if (row < breakpoints.size() && isSameBreakpoint(breakpoints.get(row), breakpoint)) {
+        BreakpointRecord previous = breakpoints.set(row, breakpoint);
+        if (!previous.equals(breakpoint)
+            || justReceived.contains(breakpoint.getId())) {
+          fireTableRowsUpdated(row, row);
+        }
+        row++;
+        continue;
+      }
+      int firstInserted = row;
+      while (row < target.size()
+          && !(row < breakpoints.size() && isSameBreakpoint(breakpoints.get(row),
+              target.get(row)))) {
+        breakpoints.add(row, target.get(row));
+        row++;
+      }
+      fireTableRowsInserted(firstInserted, row - 1);
+    }
+  }
+
+  private static boolean isSameBreakpoint(BreakpointRecord first, BreakpointRecord second) {
+    return first.getId() != null && first.getId().equals(second.getId());
+  }
+
+  /**
+   * Returns, for each of the first {@code length} values, whether it is part of a longest strictly
+   * increasing subsequence. Runs in O(n log n).
+   */
+  private static boolean[] longestIncreasingSubsequence(int[] values, int length) {
+    int[] tails = new int[length];
+    int[] predecessors = new int[length];
+    int sequenceLength = 0;
+    for (int i = 0; i < length; i++) {
+      int low = 0;
+      int high = sequenceLength;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (values[tails[mid]] < values[i]) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      predecessors[i] = low > 0 ? tails[low - 1] : -1;
+      tails[low] = i;
+      if (low == sequenceLength) {
+        sequenceLength++;
+      }
+    }
+    boolean[] inSequence = new boolean[length];
+    int index = sequenceLength > 0 ? tails[sequenceLength - 1] : -1;
+    while (index >= 0) {
+      inSequence[index] = true;
+      index = predecessors[index];
+    }
+    return inSequence;
   }
 
-  // todo: seem to be exposing mutable private stat here, though not too broadly so it may be OK
+  /**
+   * Returns the breakpoints shown by the table, in row order. The list is a read-only view that
+   * reflects later updates.
+   */
   @NotNull
-  List<Breakpoint> getBreakpoints() {
-    return breakpoints;
+  List<BreakpointRecord> getBreakpoints() {
+    return breakpointView;
+  }
+
+  /**
+   * Returns the record shown in the given row, or null if there is no such row.
+   */
+  @Nullable
+  BreakpointRecord getRecord(int row) {
+    return row >= 0 && row < breakpoints.size() ? breakpoints.get(row) : null;
   }
 
   @Override
@@ -100,18 +274,26 @@ class SnapshotsModel extends AbstractTableModel {
   }
 
   void markForDelete(String id) {
-    pendingDeletes.add(id);
+    if (pendingDeletes.add(id)) {
+      fireRowUpdated(id);
+    }
   }
 
   void unMarkAsNewlyReceived(String id) {
-    newlyReceived.remove(id);
+    if (newlyReceived.remove(id)) {
+      fireRowUpdated(id);
+    }
   }
 
-  boolean isMarkedForDelete(int row) {
-    Breakpoint breakpoint = null;
-    if (row >= 0 && row < breakpoints.size()) {
-      breakpoint = breakpoints.get(row);
+  private void fireRowUpdated(String id) {
+    Integer row = rowsById.get(id);
+    if (row != null) {
+      fireTableRowsUpdated(row, row);
     }
+  }
+
+  boolean isMarkedForDelete(int row) {
+    BreakpointRecord breakpoint = getRecord(row);
     return breakpoint != null && pendingDeletes.contains(breakpoint.getId());
   }
 
@@ -124,41 +306,35 @@ class SnapshotsModel extends AbstractTableModel {
   }
 
   boolean isNewlyReceived(int row) {
-    Breakpoint breakpoint = null;
-    if (row >= 0 && row < breakpoints.size()) {
-      breakpoint = breakpoints.get(row);
-    }
+    BreakpointRecord breakpoint = getRecord(row);
     return breakpoint != null && isNewlyReceived(breakpoint.getId());
   }
 
   @Override
   public Object getValueAt(int rowIndex, int columnIndex) {
-    if (rowIndex < 0 || rowIndex >= breakpoints.size()) {
+    BreakpointRecord breakpoint = getRecord(rowIndex);
+    if (breakpoint == null) {
       return null;
     }
-    Breakpoint breakpoint = breakpoints.get(rowIndex);
 
     switch (columnIndex) {
       case 0:
-        if (breakpoint.getStatus() != null && Boolean.TRUE
-            .equals(breakpoint.getStatus().getIsError())) {
-          return GoogleCloudToolsIcons.CLOUD_BREAKPOINT_ERROR;
-        }
-        if (!Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
-          return GoogleCloudToolsIcons.CLOUD_BREAKPOINT_CHECKED;
+        switch (breakpoint.getState()) {
+          case ERROR:
+            return GoogleCloudToolsIcons.CLOUD_BREAKPOINT_ERROR;
+          case PENDING:
+            return GoogleCloudToolsIcons.CLOUD_BREAKPOINT_CHECKED;
+          default:
+            return GoogleCloudToolsIcons.CLOUD_BREAKPOINT_FINAL;
         }
-        return GoogleCloudToolsIcons.CLOUD_BREAKPOINT_FINAL;
       case 1:
-        if (!Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
+        if (!breakpoint.isFinal()) {
           return GctBundle.getString("clouddebug.pendingstatus");
         }
-        return BreakpointUtil.parseDateTime(breakpoint.getFinalTime());
+        return breakpoint.getFinalTimeMillis() != Long.MIN_VALUE
+            ? new Date(breakpoint.getFinalTimeMillis()) : null;
       case 2:
-        String path = breakpoint.getLocation().getPath();
-        int startIndex = path.lastIndexOf('/');
-        return path.substring(startIndex >= 0 ? startIndex + 1 : 0)
-            + ":"
-            + breakpoint.getLocation().getLine().toString();
+        return breakpoint.getFileName() + ":" + breakpoint.getLine();
       case 3:
         return breakpoint.getCondition();
       case 4:
@@ -26,29 +26,44 @@ import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
 import com.google.cloud.tools.intellij.login.IntellijGoogleLoginService;
 import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.annotations.VisibleForTesting;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.Image;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 
 import javax.swing.SwingUtilities;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
 
 /**
  * This model item represents a {@link IntellijGoogleLoginService} credentialed user in the treeview
  * of the project selector.
+ * <p/>
+ * The projects of the user are first shown from the {@link ProjectCatalogCache}, if it has them,
+ * while the list is fetched again in the background. Each fetched page is merged into the tree as
+ * soon as it arrives, as insertions and changes of single nodes, so the rows that did not change
+ * stay as they are and the tree can be browsed while later pages load.
  */
 class GoogleUserModelItem extends DefaultMutableTreeNode {
 
@@ -57,14 +72,30 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
 
   private final CredentialedUser user;
   private final DefaultTreeModel treeModel;
+  private final ProjectCatalogCache catalog;
   private volatile boolean isSynchronizing;
   private volatile boolean needsSynchronizing;
+  // Whether the children are a project list, as opposed to the loading or the error item.
+  private volatile boolean showingProjects;
   private CloudResourceManager cloudResourceManagerClient;
 
   GoogleUserModelItem(@NotNull CredentialedUser user, @NotNull DefaultTreeModel treeModel) {
+    this(user, treeModel, ProjectCatalogCache.getInstance());
+  }
+
+  @VisibleForTesting
+  GoogleUserModelItem(@NotNull CredentialedUser user, @NotNull DefaultTreeModel treeModel,
+      @NotNull ProjectCatalogCache catalog) {
     this.user = user;
     this.treeModel = treeModel;
-    setNeedsSynchronizing();
+    this.catalog = catalog;
+    needsSynchronizing = true;
+    List<Project> cached = user.getEmail() != null ? catalog.getFromMemory(user.getEmail()) : null;
+    if (cached != null) {
+      applyProjects(cached);
+    } else {
+      showLoading();
+    }
 
     cloudResourceManagerClient = new CloudResourceManager.Builder(
         new NetHttpTransport(), new JacksonFactory(), user.getCredential())
@@ -91,10 +122,18 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
 
   // This method "dirties" the node, indicating that it needs another call to resource manager to
   // get its projects. The call may not happen immediately if the google login is collapsed in the
-  // tree view.
+  // tree view. It is called on explicit refreshes and login changes, so the cached project catalog
+  // of the user is dropped too.
   public void setNeedsSynchronizing() {
     needsSynchronizing = true;
+    if (user.getEmail() != null) {
+      catalog.invalidate(user.getEmail());
+    }
+    showLoading();
+  }
 
+  private void showLoading() {
+    showingProjects = false;
     removeAllChildren();
     add(new ResourceLoadingModelItem());
     treeModel.reload(this);
@@ -132,6 +171,7 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
     SwingUtilities.invokeLater(new Runnable() {
       @Override
       public void run() {
+        showingProjects = false;
         GoogleUserModelItem.this.removeAllChildren();
         GoogleUserModelItem.this.add(new ResourceErrorModelItem("Error: " + errorMessage));
         treeModel.reload(GoogleUserModelItem.this);
@@ -140,38 +180,48 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
   }
 
   private void loadUserProjects() {
-    final List<DefaultMutableTreeNode> result = new ArrayList<DefaultMutableTreeNode>();
-
-    try {
-
-      ListProjectsResponse response = cloudResourceManagerClient.projects().list()
-          .setPageSize(PROJECTS_MAX_PAGE_SIZE).execute();
-
-      if (response != null && response.getProjects() != null) {
-        // Sorts the projects list by project ID.
-        Set<Project> allProjects = new TreeSet<Project>(new Comparator<Project>() {
+    String email = user.getEmail();
+    if (!showingProjects && email != null) {
+      final List<Project> cached = catalog.get(email);
+      if (cached != null) {
+        SwingUtilities.invokeLater(new Runnable() {
           @Override
-          public int compare(Project p1, Project p2) {
-            return p1.getName().toLowerCase().compareTo(p2.getName().toLowerCase());
+          public void run() {
+            applyProjects(cached);
           }
         });
-        allProjects.addAll(response.getProjects());
-        while (!Strings.isNullOrEmpty(response.getNextPageToken())) {
-          response = cloudResourceManagerClient.projects().list()
-              .setPageToken(response.getNextPageToken())
-              .setPageSize(PROJECTS_MAX_PAGE_SIZE)
-              .execute();
-          allProjects.addAll(response.getProjects());
+      }
+    }
+
+    // Each page is merged into the tree as soon as it arrives; the projects that are gone are
+    // removed once the last page is in.
+    List<Project> allProjects = new ArrayList<Project>();
+    final Set<String> fetchedIds = new HashSet<String>();
+    try {
+      ListProjectsResponse response = listProjects(null);
+      while (response != null && response.getProjects() != null) {
+        final List<Project> page = sortProjects(response.getProjects());
+        allProjects.addAll(page);
+        for (Project project : page) {
+          fetchedIds.add(project.getProjectId());
         }
-        for (Project pantheonProject : allProjects) {
-          if (!Strings.isNullOrEmpty(pantheonProject.getProjectId())) {
-            result.add(new ResourceProjectModelItem(pantheonProject.getName(),
-                pantheonProject.getProjectId(),
-                pantheonProject.getProjectNumber()));
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            mergeProjects(page);
           }
+        });
+        if (Strings.isNullOrEmpty(response.getNextPageToken())) {
+          break;
         }
+        response = listProjects(response.getNextPageToken());
       }
     } catch (IOException ex) {
+      if (showingProjects) {
+        // Keep showing the cached or partial list rather than replacing it with the error.
+        LOG.info("could not refresh projects for " + user.getName(), ex);
+        return;
+      }
       // https://github.com/GoogleCloudPlatform/gcloud-intellij/issues/323
       loadErrorState(GctBundle.getString("clouddebug.couldnotconnect"));
       return;
@@ -180,21 +230,16 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
       loadErrorState(ex.getMessage());
       return;
     }
-
-    result.add(new ResourceNewProjectModelItem());
+    catalog.put(user, sortProjects(allProjects));
 
     try {
       // We invoke back to the UI thread to update the model and treeview.
       SwingUtilities.invokeAndWait(new Runnable() {
         @Override
         public void run() {
-          GoogleUserModelItem.this.removeAllChildren();
-
-          for (DefaultMutableTreeNode item : result) {
-            GoogleUserModelItem.this.add(item);
-          }
-
-          treeModel.reload(GoogleUserModelItem.this);
+          // Shows the list even if the user has no project at all.
+          mergeProjects(Collections.<Project>emptyList());
+          removeProjectsExcept(fetchedIds);
         }
       });
     } catch (InterruptedException ex) {
@@ -206,4 +251,214 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
       loadErrorState(ex.getMessage());
     }
   }
+
+  private ListProjectsResponse listProjects(@Nullable String pageToken) throws IOException {
+    return cloudResourceManagerClient.projects().list()
+        .setPageToken(pageToken)
+        .setPageSize(PROJECTS_MAX_PAGE_SIZE)
+        .execute();
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static List<Project> sortProjects(@NotNull Collection<Project> projects) {
+    Set<Project> sorted = new TreeSet<Project>(new Comparator<Project>() {
+      @Override
+      public int compare(Project p1, Project p2) {
+        return compareProjects(p1.getName(), p1.getProjectId(), p2.getName(),
+            p2.getProjectId());
+      }
+    });
+    for (Project project : projects) {
+      if (!Strings.isNullOrEmpty(project.getProjectId())) {
+        sorted.add(project);
+      }
+    }
+    return new ArrayList<Project>(sorted);
+  }
+
+  // Sorts projects by name, then by project ID.
+  private static int compareProjects(@Nullable String name1, @Nullable String id1,
+      @Nullable String name2, @Nullable String id2) {
+    int byName = Strings.nullToEmpty(name1).toLowerCase()
+        .compareTo(Strings.nullToEmpty(name2).toLowerCase());
+    return byName != 0 ? byName : Strings.nullToEmpty(id1).compareTo(Strings.nullToEmpty(id2));
+  }
+
+  /**
+   * Shows exactly the given projects. If a project list is already shown, only the differences
+   * are applied. Must be called on the event dispatch thread.
+   */
+  @VisibleForTesting
+  void applyProjects(@NotNull List<Project> projects) {
+    Set<String> ids = new HashSet<String>();
+    for (Project project : projects) {
+      ids.add(project.getProjectId());
+    }
+    removeProjectsExcept(ids);
+    mergeProjects(projects);
+  }
+
+  /**
+   * Adds the given projects to the shown list at their sorted positions, or updates them if they
+   * are already shown, replacing the loading or error item on the first call. All the new rows of
+   * one call are reported with a single {@link DefaultTreeModel#nodesWereInserted} event, so the
+   * tree keeps its expansion, selection and scroll position. Must be called on the event dispatch
+   * thread.
+   */
+  @VisibleForTesting
+  void mergeProjects(@NotNull List<Project> projects) {
+    if (!showingProjects) {
+      removeChildren(0, getChildCount());
+      add(new ResourceNewProjectModelItem());
+      treeModel.nodesWereInserted(this, new int[]{0});
+      showingProjects = true;
+    }
+
+    // Shown projects are updated first, so that each event matches the children at that time;
+    // the new rows are then inserted and announced together.
+    Map<String, ResourceProjectModelItem> currentItems = getProjectItems();
+    List<ResourceProjectModelItem> inserted = new ArrayList<ResourceProjectModelItem>();
+    for (Project project : projects) {
+      ResourceProjectModelItem item = currentItems.get(project.getProjectId());
+      if (item == null) {
+        inserted.add(new ResourceProjectModelItem(project.getName(), project.getProjectId(),
+            project.getProjectNumber()));
+        continue;
+      }
+      int index = getIndex(item);
+      boolean renamed = !Objects.equals(item.getDescription(), project.getName());
+      if (!updateItem(item, project)) {
+        continue;
+      }
+      if (renamed) {
+        // A renamed project moves if its sorted position changed.
+        remove(index);
+        if (findInsertionIndex(item) != index) {
+          treeModel.nodesWereRemoved(this, new int[]{index}, new Object[]{item});
+          inserted.add(item);
+          continue;
+        }
+        insert(item, index);
+      }
+      treeModel.nodeChanged(item);
+    }
+
+    if (!inserted.isEmpty()) {
+      for (ResourceProjectModelItem item : inserted) {
+        insert(item, findInsertionIndex(item));
+      }
+      int[] indices = new int[inserted.size()];
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = getIndex(inserted.get(i));
+      }
+      Arrays.sort(indices);
+      treeModel.nodesWereInserted(this, indices);
+    }
+  }
+
+  /**
+   * Removes the shown projects whose id is not in the given set, with a single
+   * {@link DefaultTreeModel#nodesWereRemoved} event. Must be called on the event dispatch thread.
+   */
+  @VisibleForTesting
+  void removeProjectsExcept(@NotNull Set<String> projectIds) {
+    List<Integer> indices = new ArrayList<Integer>();
+    for (int i = 0; i < getChildCount(); i++) {
+      TreeNode child = getChildAt(i);
+      if (child instanceof ResourceProjectModelItem
+          && !projectIds.contains(((ResourceProjectModelItem) child).getProjectId())) {
+        indices.add(i);
+      }
+    }
+    if (indices.isEmpty()) {
+      return;
+    }
+    int[] removedIndices = new int[indices.size()];
+    Object[] removedChildren = new Object[indices.size()];
+    for (int i = 0; i < removedIndices.length; i++) {
+      removedIndices[i] = indices.get(i);
+      removedChildren[i] = getChildAt(indices.get(i));
+    }
+    for (int i = removedIndices.length - 1; i >= 0; i--) {
+      remove(removedIndices[i]);
+    }
+    treeModel.nodesWereRemoved(this, removedIndices, removedChildren);
+  }
+
+  private void removeChildren(int from, int to) {
+    if (from >= to) {
+      return;
+    }
+    int[] indices = new int[to - from];
+    Object[] children = new Object[to - from];
+    for (int i = from; i < to; i++) {
+      indices[i - from] = i;
+      children[i - from] = getChildAt(i);
+    }
+    for (int i = to - 1; i >= from; i--) {
+      remove(i);
+    }
+    treeModel.nodesWereRemoved(this, indices, children);
+  }
+
+  @NotNull
+  private Map<String, ResourceProjectModelItem> getProjectItems() {
+    Map<String, ResourceProjectModelItem> items = new HashMap<String, ResourceProjectModelItem>();
+    for (int i = 0; i < getChildCount(); i++) {
+      if (getChildAt(i) instanceof ResourceProjectModelItem) {
+        ResourceProjectModelItem item = (ResourceProjectModelItem) getChildAt(i);
+        items.put(item.getProjectId(), item);
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Returns where the item goes among the project children, which are sorted and come before the
+   * "new project" item.
+   */
+  private int findInsertionIndex(@NotNull ResourceProjectModelItem item) {
+    int low = 0;
+    int high = getChildCount();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      TreeNode child = getChildAt(mid);
+      if (child instanceof ResourceProjectModelItem
+          && compareProjects(((ResourceProjectModelItem) child).getDescription(),
+              ((ResourceProjectModelItem) child).getProjectId(), item.getDescription(),
+              item.getProjectId()) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static boolean updateItem(@NotNull ResourceProjectModelItem item,
+      @NotNull Project project) {
+    if (Objects.equals(item.getDescription(), project.getName())
+        && Objects.equals(item.getNumber(), project.getProjectNumber())) {
+      return false;
+    }
+    item.setDescription(project.getName());
+    item.setNumber(project.getProjectNumber());
+    return true;
+  }
+
+  @Nullable
+  @VisibleForTesting
+  List<String> getShownProjectIds() {
+    if (!showingProjects) {
+      return null;
+    }
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < getChildCount(); i++) {
+      if (getChildAt(i) instanceof ResourceProjectModelItem) {
+        ids.add(((ResourceProjectModelItem) getChildAt(i)).getProjectId());
+      }
+    }
+    return ids;
+  }
 }
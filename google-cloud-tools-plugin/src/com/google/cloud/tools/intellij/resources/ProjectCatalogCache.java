@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.resources;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.cloudresourcemanager.model.ListProjectsResponse;
+import com.google.api.services.cloudresourcemanager.model.Project;
+import com.google.cloud.tools.intellij.login.CredentialedUser;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gdt.eclipse.login.common.GoogleLoginState;
+import com.google.gdt.eclipse.login.common.LoginListener;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the last project list of each account, in memory and in a JSON file per account under the
+ * IDE system directory, so the project selector can show it right away while the list is fetched
+ * again.
+ * <p/>
+ * Only the name, id and number of each project are kept. The catalog of an account is dropped
+ * when the user asks for a refresh and when the account logs out.
+ */
+class ProjectCatalogCache {
+
+  private static final Logger LOG = Logger.getInstance(ProjectCatalogCache.class);
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final String FILE_SUFFIX = ".json";
+
+  private final Map<String, List<Project>> memory = new ConcurrentHashMap<String, List<Project>>();
+  // Accounts whose login state is watched, so that logging out drops their catalog.
+  private final Set<String> watchedEmails =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  @Nullable
+  private final File diskRoot;
+
+  @VisibleForTesting
+  ProjectCatalogCache(@Nullable File diskRoot) {
+    this.diskRoot = diskRoot;
+  }
+
+  @NotNull
+  static ProjectCatalogCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Returns the catalog of the account if it is in memory, without touching the disk. Safe to call
+   * on the event dispatch thread.
+   */
+  @Nullable
+  List<Project> getFromMemory(@NotNull String email) {
+    return memory.get(email);
+  }
+
+  /**
+   * Returns the catalog of the account, reading it from disk if it is not in memory, or null if
+   * there is none.
+   */
+  @Nullable
+  List<Project> get(@NotNull String email) {
+    List<Project> projects = memory.get(email);
+    if (projects != null) {
+      return projects;
+    }
+    File file = getFile(email);
+    if (file == null || !file.isFile()) {
+      return null;
+    }
+    try {
+      ListProjectsResponse stored =
+          JSON_FACTORY.fromString(FileUtil.loadFile(file, "UTF-8"), ListProjectsResponse.class);
+      projects = stored.getProjects() != null
+          ? Collections.unmodifiableList(stored.getProjects())
+          : Collections.<Project>emptyList();
+      memory.put(email, projects);
+      return projects;
+    } catch (IOException ex) {
+      LOG.warn("could not read the project catalog " + file, ex);
+      FileUtil.delete(file);
+      return null;
+    } catch (IllegalArgumentException ex) {
+      LOG.warn("could not parse the project catalog " + file, ex);
+      FileUtil.delete(file);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the project list of the user, replacing the previous one.
+   */
+  void put(@NotNull CredentialedUser user, @NotNull List<Project> projects) {
+    String email = user.getEmail();
+    if (email == null) {
+      return;
+    }
+    watchLogout(user);
+
+    List<Project> trimmed = new ArrayList<Project>(projects.size());
+    for (Project project : projects) {
+      trimmed.add(new Project().setName(project.getName()).setProjectId(project.getProjectId())
+          .setProjectNumber(project.getProjectNumber()));
+    }
+    memory.put(email, Collections.unmodifiableList(trimmed));
+
+    File file = getFile(email);
+    if (file == null) {
+      return;
+    }
+    try {
+      File temp = new File(file.getPath() + ".tmp");
+      FileUtil.writeToFile(temp,
+          JSON_FACTORY.toString(new ListProjectsResponse().setProjects(trimmed)));
+      FileUtil.rename(temp, file);
+    } catch (IOException ex) {
+      LOG.warn("could not write the project catalog " + file, ex);
+      FileUtil.delete(file);
+    }
+  }
+
+  /**
+   * Drops the catalog of the account from memory and disk.
+   */
+  void invalidate(@NotNull String email) {
+    memory.remove(email);
+    File file = getFile(email);
+    if (file != null) {
+      FileUtil.delete(file);
+    }
+  }
+
+  private void watchLogout(@NotNull CredentialedUser user) {
+    final String email = user.getEmail();
+    GoogleLoginState loginState = user.getGoogleLoginState();
+    if (loginState == null || !watchedEmails.add(email)) {
+      return;
+    }
+    loginState.addLoginListener(new LoginListener() {
+      @Override
+      public void statusChanged(boolean login) {
+        if (!login) {
+          invalidate(email);
+        }
+      }
+    });
+  }
+
+  @Nullable
+  private File getFile(@NotNull String email) {
+    if (diskRoot == null) {
+      return null;
+    }
+    try {
+      return new File(diskRoot, URLEncoder.encode(email, "UTF-8") + FILE_SUFFIX);
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static final class InstanceHolder {
+
+    static final ProjectCatalogCache INSTANCE = new ProjectCatalogCache(
+        new File(PathManager.getSystemPath(), "cloud-tools/projects"));
+  }
+}
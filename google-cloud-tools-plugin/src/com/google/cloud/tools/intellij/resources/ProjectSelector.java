@@ -29,8 +29,10 @@ import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 import com.intellij.openapi.ui.popup.ComponentPopupBuilder;
 import com.intellij.openapi.ui.popup.JBPopup;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.containers.Convertor;
 import com.intellij.util.ui.UIUtil;
 
 import org.jetbrains.annotations.Nullable;
@@ -111,6 +113,9 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
 
       @Override
       public void treeNodesInserted(TreeModelEvent event) {
+        // Pages of projects are inserted as they arrive, so the current project may only show up
+        // in a later page.
+        selectLoadedProject(event, true);
       }
 
       @Override
@@ -119,20 +124,7 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
 
       @Override
       public void treeStructureChanged(TreeModelEvent event) {
-        if (!Strings.isNullOrEmpty(getText())
-            && popup != null && !popup.isDisposed() && popupPanel != null
-            && event.getTreePath() != null
-            && event.getTreePath().getLastPathComponent() instanceof GoogleUserModelItem) {
-          GoogleUserModelItem userItem = (GoogleUserModelItem) event.getTreePath()
-              .getLastPathComponent();
-          for (int index = 0; index < userItem.getChildCount(); index++) {
-            DefaultMutableTreeNode loadedItem = (DefaultMutableTreeNode) userItem.getChildAt(index);
-            if (loadedItem instanceof ResourceProjectModelItem
-                && getText().equals(((ResourceProjectModelItem) loadedItem).getProjectId())) {
-              popupPanel.tree.setSelectionPath(new TreePath(loadedItem.getPath()));
-            }
-          }
-        }
+        selectLoadedProject(event, false);
       }
     });
 
@@ -180,6 +172,44 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
     });
   }
 
+  /**
+   * Selects the project named by the text among the loaded children of the user node the event is
+   * about. For an insertion only the inserted children are looked at, and only while the tree has
+   * no selection, so a page that arrives later neither rescans the user's projects nor moves a
+   * selection the user made.
+   */
+  private void selectLoadedProject(TreeModelEvent event, boolean inserted) {
+    if (Strings.isNullOrEmpty(getText())
+        || popup == null || popup.isDisposed() || popupPanel == null
+        || event.getTreePath() == null
+        || !(event.getTreePath().getLastPathComponent() instanceof GoogleUserModelItem)) {
+      return;
+    }
+    GoogleUserModelItem userItem = (GoogleUserModelItem) event.getTreePath()
+        .getLastPathComponent();
+    if (!inserted) {
+      for (int index = 0; index < userItem.getChildCount(); index++) {
+        selectIfCurrentProject(userItem.getChildAt(index));
+      }
+    } else if (popupPanel.tree.isSelectionEmpty() && event.getChildIndices() != null) {
+      for (int index : event.getChildIndices()) {
+        if (index < userItem.getChildCount()
+            && selectIfCurrentProject(userItem.getChildAt(index))) {
+          return;
+        }
+      }
+    }
+  }
+
+  private boolean selectIfCurrentProject(TreeNode node) {
+    if (node instanceof ResourceProjectModelItem
+        && getText().equals(((ResourceProjectModelItem) node).getProjectId())) {
+      popupPanel.tree.setSelectionPath(new TreePath(((ResourceProjectModelItem) node).getPath()));
+      return true;
+    }
+    return false;
+  }
+
   public void addModelListener(TreeModelListener listener) {
     treeModel.addTreeModelListener(listener);
   }
@@ -417,6 +447,18 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
       this.getContentPane()
           .setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
       this.getContentPane().setViewportView(tree);
+      // Projects can be found by name or id while later pages are still loading.
+      new TreeSpeedSearch(tree, new Convertor<TreePath, String>() {
+        @Override
+        public String convert(TreePath path) {
+          Object node = path.getLastPathComponent();
+          if (node instanceof ResourceProjectModelItem) {
+            ResourceProjectModelItem item = (ResourceProjectModelItem) node;
+            return Strings.nullToEmpty(item.getDescription()) + " " + item.getProjectId();
+          }
+          return "";
+        }
+      });
       tree.addTreeSelectionListener(new TreeSelectionListener() {
         @Override
         public void valueChanged(TreeSelectionEvent event) {
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import org.junit.Assume;
+
+import java.util.logging.Logger;
+
+/**
+ * Support for the benchmark tests of this package. Benchmarks are skipped unless the
+ * {@value #PROPERTY} system property is set to true, and report their numbers through the log.
+ */
+final class Benchmarks {
+
+  static final String PROPERTY = "gct.debugger.benchmarks";
+
+  private static final Logger LOG = Logger.getLogger(Benchmarks.class.getName());
+
+  private Benchmarks() {
+  }
+
+  /**
+   * Skips the calling test unless benchmarks are enabled.
+   */
+  static void assumeEnabled() {
+    Assume.assumeTrue(Boolean.getBoolean(PROPERTY));
+  }
+
+  static void report(String name, String format, Object... args) {
+    LOG.info(name + ": " + String.format(format, args));
+  }
+}
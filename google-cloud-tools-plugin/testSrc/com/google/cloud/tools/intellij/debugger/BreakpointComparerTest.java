@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class BreakpointComparerTest {
+
+  @Test
+  public void testSort_pendingBeforeFinalNewestFirst() {
+    List<BreakpointRecord> breakpoints = new ArrayList<BreakpointRecord>(Arrays.asList(
+        snapshot("old", "2016-08-22T05:23:34.123Z"),
+        pending("noLocation", null, null),
+        snapshot("new", "2016-08-22T06:00:00.000Z"),
+        pending("b10", "b.java", 10),
+        pending("a20", "a.java", 20),
+        pending("a5", "a.java", 5)));
+
+    BreakpointComparer.sort(breakpoints);
+
+    assertEquals(Arrays.asList("a5", "a20", "b10", "noLocation", "new", "old"), ids(breakpoints));
+  }
+
+  @Test
+  public void testSort_parsesFractionsAndOffsets() {
+    List<BreakpointRecord> breakpoints = new ArrayList<BreakpointRecord>(Arrays.asList(
+        snapshot("utc", "2016-08-22T05:00:00.000Z"),
+        snapshot("offset", "2016-08-22T05:30:00.000+01:00"),
+        snapshot("nanos", "2016-08-22T05:00:00.000000001Z")));
+
+    BreakpointComparer.sort(breakpoints);
+
+    // 05:30+01:00 is 04:30Z, so it is the oldest. Extra fraction digits are truncated to millis.
+    assertEquals(Arrays.asList("utc", "nanos", "offset"), ids(breakpoints));
+  }
+
+  /**
+   * Reports how long {@link BreakpointComparer#sort} takes on a large list of records. Skipped
+   * unless {@link Benchmarks#PROPERTY} is set.
+   */
+  @Test
+  public void testSort_benchmark() {
+    Benchmarks.assumeEnabled();
+    List<BreakpointRecord> breakpoints = randomBreakpoints(10000);
+
+    int rounds = 20;
+    for (int warmup = 0; warmup < rounds; warmup++) {
+      shuffleAndSort(breakpoints, warmup);
+    }
+    long sortNanos = 0;
+    for (int round = 0; round < rounds; round++) {
+      sortNanos += shuffleAndSort(breakpoints, round);
+    }
+    Benchmarks.report("BreakpointComparer", "%d breakpoints: sort %.1f ms",
+        breakpoints.size(), sortNanos / 1e6 / rounds);
+  }
+
+  private static long shuffleAndSort(List<BreakpointRecord> breakpoints, int seed) {
+    List<BreakpointRecord> shuffled = new ArrayList<BreakpointRecord>(breakpoints);
+    Collections.shuffle(shuffled, new Random(seed));
+
+    long start = System.nanoTime();
+    BreakpointComparer.sort(shuffled);
+    return System.nanoTime() - start;
+  }
+
+  private static List<BreakpointRecord> randomBreakpoints(int count) {
+    Random random = new Random(42);
+    List<BreakpointRecord> breakpoints = new ArrayList<BreakpointRecord>();
+    for (int i = 0; i < count; i++) {
+      if (random.nextBoolean()) {
+        breakpoints.add(pending("p" + i, "file" + random.nextInt(20) + ".java",
+            1 + random.nextInt(500)));
+      } else {
+        breakpoints.add(snapshot("s" + i,
+            String.format("2016-08-%02dT%02d:%02d:%02d.%03dZ", 1 + random.nextInt(28),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000))));
+      }
+    }
+    return breakpoints;
+  }
+
+  private static BreakpointRecord pending(String id, String path, Integer line) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    if (path != null) {
+      breakpoint.setLocation(new SourceLocation().setPath(path).setLine(line));
+    }
+    return BreakpointRecord.of(breakpoint);
+  }
+
+  private static BreakpointRecord snapshot(String id, String finalTime) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    breakpoint.setIsFinalState(true);
+    breakpoint.setFinalTime(finalTime);
+    return BreakpointRecord.of(breakpoint);
+  }
+
+  private static List<String> ids(List<BreakpointRecord> breakpoints) {
+    List<String> ids = new ArrayList<String>();
+    for (BreakpointRecord breakpoint : breakpoints) {
+      ids.add(breakpoint.getId());
+    }
+    return ids;
+  }
+}
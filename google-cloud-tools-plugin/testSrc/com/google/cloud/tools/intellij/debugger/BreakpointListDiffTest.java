@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.FormatMessage;
+import com.google.api.services.clouddebugger.v2.model.StatusMessage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BreakpointListDiffTest {
+
+  @Test
+  public void testCompute_identicalListsAreEmpty() {
+    List<BreakpointRecord> list = records(breakpoint("a", false), breakpoint("b", true));
+
+    BreakpointListDiff diff = BreakpointListDiff.compute(list,
+        records(breakpoint("a", false), breakpoint("b", true)));
+
+    assertTrue(diff.isEmpty());
+  }
+
+  @Test
+  public void testCompute_detectsAddedAndRemoved() {
+    BreakpointListDiff diff = BreakpointListDiff.compute(
+        records(breakpoint("a", false), breakpoint("b", false)),
+        records(breakpoint("b", false), breakpoint("c", false)));
+
+    assertEquals(Collections.singletonList("c"), ids(diff.getAdded()));
+    assertEquals(Collections.singletonList("a"), ids(diff.getRemoved()));
+    assertTrue(diff.getBecameFinal().isEmpty());
+    assertEquals(Collections.singletonList("c"), ids(diff.getAddedOrChanged()));
+  }
+
+  @Test
+  public void testCompute_detectsBecameFinal() {
+    BreakpointListDiff diff = BreakpointListDiff.compute(
+        records(breakpoint("a", false), breakpoint("b", true)),
+        records(breakpoint("a", true), breakpoint("b", true), breakpoint("c", true)));
+
+    assertEquals(Arrays.asList("a", "c"), ids(diff.getBecameFinal()));
+    assertEquals(Collections.singletonList("c"), ids(diff.getAdded()));
+    assertEquals(Arrays.asList("a", "c"), ids(diff.getAddedOrChanged()));
+  }
+
+  @Test
+  public void testCompute_detectsStatusChanged() {
+    Breakpoint withError = breakpoint("a", false);
+    withError.setStatus(errorStatus("bad line"));
+
+    BreakpointListDiff diff = BreakpointListDiff.compute(
+        records(breakpoint("a", false)),
+        records(withError));
+
+    assertEquals(Collections.singletonList("a"), ids(diff.getStatusChanged()));
+    assertTrue(diff.getAdded().isEmpty());
+  }
+
+  @Test
+  public void testCompute_handlesNullLists() {
+    assertTrue(BreakpointListDiff.compute(null, null).isEmpty());
+    assertEquals(Collections.singletonList("a"),
+        ids(BreakpointListDiff.compute(null,
+            records(breakpoint("a", false))).getAdded()));
+  }
+
+  private static Breakpoint breakpoint(String id, boolean isFinal) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    breakpoint.setIsFinalState(isFinal);
+    return breakpoint;
+  }
+
+  private static List<BreakpointRecord> records(Breakpoint... breakpoints) {
+    return BreakpointRecord.fromList(Arrays.asList(breakpoints));
+  }
+
+  private static StatusMessage errorStatus(String format) {
+    FormatMessage message = new FormatMessage();
+    message.setFormat(format);
+    StatusMessage status = new StatusMessage();
+    status.setIsError(Boolean.TRUE);
+    status.setDescription(message);
+    return status;
+  }
+
+  private static List<String> ids(List<BreakpointRecord> breakpoints) {
+    String[] ids = new String[breakpoints.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = breakpoints.get(i).getId();
+    }
+    return Arrays.asList(ids);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees.Breakpoints;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class BreakpointMutationQueueTest extends BasePluginTestCase {
+
+  private static final String DEBUGGEE_ID = "debuggee";
+
+  private final List<Runnable> queued = new ArrayList<Runnable>();
+  private final List<String> failedIds = new ArrayList<String>();
+  private Breakpoints breakpoints;
+  private Debugger client;
+  private BreakpointMutationQueue queue;
+  private int completions;
+  private int succeededCount;
+
+  @Before
+  public void setUp() throws IOException {
+    registerService(CloudToolsPluginInfoService.class, mock(CloudToolsPluginInfoService.class));
+    breakpoints = mock(Breakpoints.class);
+    Debuggees debuggees = mock(Debuggees.class);
+    when(debuggees.breakpoints()).thenReturn(breakpoints);
+    client = mock(Debugger.class);
+    when(client.debuggees()).thenReturn(debuggees);
+    Breakpoints.Delete delete = mock(Breakpoints.Delete.class);
+    when(delete.setClientVersion(anyString())).thenReturn(delete);
+    when(breakpoints.delete(eq(DEBUGGEE_ID), anyString())).thenReturn(delete);
+    Breakpoints.Delete failingDelete = mock(Breakpoints.Delete.class);
+    when(failingDelete.setClientVersion(anyString())).thenReturn(failingDelete);
+    when(failingDelete.execute()).thenThrow(new IOException());
+    when(breakpoints.delete(DEBUGGEE_ID, "bad")).thenReturn(failingDelete);
+
+    queue = new BreakpointMutationQueue(new Executor() {
+      @Override
+      public void execute(@NotNull Runnable command) {
+        queued.add(command);
+      }
+    });
+  }
+
+  @Test
+  public void testDelete_reportsAggregateCompletion() throws IOException {
+    queue.delete(client, DEBUGGEE_ID, Arrays.asList("a", "b", "bad"), new Handler());
+
+    assertEquals(3, queued.size());
+    runQueued();
+
+    assertEquals(1, completions);
+    assertEquals(2, succeededCount);
+    assertEquals(Collections.singletonList("bad"), failedIds);
+  }
+
+  @Test
+  public void testDelete_coalescesPendingDeletesOfSameBreakpoint() throws IOException {
+    queue.delete(client, DEBUGGEE_ID, Arrays.asList("a", "a"), new Handler());
+    queue.delete(client, DEBUGGEE_ID, Collections.singletonList("a"), new Handler());
+
+    assertEquals(1, queued.size());
+    assertTrue(queue.isDeletePending("a"));
+    runQueued();
+
+    verify(breakpoints, times(1)).delete(DEBUGGEE_ID, "a");
+    assertFalse(queue.isDeletePending("a"));
+    assertEquals(2, completions);
+  }
+
+  @Test
+  public void testDelete_emptyBatchCompletesImmediately() {
+    queue.delete(client, DEBUGGEE_ID, Collections.<String>emptyList(), new Handler());
+
+    assertTrue(queued.isEmpty());
+    assertEquals(1, completions);
+  }
+
+  private void runQueued() {
+    List<Runnable> toRun = new ArrayList<Runnable>(queued);
+    queued.clear();
+    for (Runnable runnable : toRun) {
+      runnable.run();
+    }
+  }
+
+  private class Handler implements BreakpointMutationQueue.CompletionHandler {
+
+    @Override
+    public void onComplete(int succeeded, @NotNull List<String> failed) {
+      completions++;
+      succeededCount += succeeded;
+      failedIds.addAll(failed);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.FormatMessage;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.api.services.clouddebugger.v2.model.StatusMessage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BreakpointRecordTest {
+
+  @Test
+  public void testOf_pendingBreakpoint() {
+    Breakpoint breakpoint = new Breakpoint().setId("a").setCondition("x > 1")
+        .setCreateTime("2015-07-23T16:37:33.000Z").setExpressions(Arrays.asList("x", "y"))
+        .setLocation(new SourceLocation().setPath("com/example/Foo.java").setLine(12));
+
+    BreakpointRecord record = BreakpointRecord.of(breakpoint);
+
+    assertEquals("a", record.getId());
+    assertEquals(BreakpointRecord.State.PENDING, record.getState());
+    assertFalse(record.isFinal());
+    assertEquals("com/example/Foo.java", record.getPath());
+    assertEquals("Foo.java", record.getFileName());
+    assertEquals(12, record.getLine());
+    assertEquals("x > 1", record.getCondition());
+    assertEquals(Arrays.asList("x", "y"), record.getExpressions());
+    assertEquals(1437669453000L, record.getCreateTimeMillis());
+    assertEquals(Long.MIN_VALUE, record.getFinalTimeMillis());
+    assertNull(record.getErrorMessage());
+  }
+
+  @Test
+  public void testOf_finalBreakpoint() {
+    BreakpointRecord record = BreakpointRecord.of(new Breakpoint().setId("a")
+        .setIsFinalState(true).setFinalTime("2015-07-23T16:37:34.000Z"));
+
+    assertEquals(BreakpointRecord.State.FINAL, record.getState());
+    assertTrue(record.isFinal());
+    assertEquals(1437669454000L, record.getFinalTimeMillis());
+    assertNull(record.getFileName());
+    assertEquals(0, record.getLine());
+  }
+
+  @Test
+  public void testOf_errorBreakpoint() {
+    BreakpointRecord record = BreakpointRecord.of(new Breakpoint().setId("a")
+        .setIsFinalState(true).setStatus(new StatusMessage().setIsError(true)
+            .setDescription(new FormatMessage().setFormat("No code found at line $0")
+                .setParameters(Arrays.asList("12")))));
+
+    assertEquals(BreakpointRecord.State.ERROR, record.getState());
+    assertTrue(record.isFinal());
+    assertEquals("No code found at line 12", record.getErrorMessage());
+  }
+
+  @Test
+  public void testFromList_sharesPathsOfTheSameFileWithoutChangingTheBreakpoints() {
+    String path = new String("a/Foo.java");
+    Breakpoint second = new Breakpoint().setLocation(new SourceLocation().setPath(path));
+    List<BreakpointRecord> records = BreakpointRecord.fromList(Arrays.asList(
+        new Breakpoint().setLocation(new SourceLocation().setPath(new String("a/Foo.java"))),
+        second));
+
+    assertEquals(2, records.size());
+    assertSame(records.get(0).getPath(), records.get(1).getPath());
+    assertSame(records.get(0).getFileName(), records.get(1).getFileName());
+    assertSame(path, second.getLocation().getPath());
+  }
+
+  @Test
+  public void testToBreakpoint_keepsWhatIsNeededToSetItAgain() {
+    Breakpoint breakpoint = BreakpointRecord.of(new Breakpoint().setId("a").setCondition("x > 1")
+        .setExpressions(Arrays.asList("x"))
+        .setLocation(new SourceLocation().setPath("com/example/Foo.java").setLine(12)))
+        .toBreakpoint();
+
+    assertEquals("a", breakpoint.getId());
+    assertFalse(breakpoint.getIsFinalState());
+    assertEquals("com/example/Foo.java", breakpoint.getLocation().getPath());
+    assertEquals(Integer.valueOf(12), breakpoint.getLocation().getLine());
+    assertEquals("x > 1", breakpoint.getCondition());
+    assertEquals(Arrays.asList("x"), breakpoint.getExpressions());
+  }
+
+  @Test
+  public void testEquals_comparesValues() {
+    Breakpoint breakpoint = new Breakpoint().setId("a")
+        .setLocation(new SourceLocation().setPath("a/Foo.java").setLine(3));
+
+    assertEquals(BreakpointRecord.of(breakpoint), BreakpointRecord.of(breakpoint.clone()));
+    assertEquals(BreakpointRecord.of(breakpoint).hashCode(),
+        BreakpointRecord.of(breakpoint.clone()).hashCode());
+    assertFalse(BreakpointRecord.of(breakpoint)
+        .equals(BreakpointRecord.of(breakpoint.clone().setIsFinalState(true))));
+  }
+
+  @Test
+  public void testFromList_null() {
+    assertTrue(BreakpointRecord.fromList(null).isEmpty());
+  }
+}
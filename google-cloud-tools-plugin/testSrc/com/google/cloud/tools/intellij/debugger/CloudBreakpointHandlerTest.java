@@ -47,7 +47,6 @@ import com.intellij.testFramework.IdeaTestCase;
 import com.intellij.testFramework.UsefulTestCase;
 import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
 import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
-import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XDebuggerManager;
 import com.intellij.xdebugger.XExpression;
@@ -113,8 +112,14 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
     when(process.getXDebugSession()).thenReturn(session);
     CloudDebugProcessState processState = mock(CloudDebugProcessState.class);
     existingBreakpoints = new ArrayList<Breakpoint>();
-    when(processState.getCurrentServerBreakpointList()).thenReturn(
-      ContainerUtil.immutableList(existingBreakpoints));
+    when(processState.getCurrentBreakpointRecords()).thenAnswer(
+        new Answer<com.intellij.util.containers.ImmutableList<BreakpointRecord>>() {
+          @Override
+          public com.intellij.util.containers.ImmutableList<BreakpointRecord> answer(
+              InvocationOnMock invocation) {
+            return BreakpointRecord.fromList(existingBreakpoints);
+          }
+        });
     when(process.getProcessState()).thenReturn(processState);
 
     stateController = mock(CloudDebugProcessStateController.class);
@@ -209,9 +214,9 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
 
     addedBp.get().setId("b_id");
 
-    XBreakpoint xideBreakpoint = handler.getXBreakpoint(addedBp.get());
+    XBreakpoint xideBreakpoint = handler.getXBreakpoint(BreakpointRecord.of(addedBp.get()));
     assertNotNull(xideBreakpoint);
-    handler.deleteBreakpoint(addedBp.get());
+    handler.deleteBreakpoint(BreakpointRecord.of(addedBp.get()));
 
     assertNotNull(removedBp.get());
     assertTrue(removedBp.get() == addedBp.get().getId());
@@ -258,7 +263,7 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
   public void testRegisterRegisteredButDisabledBreakpoint() {
     XLineBreakpointImpl<CloudLineBreakpointProperties> breakpoint = registerMockBreakpoint(
         NO_WATCHES, NO_CONDITION, 13, "fileName", "packageName", false, "12abc");
-    handler.setStateToDisabled(new Breakpoint().setId("12abc"));
+    handler.setStateToDisabled(BreakpointRecord.of(new Breakpoint().setId("12abc")));
     handler.registerBreakpoint(breakpoint);
     verify(stateController, times(2)).setBreakpointAsync(
         isA(Breakpoint.class), isA(SetBreakpointHandler.class));
@@ -274,7 +279,8 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
     assertNotNull(cloudLineBreakpoint);
     Assert.assertFalse(cloudLineBreakpoint.isVerified());
 
-    handler.createIdeRepresentationsIfNecessary(Lists.newArrayList(new Breakpoint().setId("12abc")));
+    handler.createIdeRepresentationsIfNecessary(
+        BreakpointRecord.fromList(Lists.newArrayList(new Breakpoint().setId("12abc"))));
 
     assertThat(cloudLineBreakpoint.getErrorMessage(), nullValue());
     Assert.assertTrue(cloudLineBreakpoint.isVerified());
@@ -284,7 +290,7 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
   public void testUnregisterBreakpoint_shouldSetAddedOnServerToFalseAfterHitOnBackend() throws Exception {
     XLineBreakpointImpl breakpoint = registerMockBreakpoint(NO_WATCHES, NO_CONDITION, 13,
         "fileName", "packageName", false, "12abc");
-    handler.setStateToDisabled(new Breakpoint().setId("12abc"));
+    handler.setStateToDisabled(BreakpointRecord.of(new Breakpoint().setId("12abc")));
     assertNotNull(breakpoint.getProperties());
     assertTrue(((CloudLineBreakpointProperties) breakpoint.getProperties()).isAddedOnServer());
 
@@ -380,9 +386,34 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
         isA(Project.class), eq("app/mod/src/main/java/b/f/pkg/Class.java")))
         .thenReturn(classFile);
 
-    handler.createIdeRepresentationsIfNecessary(breakpoints);
+    handler.createIdeRepresentationsIfNecessary(BreakpointRecord.fromList(breakpoints));
 
     verify(breakpointManager, times(1)).addLineBreakpoint(isA(XLineBreakpointType.class),
         anyString(), anyInt(), isA(XBreakpointProperties.class));
   }
+
+  public void testCreateIdeRepresentationsIfNecessary_resolvesEachPathOnceAndRefreshesOnce() {
+    String path = "b/f/pkg/Class.java";
+    List<Breakpoint> breakpoints = ImmutableList.of(
+        new Breakpoint().setId("first").setLocation(new SourceLocation().setLine(1).setPath(path)),
+        new Breakpoint().setId("second").setLocation(new SourceLocation().setLine(2).setPath(path)),
+        new Breakpoint().setId("same_line").setLocation(
+            new SourceLocation().setLine(1).setPath(path)));
+    when(breakpointManager.findBreakpointAtLine(
+        isA(XLineBreakpointType.class), isA(VirtualFile.class), anyInt())).thenReturn(null);
+    XLineBreakpoint mockLineBreakpoint = mock(XLineBreakpoint.class);
+    when(breakpointManager.addLineBreakpoint(isA(XLineBreakpointType.class), anyString(), anyInt(),
+        isA(CloudLineBreakpointProperties.class))).thenReturn(mockLineBreakpoint);
+    when(mockLineBreakpoint.getProperties()).thenReturn(new CloudLineBreakpointProperties());
+    VirtualFile classFile = mock(VirtualFile.class);
+    when(classFile.getUrl()).thenReturn("file:///URL");
+    when(fileResolver.getFileFromPath(isA(Project.class), eq(path))).thenReturn(classFile);
+
+    handler.createIdeRepresentationsIfNecessary(BreakpointRecord.fromList(breakpoints));
+
+    verify(fileResolver, times(1)).getFileFromPath(isA(Project.class), eq(path));
+    verify(breakpointManager, times(2)).addLineBreakpoint(isA(XLineBreakpointType.class),
+        anyString(), anyInt(), isA(XBreakpointProperties.class));
+    verify(process, times(1)).fireBreakpointsChanged();
+  }
 }
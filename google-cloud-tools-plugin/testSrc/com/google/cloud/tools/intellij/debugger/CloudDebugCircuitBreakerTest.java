@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.tools.intellij.debugger.CloudDebugCircuitBreaker.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class CloudDebugCircuitBreakerTest {
+
+  private static final long NOW = 1000000;
+
+  private CloudDebugCircuitBreaker breaker;
+
+  @Before
+  public void setUp() {
+    breaker = new CloudDebugCircuitBreaker(new Random(0));
+  }
+
+  @Test
+  public void testOnFailure_opensAfterThreshold() {
+    for (int i = 1; i < CloudDebugCircuitBreaker.FAILURE_THRESHOLD; i++) {
+      assertFalse(breaker.onFailure(NOW));
+      assertEquals(State.CLOSED, breaker.getState());
+      assertTrue(breaker.allowRequest(NOW));
+    }
+
+    assertTrue(breaker.onFailure(NOW));
+
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest(NOW));
+    assertJittered(CloudDebugCircuitBreaker.INITIAL_OPEN_MS, breaker.getRetryAtMs() - NOW);
+  }
+
+  @Test
+  public void testAllowRequest_letsOneTrialThroughAfterDelay() {
+    open();
+    long retryAt = breaker.getRetryAtMs();
+
+    assertTrue(breaker.allowRequest(retryAt));
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest(retryAt));
+  }
+
+  @Test
+  public void testOnFailure_whileHalfOpenDoublesDelayUpToMax() {
+    open();
+    long expected = CloudDebugCircuitBreaker.INITIAL_OPEN_MS;
+    for (int i = 0; i < 10; i++) {
+      long retryAt = breaker.getRetryAtMs();
+      breaker.allowRequest(retryAt);
+
+      assertFalse(breaker.onFailure(retryAt));
+
+      expected = Math.min(expected * 2, CloudDebugCircuitBreaker.MAX_OPEN_MS);
+      assertEquals(State.OPEN, breaker.getState());
+      assertJittered(expected, breaker.getRetryAtMs() - retryAt);
+    }
+  }
+
+  @Test
+  public void testOnSuccess_recoversAndResetsBackoff() {
+    assertFalse(breaker.onSuccess());
+
+    open();
+    breaker.allowRequest(breaker.getRetryAtMs());
+
+    assertTrue(breaker.onSuccess());
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest(NOW));
+    open();
+    assertJittered(CloudDebugCircuitBreaker.INITIAL_OPEN_MS, breaker.getRetryAtMs() - NOW);
+  }
+
+  private void open() {
+    for (int i = 0; i < CloudDebugCircuitBreaker.FAILURE_THRESHOLD; i++) {
+      breaker.onFailure(NOW);
+    }
+  }
+
+  private static void assertJittered(long expected, long actual) {
+    assertTrue(actual >= expected * (1 - CloudDebugCircuitBreaker.JITTER));
+    assertTrue(actual <= expected * (1 + CloudDebugCircuitBreaker.JITTER));
+  }
+}
@@ -18,18 +18,27 @@ package com.google.cloud.tools.intellij.debugger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
 import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees;
 import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees.Breakpoints;
@@ -51,7 +60,7 @@ public class CloudDebugGlobalPollerTest extends BasePluginTestCase {
   @Before
   public void setUp() throws Exception {
     cloudDebugProcessState = new CloudDebugProcessState();
-    cloudDebugGlobalPoller = new CloudDebugGlobalPoller();
+    cloudDebugGlobalPoller = new CloudDebugGlobalPoller(1);
     notificationsHandler = setupNotificationHandlerForVerification();
   }
 
@@ -67,7 +76,8 @@ public class CloudDebugGlobalPollerTest extends BasePluginTestCase {
   }
 
   @Test
-  public void testPollForChanges_firesNotificationOnIOException() throws IOException {
+  public void testPollForChanges_keepsListeningAndOpensBreakerOnRepeatedIOExceptions()
+      throws IOException {
     cloudDebugProcessState.setListenInBackground(true);
     cloudDebugProcessState.setUserEmail(FAKE_USER_EMAIL);
     cloudDebugProcessState.setDebuggeeId(FAKE_DEBUGGEE_ID);
@@ -75,12 +85,125 @@ public class CloudDebugGlobalPollerTest extends BasePluginTestCase {
 
     setupCloudDebuggerBackendMockWithException(FAKE_USER_EMAIL, new IOException());
 
+    for (int i = 0; i < CloudDebugCircuitBreaker.FAILURE_THRESHOLD; i++) {
+      assertTrue(cloudDebugGlobalPoller.submitPoll(cloudDebugProcessState));
+    }
+
+    assertTrue(cloudDebugProcessState.isListenInBackground());
+    assertEquals(CloudDebugCircuitBreaker.State.OPEN,
+        cloudDebugGlobalPoller.getBreaker(cloudDebugProcessState).getState());
+    assertFalse(cloudDebugGlobalPoller.submitPoll(cloudDebugProcessState));
+    verifyNotificationFired();
+  }
+
+  @Test
+  public void testPollForChanges_stopsListeningOnAccessDenied() throws IOException {
+    cloudDebugProcessState.setListenInBackground(true);
+    cloudDebugProcessState.setUserEmail(FAKE_USER_EMAIL);
+    cloudDebugProcessState.setDebuggeeId(FAKE_DEBUGGEE_ID);
+    cloudDebugProcessState.setProject(getProject());
+
+    setupCloudDebuggerBackendMockWithException(FAKE_USER_EMAIL, new GoogleJsonResponseException(
+        new HttpResponseException.Builder(403, "Forbidden", new HttpHeaders()), null));
+
     cloudDebugGlobalPoller.pollForChanges(cloudDebugProcessState);
 
     assertFalse(cloudDebugProcessState.isListenInBackground());
+    assertEquals(0, cloudDebugGlobalPoller.getBreakerCount());
     verifyNotificationFired();
   }
 
+  @Test
+  public void testRetainBreakers_dropsBreakersOfDebuggeesNoLongerListening() {
+    CloudDebugProcessState other = new CloudDebugProcessState();
+    other.setDebuggeeId("other-debuggee");
+    cloudDebugProcessState.setDebuggeeId(FAKE_DEBUGGEE_ID);
+    CloudDebugCircuitBreaker breaker = cloudDebugGlobalPoller.getBreaker(cloudDebugProcessState);
+    cloudDebugGlobalPoller.getBreaker(other);
+
+    cloudDebugGlobalPoller.retainBreakers(Collections.singletonList(cloudDebugProcessState));
+
+    assertEquals(1, cloudDebugGlobalPoller.getBreakerCount());
+    assertSame(breaker, cloudDebugGlobalPoller.getBreaker(cloudDebugProcessState));
+  }
+
+  @Test
+  public void testRetainBreakers_reattachedDebuggeeStartsClosed() {
+    cloudDebugProcessState.setDebuggeeId(FAKE_DEBUGGEE_ID);
+    CloudDebugCircuitBreaker breaker = cloudDebugGlobalPoller.getBreaker(cloudDebugProcessState);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < CloudDebugCircuitBreaker.FAILURE_THRESHOLD; i++) {
+      breaker.onFailure(now);
+    }
+    assertEquals(CloudDebugCircuitBreaker.State.OPEN, breaker.getState());
+
+    cloudDebugGlobalPoller.retainBreakers(Collections.<CloudDebugProcessState>emptyList());
+
+    assertEquals(CloudDebugCircuitBreaker.State.CLOSED,
+        cloudDebugGlobalPoller.getBreaker(cloudDebugProcessState).getState());
+  }
+
+  @Test
+  public void testSubmitPoll_doesNotPollStateTwiceAtOnce() throws InterruptedException {
+    final CountDownLatch pollStarted = new CountDownLatch(1);
+    final CountDownLatch releasePoll = new CountDownLatch(1);
+    final AtomicInteger pollCount = new AtomicInteger();
+    CloudDebugGlobalPoller poller = new CloudDebugGlobalPoller(2) {
+      @Override
+      void pollForChanges(@NotNull CloudDebugProcessState state) {
+        pollCount.incrementAndGet();
+        pollStarted.countDown();
+        try {
+          releasePoll.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+        }
+      }
+    };
+
+    assertTrue(poller.submitPoll(cloudDebugProcessState));
+    assertTrue(pollStarted.await(5, TimeUnit.SECONDS));
+    assertFalse(poller.submitPoll(cloudDebugProcessState));
+    releasePoll.countDown();
+
+    assertEquals(1, pollCount.get());
+  }
+
+  @Test
+  public void testSubmitPoll_pollsStatesConcurrently() throws InterruptedException {
+    final CountDownLatch bothPolling = new CountDownLatch(2);
+    CloudDebugGlobalPoller poller = new CloudDebugGlobalPoller(2) {
+      @Override
+      void pollForChanges(@NotNull CloudDebugProcessState state) {
+        bothPolling.countDown();
+        try {
+          bothPolling.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+        }
+      }
+    };
+
+    poller.submitPoll(new CloudDebugProcessState());
+    poller.submitPoll(new CloudDebugProcessState());
+
+    assertTrue(bothPolling.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testSubmitPoll_withParallelismOnePollsInline() {
+    final AtomicInteger pollCount = new AtomicInteger();
+    CloudDebugGlobalPoller poller = new CloudDebugGlobalPoller(1) {
+      @Override
+      void pollForChanges(@NotNull CloudDebugProcessState state) {
+        pollCount.incrementAndGet();
+      }
+    };
+
+    poller.submitPoll(cloudDebugProcessState);
+
+    assertEquals(1, pollCount.get());
+    assertFalse(poller.isPollInFlight(cloudDebugProcessState));
+  }
+
   @NotNull
   private Notifications setupNotificationHandlerForVerification() {
     Notifications handler = mock(Notifications.class);
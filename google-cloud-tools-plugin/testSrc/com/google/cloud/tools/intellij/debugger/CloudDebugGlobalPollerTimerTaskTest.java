@@ -44,7 +44,7 @@ public class CloudDebugGlobalPollerTimerTaskTest extends BasePluginTestCase {
   }
 
   @Test
-  public void testRunCallsPollforChangesForAllStates() throws Exception {
+  public void testRunSubmitsPollForAllStates() throws Exception {
     List<CloudDebugProcessState> states = new ArrayList<CloudDebugProcessState>();
     states.add(mock(CloudDebugProcessState.class));
     states.add(mock(CloudDebugProcessState.class));
@@ -53,7 +53,18 @@ public class CloudDebugGlobalPollerTimerTaskTest extends BasePluginTestCase {
     new CloudDebugGlobalPollerTimerTask(cloudDebugGlobalPoller).run();
 
     for (CloudDebugProcessState cloudDebugProcessState : states) {
-      verify(cloudDebugGlobalPoller).pollForChanges(cloudDebugProcessState);
+      verify(cloudDebugGlobalPoller).submitPoll(cloudDebugProcessState);
     }
   }
+
+  @Test
+  public void testRunRetainsBreakersOfListeningStates() throws Exception {
+    List<CloudDebugProcessState> states = new ArrayList<CloudDebugProcessState>();
+    states.add(mock(CloudDebugProcessState.class));
+    when(cloudDebugProcessStateCollector.getBackgroundListeningStates()).thenReturn(states);
+
+    new CloudDebugGlobalPollerTimerTask(cloudDebugGlobalPoller).run();
+
+    verify(cloudDebugGlobalPoller).retainBreakers(states);
+  }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CloudDebugPollSchedulerTest {
+
+  private static final int POLL_POOL_SIZE = 4;
+
+  private CloudDebugPollScheduler scheduler;
+  private CloudDebugProcessState state;
+
+  @Before
+  public void setUp() {
+    scheduler = new CloudDebugPollScheduler(POLL_POOL_SIZE);
+    state = new CloudDebugProcessState();
+  }
+
+  @Test
+  public void testStartPolling_runsPollRepeatedly() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(3);
+    scheduler.startPolling(state, new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    }, 0, 1);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    scheduler.stopPolling(state);
+  }
+
+  @Test
+  public void testStartPolling_ignoresSecondRegistrationForSameState() {
+    assertTrue(scheduler.startPolling(state, new NoOp(), 1000, 1000));
+    assertFalse(scheduler.startPolling(state, new NoOp(), 1000, 1000));
+    scheduler.stopPolling(state);
+  }
+
+  @Test
+  public void testStopPolling_unregistersState() {
+    scheduler.startPolling(state, new NoOp(), 1000, 1000);
+    assertTrue(scheduler.isPolling(state));
+
+    scheduler.stopPolling(state);
+
+    assertFalse(scheduler.isPolling(state));
+  }
+
+  @Test
+  public void testPollThatThrows_isRescheduled() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(2);
+    scheduler.startPolling(state, new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+        throw new IllegalStateException("poll failure");
+      }
+    }, 0, 1);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    scheduler.stopPolling(state);
+  }
+
+  @Test
+  public void testBlockedPolls_doNotDelayOtherStatesOrHousekeeping() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    List<CloudDebugProcessState> blockedStates = new ArrayList<CloudDebugProcessState>();
+    // Leaves one poll thread free for the state that is not blocked.
+    for (int i = 0; i < POLL_POOL_SIZE - 1; i++) {
+      CloudDebugProcessState blockedState = new CloudDebugProcessState();
+      blockedStates.add(blockedState);
+      scheduler.startPolling(blockedState, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            release.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, 0, 1000);
+    }
+    final CountDownLatch polled = new CountDownLatch(1);
+    final CountDownLatch swept = new CountDownLatch(1);
+
+    try {
+      scheduler.startPolling(state, new Runnable() {
+        @Override
+        public void run() {
+          polled.countDown();
+        }
+      }, 10, 1000);
+      ScheduledFuture<?> sweep = scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          swept.countDown();
+        }
+      }, 10, 1000);
+
+      assertTrue(polled.await(5, TimeUnit.SECONDS));
+      assertTrue(swept.await(5, TimeUnit.SECONDS));
+      sweep.cancel(false);
+    } finally {
+      release.countDown();
+      scheduler.stopPolling(state);
+      for (CloudDebugProcessState blockedState : blockedStates) {
+        scheduler.stopPolling(blockedState);
+      }
+    }
+  }
+
+  @Test
+  public void testBlockedPolls_queueWithoutGrowingThePool() throws InterruptedException {
+    int stateCount = POLL_POOL_SIZE * 3;
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch allPolled = new CountDownLatch(stateCount);
+    final AtomicInteger running = new AtomicInteger();
+    List<CloudDebugProcessState> blockedStates = new ArrayList<CloudDebugProcessState>();
+    for (int i = 0; i < stateCount; i++) {
+      CloudDebugProcessState blockedState = new CloudDebugProcessState();
+      blockedStates.add(blockedState);
+      scheduler.startPolling(blockedState, new Runnable() {
+        @Override
+        public void run() {
+          running.incrementAndGet();
+          try {
+            release.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } finally {
+            running.decrementAndGet();
+            allPolled.countDown();
+          }
+        }
+      }, 0, 1000);
+    }
+
+    try {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (running.get() < POLL_POOL_SIZE && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      // Gives the queued polls a chance to start if the pool were to grow.
+      Thread.sleep(100);
+
+      assertEquals(POLL_POOL_SIZE, running.get());
+      assertEquals(POLL_POOL_SIZE, scheduler.getLargestPollThreadCount());
+    } finally {
+      release.countDown();
+    }
+    assertTrue(allPolled.await(5, TimeUnit.SECONDS));
+    assertEquals(POLL_POOL_SIZE, scheduler.getLargestPollThreadCount());
+    for (CloudDebugProcessState blockedState : blockedStates) {
+      scheduler.stopPolling(blockedState);
+    }
+  }
+
+  private static class NoOp implements Runnable {
+
+    @Override
+    public void run() {
+    }
+  }
+}
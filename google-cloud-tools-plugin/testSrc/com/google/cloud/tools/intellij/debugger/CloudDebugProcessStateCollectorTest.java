@@ -19,6 +19,7 @@ package com.google.cloud.tools.intellij.debugger;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -77,6 +78,47 @@ public class CloudDebugProcessStateCollectorTest extends BasePluginTestCase {
     assertThat(backgroundListeningStates, hasSize(0));
   }
 
+  @Test
+  public void testGetBackgroundListeningStates_reusesResultWhileTrackingUntilChanged() {
+    Project project = createProject(1, 2, 3);
+    createMockProjectManagerWithProjects(new Project[]{ project });
+    CloudDebugProcessStateCollector collector = new CloudDebugProcessStateCollector() {
+      @Override
+      void subscribeToChanges() {
+      }
+    };
+    collector.startTracking();
+
+    List<CloudDebugProcessState> first = collector.getBackgroundListeningStates();
+    createMockProjectManagerWithProjects(new Project[0]);
+
+    assertSame(first, collector.getBackgroundListeningStates());
+    assertThat(first, hasSize(2));
+
+    CloudDebugProcessStateCollector.markChanged();
+
+    assertThat(collector.getBackgroundListeningStates(), hasSize(0));
+  }
+
+  @Test
+  public void testGetBackgroundListeningStates_rescansWhenListeningFlagChanges() {
+    Project project = createProject(0, 1, 0);
+    createMockProjectManagerWithProjects(new Project[]{ project });
+    CloudDebugProcessStateCollector collector = new CloudDebugProcessStateCollector() {
+      @Override
+      void subscribeToChanges() {
+      }
+    };
+    collector.startTracking();
+
+    List<CloudDebugProcessState> states = collector.getBackgroundListeningStates();
+    assertThat(states, hasSize(1));
+
+    states.get(0).setListenInBackground(false);
+
+    assertThat(collector.getBackgroundListeningStates(), hasSize(0));
+  }
+
   @Test
   public void testGetProfilesWithActiveDebugSession_returnsEmptySetIfNoDebugSessions() {
     Project project = mock(Project.class);
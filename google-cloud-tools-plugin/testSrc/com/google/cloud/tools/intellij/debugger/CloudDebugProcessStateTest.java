@@ -70,7 +70,7 @@ public class CloudDebugProcessStateTest extends UsefulTestCase {
     IdeaTestCase.initPlatformPrefix();
   }
 
-  private static boolean verifyList(List<Breakpoint> breakpoints, String... ids) {
+  private static boolean verifyList(List<BreakpointRecord> breakpoints, String... ids) {
     int bindex = 0;
     for(String id : ids) {
       if (!id.equals(breakpoints.get(bindex).getId())) {
@@ -163,7 +163,7 @@ public class CloudDebugProcessStateTest extends UsefulTestCase {
 
     verify(client.debuggees().breakpoints().list(DEBUGEE_ID), times(1)).setIncludeInactive(Boolean.TRUE);
 
-    List<Breakpoint> currentList = state.getCurrentServerBreakpointList();
+    List<BreakpointRecord> currentList = state.getCurrentBreakpointRecords();
     assertNotEmpty(currentList);
 
     //verifies the sort order...
@@ -191,7 +191,7 @@ public class CloudDebugProcessStateTest extends UsefulTestCase {
     CloudDebugProcessStateController controller = new CloudDebugProcessStateController();
     controller.initialize(state);
 
-    List<Breakpoint> currentList = state.getCurrentServerBreakpointList();
+    List<BreakpointRecord> currentList = state.getCurrentBreakpointRecords();
     assertNotEmpty(currentList);
     assertTrue(verifyList(currentList, "p5", "p6", "p7", "p4", "p8", "p3", "p2", "p1"));
 
@@ -206,7 +206,7 @@ public class CloudDebugProcessStateTest extends UsefulTestCase {
     returnedBreakpoints.add(createBreakpoint("b1", Boolean.TRUE, 1000, "com/google/ex1.java", 15, null, null));
 
     controller.waitForChanges();
-    List<Breakpoint> changedList = state.getCurrentServerBreakpointList();
+    List<BreakpointRecord> changedList = state.getCurrentBreakpointRecords();
     assertNotEmpty(changedList);
     assertTrue(verifyList(changedList, "b5","b6","b7","b4","b8","b3","b2","b1"));
   }
@@ -58,7 +58,6 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.impl.ProjectImpl;
 import com.intellij.testFramework.PlatformTestCase;
 import com.intellij.ui.content.Content;
-import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XDebuggerManager;
 import com.intellij.xdebugger.breakpoints.XBreakpointManager;
@@ -308,8 +307,8 @@ public class CloudDebugProcessTest extends PlatformTestCase {
             .setStatus(new StatusMessage().setIsError(Boolean.TRUE));
         breakpoints.add(breakpoint);
         CloudDebugProcessState processState = mock(CloudDebugProcessState.class);
-        when(processState.getCurrentServerBreakpointList())
-            .thenReturn(ContainerUtil.immutableList(breakpoints));
+        when(processState.getCurrentBreakpointRecords())
+            .thenReturn(BreakpointRecord.fromList(breakpoints));
 
         XLineBreakpointImpl xLineBreakpointImpl = mock(XLineBreakpointImpl.class);
         CloudLineBreakpoint cloudLineBreakpoint = mockCloudLineBreakpoint("mock error message",
@@ -317,7 +316,9 @@ public class CloudDebugProcessTest extends PlatformTestCase {
         when(xLineBreakpointImpl.getUserData(com.intellij.debugger.ui.breakpoints.Breakpoint.DATA_KEY))
             .thenReturn(cloudLineBreakpoint);
         CloudBreakpointHandler breakpointHandler = mock(CloudBreakpointHandler.class);
-        when(breakpointHandler.getEnabledXBreakpoint(breakpoint)).thenReturn(xLineBreakpointImpl);
+        // Records are compared by value, so this matches the record built from the list above.
+        when(breakpointHandler.getEnabledXBreakpoint(BreakpointRecord.of(breakpoint)))
+            .thenReturn(xLineBreakpointImpl);
 
         process.setBreakpointHandler(breakpointHandler);
         process.initialize(processState);
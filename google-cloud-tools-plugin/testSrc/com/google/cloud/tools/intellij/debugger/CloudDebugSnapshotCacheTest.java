@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CloudDebugSnapshotCacheTest {
+
+  private static final String DEBUGGEE_ID = "debuggee:1";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPut_ignoresPendingBreakpoints() {
+    CloudDebugSnapshotCache cache = new CloudDebugSnapshotCache(folder.getRoot(), 1024, 1024);
+    Breakpoint pending = snapshot("a");
+    pending.setIsFinalState(false);
+
+    cache.put(DEBUGGEE_ID, pending);
+
+    assertNull(cache.get(DEBUGGEE_ID, "a"));
+  }
+
+  @Test
+  public void testGet_readsFromDiskAfterRestart() {
+    new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024)
+        .put(DEBUGGEE_ID, snapshot("a"));
+
+    CloudDebugSnapshotCache restarted =
+        new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024);
+    assertNull(restarted.getFromMemory(DEBUGGEE_ID, "a"));
+    Breakpoint cached = restarted.get(DEBUGGEE_ID, "a");
+
+    assertNotNull(cached);
+    assertEquals("a", cached.getId());
+    assertEquals("Foo.java", cached.getLocation().getPath());
+    assertTrue(restarted.isInMemory(DEBUGGEE_ID, "a"));
+  }
+
+  @Test
+  public void testPut_evictsLeastRecentlyUsedOverMemoryBudget() {
+    CloudDebugSnapshotCache probe = new CloudDebugSnapshotCache(null, Long.MAX_VALUE, 0);
+    probe.put(DEBUGGEE_ID, snapshot("a"));
+    long entryBytes = probe.getMemoryBytes();
+
+    CloudDebugSnapshotCache cache = new CloudDebugSnapshotCache(null, entryBytes * 2, 0);
+    cache.put(DEBUGGEE_ID, snapshot("a"));
+    cache.put(DEBUGGEE_ID, snapshot("b"));
+    cache.get(DEBUGGEE_ID, "a");
+    cache.put(DEBUGGEE_ID, snapshot("c"));
+
+    assertTrue(cache.isInMemory(DEBUGGEE_ID, "a"));
+    assertFalse(cache.isInMemory(DEBUGGEE_ID, "b"));
+    assertTrue(cache.isInMemory(DEBUGGEE_ID, "c"));
+    assertTrue(cache.getMemoryBytes() <= entryBytes * 2);
+  }
+
+  @Test
+  public void testRemove_dropsBothTiers() {
+    CloudDebugSnapshotCache cache =
+        new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024);
+    cache.put(DEBUGGEE_ID, snapshot("a"));
+
+    cache.remove(DEBUGGEE_ID, "a");
+
+    assertNull(cache.get(DEBUGGEE_ID, "a"));
+    assertNull(new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024)
+        .get(DEBUGGEE_ID, "a"));
+    assertEquals(0, cache.getMemoryBytes());
+  }
+
+  @Test
+  public void testSearch_findsCachedSnapshotsUntilRemoved() {
+    CloudDebugSnapshotCache cache = new CloudDebugSnapshotCache(null, 1024 * 1024, 0);
+    cache.put(DEBUGGEE_ID, withLocal(snapshot("a"), "userId", "42"));
+    cache.put(DEBUGGEE_ID, withLocal(snapshot("b"), "userId", "7"));
+
+    assertEquals(Collections.singleton("a"), cache.search(DEBUGGEE_ID, "userId 42"));
+
+    cache.remove(DEBUGGEE_ID, "a");
+    assertTrue(cache.search(DEBUGGEE_ID, "userId 42").isEmpty());
+  }
+
+  @Test
+  public void testIndexFromDisk_indexesWithoutPromotingToMemory() {
+    new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024)
+        .put(DEBUGGEE_ID, withLocal(snapshot("a"), "userId", "42"));
+    CloudDebugSnapshotCache restarted =
+        new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024);
+    assertTrue(restarted.search(DEBUGGEE_ID, "userId").isEmpty());
+
+    assertTrue(restarted.indexFromDisk(DEBUGGEE_ID, Arrays.asList("a", "missing")));
+
+    assertEquals(Collections.singleton("a"), restarted.search(DEBUGGEE_ID, "userId"));
+    assertFalse(restarted.isInMemory(DEBUGGEE_ID, "a"));
+    assertFalse(restarted.indexFromDisk(DEBUGGEE_ID, Collections.singletonList("a")));
+  }
+
+  @Test
+  public void testConcurrentPutAndGet_neverSeeAPartialFile() throws Exception {
+    final CloudDebugSnapshotCache writer =
+        new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, 1024 * 1024);
+    final CloudDebugSnapshotCache reader =
+        new CloudDebugSnapshotCache(folder.getRoot(), 0, 1024 * 1024);
+    writer.put(DEBUGGEE_ID, withLocal(snapshot("a"), "userId", "42"));
+    final AtomicBoolean done = new AtomicBoolean();
+    Thread writes = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 200; i++) {
+          writer.put(DEBUGGEE_ID, withLocal(snapshot("a"), "userId", String.valueOf(i)));
+        }
+        done.set(true);
+      }
+    });
+    writes.start();
+
+    while (!done.get()) {
+      assertNotNull(reader.get(DEBUGGEE_ID, "a"));
+    }
+    writes.join();
+
+    assertNotNull(reader.get(DEBUGGEE_ID, "a"));
+    File[] files = new File(folder.getRoot(), URLEncoder.encode(DEBUGGEE_ID, "UTF-8")).listFiles();
+    assertEquals(1, files.length);
+  }
+
+  @Test
+  public void testPut_tracksDiskSizeAndTrimsOverBudget() {
+    CloudDebugSnapshotCache probe =
+        new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, Long.MAX_VALUE);
+    probe.put(DEBUGGEE_ID, snapshot("a"));
+    long fileBytes = probe.getDiskBytes();
+    assertTrue(fileBytes > 0);
+    probe.remove(DEBUGGEE_ID, "a");
+    assertEquals(0, probe.getDiskBytes());
+
+    CloudDebugSnapshotCache cache =
+        new CloudDebugSnapshotCache(folder.getRoot(), 1024 * 1024, fileBytes * 2);
+    cache.put(DEBUGGEE_ID, snapshot("a"));
+    cache.put(DEBUGGEE_ID, snapshot("b"));
+    cache.put(DEBUGGEE_ID, snapshot("b"));
+    assertEquals(measureDiskBytes(), cache.getDiskBytes());
+    cache.put(DEBUGGEE_ID, snapshot("c"));
+    cache.put(DEBUGGEE_ID, snapshot("d"));
+
+    assertTrue(cache.getDiskBytes() <= fileBytes * 2);
+    assertEquals(measureDiskBytes(), cache.getDiskBytes());
+  }
+
+  private long measureDiskBytes() {
+    return new CloudDebugSnapshotCache(folder.getRoot(), 0, Long.MAX_VALUE).getDiskBytes();
+  }
+
+  private static Breakpoint withLocal(Breakpoint breakpoint, String name, String value) {
+    return breakpoint.setStackFrames(Collections.singletonList(new StackFrame()
+        .setLocals(Collections.singletonList(new Variable().setName(name).setValue(value)))));
+  }
+
+  private static Breakpoint snapshot(String id) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    breakpoint.setIsFinalState(true);
+    breakpoint.setFinalTime("2016-08-22T05:23:34.123Z");
+    breakpoint.setLocation(new SourceLocation().setPath("Foo.java").setLine(10));
+    return breakpoint;
+  }
+}
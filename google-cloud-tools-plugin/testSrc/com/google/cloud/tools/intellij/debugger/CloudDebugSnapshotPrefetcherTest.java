@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CloudDebugSnapshotPrefetcherTest {
+
+  private static final String DEBUGGEE_ID = "debuggee";
+
+  private final List<Runnable> queued = new ArrayList<Runnable>();
+  private final AtomicInteger fetches = new AtomicInteger();
+  private CloudDebugSnapshotCache cache;
+  private CloudDebugSnapshotPrefetcher prefetcher;
+  private CloudDebugProcessState state;
+
+  @Before
+  public void setUp() {
+    cache = new CloudDebugSnapshotCache(null, 1024 * 1024, 0);
+    prefetcher = new CloudDebugSnapshotPrefetcher(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+    }, cache) {
+      @Override
+      Breakpoint fetch(@NotNull CloudDebugProcessState state, @NotNull String debuggeeId,
+          @NotNull String breakpointId) {
+        fetches.incrementAndGet();
+        return snapshot(breakpointId);
+      }
+    };
+    state = mock(CloudDebugProcessState.class);
+    when(state.getDebuggeeId()).thenReturn(DEBUGGEE_ID);
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(CloudDebugConfigType.GCT_DEBUGGER_PREFETCH_COUNT);
+  }
+
+  @Test
+  public void testPrefetch_disabledByDefault() {
+    prefetcher.prefetch(state, records(snapshot("a")));
+
+    assertEquals(0, queued.size());
+  }
+
+  @Test
+  public void testPrefetch_limitsToConfiguredCount() {
+    System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_PREFETCH_COUNT, "2");
+
+    prefetcher.prefetch(state, records(snapshot("a"), snapshot("b"), snapshot("c")));
+
+    assertEquals(2, queued.size());
+  }
+
+  @Test
+  public void testPrefetch_skipsCachedAndInFlightSnapshots() {
+    System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_PREFETCH_COUNT, "5");
+    cache.put(DEBUGGEE_ID, snapshot("a"));
+
+    prefetcher.prefetch(state, records(snapshot("a"), snapshot("b")));
+    prefetcher.prefetch(state, records(snapshot("b")));
+
+    assertEquals(1, queued.size());
+  }
+
+  @Test
+  public void testFetchOnce_joinsQueuedPrefetch() throws Exception {
+    System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_PREFETCH_COUNT, "1");
+    prefetcher.prefetch(state, records(snapshot("a")));
+    assertTrue(prefetcher.isInFlight(DEBUGGEE_ID, "a"));
+
+    Breakpoint result = prefetcher.fetchOnce(DEBUGGEE_ID, "a", new Callable<Breakpoint>() {
+      @Override
+      public Breakpoint call() {
+        fail("the prefetch should be joined");
+        return null;
+      }
+    });
+    queued.get(0).run();
+
+    assertEquals("a", result.getId());
+    assertEquals(1, fetches.get());
+    assertFalse(prefetcher.isInFlight(DEBUGGEE_ID, "a"));
+  }
+
+  @Test
+  public void testFetchOnce_fetchesWhenNothingInFlight() throws Exception {
+    Breakpoint result = prefetcher.fetchOnce(DEBUGGEE_ID, "a", new Callable<Breakpoint>() {
+      @Override
+      public Breakpoint call() {
+        return snapshot("a");
+      }
+    });
+
+    assertEquals("a", result.getId());
+    assertEquals(0, fetches.get());
+    assertFalse(prefetcher.isInFlight(DEBUGGEE_ID, "a"));
+  }
+
+  @Test
+  public void testRecordLookup_countsHitsAndMisses() {
+    prefetcher.recordLookup(true);
+    prefetcher.recordLookup(true);
+    prefetcher.recordLookup(false);
+
+    assertEquals(2, prefetcher.getHitCount());
+    assertEquals(1, prefetcher.getMissCount());
+  }
+
+  private static Breakpoint snapshot(String id) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    breakpoint.setIsFinalState(true);
+    breakpoint.setFinalTime("2016-08-22T05:23:34.123Z");
+    return breakpoint;
+  }
+
+  private static List<BreakpointRecord> records(Breakpoint... breakpoints) {
+    return BreakpointRecord.fromList(Arrays.asList(breakpoints));
+  }
+}
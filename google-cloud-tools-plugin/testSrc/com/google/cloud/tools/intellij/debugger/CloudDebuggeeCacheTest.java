@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Debuggee;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CloudDebuggeeCacheTest {
+
+  private static final long NOW = 1000000;
+
+  private final AtomicInteger fetches = new AtomicInteger();
+  private Debugger client;
+  private CloudDebuggeeCache cache;
+  private IOException failure;
+  private CountDownLatch fetchStarted;
+  private CountDownLatch releaseFetch;
+
+  @Before
+  public void setUp() {
+    client = mock(Debugger.class);
+    cache = new CloudDebuggeeCache() {
+      @NotNull
+      @Override
+      List<Debuggee> fetchDebuggees(@NotNull Debugger client, @NotNull String projectNumber)
+          throws IOException {
+        fetches.incrementAndGet();
+        if (fetchStarted != null) {
+          fetchStarted.countDown();
+          try {
+            releaseFetch.await();
+          } catch (InterruptedException ex) {
+            throw new IOException(ex);
+          }
+        }
+        if (failure != null) {
+          throw failure;
+        }
+        return Collections.singletonList(new Debuggee().setId(projectNumber + "-debuggee"));
+      }
+    };
+  }
+
+  @Test
+  public void testGetDebuggees_reusesResponseWithinTtl() throws IOException {
+    List<Debuggee> first = cache.getDebuggees(client, "user", "1234", NOW);
+
+    assertSame(first,
+        cache.getDebuggees(client, "user", "1234", NOW + CloudDebuggeeCache.TTL_MS - 1));
+    assertEquals(1, fetches.get());
+
+    cache.getDebuggees(client, "user", "1234", NOW + CloudDebuggeeCache.TTL_MS);
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  public void testGetDebuggees_cachesPerUserAndProject() throws IOException {
+    cache.getDebuggees(client, "user", "1234", NOW);
+    cache.getDebuggees(client, "other", "1234", NOW);
+    cache.getDebuggees(client, "user", "5678", NOW);
+
+    assertEquals(3, fetches.get());
+  }
+
+  @Test
+  public void testGetDebuggees_doesNotCacheFailures() throws IOException {
+    failure = new IOException("offline");
+    try {
+      cache.getDebuggees(client, "user", "1234", NOW);
+      fail("expected IOException");
+    } catch (IOException ex) {
+      assertSame(failure, ex);
+    }
+
+    failure = null;
+    assertEquals(1, cache.getDebuggees(client, "user", "1234", NOW).size());
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  public void testGetDebuggees_concurrentCallersShareOneRequest() throws Exception {
+    fetchStarted = new CountDownLatch(1);
+    releaseFetch = new CountDownLatch(1);
+    final List<?>[] results = new List<?>[2];
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            results[index] = cache.getDebuggees(client, "user", "1234", NOW);
+          } catch (IOException ex) {
+            throw new RuntimeException(ex);
+          }
+        }
+      });
+    }
+    threads[0].start();
+    fetchStarted.await();
+    threads[1].start();
+    releaseFetch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1, fetches.get());
+    assertSame(results[0], results[1]);
+  }
+
+  @Test
+  public void testGetDebuggee_findsById() throws IOException {
+    assertEquals("1234-debuggee",
+        cache.getDebuggee(client, "user", "1234", "1234-debuggee").getId());
+    assertEquals(null, cache.getDebuggee(client, "user", "1234", "missing"));
+    assertEquals(1, fetches.get());
+  }
+
+  @Test
+  public void testInvalidate_listsAgain() throws IOException {
+    cache.getDebuggees(client, "user", "1234", NOW);
+    cache.invalidate("user", "1234");
+    cache.getDebuggees(client, "user", "1234", NOW);
+
+    assertEquals(2, fetches.get());
+  }
+}
@@ -88,4 +88,35 @@ public class CloudDebuggerClientTest extends BasePluginTestCase {
     Assert.assertNull(CloudDebuggerClient.getShortTimeoutClient((String) null));
   }
 
+  @Test
+  public void testConfigureKeepAlive_appliesPoolSettingsUnlessSetExplicitly() {
+    String[] keys = {CloudDebuggerClient.HTTP_MAX_CONNECTIONS,
+        CloudDebuggerClient.HTTP_KEEP_ALIVE_TIME, CloudDebugConfigType.GCT_DEBUGGER_HTTP_POOL_SIZE,
+        CloudDebugConfigType.GCT_DEBUGGER_HTTP_IDLE_TIMEOUT_MS};
+    String[] previous = new String[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      previous[i] = System.getProperty(keys[i]);
+      System.clearProperty(keys[i]);
+    }
+    try {
+      System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_HTTP_POOL_SIZE, "12");
+      System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_HTTP_IDLE_TIMEOUT_MS, "30000");
+      CloudDebuggerClient.configureKeepAlive();
+      Assert.assertEquals("12", System.getProperty(CloudDebuggerClient.HTTP_MAX_CONNECTIONS));
+      Assert.assertEquals("30", System.getProperty(CloudDebuggerClient.HTTP_KEEP_ALIVE_TIME));
+
+      System.setProperty(CloudDebuggerClient.HTTP_MAX_CONNECTIONS, "3");
+      CloudDebuggerClient.configureKeepAlive();
+      Assert.assertEquals("3", System.getProperty(CloudDebuggerClient.HTTP_MAX_CONNECTIONS));
+    } finally {
+      for (int i = 0; i < keys.length; i++) {
+        if (previous[i] == null) {
+          System.clearProperty(keys[i]);
+        } else {
+          System.setProperty(keys[i], previous[i]);
+        }
+      }
+    }
+  }
+
 }
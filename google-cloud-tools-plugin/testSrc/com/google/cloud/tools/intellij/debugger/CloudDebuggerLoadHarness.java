@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.GetBreakpointResponse;
+
+import com.intellij.openapi.project.Project;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the real poll and diff pipeline of {@link CloudDebugGlobalPoller} against a
+ * {@link FakeCloudDebuggerServer} and measures throughput and latency.
+ * <p/>
+ * Each debuggee gets its own polling thread that long-polls like a background-listening session.
+ * A snapshot counts as shown when the poller has delivered it to a delta listener and, if
+ * {@link Config#hydrate} is set, its full content has been fetched the way the snapshot panel does
+ * when it is selected. Requires the plugin services of a {@code BasePluginTestCase}.
+ */
+class CloudDebuggerLoadHarness {
+
+  private static final String USER_EMAIL = "load-harness@example.com";
+  private static final String PROJECT_NUMBER = "1234";
+  private static final int DRAIN_TIMEOUTS = 5;
+  private static final long DRAIN_POLL_MS = 20;
+
+  /**
+   * Parameters of a load run.
+   */
+  static class Config {
+
+    int debuggees = 4;
+    int breakpointsPerDebuggee = 100;
+    double hitsPerSecond = 50;
+    int snapshotVariables = 20;
+    long durationMs = 10 * 1000;
+    long serverWaitTimeoutMs = 2000;
+    boolean hydrate = true;
+  }
+
+  /**
+   * Results of a load run.
+   */
+  static class Report {
+
+    long hits;
+    long snapshotsShown;
+    long polls;
+    long elapsedMs;
+    final List<Long> latenciesMs = new ArrayList<Long>();
+
+    double getEventsPerSecond() {
+      return elapsedMs > 0 ? snapshotsShown * 1000.0 / elapsedMs : 0;
+    }
+
+    long getLatencyPercentileMs(int percentile) {
+      if (latenciesMs.isEmpty()) {
+        return 0;
+      }
+      List<Long> sorted = new ArrayList<Long>(latenciesMs);
+      Collections.sort(sorted);
+      int index = (int) Math.ceil(sorted.size() * percentile / 100.0) - 1;
+      return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    @Override
+    public String toString() {
+      return String.format("hits=%d shown=%d polls=%d elapsed=%dms events/sec=%.1f "
+              + "hit-to-shown p50=%dms p95=%dms p99=%dms max=%dms",
+          hits, snapshotsShown, polls, elapsedMs, getEventsPerSecond(),
+          getLatencyPercentileMs(50), getLatencyPercentileMs(95), getLatencyPercentileMs(99),
+          getLatencyPercentileMs(100));
+    }
+  }
+
+  private final Config config;
+  private final Project project;
+
+  /**
+   * @param project the project errors are reported against
+   */
+  CloudDebuggerLoadHarness(@NotNull Config config, @NotNull Project project) {
+    this.config = config;
+    this.project = project;
+  }
+
+  /**
+   * Runs the load for {@link Config#durationMs}, then stops hitting breakpoints and waits until
+   * every hit has been shown, or {@link #DRAIN_TIMEOUTS} more wait timeouts have passed.
+   */
+  @NotNull
+  Report run() throws IOException, InterruptedException {
+    final FakeCloudDebuggerServer server =
+        new FakeCloudDebuggerServer(config.serverWaitTimeoutMs);
+    server.setSnapshotVariableCount(config.snapshotVariables);
+    server.start();
+    String previousRootUrl = System.getProperty(CloudDebugConfigType.GCT_DEBUGGER_ROOT_URL);
+    System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_ROOT_URL, server.getRootUrl());
+    final Report report = new Report();
+    try {
+      final Debugger client = CloudDebuggerClient.createClient(new NetHttpTransport(), null);
+      CloudDebuggerClient.setClient(
+          USER_EMAIL + CloudDebuggerClient.SHORT_CONNECTION_TIMEOUT_MS, client);
+
+      CloudDebugGlobalPoller poller = new CloudDebugGlobalPoller(1);
+      poller.addListener(new CloudBreakpointDeltaListener() {
+        @Override
+        public void onBreakpointListDelta(@NotNull CloudDebugProcessState state,
+            @NotNull BreakpointListDiff diff) {
+          for (BreakpointRecord breakpoint : diff.getBecameFinal()) {
+            show(server, client, state, breakpoint, report);
+          }
+        }
+
+        @Override
+        public void onBreakpointListChanged(CloudDebugProcessState state) {
+        }
+      });
+
+      List<CloudDebugProcessState> states = new ArrayList<CloudDebugProcessState>();
+      for (int i = 0; i < config.debuggees; i++) {
+        String debuggeeId = "debuggee-" + i;
+        server.addDebuggee(PROJECT_NUMBER, debuggeeId);
+        server.addBreakpoints(debuggeeId, config.breakpointsPerDebuggee);
+        CloudDebugProcessState state = new CloudDebugProcessState();
+        state.setUserEmail(USER_EMAIL);
+        state.setDebuggeeId(debuggeeId);
+        state.setProjectNumber(PROJECT_NUMBER);
+        state.setProject(project);
+        states.add(state);
+      }
+
+      long start = System.nanoTime();
+      AtomicBoolean polling = new AtomicBoolean(true);
+      List<Thread> pollThreads = new ArrayList<Thread>();
+      AtomicLong polls = new AtomicLong();
+      for (CloudDebugProcessState state : states) {
+        Thread thread = new Thread(new PollLoop(poller, state, polling, polls),
+            "load harness poll " + state.getDebuggeeId());
+        thread.setDaemon(true);
+        thread.start();
+        pollThreads.add(thread);
+      }
+      // Let every poller pick up the initial list before the first hit.
+      Thread.sleep(config.serverWaitTimeoutMs / 2);
+
+      server.startHits(config.hitsPerSecond, true);
+      Thread.sleep(config.durationMs);
+      server.stopHits();
+      awaitShown(report, server.getHitCount(), DRAIN_TIMEOUTS * config.serverWaitTimeoutMs);
+      polling.set(false);
+      for (Thread thread : pollThreads) {
+        thread.join();
+      }
+
+      synchronized (report) {
+        report.elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        report.hits = server.getHitCount();
+        report.polls = polls.get();
+      }
+    } finally {
+      server.stop();
+      if (previousRootUrl == null) {
+        System.clearProperty(CloudDebugConfigType.GCT_DEBUGGER_ROOT_URL);
+      } else {
+        System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_ROOT_URL, previousRootUrl);
+      }
+    }
+    return report;
+  }
+
+  private static void awaitShown(@NotNull Report report, long hits, long timeoutMs)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (System.nanoTime() < deadline) {
+      synchronized (report) {
+        if (report.snapshotsShown >= hits) {
+          return;
+        }
+      }
+      Thread.sleep(DRAIN_POLL_MS);
+    }
+  }
+
+  private void show(@NotNull FakeCloudDebuggerServer server, @NotNull Debugger client,
+      @NotNull CloudDebugProcessState state, @NotNull BreakpointRecord breakpoint,
+      @NotNull Report report) {
+    Long hitNanos = server.getHitTimeNanos(state.getDebuggeeId(), breakpoint.getId());
+    if (hitNanos == null) {
+      return;
+    }
+    if (config.hydrate) {
+      try {
+        GetBreakpointResponse response = client.debuggees().breakpoints()
+            .get(state.getDebuggeeId(), breakpoint.getId()).execute();
+        if (response.getBreakpoint() == null || response.getBreakpoint().getStackFrames() == null) {
+          return;
+        }
+      } catch (IOException ex) {
+        return;
+      }
+    }
+    long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - hitNanos);
+    synchronized (report) {
+      report.snapshotsShown++;
+      report.latenciesMs.add(latencyMs);
+    }
+  }
+
+  private static final class PollLoop implements Runnable {
+
+    private final CloudDebugGlobalPoller poller;
+    private final CloudDebugProcessState state;
+    private final AtomicBoolean polling;
+    private final AtomicLong polls;
+
+    PollLoop(CloudDebugGlobalPoller poller, CloudDebugProcessState state, AtomicBoolean polling,
+        AtomicLong polls) {
+      this.poller = poller;
+      this.state = state;
+      this.polling = polling;
+      this.polls = polls;
+    }
+
+    @Override
+    public void run() {
+      while (polling.get()) {
+        poller.pollForChanges(state);
+        polls.incrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.clouddebugger.v2.Clouddebugger;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees.Breakpoints;
+import com.google.api.services.clouddebugger.v2.model.GetBreakpointResponse;
+import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
+import com.google.cloud.tools.intellij.debugger.CloudDebuggerMetrics.MethodSummary;
+import com.google.cloud.tools.intellij.debugger.CloudDebuggerMetrics.Outcome;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class CloudDebuggerMetricsTest {
+
+  private CloudDebuggerMetrics metrics;
+
+  @Before
+  public void setUp() {
+    metrics = new CloudDebuggerMetrics();
+  }
+
+  @Test
+  public void testRecord_countsOutcomes() throws IOException {
+    Breakpoints.Get success = createClient(new MockLowLevelHttpResponse()
+        .setContentType("application/json; charset=UTF-8")
+        .setContent("{\"breakpoint\": {\"id\": \"a\"}}"))
+        .debuggees().breakpoints().get("debuggee", "a");
+    Breakpoints.Get conflict = mock(Breakpoints.Get.class);
+    when(conflict.executeUnparsed()).thenThrow(
+        new HttpResponseException.Builder(409, "Conflict", new HttpHeaders()).build());
+    Breakpoints.Get timeout = mock(Breakpoints.Get.class);
+    when(timeout.executeUnparsed()).thenThrow(new SocketTimeoutException());
+    Breakpoints.Get error = mock(Breakpoints.Get.class);
+    when(error.executeUnparsed()).thenThrow(new IOException());
+
+    GetBreakpointResponse response = metrics.record("breakpoints.get", success);
+    assertEquals("a", response.getBreakpoint().getId());
+    for (Breakpoints.Get failing : new Breakpoints.Get[]{conflict, timeout, error}) {
+      try {
+        metrics.record("breakpoints.get", failing);
+        fail("expected IOException");
+      } catch (IOException expectedException) {
+        // rethrown after recording
+      }
+    }
+
+    List<MethodSummary> summaries = metrics.getSummaries();
+    assertEquals(1, summaries.size());
+    MethodSummary summary = summaries.get(0);
+    assertEquals("breakpoints.get", summary.getMethod());
+    assertEquals(4, summary.getCalls());
+    assertEquals(1, summary.getConflicts());
+    assertEquals(1, summary.getTimeouts());
+    assertEquals(1, summary.getErrors());
+  }
+
+  @Test
+  public void testRecord_countsGzippedResponseWithoutContentLength() throws IOException {
+    String json = "{\"nextWaitToken\": \"token\"}";
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+    gzip.write(json.getBytes("UTF-8"));
+    gzip.close();
+    Breakpoints.List request = createClient(new MockLowLevelHttpResponse()
+        .setContentType("application/json; charset=UTF-8")
+        .setContentEncoding("gzip")
+        .setContent(new ByteArrayInputStream(compressed.toByteArray())))
+        .debuggees().breakpoints().list("debuggee");
+
+    ListBreakpointsResponse response = metrics.record("breakpoints.list", request);
+
+    assertEquals("token", response.getNextWaitToken());
+    MethodSummary summary = metrics.getSummaries().get(0);
+    assertEquals(1, summary.getSizedResponses());
+    assertEquals(json.length(), summary.getTotalResponseBytes());
+  }
+
+  @Test
+  public void testRecordCall_histogramAndPercentiles() {
+    for (int i = 0; i < 90; i++) {
+      metrics.recordCall("breakpoints.list", 20, null, Outcome.SUCCESS);
+    }
+    for (int i = 0; i < 9; i++) {
+      metrics.recordCall("breakpoints.list", 400, 1000L, Outcome.SUCCESS);
+    }
+    metrics.recordCall("breakpoints.list", 200000, 5000L, Outcome.SUCCESS);
+
+    MethodSummary summary = metrics.getSummaries().get(0);
+    long[] histogram = summary.getLatencyHistogram();
+    assertEquals(90, histogram[1]);
+    assertEquals(9, histogram[5]);
+    assertEquals(1, histogram[histogram.length - 1]);
+    assertEquals(25, summary.getLatencyPercentileMs(50));
+    assertEquals(25, summary.getLatencyPercentileMs(90));
+    assertEquals(500, summary.getLatencyPercentileMs(99));
+    assertEquals(200000, summary.getLatencyPercentileMs(100));
+    assertEquals(200000, summary.getMaxLatencyMs());
+    assertEquals(10, summary.getSizedResponses());
+    assertEquals(14000, summary.getTotalResponseBytes());
+    assertEquals(5000, summary.getMaxResponseBytes());
+  }
+
+  @Test
+  public void testRecordWaitToken() {
+    metrics.recordWaitToken("a", "a");
+    metrics.recordWaitToken("a", "b");
+    metrics.recordWaitToken(null, "b");
+
+    assertEquals(2, metrics.getWaitTokenChangedCount());
+    assertEquals(1, metrics.getWaitTokenUnchangedCount());
+  }
+
+  @Test
+  public void testToJson_andReset() throws IOException {
+    metrics.recordCall("breakpoints.set", 5, 10L, Outcome.SUCCESS);
+    metrics.recordCall("debuggees.list", 5, null, Outcome.ERROR);
+    metrics.recordWaitToken("a", "a");
+
+    String json = metrics.toJson();
+    assertTrue(json.contains("\"breakpoints.set\""));
+    assertTrue(json.contains("\"debuggees.list\""));
+    assertTrue(json.contains("\"waitTokens\""));
+
+    metrics.reset();
+    assertTrue(metrics.getSummaries().isEmpty());
+    assertEquals(0, metrics.getWaitTokenUnchangedCount());
+  }
+
+  @Test
+  public void testGetBucketLabel() {
+    assertEquals("<=10", CloudDebuggerMetrics.getBucketLabel(0));
+    assertEquals(">120000",
+        CloudDebuggerMetrics.getBucketLabel(CloudDebuggerMetrics.LATENCY_BUCKET_BOUNDS_MS.length));
+  }
+
+  private static Clouddebugger.Debugger createClient(MockLowLevelHttpResponse response) {
+    MockHttpTransport transport =
+        new MockHttpTransport.Builder().setLowLevelHttpResponse(response).build();
+    return new Clouddebugger.Builder(transport, JacksonFactory.getDefaultInstance(), null)
+        .setApplicationName("test").build().debugger();
+  }
+}
@@ -24,6 +24,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.xdebugger.frame.XCompositeNode;
 import com.intellij.xdebugger.frame.XDebuggerTreeNodeHyperlink;
+import com.intellij.xdebugger.frame.XValue;
 import com.intellij.xdebugger.frame.XValueChildrenList;
 
 import org.junit.Assert;
@@ -81,19 +82,121 @@ public class CloudExecutionStackTest {
     Assert.assertEquals("foo", node.seenChildren.get(0));
   }
 
+  @Test
+  public void testComputeChildren_pagesLargeFrames() {
+    StackFrame frame = new StackFrame();
+    SourceLocation location = new SourceLocation();
+    location.setLine(1);
+    frame.setLocation(location);
+    List<Variable> variables = new ArrayList<Variable>();
+    int count = XCompositeNode.MAX_CHILDREN_TO_SHOW * 2 + 5;
+    for (int i = 0; i < count; i++) {
+      Variable variable = new Variable();
+      variable.setName("var" + i);
+      variables.add(variable);
+    }
+    frame.setLocals(variables);
+    List<StackFrame> frames = new ArrayList<StackFrame>();
+    frames.add(frame);
+
+    CloudStackFrame localFrame =
+        new CloudExecutionStack(project, "name", frames, null, null).getTopFrame();
+    Assert.assertNotNull(localFrame);
+    SpyNode node = new SpyNode();
+    localFrame.computeChildren(node);
+    Assert.assertEquals(XCompositeNode.MAX_CHILDREN_TO_SHOW, node.seenChildren.size());
+    Assert.assertEquals(count - XCompositeNode.MAX_CHILDREN_TO_SHOW, node.remaining);
+
+    localFrame.computeChildren(node);
+    localFrame.computeChildren(node);
+    Assert.assertEquals(count, node.seenChildren.size());
+    Assert.assertEquals("var" + (count - 1), node.seenChildren.get(count - 1));
+  }
+
+  @Test
+  public void testComputeChildren_referencesToSameTableEntryKeepTheirOwnNameAndMembers() {
+    StackFrame frame = new StackFrame();
+    SourceLocation location = new SourceLocation();
+    location.setLine(1);
+    frame.setLocation(location);
+    List<Variable> locals = new ArrayList<Variable>();
+    locals.add(new Variable().setName("first").setVarTableIndex(0));
+    List<Variable> ownMembers = new ArrayList<Variable>();
+    ownMembers.add(new Variable().setName("own"));
+    locals.add(new Variable().setName("second").setVarTableIndex(0).setMembers(ownMembers));
+    frame.setLocals(locals);
+    List<Variable> entryMembers = new ArrayList<Variable>();
+    entryMembers.add(new Variable().setName("shared"));
+    List<Variable> variableTable = new ArrayList<Variable>();
+    variableTable.add(new Variable().setName("entry").setValue("v").setMembers(entryMembers));
+    List<StackFrame> frames = new ArrayList<StackFrame>();
+    frames.add(frame);
+
+    CloudStackFrame localFrame =
+        new CloudExecutionStack(project, "name", frames, variableTable, null).getTopFrame();
+    Assert.assertNotNull(localFrame);
+    SpyNode node = new SpyNode();
+    localFrame.computeChildren(node);
+
+    Assert.assertNotSame(node.seenValues.get(0), node.seenValues.get(1));
+    Assert.assertEquals("first", node.seenValues.get(0).getEvaluationExpression());
+    Assert.assertEquals("second", node.seenValues.get(1).getEvaluationExpression());
+    SpyNode firstMembers = new SpyNode();
+    node.seenValues.get(0).computeChildren(firstMembers);
+    Assert.assertEquals("shared", firstMembers.seenChildren.get(0));
+    SpyNode secondMembers = new SpyNode();
+    node.seenValues.get(1).computeChildren(secondMembers);
+    Assert.assertEquals("own", secondMembers.seenChildren.get(0));
+  }
+
+  @Test
+  public void testComputeChildren_referencesToSameTableEntryShareMemberValues() {
+    StackFrame frame = new StackFrame();
+    SourceLocation location = new SourceLocation();
+    location.setLine(1);
+    frame.setLocation(location);
+    List<Variable> locals = new ArrayList<Variable>();
+    locals.add(new Variable().setName("first").setVarTableIndex(0));
+    locals.add(new Variable().setName("second").setVarTableIndex(0));
+    frame.setLocals(locals);
+    List<Variable> entryMembers = new ArrayList<Variable>();
+    entryMembers.add(new Variable().setName("shared"));
+    List<Variable> variableTable = new ArrayList<Variable>();
+    variableTable.add(new Variable().setName("entry").setMembers(entryMembers));
+    List<StackFrame> frames = new ArrayList<StackFrame>();
+    frames.add(frame);
+
+    CloudStackFrame localFrame =
+        new CloudExecutionStack(project, "name", frames, variableTable, null).getTopFrame();
+    Assert.assertNotNull(localFrame);
+    SpyNode node = new SpyNode();
+    localFrame.computeChildren(node);
+    SpyNode firstMembers = new SpyNode();
+    node.seenValues.get(0).computeChildren(firstMembers);
+    SpyNode secondMembers = new SpyNode();
+    node.seenValues.get(1).computeChildren(secondMembers);
+
+    Assert.assertEquals("second", node.seenValues.get(1).getEvaluationExpression());
+    Assert.assertSame(firstMembers.seenValues.get(0), secondMembers.seenValues.get(0));
+  }
+
   private static class SpyNode implements XCompositeNode {
 
     List<String> seenChildren = new ArrayList<String>();
+    List<XValue> seenValues = new ArrayList<XValue>();
+    int remaining;
 
     @Override
     public void addChildren(XValueChildrenList children, boolean last) {
       for (int i = 0; i < children.size(); i++) {
         seenChildren.add(children.getName(i));
+        seenValues.add(children.getValue(i));
       }
     }
 
     @Override
     public void tooManyChildren(int remaining) {
+      this.remaining = remaining;
     }
 
     @Override
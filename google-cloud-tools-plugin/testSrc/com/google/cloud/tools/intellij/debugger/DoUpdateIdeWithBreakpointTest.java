@@ -106,7 +106,7 @@ public class DoUpdateIdeWithBreakpointTest extends BasePluginTestCase {
                                       virtualFile,
                                       line,
                                       cloudLineBreakpointProperties,
-                                      serverBreakpoint,
+                                      BreakpointRecord.of(serverBreakpoint),
                                       ideBreakpoints,
                                       cloudDebugProcess)
         .run();
@@ -0,0 +1,486 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.Debuggee;
+import com.google.api.services.clouddebugger.v2.model.GetBreakpointResponse;
+import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
+import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
+import com.google.api.services.clouddebugger.v2.model.SetBreakpointResponse;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process stand-in for the clouddebugger v2 API, for end-to-end tests and load runs of the
+ * poll loop. Point the plugin at it with {@link CloudDebugConfigType#GCT_DEBUGGER_ROOT_URL}.
+ * <p/>
+ * It implements {@code debuggees.list} and {@code breakpoints.list/get/set/delete}. Every change to
+ * a debuggee's breakpoints bumps its wait token; a list request carrying the current token hangs
+ * until the next change and answers 409 if none happens within the wait timeout, like the real
+ * backend. Breakpoints are hit either explicitly with {@link #hit} or at a fixed rate with
+ * {@link #startHits}, which turns a random pending breakpoint into a final snapshot.
+ */
+class FakeCloudDebuggerServer {
+
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final DateTimeFormatter TIME_FORMAT = ISODateTimeFormat.dateTime().withZoneUTC();
+  private static final Pattern DEBUGGEES_PATH = Pattern.compile(".*/debugger/debuggees/?");
+  private static final Pattern BREAKPOINTS_PATH =
+      Pattern.compile(".*/debugger/debuggees/([^/]+)/breakpoints(?:/([^/]+))?/?");
+
+  private final Map<String, DebuggeeData> debuggees = new LinkedHashMap<String, DebuggeeData>();
+  // System.nanoTime() of the moment each breakpoint was hit, keyed by debuggeeId/breakpointId.
+  private final Map<String, Long> hitTimes = new ConcurrentHashMap<String, Long>();
+  private final Random random = new Random(0);
+  private final long waitTimeoutMs;
+  private HttpServer server;
+  private ExecutorService requestExecutor;
+  private ScheduledExecutorService hitExecutor;
+  private int snapshotVariableCount = 10;
+  private int nextBreakpointId;
+
+  /**
+   * @param waitTimeoutMs how long a list request with the current wait token hangs before the
+   *     server answers 409
+   */
+  FakeCloudDebuggerServer(long waitTimeoutMs) {
+    this.waitTimeoutMs = waitTimeoutMs;
+  }
+
+  /**
+   * Starts listening on a free port of the loopback interface.
+   */
+  void start() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    // Hanging list requests each hold a thread, so the pool must not be bounded.
+    requestExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(requestExecutor);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          dispatch(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  void stop() {
+    stopHits();
+    if (server != null) {
+      server.stop(0);
+      requestExecutor.shutdownNow();
+      server = null;
+    }
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Returns the value to use as the API root URL.
+   */
+  @NotNull
+  String getRootUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+        + "/";
+  }
+
+  /**
+   * Sets how many local variables a snapshot captured by a hit holds.
+   */
+  synchronized void setSnapshotVariableCount(int count) {
+    snapshotVariableCount = count;
+  }
+
+  synchronized void addDebuggee(@NotNull String projectNumber, @NotNull String debuggeeId) {
+    Debuggee debuggee = new Debuggee();
+    debuggee.setId(debuggeeId);
+    debuggee.setProject(projectNumber);
+    debuggee.setDescription("fake debuggee " + debuggeeId);
+    debuggee.setLabels(new HashMap<String, String>());
+    debuggees.put(debuggeeId, new DebuggeeData(debuggee));
+  }
+
+  /**
+   * Adds pending breakpoints spread over a few fake source files.
+   *
+   * @return the ids of the new breakpoints
+   */
+  synchronized List<String> addBreakpoints(@NotNull String debuggeeId, int count) {
+    List<String> ids = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      SourceLocation location = new SourceLocation();
+      location.setPath("com/example/Service" + (i % 20) + ".java");
+      location.setLine(10 + i);
+      Breakpoint breakpoint = new Breakpoint();
+      breakpoint.setLocation(location);
+      ids.add(addBreakpoint(getDebuggee(debuggeeId), breakpoint).getId());
+    }
+    getDebuggee(debuggeeId).changed();
+    notifyAll();
+    return ids;
+  }
+
+  /**
+   * Finalizes a pending breakpoint as if the debuggee had hit it.
+   *
+   * @return false if the breakpoint does not exist or is already final
+   */
+  synchronized boolean hit(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    DebuggeeData data = getDebuggee(debuggeeId);
+    Breakpoint breakpoint = data.breakpoints.get(breakpointId);
+    if (breakpoint == null || Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
+      return false;
+    }
+    List<Variable> locals = new ArrayList<Variable>(snapshotVariableCount);
+    for (int i = 0; i < snapshotVariableCount; i++) {
+      Variable local = new Variable();
+      local.setName("local" + i);
+      local.setType("java.lang.String");
+      local.setValue("\"value " + i + "\"");
+      locals.add(local);
+    }
+    StackFrame frame = new StackFrame();
+    frame.setFunction("com.example.Service.handle");
+    frame.setLocation(breakpoint.getLocation());
+    frame.setLocals(locals);
+    List<StackFrame> frames = new ArrayList<StackFrame>();
+    frames.add(frame);
+
+    breakpoint.setStackFrames(frames);
+    breakpoint.setIsFinalState(Boolean.TRUE);
+    breakpoint.setFinalTime(now());
+    hitTimes.put(key(debuggeeId, breakpointId), System.nanoTime());
+    data.changed();
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Hits a random pending breakpoint of a random debuggee at the given rate, until
+   * {@link #stopHits()}. With {@code replenish} every hit breakpoint is replaced by a new pending
+   * one, so the pending volume stays constant over long runs.
+   */
+  synchronized void startHits(double hitsPerSecond, final boolean replenish) {
+    stopHits();
+    hitExecutor = Executors.newSingleThreadScheduledExecutor();
+    long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / hitsPerSecond);
+    hitExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        hitRandomBreakpoint(replenish);
+      }
+    }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+  }
+
+  synchronized void stopHits() {
+    if (hitExecutor != null) {
+      hitExecutor.shutdownNow();
+      hitExecutor = null;
+    }
+  }
+
+  /**
+   * Returns the {@link System#nanoTime()} at which the breakpoint was hit, or null if it was not.
+   */
+  @Nullable
+  Long getHitTimeNanos(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    return hitTimes.get(key(debuggeeId, breakpointId));
+  }
+
+  int getHitCount() {
+    return hitTimes.size();
+  }
+
+  private synchronized void hitRandomBreakpoint(boolean replenish) {
+    List<String[]> pending = new ArrayList<String[]>();
+    for (DebuggeeData data : debuggees.values()) {
+      for (Breakpoint breakpoint : data.breakpoints.values()) {
+        if (!Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
+          pending.add(new String[]{data.debuggee.getId(), breakpoint.getId()});
+        }
+      }
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+    String[] target = pending.get(random.nextInt(pending.size()));
+    hit(target[0], target[1]);
+    if (replenish) {
+      addBreakpoints(target[0], 1);
+    }
+  }
+
+  private void dispatch(@NotNull HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    String method = exchange.getRequestMethod();
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+    if ("GET".equals(method) && DEBUGGEES_PATH.matcher(path).matches()) {
+      sendJson(exchange, 200, listDebuggees(query.get("project")));
+      return;
+    }
+    Matcher matcher = BREAKPOINTS_PATH.matcher(path);
+    if (!matcher.matches()) {
+      sendError(exchange, 404, "NOT_FOUND", "no such method: " + path);
+      return;
+    }
+    String debuggeeId = matcher.group(1);
+    String breakpointId = matcher.group(2);
+    synchronized (this) {
+      if (!debuggees.containsKey(debuggeeId)) {
+        sendError(exchange, 404, "NOT_FOUND", "no such debuggee: " + debuggeeId);
+        return;
+      }
+    }
+
+    if ("GET".equals(method) && breakpointId == null) {
+      ListBreakpointsResponse response = listBreakpoints(debuggeeId, query);
+      if (response == null) {
+        sendError(exchange, 409, "ABORTED", "wait expired");
+      } else {
+        sendJson(exchange, 200, response);
+      }
+    } else if ("POST".equals(method) && "set".equals(breakpointId)) {
+      Breakpoint breakpoint = JSON_FACTORY.fromInputStream(exchange.getRequestBody(), UTF_8,
+          Breakpoint.class);
+      sendJson(exchange, 200, new SetBreakpointResponse().setBreakpoint(setBreakpoint(debuggeeId,
+          breakpoint)));
+    } else if ("GET".equals(method)) {
+      Breakpoint breakpoint = getBreakpoint(debuggeeId, breakpointId);
+      if (breakpoint == null) {
+        sendError(exchange, 404, "NOT_FOUND", "no such breakpoint: " + breakpointId);
+      } else {
+        sendJson(exchange, 200, new GetBreakpointResponse().setBreakpoint(breakpoint));
+      }
+    } else if ("DELETE".equals(method)) {
+      if (deleteBreakpoint(debuggeeId, breakpointId)) {
+        sendJson(exchange, 200, new LinkedHashMap<String, Object>());
+      } else {
+        sendError(exchange, 404, "NOT_FOUND", "no such breakpoint: " + breakpointId);
+      }
+    } else {
+      sendError(exchange, 405, "INVALID_ARGUMENT", "unsupported method " + method);
+    }
+  }
+
+  private synchronized ListDebuggeesResponse listDebuggees(@Nullable String projectNumber) {
+    List<Debuggee> result = new ArrayList<Debuggee>();
+    for (DebuggeeData data : debuggees.values()) {
+      if (projectNumber == null || projectNumber.equals(data.debuggee.getProject())) {
+        result.add(data.debuggee);
+      }
+    }
+    return new ListDebuggeesResponse().setDebuggees(result);
+  }
+
+  /**
+   * Returns the breakpoint list, or null if the request carried the current wait token and
+   * nothing changed before the wait timed out.
+   */
+  @Nullable
+  private synchronized ListBreakpointsResponse listBreakpoints(@NotNull String debuggeeId,
+      @NotNull Map<String, String> query) {
+    DebuggeeData data = getDebuggee(debuggeeId);
+    String waitToken = query.get("waitToken");
+    if (waitToken != null && waitToken.equals(data.getWaitToken())) {
+      long deadline = System.currentTimeMillis() + waitTimeoutMs;
+      long remaining = waitTimeoutMs;
+      while (waitToken.equals(data.getWaitToken()) && remaining > 0 && server != null) {
+        try {
+          wait(remaining);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+        remaining = deadline - System.currentTimeMillis();
+      }
+      if (waitToken.equals(data.getWaitToken())) {
+        return null;
+      }
+    }
+
+    boolean includeInactive = Boolean.parseBoolean(query.get("includeInactive"));
+    boolean stripResults = Boolean.parseBoolean(query.get("stripResults"));
+    List<Breakpoint> result = new ArrayList<Breakpoint>();
+    for (Breakpoint breakpoint : data.breakpoints.values()) {
+      if (!includeInactive && Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
+        continue;
+      }
+      Breakpoint copy = breakpoint.clone();
+      if (stripResults) {
+        copy.setStackFrames(null);
+        copy.setVariableTable(null);
+        copy.setEvaluatedExpressions(null);
+      }
+      result.add(copy);
+    }
+    return new ListBreakpointsResponse().setBreakpoints(result)
+        .setNextWaitToken(data.getWaitToken());
+  }
+
+  @Nullable
+  private synchronized Breakpoint getBreakpoint(@NotNull String debuggeeId,
+      @NotNull String breakpointId) {
+    Breakpoint breakpoint = getDebuggee(debuggeeId).breakpoints.get(breakpointId);
+    return breakpoint != null ? breakpoint.clone() : null;
+  }
+
+  private synchronized Breakpoint setBreakpoint(@NotNull String debuggeeId,
+      @NotNull Breakpoint breakpoint) {
+    DebuggeeData data = getDebuggee(debuggeeId);
+    Breakpoint added = addBreakpoint(data, breakpoint);
+    data.changed();
+    notifyAll();
+    return added.clone();
+  }
+
+  private synchronized boolean deleteBreakpoint(@NotNull String debuggeeId,
+      @NotNull String breakpointId) {
+    DebuggeeData data = getDebuggee(debuggeeId);
+    if (data.breakpoints.remove(breakpointId) == null) {
+      return false;
+    }
+    data.changed();
+    notifyAll();
+    return true;
+  }
+
+  private Breakpoint addBreakpoint(@NotNull DebuggeeData data, @NotNull Breakpoint breakpoint) {
+    breakpoint.setId("bp-" + (++nextBreakpointId));
+    breakpoint.setAction("CAPTURE");
+    breakpoint.setCreateTime(now());
+    breakpoint.setIsFinalState(Boolean.FALSE);
+    data.breakpoints.put(breakpoint.getId(), breakpoint);
+    return breakpoint;
+  }
+
+  @NotNull
+  private DebuggeeData getDebuggee(@NotNull String debuggeeId) {
+    DebuggeeData data = debuggees.get(debuggeeId);
+    if (data == null) {
+      throw new IllegalArgumentException("unknown debuggee " + debuggeeId);
+    }
+    return data;
+  }
+
+  private static void sendJson(@NotNull HttpExchange exchange, int status, @NotNull Object body)
+      throws IOException {
+    byte[] bytes = JSON_FACTORY.toString(body).getBytes(UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void sendError(@NotNull HttpExchange exchange, int code, @NotNull String status,
+      @NotNull String message) throws IOException {
+    Map<String, Object> error = new LinkedHashMap<String, Object>();
+    error.put("code", code);
+    error.put("message", message);
+    error.put("status", status);
+    Map<String, Object> body = new LinkedHashMap<String, Object>();
+    body.put("error", error);
+    sendJson(exchange, code, body);
+  }
+
+  private static Map<String, String> parseQuery(@Nullable String rawQuery)
+      throws UnsupportedEncodingException {
+    Map<String, String> params = new HashMap<String, String>();
+    if (rawQuery == null) {
+      return params;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int separator = pair.indexOf('=');
+      if (separator > 0) {
+        params.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+      }
+    }
+    return params;
+  }
+
+  private static String now() {
+    return TIME_FORMAT.print(System.currentTimeMillis());
+  }
+
+  private static String key(String debuggeeId, String breakpointId) {
+    return debuggeeId + '/' + breakpointId;
+  }
+
+  private static final class DebuggeeData {
+
+    final Debuggee debuggee;
+    final Map<String, Breakpoint> breakpoints = new LinkedHashMap<String, Breakpoint>();
+    int version;
+
+    DebuggeeData(Debuggee debuggee) {
+      this.debuggee = debuggee;
+    }
+
+    void changed() {
+      version++;
+    }
+
+    String getWaitToken() {
+      return "token-" + version;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class FakeCloudDebuggerServerTest extends BasePluginTestCase {
+
+  private static final String DEBUGGEE_ID = "debuggee";
+
+  private FakeCloudDebuggerServer server;
+  private Debugger client;
+
+  @Before
+  public void setUp() throws IOException {
+    registerService(CloudToolsPluginInfoService.class, mock(CloudToolsPluginInfoService.class));
+    server = new FakeCloudDebuggerServer(200);
+    server.start();
+    server.addDebuggee("1234", DEBUGGEE_ID);
+    System.setProperty(CloudDebugConfigType.GCT_DEBUGGER_ROOT_URL, server.getRootUrl());
+    client = CloudDebuggerClient.createClient(new NetHttpTransport(), null);
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(CloudDebugConfigType.GCT_DEBUGGER_ROOT_URL);
+    server.stop();
+  }
+
+  @Test
+  public void testDebuggeesList() throws IOException {
+    assertEquals(DEBUGGEE_ID, client.debuggees().list().setProject("1234").execute()
+        .getDebuggees().get(0).getId());
+    assertNull(client.debuggees().list().setProject("other").execute().getDebuggees());
+  }
+
+  @Test
+  public void testSetGetDelete() throws IOException {
+    SourceLocation location = new SourceLocation();
+    location.setPath("com/example/Foo.java");
+    location.setLine(42);
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setLocation(location);
+
+    Breakpoint added =
+        client.debuggees().breakpoints().set(DEBUGGEE_ID, breakpoint).execute().getBreakpoint();
+    assertNotNull(added.getId());
+
+    assertTrue(server.hit(DEBUGGEE_ID, added.getId()));
+    Breakpoint snapshot = client.debuggees().breakpoints().get(DEBUGGEE_ID, added.getId())
+        .execute().getBreakpoint();
+    assertTrue(snapshot.getIsFinalState());
+    assertNotNull(snapshot.getStackFrames());
+
+    client.debuggees().breakpoints().delete(DEBUGGEE_ID, added.getId()).execute();
+    try {
+      client.debuggees().breakpoints().get(DEBUGGEE_ID, added.getId()).execute();
+      fail("expected 404");
+    } catch (GoogleJsonResponseException ex) {
+      assertEquals(404, ex.getStatusCode());
+    }
+  }
+
+  @Test
+  public void testList_stripsResultsAndHonorsWaitToken() throws IOException {
+    List<String> ids = server.addBreakpoints(DEBUGGEE_ID, 3);
+    server.hit(DEBUGGEE_ID, ids.get(0));
+
+    ListBreakpointsResponse first = client.debuggees().breakpoints().list(DEBUGGEE_ID)
+        .setIncludeInactive(Boolean.TRUE).setStripResults(Boolean.TRUE).execute();
+    assertEquals(3, first.getBreakpoints().size());
+    for (Breakpoint breakpoint : first.getBreakpoints()) {
+      assertNull(breakpoint.getStackFrames());
+    }
+
+    try {
+      client.debuggees().breakpoints().list(DEBUGGEE_ID)
+          .setWaitToken(first.getNextWaitToken()).execute();
+      fail("expected 409");
+    } catch (GoogleJsonResponseException ex) {
+      assertEquals(409, ex.getDetails().getCode());
+    }
+
+    server.hit(DEBUGGEE_ID, ids.get(1));
+    ListBreakpointsResponse second = client.debuggees().breakpoints().list(DEBUGGEE_ID)
+        .setWaitToken(first.getNextWaitToken()).execute();
+    assertEquals(1, second.getBreakpoints().size());
+  }
+
+  @Test
+  public void testLoadHarness_deliversHits() throws Exception {
+    CloudDebuggerLoadHarness.Config config = new CloudDebuggerLoadHarness.Config();
+    config.debuggees = 2;
+    config.breakpointsPerDebuggee = 10;
+    config.hitsPerSecond = 20;
+    config.durationMs = 1000;
+    config.serverWaitTimeoutMs = 500;
+
+    CloudDebuggerLoadHarness.Report report =
+        new CloudDebuggerLoadHarness(config, getProject()).run();
+
+    assertTrue(report.hits > 0);
+    // Snapshots still in flight when the drain deadline passes are not counted.
+    assertTrue(report.snapshotsShown > 0);
+    assertTrue(report.snapshotsShown <= report.hits);
+  }
+
+  /**
+   * A full load run that reports throughput and latency. Skipped unless
+   * {@link Benchmarks#PROPERTY} is set.
+   */
+  @Test
+  public void testLoadHarness_fullRun() throws Exception {
+    Benchmarks.assumeEnabled();
+    CloudDebuggerLoadHarness.Config config = new CloudDebuggerLoadHarness.Config();
+    config.debuggees = 20;
+    config.breakpointsPerDebuggee = 500;
+    config.hitsPerSecond = 200;
+    config.durationMs = 60 * 1000;
+
+    Benchmarks.report("CloudDebuggerLoadHarness", "%s",
+        new CloudDebuggerLoadHarness(config, getProject()).run());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class FallbackPollCadenceTest {
+
+  private static final long NOW = 1000000;
+
+  private FallbackPollCadence cadence;
+  private List<BreakpointRecord> pending;
+  private List<BreakpointRecord> allFinal;
+
+  @Before
+  public void setUp() {
+    cadence = new FallbackPollCadence(new Random(0));
+    pending = Arrays.asList(breakpoint(true), breakpoint(false));
+    allFinal = Collections.singletonList(breakpoint(true));
+  }
+
+  @Test
+  public void testIsPollDue_pollsSlowlyWithoutPendingBreakpoints() {
+    assertTrue(cadence.isPollDue(NOW, pending, true));
+    assertTrue(cadence.isPollDue(NOW, allFinal, true));
+
+    cadence.onPolled(NOW, false);
+    long fastDelay = (long) (cadence.getDelayMs() * (1 + FallbackPollCadence.JITTER));
+    long minSlowDelay =
+        (long) (FallbackPollCadence.MAX_DELAY_MS * (1 - FallbackPollCadence.JITTER));
+    long maxSlowDelay =
+        (long) (FallbackPollCadence.MAX_DELAY_MS * (1 + FallbackPollCadence.JITTER));
+
+    assertTrue(cadence.isPollDue(NOW + fastDelay, pending, true));
+    assertFalse(cadence.isPollDue(NOW + fastDelay, allFinal, true));
+    assertFalse(cadence.isPollDue(NOW + minSlowDelay - 1, null, true));
+    assertTrue(cadence.isPollDue(NOW + maxSlowDelay, allFinal, true));
+    assertTrue(cadence.isPollDue(NOW + maxSlowDelay, null, true));
+  }
+
+  @Test
+  public void testIsPollDue_pausedWhileIdeInactive() {
+    assertFalse(cadence.isPollDue(NOW, pending, false));
+  }
+
+  @Test
+  public void testOnPolled_backsOffExponentiallyUpToMax() {
+    long expected = FallbackPollCadence.MIN_DELAY_MS;
+    for (int i = 0; i < 20; i++) {
+      cadence.onPolled(NOW, false);
+      expected = Math.min(expected * 2, FallbackPollCadence.MAX_DELAY_MS);
+      assertEquals(expected, cadence.getDelayMs());
+    }
+    assertEquals(FallbackPollCadence.MAX_DELAY_MS, cadence.getDelayMs());
+
+    cadence.onPolled(NOW, true);
+    assertEquals(FallbackPollCadence.MIN_DELAY_MS, cadence.getDelayMs());
+  }
+
+  @Test
+  public void testOnPolled_nextPollIsJittered() {
+    cadence.onPolled(NOW, false);
+    long delay = cadence.getDelayMs();
+    long minDelay = (long) (delay * (1 - FallbackPollCadence.JITTER));
+    long maxDelay = (long) (delay * (1 + FallbackPollCadence.JITTER));
+
+    assertFalse(cadence.isPollDue(NOW + minDelay - 1, pending, true));
+    assertTrue(cadence.isPollDue(NOW + maxDelay, pending, true));
+  }
+
+  @Test
+  public void testOnBreakpointSet_pollsRightAwayEvenIfListHasNoPending() {
+    for (int i = 0; i < 5; i++) {
+      cadence.onPolled(NOW, false);
+    }
+
+    cadence.onBreakpointSet(NOW + 1);
+
+    assertTrue(cadence.isPollDue(NOW + 1, allFinal, true));
+    assertEquals(FallbackPollCadence.MIN_DELAY_MS, cadence.getDelayMs());
+    cadence.onPolled(NOW + 1, true);
+    long minSlowDelay =
+        (long) (FallbackPollCadence.MAX_DELAY_MS * (1 - FallbackPollCadence.JITTER));
+    assertFalse(cadence.isPollDue(NOW + minSlowDelay, allFinal, true));
+  }
+
+  private static BreakpointRecord breakpoint(boolean isFinal) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setIsFinalState(isFinal);
+    return BreakpointRecord.of(breakpoint);
+  }
+}
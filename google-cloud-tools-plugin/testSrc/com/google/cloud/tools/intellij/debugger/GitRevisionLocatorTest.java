@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import git4idea.repo.GitRepository;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class GitRevisionLocatorTest {
+
+  private static final String REVISION = "abc123";
+
+  // Urls of the roots that have REVISION.
+  private final Set<String> rootsWithRevision =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final List<String> probedRoots =
+      Collections.synchronizedList(new ArrayList<String>());
+  private ExecutorService executor;
+  private GitRevisionLocator locator;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(GitRevisionLocator.PARALLELISM);
+    locator = new GitRevisionLocator(mock(Project.class), executor) {
+      @Override
+      boolean hasRevision(@NotNull VirtualFile root, @NotNull String revisionId) {
+        probedRoots.add(root.getUrl());
+        return REVISION.equals(revisionId) && rootsWithRevision.contains(root.getUrl());
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testFindRepository_findsRootWithRevision() {
+    List<GitRepository> repositories = createRepositories(15);
+    rootsWithRevision.add("root7");
+
+    assertSame(repositories.get(7), locator.findRepository(repositories, REVISION));
+  }
+
+  @Test
+  public void testFindRepository_returnsNullIfNoRootHasRevision() {
+    List<GitRepository> repositories = createRepositories(15);
+
+    assertNull(locator.findRepository(repositories, REVISION));
+    assertEquals(15, probedRoots.size());
+  }
+
+  @Test
+  public void testFindRepository_remembersRootForRevision() {
+    List<GitRepository> repositories = createRepositories(15);
+    rootsWithRevision.add("root3");
+    locator.findRepository(repositories, REVISION);
+    probedRoots.clear();
+
+    assertSame(repositories.get(3), locator.findRepository(repositories, REVISION));
+    assertEquals(Collections.singletonList("root3"), probedRoots);
+  }
+
+  @Test
+  public void testFindRepository_searchesAgainIfRememberedRootLostRevision() {
+    List<GitRepository> repositories = createRepositories(4);
+    rootsWithRevision.add("root1");
+    locator.findRepository(repositories, REVISION);
+    rootsWithRevision.clear();
+    rootsWithRevision.add("root2");
+
+    assertSame(repositories.get(2), locator.findRepository(repositories, REVISION));
+  }
+
+  @Test
+  public void testFindRepository_singleRootIsCheckedInPlace() {
+    List<GitRepository> repositories = createRepositories(1);
+    rootsWithRevision.add("root0");
+
+    assertSame(repositories.get(0), locator.findRepository(repositories, REVISION));
+    assertEquals(Arrays.asList("root0"), probedRoots);
+  }
+
+  private static List<GitRepository> createRepositories(int count) {
+    List<GitRepository> repositories = new ArrayList<GitRepository>();
+    for (int i = 0; i < count; i++) {
+      VirtualFile root = mock(VirtualFile.class);
+      when(root.getUrl()).thenReturn("root" + i);
+      GitRepository repository = mock(GitRepository.class);
+      when(repository.getRoot()).thenReturn(root);
+      repositories.add(repository);
+    }
+    return repositories;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.services.clouddebugger.v2.model.FormatMessage;
+import com.google.api.services.clouddebugger.v2.model.StatusMessage;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MessageTemplateTest {
+
+  @Before
+  public void setUp() {
+    MessageTemplate.clearCache();
+  }
+
+  @Test
+  public void testRender_substitutesParametersByIndex() {
+    assertEquals("Invalid value 3 for x",
+        MessageTemplate.parse("Invalid value $0 for $1").render(Arrays.asList("3", "x")));
+    assertEquals("x is 3",
+        MessageTemplate.parse("$1 is $0").render(Arrays.asList("3", "x")));
+  }
+
+  @Test
+  public void testRender_multiDigitIndexes() {
+    List<String> parameters = new ArrayList<String>();
+    for (int i = 0; i <= 10; i++) {
+      parameters.add("p" + i);
+    }
+
+    assertEquals("p10 p1", MessageTemplate.parse("$10 $1").render(parameters));
+  }
+
+  @Test
+  public void testRender_keepsLiteralText() {
+    assertEquals("100% of $ and $x",
+        MessageTemplate.parse("100% of $$ and $x").render(null));
+    assertEquals("ends with $", MessageTemplate.parse("ends with $").render(null));
+  }
+
+  @Test
+  public void testParse_keepsOverlongIndexAsText() {
+    assertEquals("$99999999999 of a",
+        MessageTemplate.parse("$99999999999 of $0").render(Collections.singletonList("a")));
+    assertEquals("$123456789",
+        MessageTemplate.parse("$123456789").render(Collections.singletonList("a")));
+  }
+
+  @Test
+  public void testRender_keepsMissingParameterReferences() {
+    assertEquals("a $1", MessageTemplate.parse("$0 $1").render(Collections.singletonList("a")));
+  }
+
+  @Test
+  public void testGet_parsesEachFormatOnce() {
+    assertSame(MessageTemplate.get("Invalid value $0"), MessageTemplate.get("Invalid value $0"));
+    assertEquals(1, MessageTemplate.getCacheSize());
+  }
+
+  @Test
+  public void testGet_cacheIsBounded() {
+    for (int i = 0; i < MessageTemplate.MAX_CACHED_TEMPLATES + 10; i++) {
+      assertEquals("message " + i, MessageTemplate.get("message " + i).render(null));
+    }
+
+    assertEquals(MessageTemplate.MAX_CACHED_TEMPLATES, MessageTemplate.getCacheSize());
+  }
+
+  @Test
+  public void testGetUserMessage() {
+    assertEquals("Invalid value 3 for x", BreakpointUtil.getUserMessage(
+        status("Invalid value $0 for $1", "3", "x")));
+    assertNull(BreakpointUtil.getUserMessage(null));
+    assertNull(BreakpointUtil.getUserMessage(new StatusMessage()));
+  }
+
+  /**
+   * Formats the status of every variable in a large variable table, as expanding the variables of a
+   * snapshot does. Skipped unless {@link Benchmarks#PROPERTY} is set.
+   */
+  @Test
+  public void testGetUserMessage_benchmark() {
+    Benchmarks.assumeEnabled();
+    List<Variable> variables = new ArrayList<Variable>();
+    String[] formats = {
+        "Only first $0 elements were captured",
+        "Object has no fields",
+        "Null pointer dereference while evaluating $0",
+        "Variable $0 of type $1 is not captured, limit of $2 reached"};
+    for (int i = 0; i < 5000; i++) {
+      variables.add(new Variable().setName("var" + i)
+          .setStatus(status(formats[i % formats.length], "var" + i, "java.lang.String", "10")));
+    }
+
+    int rounds = 200;
+    for (int warmup = 0; warmup < rounds; warmup++) {
+      formatAll(variables);
+    }
+    long start = System.nanoTime();
+    int total = 0;
+    for (int round = 0; round < rounds; round++) {
+      total += formatAll(variables);
+    }
+    long elapsed = System.nanoTime() - start;
+    Benchmarks.report("MessageTemplate", "%d messages, %.1f ns per message",
+        rounds * variables.size(), (double) elapsed / (rounds * variables.size()));
+    assertEquals(true, total > 0);
+  }
+
+  private static int formatAll(List<Variable> variables) {
+    int length = 0;
+    for (Variable variable : variables) {
+      length += BreakpointUtil.getUserMessage(variable.getStatus()).length();
+    }
+    return length;
+  }
+
+  private static StatusMessage status(String format, String... parameters) {
+    return new StatusMessage().setDescription(
+        new FormatMessage().setFormat(format).setParameters(Arrays.asList(parameters)));
+  }
+}
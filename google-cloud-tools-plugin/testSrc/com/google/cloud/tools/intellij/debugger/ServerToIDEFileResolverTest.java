@@ -19,7 +19,10 @@ package com.google.cloud.tools.intellij.debugger;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
@@ -71,7 +74,7 @@ public class ServerToIDEFileResolverTest extends JavaCodeInsightFixtureTestCase
     file2 = this.myFixture.addFileToProject(
             "path/to/prj/src/test/com/java/package/ClassTest.java", "");
 
-    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver();
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
     assertEquals(
         fileResolver.getFileFromPath(
             project, "path/to/prj/src/main/com/java/package/Class.java"),
@@ -81,7 +84,7 @@ public class ServerToIDEFileResolverTest extends JavaCodeInsightFixtureTestCase
   // When searching for the package and class name.
   @Test
   public void testGetFileFromPath_packageClass() {
-    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver();
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
 
     assertEquals(class1.getContainingFile().getVirtualFile(),
         fileResolver.getFileFromPath(project, "com/java/pkg/Class.java"));
@@ -90,12 +93,80 @@ public class ServerToIDEFileResolverTest extends JavaCodeInsightFixtureTestCase
   // When searching for file name only.
   @Test
   public void testGetFileFromPath_fileName() {
-    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver();
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
 
     assertEquals(class1.getContainingFile().getVirtualFile(),
         fileResolver.getFileFromPath(project, "Class.java"));
   }
 
+  @Test
+  public void testGetFileFromPath_cachesResolvedAndUnresolvedPaths() {
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
+
+    VirtualFile first = fileResolver.getFileFromPath(project, "com/java/pkg/Class.java");
+    assertTrue(fileResolver.isCached("com/java/pkg/Class.java"));
+    assertSame(first, fileResolver.getFileFromPath(project, "com/java/pkg/Class.java"));
+
+    assertNull(fileResolver.getFileFromPath(project, "com/java/pkg/Missing.java"));
+    assertTrue(fileResolver.isCached("com/java/pkg/Missing.java"));
+  }
+
+  @Test
+  public void testGetFileFromPath_contentChangeKeepsCache() throws Exception {
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
+    fileResolver.getFileFromPath(project, "com/java/pkg/Class.java");
+
+    final VirtualFile file = class1.getContainingFile().getVirtualFile();
+    new WriteCommandAction.Simple(project) {
+      @Override
+      protected void run() throws Throwable {
+        VfsUtil.saveText(file, "package com.java.pkg; class Class { int field; }");
+      }
+    }.execute().throwException();
+
+    assertTrue(fileResolver.isCached("com/java/pkg/Class.java"));
+  }
+
+  @Test
+  public void testGetFileFromPath_fileCreationInvalidatesCache() {
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
+    assertNull(fileResolver.getFileFromPath(project, "com/java/pkg/Created.java"));
+    assertTrue(fileResolver.isCached("com/java/pkg/Created.java"));
+
+    PsiClass created = myFixture.addClass("package com.java.pkg; class Created {}");
+
+    assertFalse(fileResolver.isCached("com/java/pkg/Created.java"));
+    assertEquals(created.getContainingFile().getVirtualFile(),
+        fileResolver.getFileFromPath(project, "com/java/pkg/Created.java"));
+  }
+
+  @Test
+  public void testGetFileFromPath_renameInvalidatesCache() throws Exception {
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
+    fileResolver.getFileFromPath(project, "com/java/pkg/ClassTest.java");
+    assertTrue(fileResolver.isCached("com/java/pkg/ClassTest.java"));
+
+    final VirtualFile file = class2.getContainingFile().getVirtualFile();
+    new WriteCommandAction.Simple(project) {
+      @Override
+      protected void run() throws Throwable {
+        file.rename(this, "ClassTests.java");
+      }
+    }.execute().throwException();
+
+    assertFalse(fileResolver.isCached("com/java/pkg/ClassTest.java"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver(project);
+    fileResolver.getFileFromPath(project, "com/java/pkg/Class.java");
+
+    fileResolver.invalidate();
+
+    assertFalse(fileResolver.isCached("com/java/pkg/Class.java"));
+  }
+
   @Test
   public void testGetPackageFromPath() {
     assertEquals("com.java.package",
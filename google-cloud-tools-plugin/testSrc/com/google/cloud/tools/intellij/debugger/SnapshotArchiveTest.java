@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class SnapshotArchiveTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = folder.newFile("snapshots.cdsnap");
+    SnapshotArchive.Writer writer = new SnapshotArchive.Writer(file);
+    try {
+      writer.add(snapshot("a", "com/example/Foo.java", 12, "userId", "42"));
+      writer.add(snapshot("b", "Bar.java", 7, "count", "3"));
+      assertEquals(2, writer.getCount());
+    } finally {
+      writer.close();
+    }
+
+    List<SnapshotArchive.Entry> entries = SnapshotArchive.readEntries(file);
+
+    assertEquals(2, entries.size());
+    assertEquals("a", entries.get(0).getId());
+    assertEquals("Foo.java:12", entries.get(0).getLocationText());
+    assertEquals(1471843414123L, entries.get(0).getFinalTimeMillis());
+    assertEquals("Bar.java:7", entries.get(1).getLocationText());
+
+    Breakpoint second = SnapshotArchive.readSnapshot(file, entries.get(1));
+    assertEquals("b", second.getId());
+    assertEquals("count",
+        second.getStackFrames().get(0).getLocals().get(0).getName());
+    assertEquals("3", second.getStackFrames().get(0).getLocals().get(0).getValue());
+    assertEquals("a", SnapshotArchive.readSnapshot(file, entries.get(0)).getId());
+  }
+
+  @Test
+  public void testReadEntries_emptyArchive() throws IOException {
+    File file = folder.newFile("empty.cdsnap");
+    new SnapshotArchive.Writer(file).close();
+
+    assertTrue(SnapshotArchive.readEntries(file).isEmpty());
+  }
+
+  @Test
+  public void testReadEntries_rejectsOtherFiles() throws IOException {
+    File file = folder.newFile("other.json");
+    FileUtil.writeToFile(file, "{\"breakpoints\": []}");
+
+    try {
+      SnapshotArchive.readEntries(file);
+      fail("expected IOException");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  private static Breakpoint snapshot(String id, String path, int line, String name,
+      String value) {
+    return new Breakpoint().setId(id).setIsFinalState(true)
+        .setFinalTime("2016-08-22T05:23:34.123Z")
+        .setLocation(new SourceLocation().setPath(path).setLine(line))
+        .setStackFrames(Collections.singletonList(new StackFrame()
+            .setLocals(Collections.singletonList(new Variable().setName(name).setValue(value)))));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class SnapshotIndexTest {
+
+  private static final String DEBUGGEE_ID = "debuggee:1";
+
+  private final SnapshotIndex index = new SnapshotIndex();
+
+  @Test
+  public void testExtractWords_coversVariablesExpressionsAndFunctions() {
+    Breakpoint snapshot = new Breakpoint().setId("a")
+        .setEvaluatedExpressions(Collections.singletonList(
+            new Variable().setName("request.getUserId()").setValue("42")))
+        .setVariableTable(Collections.singletonList(new Variable().setName("table_entry")
+            .setMembers(Collections.singletonList(new Variable().setName("nested")))))
+        .setStackFrames(Collections.singletonList(new StackFrame()
+            .setFunction("com.example.Servlet.doGet")
+            .setLocals(Collections.singletonList(
+                new Variable().setName("userName").setValue("\"Alice\"")))));
+
+    Set<String> words = SnapshotIndex.extractWords(snapshot);
+
+    assertEquals(new HashSet<String>(Arrays.asList("request", "getuserid", "42", "table_entry",
+        "nested", "com", "example", "servlet", "doget", "username", "alice")), words);
+  }
+
+  @Test
+  public void testSearch_requiresEveryWordAsPrefix() {
+    index.add(DEBUGGEE_ID, snapshot("a", "userId", "42"));
+    index.add(DEBUGGEE_ID, snapshot("b", "userId", "7"));
+    index.add(DEBUGGEE_ID, snapshot("c", "count", "42"));
+
+    assertEquals(Collections.singleton("a"), index.search(DEBUGGEE_ID, "userId == 42"));
+    assertEquals(new HashSet<String>(Arrays.asList("a", "b")), index.search(DEBUGGEE_ID, "USER"));
+    assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")),
+        index.search(DEBUGGEE_ID, " == "));
+    assertTrue(index.search(DEBUGGEE_ID, "missing").isEmpty());
+    assertTrue(index.search("debuggee:2", "user").isEmpty());
+  }
+
+  @Test
+  public void testAdd_replacesPreviousContents() {
+    index.add(DEBUGGEE_ID, snapshot("a", "before", "1"));
+    index.add(DEBUGGEE_ID, snapshot("a", "after", "1"));
+
+    assertTrue(index.search(DEBUGGEE_ID, "before").isEmpty());
+    assertEquals(Collections.singleton("a"), index.search(DEBUGGEE_ID, "after"));
+  }
+
+  @Test
+  public void testRemove() {
+    index.add(DEBUGGEE_ID, snapshot("a", "userId", "42"));
+    index.remove(DEBUGGEE_ID, "a");
+
+    assertFalse(index.contains(DEBUGGEE_ID, "a"));
+    assertTrue(index.search(DEBUGGEE_ID, "user").isEmpty());
+  }
+
+  @Test
+  public void testAdd_evictsOldestSnapshotsOverBudget() {
+    SnapshotIndex bounded = new SnapshotIndex(4);
+    bounded.add(DEBUGGEE_ID, snapshot("a", "first", "1"));
+    bounded.add("debuggee:2", snapshot("b", "second", "2"));
+    bounded.add(DEBUGGEE_ID, snapshot("c", "third", "3"));
+
+    assertFalse(bounded.contains(DEBUGGEE_ID, "a"));
+    assertTrue(bounded.search(DEBUGGEE_ID, "first").isEmpty());
+    assertTrue(bounded.contains("debuggee:2", "b"));
+    assertEquals(Collections.singleton("c"), bounded.search(DEBUGGEE_ID, "third"));
+    assertEquals(4, bounded.getPostingCount());
+  }
+
+  @Test
+  public void testAdd_keepsSnapshotLargerThanBudget() {
+    SnapshotIndex bounded = new SnapshotIndex(1);
+    bounded.add(DEBUGGEE_ID, snapshot("a", "first", "1"));
+    bounded.add(DEBUGGEE_ID, snapshot("b", "second", "2"));
+
+    assertFalse(bounded.contains(DEBUGGEE_ID, "a"));
+    assertEquals(Collections.singleton("b"), bounded.search(DEBUGGEE_ID, "second"));
+  }
+
+  @Test
+  public void testRemove_tracksPostingCount() {
+    index.add(DEBUGGEE_ID, snapshot("a", "userId", "42"));
+    index.add(DEBUGGEE_ID, snapshot("b", "userId", "7"));
+    index.add(DEBUGGEE_ID, snapshot("a", "count", "42"));
+    assertEquals(4, index.getPostingCount());
+
+    index.remove(DEBUGGEE_ID, "a");
+    index.remove(DEBUGGEE_ID, "b");
+
+    assertEquals(0, index.getPostingCount());
+    assertTrue(index.search(DEBUGGEE_ID, "").isEmpty());
+  }
+
+  /**
+   * Searches an index of a few thousand snapshots and reports the time per query. Skipped unless
+   * {@link Benchmarks#PROPERTY} is set.
+   */
+  @Test
+  public void testSearch_benchmark() {
+    Benchmarks.assumeEnabled();
+    for (int i = 0; i < 5000; i++) {
+      Variable[] locals = new Variable[50];
+      for (int j = 0; j < locals.length; j++) {
+        locals[j] = new Variable().setName("local" + j).setValue(String.valueOf(i * j));
+      }
+      index.add(DEBUGGEE_ID, new Breakpoint().setId("bp" + i).setStackFrames(
+          Collections.singletonList(new StackFrame().setFunction("com.example.Handler.handle" + i)
+              .setLocals(Arrays.asList(locals)))));
+    }
+
+    String[] queries = {"local7 == 49", "handle12", "local", "99"};
+    int rounds = 200;
+    long start = System.nanoTime();
+    int total = 0;
+    for (int round = 0; round < rounds; round++) {
+      for (String query : queries) {
+        total += index.search(DEBUGGEE_ID, query).size();
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    Benchmarks.report("SnapshotIndex", "%.3f ms per query",
+        elapsed / 1e6 / (rounds * queries.length));
+    assertTrue(total > 0);
+  }
+
+  private static Breakpoint snapshot(String id, String name, String value) {
+    return new Breakpoint().setId(id).setStackFrames(Collections.singletonList(new StackFrame()
+        .setLocals(Collections.singletonList(new Variable().setName(name).setValue(value)))));
+  }
+}
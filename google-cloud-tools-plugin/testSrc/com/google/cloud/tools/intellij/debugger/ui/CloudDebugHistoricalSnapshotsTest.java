@@ -18,6 +18,7 @@ package com.google.cloud.tools.intellij.debugger.ui;
 
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
 import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.cloud.tools.intellij.debugger.BreakpointRecord;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcess;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessHandler;
 import com.google.cloud.tools.intellij.debugger.CloudBreakpointHandler;
@@ -100,7 +101,8 @@ public class CloudDebugHistoricalSnapshotsTest {
     List<Breakpoint> breakpoints = new ArrayList<Breakpoint>();
     breakpoints.add(bp1);
 
-    Mockito.when(mockProcess.getCurrentBreakpointList()).thenReturn(breakpoints);
+    Mockito.when(mockProcess.getCurrentBreakpointRecords())
+        .thenReturn(BreakpointRecord.fromList(breakpoints));
     Mockito.when(mockProcess.getCurrentSnapshot()).thenReturn(bp1);
     CloudBreakpointHandler breakpointHandler = Mockito.mock(CloudBreakpointHandler.class);
     Mockito.when(mockProcess.getBreakpointHandler()).thenReturn(breakpointHandler);
@@ -145,21 +147,23 @@ public class CloudDebugHistoricalSnapshotsTest {
     Assert.assertEquals(-1, snapshots.table.getSelectedRow());
 
     // BP1
-    Mockito.when(mockProcess.getCurrentBreakpointList()).thenReturn(breakpoints1);
+    Mockito.when(mockProcess.getCurrentBreakpointRecords())
+        .thenReturn(BreakpointRecord.fromList(breakpoints1));
     Mockito.when(mockProcess.getCurrentSnapshot()).thenReturn(bp1);
     runModelSetter(snapshots);
     Assert.assertEquals(0, snapshots.table.getSelectedRow());
 
     // BP2
-    Mockito.when(mockProcess.getCurrentBreakpointList()).thenReturn(breakpoints2);
+    Mockito.when(mockProcess.getCurrentBreakpointRecords())
+        .thenReturn(BreakpointRecord.fromList(breakpoints2));
     Mockito.when(mockProcess.getCurrentSnapshot()).thenReturn(bp2);
     runModelSetter(snapshots);
     Assert.assertEquals(1, snapshots.table.getSelectedRow());
   }
 
   private void runModelSetter(CloudDebugHistoricalSnapshots snapshots) {
-    (snapshots.new ModelSetter(mockProcess.getCurrentBreakpointList(),
-        snapshots.getSelection())).run();
+    List<BreakpointRecord> breakpoints = mockProcess.getCurrentBreakpointRecords();
+    (snapshots.new ModelSetter(breakpoints, snapshots.getSelection(breakpoints))).run();
   }
 
   private static class MockDisposable implements Disposable {
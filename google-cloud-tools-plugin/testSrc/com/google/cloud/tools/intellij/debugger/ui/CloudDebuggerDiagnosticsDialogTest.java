@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.intellij.debugger.CloudDebugCircuitBreaker;
+import com.google.cloud.tools.intellij.debugger.CloudDebugProcessState;
+import com.google.cloud.tools.intellij.debugger.CloudDebugProcessWatcher;
+import com.google.cloud.tools.intellij.util.GctBundle;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CloudDebuggerDiagnosticsDialogTest {
+
+  @Test
+  public void testDescribeConnections_noStates() {
+    CloudDebugProcessWatcher watcher = mock(CloudDebugProcessWatcher.class);
+
+    assertEquals(GctBundle.getString("clouddebug.diagnostics.connections.none"),
+        CloudDebuggerDiagnosticsDialog.describeConnections(
+            Collections.<CloudDebugProcessState>emptyList(), watcher));
+  }
+
+  @Test
+  public void testDescribeConnections_showsBreakerStatePerProject() {
+    CloudDebugProcessState connected = state("connected-project");
+    CloudDebugProcessState backingOff = state("failing-project");
+    CloudDebugProcessState notPolled = state("new-project");
+    CloudDebugProcessWatcher watcher = mock(CloudDebugProcessWatcher.class);
+    when(watcher.getConnectionState(connected)).thenReturn(CloudDebugCircuitBreaker.State.CLOSED);
+    when(watcher.getConnectionState(backingOff)).thenReturn(CloudDebugCircuitBreaker.State.OPEN);
+    when(watcher.getConnectionState(notPolled)).thenReturn(null);
+
+    String text = CloudDebuggerDiagnosticsDialog.describeConnections(
+        Arrays.asList(connected, backingOff, notPolled), watcher);
+
+    assertEquals("<html>"
+        + line("connected-project", "clouddebug.diagnostics.connection.closed") + "<br>"
+        + line("failing-project", "clouddebug.diagnostics.connection.open") + "<br>"
+        + line("new-project", "clouddebug.diagnostics.connection.idle")
+        + "</html>", text);
+  }
+
+  private static CloudDebugProcessState state(String projectName) {
+    CloudDebugProcessState state = mock(CloudDebugProcessState.class);
+    when(state.getProjectName()).thenReturn(projectName);
+    return state;
+  }
+
+  private static String line(String projectName, String stateKey) {
+    return GctBundle.message("clouddebug.diagnostics.connection", projectName,
+        GctBundle.getString(stateKey));
+  }
+}
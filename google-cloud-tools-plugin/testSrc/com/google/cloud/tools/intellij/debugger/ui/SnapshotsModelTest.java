@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.cloud.tools.intellij.debugger.BreakpointRecord;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+public class SnapshotsModelTest {
+
+  private SnapshotsModel model;
+  private List<TableModelEvent> events;
+
+  @Before
+  public void setUp() {
+    model = new SnapshotsModel(null);
+    events = new ArrayList<TableModelEvent>();
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent event) {
+        events.add(event);
+      }
+    });
+  }
+
+  @Test
+  public void testSetBreakpoints_insertsOnlyNewRows() {
+    model.setBreakpoints(Arrays.asList(pending("a"), pending("c")));
+    events.clear();
+
+    model.setBreakpoints(Arrays.asList(pending("a"), pending("b"), pending("c")));
+
+    assertEquals(Arrays.asList("a", "b", "c"), ids());
+    assertEquals(1, events.size());
+    assertEvent(events.get(0), TableModelEvent.INSERT, 1, 1);
+  }
+
+  @Test
+  public void testSetBreakpoints_deletesOnlyRemovedRows() {
+    model.setBreakpoints(Arrays.asList(pending("a"), pending("b"), pending("c")));
+    events.clear();
+
+    model.setBreakpoints(Arrays.asList(pending("a"), pending("c")));
+
+    assertEquals(Arrays.asList("a", "c"), ids());
+    assertEquals(1, events.size());
+    assertEvent(events.get(0), TableModelEvent.DELETE, 1, 1);
+  }
+
+  @Test
+  public void testSetBreakpoints_movesRowThatBecameFinal() {
+    model.setBreakpoints(Arrays.asList(pending("a"), pending("b"), snapshot("c")));
+    events.clear();
+
+    Set<String> received =
+        model.setBreakpoints(Arrays.asList(pending("b"), snapshot("a"), snapshot("c")));
+
+    assertEquals(Arrays.asList("b", "a", "c"), ids());
+    assertEquals(1, countEvents(TableModelEvent.DELETE));
+    assertEquals(1, countEvents(TableModelEvent.INSERT));
+    assertTrue(received.contains("a"));
+    assertTrue(model.isNewlyReceived("a"));
+    assertFalse(model.isNewlyReceived("c"));
+  }
+
+  @Test
+  public void testSetBreakpoints_unchangedListFiresNoEvents() {
+    model.setBreakpoints(Arrays.asList(pending("a"), snapshot("b")));
+    events.clear();
+
+    model.setBreakpoints(Arrays.asList(pending("a"), snapshot("b")));
+
+    assertTrue(events.isEmpty());
+  }
+
+  @Test
+  public void testSetBreakpoints_keepsPendingDeletesOfRemainingRows() {
+    model.setBreakpoints(Arrays.asList(pending("a"), pending("b")));
+    model.markForDelete("a");
+    model.markForDelete("b");
+
+    model.setBreakpoints(Arrays.asList(pending("a")));
+
+    assertTrue(model.isMarkedForDelete(0));
+    assertTrue(model.hasPendingDeletes());
+  }
+
+  private List<String> ids() {
+    List<String> ids = new ArrayList<String>();
+    for (BreakpointRecord breakpoint : model.getBreakpoints()) {
+      ids.add(breakpoint.getId());
+    }
+    return ids;
+  }
+
+  private int countEvents(int type) {
+    int count = 0;
+    for (TableModelEvent event : events) {
+      if (event.getType() == type) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void assertEvent(TableModelEvent event, int type, int firstRow, int lastRow) {
+    assertEquals(type, event.getType());
+    assertEquals(firstRow, event.getFirstRow());
+    assertEquals(lastRow, event.getLastRow());
+  }
+
+  private static Breakpoint pending(String id) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    breakpoint.setIsFinalState(false);
+    return breakpoint;
+  }
+
+  private static Breakpoint snapshot(String id) {
+    Breakpoint breakpoint = new Breakpoint();
+    breakpoint.setId(id);
+    breakpoint.setIsFinalState(true);
+    breakpoint.setFinalTime("2016-08-22T05:23:34.123Z");
+    return breakpoint;
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.cloud.tools.intellij.resources;
 
+import com.google.api.services.cloudresourcemanager.model.Project;
 import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
@@ -29,9 +30,14 @@ import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreeNode;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -64,4 +70,124 @@ public class GoogleUserModelItemTest extends BasePluginTestCase {
     Assert.assertFalse(item.isSynchronizing());
   }
 
+  @Test
+  public void testConstructor_showsCachedCatalog() {
+    registerService(CloudToolsPluginInfoService.class, mockPluginInfoService);
+    ProjectCatalogCache catalog = new ProjectCatalogCache(null);
+    catalog.put(user, Arrays.asList(project("a", "Alpha"), project("b", "Beta")));
+
+    GoogleUserModelItem item = new GoogleUserModelItem(user, model, catalog);
+
+    Assert.assertEquals(Arrays.asList("a", "b"), item.getShownProjectIds());
+    Assert.assertTrue(item.getLastChild() instanceof ResourceNewProjectModelItem);
+  }
+
+  @Test
+  public void testSetNeedsSynchronizing_dropsCachedCatalog() {
+    registerService(CloudToolsPluginInfoService.class, mockPluginInfoService);
+    ProjectCatalogCache catalog = new ProjectCatalogCache(null);
+    catalog.put(user, Arrays.asList(project("a", "Alpha")));
+    GoogleUserModelItem item = new GoogleUserModelItem(user, model, catalog);
+
+    item.setNeedsSynchronizing();
+
+    Assert.assertNull(item.getShownProjectIds());
+    Assert.assertNull(catalog.get("foo@example.com"));
+  }
+
+  @Test
+  public void testApplyProjects_appliesOnlyDifferences() {
+    registerService(CloudToolsPluginInfoService.class, mockPluginInfoService);
+    GoogleUserModelItem item = new GoogleUserModelItem(user, model, new ProjectCatalogCache(null));
+    model.insertNodeInto(item, (DefaultMutableTreeNode) model.getRoot(), 0);
+    item.applyProjects(Arrays.asList(project("a", "Alpha"), project("b", "Beta"),
+        project("c", "Gamma")));
+    TreeNode alpha = item.getChildAt(0);
+    final List<String> events = new ArrayList<String>();
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent event) {
+        events.add("changed");
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent event) {
+        events.add("inserted");
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent event) {
+        events.add("removed");
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent event) {
+        events.add("structure");
+      }
+    });
+
+    item.applyProjects(GoogleUserModelItem.sortProjects(Arrays.asList(project("a", "Alpha"),
+        project("c", "Delta"), project("d", "Epsilon"))));
+
+    Assert.assertEquals(Arrays.asList("a", "c", "d"), item.getShownProjectIds());
+    Assert.assertEquals("Delta", ((ResourceProjectModelItem) item.getChildAt(1)).getDescription());
+    Assert.assertSame(alpha, item.getChildAt(0));
+    Assert.assertTrue(item.getLastChild() instanceof ResourceNewProjectModelItem);
+    Assert.assertEquals(Arrays.asList("removed", "changed", "inserted"), events);
+  }
+
+  @Test
+  public void testMergeProjects_insertsEachPageInSortedOrder() {
+    registerService(CloudToolsPluginInfoService.class, mockPluginInfoService);
+    GoogleUserModelItem item = new GoogleUserModelItem(user, model, new ProjectCatalogCache(null));
+    model.insertNodeInto(item, (DefaultMutableTreeNode) model.getRoot(), 0);
+    item.mergeProjects(GoogleUserModelItem.sortProjects(Arrays.asList(project("b", "Beta"),
+        project("d", "Delta"))));
+    final List<String> events = new ArrayList<String>();
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent event) {
+        events.add("changed");
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent event) {
+        events.add("inserted " + Arrays.toString(event.getChildIndices()));
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent event) {
+        events.add("removed");
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent event) {
+        events.add("structure");
+      }
+    });
+
+    item.mergeProjects(GoogleUserModelItem.sortProjects(Arrays.asList(project("c", "Gamma"),
+        project("a", "Alpha"))));
+
+    Assert.assertEquals(Arrays.asList("a", "b", "d", "c"), item.getShownProjectIds());
+    Assert.assertTrue(item.getLastChild() instanceof ResourceNewProjectModelItem);
+    Assert.assertEquals(Arrays.asList("inserted [0, 3]"), events);
+  }
+
+  @Test
+  public void testSortProjects_byNameThenIdSkippingProjectsWithoutId() {
+    List<Project> sorted = GoogleUserModelItem.sortProjects(Arrays.asList(project("z", "beta"),
+        project("y", "Alpha"), project("x", "beta"), project(null, "Aardvark")));
+
+    List<String> ids = new ArrayList<String>();
+    for (Project project : sorted) {
+      ids.add(project.getProjectId());
+    }
+    Assert.assertEquals(Arrays.asList("y", "x", "z"), ids);
+  }
+
+  private static Project project(String id, String name) {
+    return new Project().setProjectId(id).setName(name).setProjectNumber(1L);
+  }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.cloudresourcemanager.model.Project;
+import com.google.cloud.tools.intellij.login.CredentialedUser;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ProjectCatalogCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private CredentialedUser user;
+
+  @Before
+  public void setUp() {
+    user = mock(CredentialedUser.class);
+    when(user.getEmail()).thenReturn("foo@example.com");
+  }
+
+  @Test
+  public void testGet_readsFromDiskAfterRestart() {
+    new ProjectCatalogCache(folder.getRoot()).put(user, Arrays.asList(
+        new Project().setProjectId("a").setName("Alpha").setProjectNumber(12L)
+            .setLifecycleState("ACTIVE")));
+
+    ProjectCatalogCache restarted = new ProjectCatalogCache(folder.getRoot());
+    assertNull(restarted.getFromMemory("foo@example.com"));
+    List<Project> projects = restarted.get("foo@example.com");
+
+    assertEquals(1, projects.size());
+    assertEquals("a", projects.get(0).getProjectId());
+    assertEquals("Alpha", projects.get(0).getName());
+    assertEquals(Long.valueOf(12), projects.get(0).getProjectNumber());
+    // Only the fields the project selector shows are kept.
+    assertNull(projects.get(0).getLifecycleState());
+  }
+
+  @Test
+  public void testInvalidate_dropsMemoryAndDisk() {
+    ProjectCatalogCache catalog = new ProjectCatalogCache(folder.getRoot());
+    catalog.put(user, Arrays.asList(new Project().setProjectId("a")));
+
+    catalog.invalidate("foo@example.com");
+
+    assertNull(catalog.get("foo@example.com"));
+    assertNull(new ProjectCatalogCache(folder.getRoot()).get("foo@example.com"));
+  }
+
+  @Test
+  public void testGet_keepsAccountsApart() {
+    ProjectCatalogCache catalog = new ProjectCatalogCache(folder.getRoot());
+    catalog.put(user, Arrays.asList(new Project().setProjectId("a")));
+
+    assertNull(catalog.get("other@example.com"));
+  }
+}